@@ -0,0 +1,61 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.dto.CarritoDTO;
+import com.masterserv.productos.entity.Carrito;
+import com.masterserv.productos.entity.ItemCarrito;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.entity.Usuario;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CarritoService.mapAndCalculateTotals: corre en cada alta/baja/cambio de ítem del carrito.
+ * Incluye el armado de los DTO, que es parte del costo que paga cada edición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarritoMontosBenchmark {
+
+    @Param({"1", "5", "20", "50"})
+    public int items;
+
+    private Carrito carrito;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(DatosBenchmark.SEMILLA);
+        List<Producto> productos = DatosBenchmark.productos(items, DatosBenchmark.categorias(4), random);
+
+        Usuario vendedor = new Usuario();
+        vendedor.setId(1L);
+
+        carrito = new Carrito();
+        carrito.setId(1L);
+        carrito.setVendedor(vendedor);
+        Set<ItemCarrito> itemsCarrito = new HashSet<>();
+        long id = 1;
+        for (Producto p : productos) {
+            ItemCarrito item = new ItemCarrito();
+            item.setId(id++); // equals/hashCode de ItemCarrito usan el ID
+            item.setCarrito(carrito);
+            item.setProducto(p);
+            item.setCantidad(DatosBenchmark.cantidad(random));
+            itemsCarrito.add(item);
+        }
+        carrito.setItems(itemsCarrito);
+    }
+
+    @Benchmark
+    public CarritoDTO mapAndCalculateTotals() {
+        return CarritoService.mapAndCalculateTotals(carrito);
+    }
+}
@@ -0,0 +1,51 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.ItemCotizacion;
+import com.masterserv.productos.enums.EstadoItemCotizacion;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CotizacionService.sumarTotalOfertado (núcleo de recalcularTotalCotizacion).
+ * Un 20% de los ítems queda sin cotizar, como pasa cuando el proveedor responde a medias.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CotizacionMontosBenchmark {
+
+    @Param({"5", "20", "100"})
+    public int items;
+
+    private Set<ItemCotizacion> itemsCotizacion;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(DatosBenchmark.SEMILLA);
+        itemsCotizacion = new HashSet<>();
+        for (int i = 0; i < items; i++) {
+            ItemCotizacion item = new ItemCotizacion();
+            item.setCantidadSolicitada(1 + random.nextInt(30));
+            if (random.nextInt(5) == 0) {
+                item.setEstado(EstadoItemCotizacion.NO_DISPONIBLE_PROVEEDOR);
+            } else {
+                item.setEstado(EstadoItemCotizacion.COTIZADO);
+                item.setPrecioUnitarioOfertado(DatosBenchmark.precio(random));
+            }
+            itemsCotizacion.add(item);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal sumarTotalOfertado() {
+        return CotizacionService.sumarTotalOfertado(itemsCotizacion);
+    }
+}
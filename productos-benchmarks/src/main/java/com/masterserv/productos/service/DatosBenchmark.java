@@ -0,0 +1,59 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.entity.Producto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Datos sintéticos con la forma de los reales: precios con 2 decimales entre $500 y $150.000,
+ * cantidades chicas y pocas categorías. La semilla es fija para que las corridas sean comparables.
+ */
+final class DatosBenchmark {
+
+    static final long SEMILLA = 360L;
+
+    private DatosBenchmark() {}
+
+    static List<Categoria> categorias(int cantidad) {
+        List<Categoria> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Categoria c = new Categoria();
+            c.setId((long) i + 1);
+            c.setNombre("Categoria " + i);
+            lista.add(c);
+        }
+        return lista;
+    }
+
+    static List<Producto> productos(int cantidad, List<Categoria> categorias, Random random) {
+        List<Producto> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Producto p = new Producto();
+            p.setId((long) i + 1);
+            p.setNombre("Producto " + i);
+            p.setCodigo("P-" + i);
+            p.setPrecioVenta(precio(random));
+            p.setStockActual(1 + random.nextInt(50));
+            p.setCategoria(categorias.get(i % categorias.size()));
+            lista.add(p);
+        }
+        return lista;
+    }
+
+    static BigDecimal precio(Random random) {
+        long centavos = 50_000L + (long) (random.nextDouble() * 14_950_000L);
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    static int cantidad(Random random) {
+        return 1 + random.nextInt(4);
+    }
+
+    static long aCentavos(BigDecimal monto) {
+        return monto.movePointRight(2).longValueExact();
+    }
+}
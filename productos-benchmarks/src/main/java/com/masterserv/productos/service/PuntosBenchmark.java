@@ -0,0 +1,64 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.ReglaPuntos;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PuntosService.calcularPuntos: una división con redondeo por venta.
+ * Se recorre un arreglo de totales para que el JIT no "aprenda" un único valor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PuntosBenchmark {
+
+    private static final int TOTALES = 1024;
+
+    private BigDecimal[] totales;
+    private long[] totalesCentavos;
+    private ReglaPuntos regla;
+    private long montoGastoCentavos;
+    private int indice;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(DatosBenchmark.SEMILLA);
+        totales = new BigDecimal[TOTALES];
+        totalesCentavos = new long[TOTALES];
+        for (int i = 0; i < TOTALES; i++) {
+            // Tickets de 1 a 20 líneas
+            BigDecimal total = BigDecimal.ZERO;
+            int lineas = 1 + random.nextInt(20);
+            for (int l = 0; l < lineas; l++) {
+                total = total.add(DatosBenchmark.precio(random).multiply(BigDecimal.valueOf(DatosBenchmark.cantidad(random))));
+            }
+            totales[i] = total;
+            totalesCentavos[i] = DatosBenchmark.aCentavos(total);
+        }
+
+        regla = new ReglaPuntos();
+        regla.setMontoGasto(new BigDecimal("1000.00"));
+        regla.setPuntosGanados(10);
+        montoGastoCentavos = DatosBenchmark.aCentavos(regla.getMontoGasto());
+    }
+
+    @Benchmark
+    public int calcularPuntos() {
+        indice = (indice + 1) & (TOTALES - 1);
+        return PuntosService.calcularPuntos(totales[indice], regla);
+    }
+
+    // Candidato long en centavos: división entera (equivale a FLOOR para montos positivos)
+    @Benchmark
+    public long calcularPuntosCentavos() {
+        indice = (indice + 1) & (TOTALES - 1);
+        return (totalesCentavos[indice] / montoGastoCentavos) * regla.getPuntosGanados();
+    }
+}
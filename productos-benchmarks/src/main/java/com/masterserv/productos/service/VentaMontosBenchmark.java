@@ -0,0 +1,112 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.entity.Cupon;
+import com.masterserv.productos.entity.DetalleVenta;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.enums.TipoDescuento;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cálculo de montos del checkout (VentaService.create + calcularDescuento).
+ *
+ * subtotalCentavos es el candidato "long en centavos": mide cuánto costaría el mismo
+ * subtotal si los precios ya estuvieran en centavos. No está en el código de la app.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VentaMontosBenchmark {
+
+    @Param({"1", "5", "20", "100"})
+    public int lineas;
+
+    private Set<DetalleVenta> detalles;
+    private BigDecimal subtotal;
+    private Cupon cuponCategoria;
+    private Cupon cuponTotal;
+    private Cupon cuponFijo;
+
+    private long[] preciosCentavos;
+    private int[] cantidades;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(DatosBenchmark.SEMILLA);
+        List<Categoria> categorias = DatosBenchmark.categorias(4);
+        List<Producto> productos = DatosBenchmark.productos(lineas, categorias, random);
+
+        detalles = new HashSet<>();
+        preciosCentavos = new long[lineas];
+        cantidades = new int[lineas];
+        int i = 0;
+        for (Producto p : productos) {
+            DetalleVenta det = new DetalleVenta();
+            det.setProducto(p);
+            det.setCantidad(DatosBenchmark.cantidad(random));
+            det.setPrecioUnitario(p.getPrecioVenta());
+            detalles.add(det);
+
+            preciosCentavos[i] = DatosBenchmark.aCentavos(p.getPrecioVenta());
+            cantidades[i] = det.getCantidad();
+            i++;
+        }
+        subtotal = subtotalBigDecimal();
+
+        cuponCategoria = cupon(TipoDescuento.PORCENTAJE, "15", categorias.get(0));
+        cuponTotal = cupon(TipoDescuento.PORCENTAJE, "10", null);
+        cuponFijo = cupon(TipoDescuento.FIJO, "5000", null);
+    }
+
+    // Mismo recorrido que VentaService.create al armar los detalles
+    @Benchmark
+    public BigDecimal subtotalBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (DetalleVenta det : detalles) {
+            total = total.add(det.getPrecioUnitario().multiply(BigDecimal.valueOf(det.getCantidad())));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long subtotalCentavos() {
+        long total = 0;
+        for (int i = 0; i < preciosCentavos.length; i++) {
+            total = Math.addExact(total, Math.multiplyExact(preciosCentavos[i], cantidades[i]));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal descuentoPorcentajeCategoria() {
+        return VentaService.calcularDescuento(cuponCategoria, subtotal, detalles);
+    }
+
+    @Benchmark
+    public BigDecimal descuentoPorcentajeTotal() {
+        return VentaService.calcularDescuento(cuponTotal, subtotal, detalles);
+    }
+
+    @Benchmark
+    public BigDecimal descuentoFijo() {
+        return VentaService.calcularDescuento(cuponFijo, subtotal, detalles);
+    }
+
+    private static Cupon cupon(TipoDescuento tipo, String valor, Categoria categoria) {
+        Cupon c = new Cupon();
+        c.setTipoDescuento(tipo);
+        c.setValor(new BigDecimal(valor));
+        c.setCategoria(categoria);
+        return c;
+    }
+}
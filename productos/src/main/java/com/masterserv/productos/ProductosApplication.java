@@ -18,6 +18,12 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @EnableScheduling
 public class ProductosApplication {
 
+    // Antes de que arranque el contexto: el driver JDBC (H2 la cachea) y Hibernate toman la zona
+    // al inicializarse, y con el setDefault del @PostConstruct leían las fechas corridas 3 horas
+    static {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Argentina/Buenos_Aires"));
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(ProductosApplication.class, args);
     }
@@ -0,0 +1,61 @@
+package com.masterserv.productos.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Las tablas de alto volumen (ventas, detalles, movimientos, auditoría, outbox) pasaron de
+ * IDENTITY a secuencias "pooled" de 50 para que Hibernate pueda agrupar los INSERT en batch.
+ *
+ * ddl-auto=update crea las secuencias nuevas empezando en 1, pero las tablas ya tienen filas.
+ * Al arrancar, si una secuencia quedó por detrás del MAX(id) de su tabla, la adelantamos.
+ * Solo se toca cuando está atrasada: con varias instancias arriba nunca se "rebobina".
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class AlineadorSecuencias {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlineadorSecuencias.class);
+
+    // Debe coincidir con el allocationSize de los @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final Map<String, String> SECUENCIAS = new LinkedHashMap<>();
+    static {
+        SECUENCIAS.put("ventas_pool_seq", "ventas");
+        SECUENCIAS.put("detalles_venta_pool_seq", "detalles_venta");
+        SECUENCIAS.put("movimientos_stock_pool_seq", "movimientos_stock");
+        SECUENCIAS.put("movimientos_caja_pool_seq", "movimientos_caja");
+        SECUENCIAS.put("movimientos_puntos_pool_seq", "movimientos_puntos");
+        SECUENCIAS.put("auditoria_logs_pool_seq", "auditoria_logs");
+        SECUENCIAS.put("outbox_eventos_pool_seq", "outbox_eventos");
+    }
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alinear() {
+        SECUENCIAS.forEach((secuencia, tabla) -> {
+            try {
+                Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabla, Long.class);
+                Long actual = jdbcTemplate.queryForObject("SELECT nextval('" + secuencia + "')", Long.class);
+                if (actual != null && maxId != null && actual <= maxId) {
+                    long reinicio = maxId + ALLOCATION_SIZE + 1;
+                    jdbcTemplate.execute("ALTER SEQUENCE " + secuencia + " RESTART WITH " + reinicio);
+                    logger.info("🔢 Secuencia {} adelantada a {} (MAX(id) de {} = {})", secuencia, reinicio, tabla, maxId);
+                }
+            } catch (DataAccessException e) {
+                logger.warn("⚠️ No se pudo alinear la secuencia {}: {}", secuencia, e.getMessage());
+            }
+        });
+    }
+}
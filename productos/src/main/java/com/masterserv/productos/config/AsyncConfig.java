@@ -0,0 +1,134 @@
+package com.masterserv.productos.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors dedicados para el trabajo @Async, uno por tipo de carga.
+ *
+ * Antes todo (mails, PDF de ventas, log del chatbot, eventos de stock) compartía el
+ * executor por defecto, con cola sin límite: una ráfaga de ventas podía demorar los
+ * avisos de lista de espera o llenar el heap. Ahora cada uno tiene su pool, una cola
+ * acotada y una política explícita cuando se llena.
+ *
+ * Métricas (tag executor=general|mail|pdf|chatbot-log|stock-events|descargas):
+ *  - async.executor.cola / async.executor.activos : profundidad de cola e hilos ocupados
+ *  - async.executor.rechazadas : tareas que encontraron la cola llena
+ *  - async.tarea.espera / async.tarea.duracion : tiempo en cola y tiempo de ejecución
+ */
+@Configuration
+public class AsyncConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    public static final String MAIL = "mailExecutor";
+    public static final String PDF = "pdfExecutor";
+    public static final String CHATBOT_LOG = "chatbotLogExecutor";
+    public static final String STOCK_EVENTS = "stockEventsExecutor";
+    public static final String DESCARGAS = "descargasExecutor";
+
+    private final MeterRegistry registry;
+
+    public AsyncConfig(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Reemplaza al executor por defecto de Spring Boot (que deja de crearse al haber otros Executor):
+    // lo usan los @Async sin nombre. Las descargas en streaming de MVC van a DESCARGAS (ver WebMvcConfig).
+    @Bean(name = {"taskExecutor", "applicationTaskExecutor"})
+    public ThreadPoolTaskExecutor taskExecutor(@Value("${app.async.general.hilos:4}") int hilos,
+                                               @Value("${app.async.general.cola:200}") int cola) {
+        return crear("general", hilos, cola, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Un mail no se pierde: si la cola se llena lo manda el hilo que lo pidió (backpressure)
+    @Bean(name = MAIL)
+    public ThreadPoolTaskExecutor mailExecutor(@Value("${app.async.mail.hilos:2}") int hilos,
+                                               @Value("${app.async.mail.cola:200}") int cola) {
+        return crear("mail", hilos, cola, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Comprobante + email post-venta
+    @Bean(name = PDF)
+    public ThreadPoolTaskExecutor pdfExecutor(@Value("${app.async.pdf.hilos:2}") int hilos,
+                                              @Value("${app.async.pdf.cola:100}") int cola) {
+        return crear("pdf", hilos, cola, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // El log del chatbot es best-effort: con la cola llena se descarta (nunca frena al chat)
+    @Bean(name = CHATBOT_LOG)
+    public ThreadPoolTaskExecutor chatbotLogExecutor(@Value("${app.async.chatbot-log.hilos:1}") int hilos,
+                                                     @Value("${app.async.chatbot-log.cola:500}") int cola) {
+        return crear("chatbot-log", hilos, cola, (r, executor) ->
+                logger.warn("⚠️ [ASYNC] Cola de chatbot-log llena, se descarta una interacción."));
+    }
+
+    // Avisos de lista de espera: no se pueden perder
+    @Bean(name = STOCK_EVENTS)
+    public ThreadPoolTaskExecutor stockEventsExecutor(@Value("${app.async.stock-events.hilos:2}") int hilos,
+                                                      @Value("${app.async.stock-events.cola:500}") int cola) {
+        return crear("stock-events", hilos, cola, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Respuestas en streaming (reportes PDF, exportaciones): un cliente lento ocupa su hilo toda la
+    // descarga, así que no comparten pool con los @Async. Con la cola llena la escribe el hilo del
+    // request, como antes del streaming.
+    @Bean(name = DESCARGAS)
+    public ThreadPoolTaskExecutor descargasExecutor(@Value("${app.async.descargas.hilos:4}") int hilos,
+                                                    @Value("${app.async.descargas.cola:20}") int cola) {
+        return crear("descargas", hilos, cola, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private ThreadPoolTaskExecutor crear(String nombre, int hilos, int cola, RejectedExecutionHandler politica) {
+        Counter rechazadas = Counter.builder("async.executor.rechazadas")
+                .tag("executor", nombre).register(registry);
+        Timer espera = Timer.builder("async.tarea.espera")
+                .description("Tiempo que la tarea pasó en la cola")
+                .tag("executor", nombre).register(registry);
+        Timer duracion = Timer.builder("async.tarea.duracion")
+                .tag("executor", nombre).register(registry);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("async-" + nombre + "-");
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(cola);
+        executor.setRejectedExecutionHandler((r, pool) -> {
+            rechazadas.increment();
+            politica.rejectedExecution(r, pool);
+        });
+        executor.setTaskDecorator(tarea -> {
+            long encolada = System.nanoTime();
+            return () -> {
+                long inicio = System.nanoTime();
+                espera.record(inicio - encolada, TimeUnit.NANOSECONDS);
+                try {
+                    tarea.run();
+                } finally {
+                    duracion.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                }
+            };
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        // El ThreadPoolExecutor real se crea al inicializar el bean: las gauges lo leen de forma diferida
+        Gauge.builder("async.executor.cola", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .tag("executor", nombre).register(registry);
+        Gauge.builder("async.executor.activos", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("executor", nombre).register(registry);
+        return executor;
+    }
+}
@@ -0,0 +1,102 @@
+package com.masterserv.productos.config;
+
+import com.masterserv.productos.event.EmpresaConfigActualizadaEvent;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.service.ImagenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migración de las imágenes inline (data URI "base64," en productos.imagen_url y
+ * empresa_config.logo_url) al almacén de ImagenService. También deja como nombre solo las
+ * filas que guardaron la URL completa de una imagen nuestra.
+ *
+ * Borra el base64 de la base: si el directorio de imágenes no sobrevive a un redeploy, las
+ * imágenes se pierden para siempre. Por eso está apagada por defecto y, aunque se active, no
+ * corre si el almacén no está marcado como persistente (app.imagenes.persistente).
+ *
+ * Corre al arrancar, en lotes y por JDBC (sin cargar entidades: la auditoría
+ * serializaría cada imagen completa). Es idempotente: solo toca filas que siguen con "data:",
+ * así que si se corta sigue donde quedó en el próximo arranque. Una imagen que no se puede
+ * convertir se deja como está y se avisa en el log.
+ */
+@Component
+public class MigradorImagenes {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigradorImagenes.class);
+
+    private static final int LOTE = 20;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private ImagenService imagenService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.imagenes.migrar-al-iniciar:false}")
+    private boolean migrarAlIniciar;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        if (migrarAlIniciar) migrar();
+    }
+
+    public void migrar() {
+        if (!imagenService.isPersistente()) {
+            logger.warn("⚠️ Migración de imágenes cancelada: app.imagenes.persistente=false " +
+                    "(el directorio de imágenes no es un volumen persistente; la base quedaría sin las imágenes).");
+            return;
+        }
+        try {
+            int productos = migrarTabla("productos", "imagen_url");
+            int logos = migrarTabla("empresa_config", "logo_url");
+            if (productos + logos > 0) {
+                logger.info("🖼️ Imágenes migradas al almacén: {} de productos, {} logo(s).", productos, logos);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("⚠️ No se pudo migrar las imágenes inline: {}", e.getMessage());
+        }
+    }
+
+    private int migrarTabla(String tabla, String columna) {
+        int migradas = 0;
+        long ultimoId = 0;
+        while (true) {
+            // Lotes chicos: cada fila puede traer varios MB de base64
+            List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                    "SELECT id, " + columna + " AS valor FROM " + tabla +
+                    " WHERE id > ? AND (" + columna + " LIKE 'data:%' OR " + columna + " LIKE '%/imagenes/%')" +
+                    " ORDER BY id LIMIT " + LOTE, ultimoId);
+            if (filas.isEmpty()) return migradas;
+
+            for (Map<String, Object> fila : filas) {
+                Long id = ((Number) fila.get("id")).longValue();
+                ultimoId = id;
+                try {
+                    String valor = (String) fila.get("valor");
+                    String nombre = imagenService.normalizar(valor);
+                    if (valor.equals(nombre)) continue; // URL externa que casualmente tiene /imagenes/
+                    jdbcTemplate.update("UPDATE " + tabla + " SET " + columna + " = ? WHERE id = ?", nombre, id);
+                    migradas++;
+                    // Catálogo en memoria, índice de búsqueda, versión/ETag y PDFs se enteran como de cualquier edición
+                    if ("productos".equals(tabla)) {
+                        eventPublisher.publishEvent(new ProductoActualizadoEvent(id));
+                    } else {
+                        eventPublisher.publishEvent(new EmpresaConfigActualizadaEvent(id));
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("⚠️ Imagen de {} #{} no migrada: {}", tabla, id, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.POST, "/productos/filtrar").permitAll() 
                 .requestMatchers(HttpMethod.GET, "/categorias/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/tipos-documento/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/imagenes/**").permitAll()
                 
                 // Rutas Públicas adicionales
                 .requestMatchers("/public/**").permitAll() 
@@ -93,6 +94,8 @@ public class SecurityConfig {
         )); 
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
+        // El front lee el ETag para revalidar catálogo, categorías y configuración (If-None-Match)
+        configuration.setExposedHeaders(List.of("ETag"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
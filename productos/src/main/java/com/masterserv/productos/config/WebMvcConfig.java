@@ -0,0 +1,30 @@
+package com.masterserv.productos.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Soporte async de Spring MVC: los StreamingResponseBody (reportes PDF, exportaciones CSV/XLSX)
+ * se escriben en el executor de descargas, acotado y separado del que usan los @Async.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Autowired
+    @Qualifier(AsyncConfig.DESCARGAS)
+    private ThreadPoolTaskExecutor descargasExecutor;
+
+    @Value("${spring.mvc.async.request-timeout:300000}")
+    private long timeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(descargasExecutor);
+        configurer.setDefaultTimeout(timeoutMs);
+    }
+}
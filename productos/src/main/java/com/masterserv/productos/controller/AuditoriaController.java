@@ -2,8 +2,10 @@ package com.masterserv.productos.controller;
 
 import com.masterserv.productos.dto.AuditoriaDTO;
 import com.masterserv.productos.dto.AuditoriaFiltroDTO; 
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.entity.Auditoria;
 import com.masterserv.productos.service.AuditoriaService; 
+import com.masterserv.productos.service.CodificadorAuditoria;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -20,6 +22,9 @@ public class AuditoriaController {
     @Autowired
     private AuditoriaService auditoriaService; 
 
+    @Autowired
+    private CodificadorAuditoria codificadorAuditoria;
+
     // Endpoint GET normal (Listar todos)
     @GetMapping
     public ResponseEntity<Page<AuditoriaDTO>> getLogs(
@@ -43,9 +48,31 @@ public class AuditoriaController {
         return ResponseEntity.ok(mapToDto(page));
     }
 
+    // --- Variantes por cursor: la tabla crece sin parar y el COUNT de cada página sale caro ---
+    @GetMapping("/cursor")
+    public ResponseEntity<PaginaCursorDTO<AuditoriaDTO>> getLogsCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int tamano) {
+        return ResponseEntity.ok(auditoriaService.getLogsCursor(cursor, tamano).map(this::toDto));
+    }
+
+    @PostMapping("/filtrar/cursor")
+    public ResponseEntity<PaginaCursorDTO<AuditoriaDTO>> filtrarLogsCursor(
+            @RequestBody AuditoriaFiltroDTO filtro,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int tamano) {
+        return ResponseEntity.ok(auditoriaService.filtrarAuditoriaCursor(filtro, cursor, tamano).map(this::toDto));
+    }
+
     // Método auxiliar para no repetir código de conversión DTO
     private Page<AuditoriaDTO> mapToDto(Page<Auditoria> page) {
-        return page.map(a -> new AuditoriaDTO(
+        return page.map(this::toDto);
+    }
+
+    // Los valores se guardan como parche (ver CodificadorAuditoria): acá se rearman completos
+    private AuditoriaDTO toDto(Auditoria a) {
+        CodificadorAuditoria.Vista vista = codificadorAuditoria.vista(a);
+        return new AuditoriaDTO(
                 a.getId(),
                 a.getEntidad(),
                 a.getEntidadId(),
@@ -53,8 +80,8 @@ public class AuditoriaController {
                 a.getUsuario(),
                 a.getFecha(),
                 a.getDetalle(),
-                a.getValorAnterior(),
-                a.getValorNuevo()
-        ));
+                vista.valorAnterior(),
+                vista.valorNuevo()
+        );
     }
 }
\ No newline at end of file
@@ -2,13 +2,20 @@ package com.masterserv.productos.controller;
 
 import com.masterserv.productos.dto.ProductoPublicoDTO;
 import com.masterserv.productos.dto.ProductoPublicoFiltroDTO; // <-- ¡IMPORTAR DTO DE FILTRO!
+import com.masterserv.productos.service.CatalogoMemoriaService;
+import com.masterserv.productos.service.CatalogoVersionService;
 import com.masterserv.productos.service.ProductoService; // <-- ¡IMPORTAR SERVICIO!
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/catalogo")
@@ -19,17 +26,30 @@ public class CatalogoController {
     private ProductoService productoService; 
     // ------------------------------------------
 
+    // Catálogo en memoria: si no puede resolver la consulta, se va a la base como antes
+    @Autowired
+    private CatalogoMemoriaService catalogoMemoriaService;
+
+    // ETag por versión del catálogo: si el navegador ya tiene la última, 304 sin consultar nada
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     /**
      * Endpoint PÚBLICO para obtener el catálogo de productos paginado.
      */
     @GetMapping("/productos")
     @PreAuthorize("permitAll()") // ¡Este endpoint es público!
-    public ResponseEntity<Page<ProductoPublicoDTO>> getCatalogo(Pageable pageable) {
+    public ResponseEntity<Page<ProductoPublicoDTO>> getCatalogo(Pageable pageable, WebRequest request) {
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         
         // --- ¡CORRECCIÓN 2: LLAMAR AL SERVICIO REAL! ---
         // (Quitamos el placeholder 'Page.empty()')
-        Page<ProductoPublicoDTO> catalogo = productoService.findAllPublico(pageable);
-        return ResponseEntity.ok(catalogo);
+        Page<ProductoPublicoDTO> catalogo = catalogoMemoriaService.buscar(null, pageable)
+                .orElseGet(() -> productoService.findAllPublico(pageable));
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(catalogo);
         // -----------------------------------------------
     }
     
@@ -43,7 +63,40 @@ public class CatalogoController {
             Pageable pageable) {
         
         // Llamamos al método de filtrado público que ya creamos
-        Page<ProductoPublicoDTO> catalogo = productoService.findPublicoByCriteria(filtro, pageable);
+        Page<ProductoPublicoDTO> catalogo = catalogoMemoriaService.buscar(filtro, pageable)
+                .orElseGet(() -> productoService.findPublicoByCriteria(filtro, pageable));
         return ResponseEntity.ok(catalogo);
     }
+
+    /**
+     * Variantes para scroll infinito: devuelven Slice (hasNext) y no ejecutan el COUNT.
+     */
+    @GetMapping("/productos/slice")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<Slice<ProductoPublicoDTO>> getCatalogoSlice(Pageable pageable, WebRequest request) {
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        Slice<ProductoPublicoDTO> catalogo = catalogoMemoriaService.buscar(null, pageable)
+                .map(this::aSlice)
+                .orElseGet(() -> productoService.findAllPublicoSlice(pageable));
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(catalogo);
+    }
+
+    @PostMapping("/productos/filtrar/slice")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<Slice<ProductoPublicoDTO>> filtrarCatalogoSlice(
+            @RequestBody ProductoPublicoFiltroDTO filtro,
+            Pageable pageable) {
+        Slice<ProductoPublicoDTO> catalogo = catalogoMemoriaService.buscar(filtro, pageable)
+                .map(this::aSlice)
+                .orElseGet(() -> productoService.findPublicoByCriteriaSlice(filtro, pageable));
+        return ResponseEntity.ok(catalogo);
+    }
+
+    // En memoria el total ya está calculado; se responde con la misma forma que la versión de base
+    private Slice<ProductoPublicoDTO> aSlice(Page<ProductoPublicoDTO> pagina) {
+        return new SliceImpl<>(pagina.getContent(), pagina.getPageable(), pagina.hasNext());
+    }
 }
\ No newline at end of file
@@ -1,13 +1,16 @@
 package com.masterserv.productos.controller;
 
 import com.masterserv.productos.dto.CategoriaDTO;
+import com.masterserv.productos.service.CatalogoVersionService;
 import com.masterserv.productos.service.CategoriaService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -19,14 +22,23 @@ public class CategoriaController {
     @Autowired
     private CategoriaService categoriaService;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     // --- ¡MÉTODO CORREGIDO! ---
     // Añadimos @RequestParam para recibir el filtro de estado
     @GetMapping
     public ResponseEntity<List<CategoriaDTO>> getAllCategorias(
-            @RequestParam(required = false) String estado) {
+            @RequestParam(required = false) String estado,
+            WebRequest request) {
+
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         
         List<CategoriaDTO> categorias = categoriaService.findAll(estado);
-        return ResponseEntity.ok(categorias);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categorias);
     }
     // -------------------------
 
@@ -6,6 +6,7 @@ import com.masterserv.productos.dto.SeleccionCompraDTO;
 import com.masterserv.productos.entity.Usuario;
 import com.masterserv.productos.repository.ItemCotizacionRepository;
 import com.masterserv.productos.repository.UsuarioRepository;
+import com.masterserv.productos.service.ImagenService;
 import com.masterserv.productos.service.PedidoService;
 import org.springframework.security.core.Authentication;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,9 +31,14 @@ public class ComprasController {
     @Autowired 
     private UsuarioRepository usuarioRepository;
 
+    @Autowired
+    private ImagenService imagenService;
+
     @GetMapping("/productos-cotizados")
     public ResponseEntity<List<ResumenProductoCompraDTO>> getProductosCotizados() {
-        return ResponseEntity.ok(itemRepo.findProductosEnCotizacionesRecibidas());
+        List<ResumenProductoCompraDTO> productos = itemRepo.findProductosEnCotizacionesRecibidas();
+        productos.forEach(p -> p.setImagenUrl(imagenService.url(p.getImagenUrl())));
+        return ResponseEntity.ok(productos);
     }
 
     @GetMapping("/comparativa/{productoId}")
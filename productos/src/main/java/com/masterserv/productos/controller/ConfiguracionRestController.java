@@ -1,12 +1,16 @@
 package com.masterserv.productos.controller;
 
 import com.masterserv.productos.entity.EmpresaConfig;
+import com.masterserv.productos.service.CatalogoVersionService;
 import com.masterserv.productos.service.EmpresaConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/configuracion")
@@ -15,8 +19,15 @@ public class ConfiguracionRestController {
     @Autowired
     private EmpresaConfigService empresaConfigService;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     @GetMapping("/publica") // Endpoint público para que el login/sidebar lo consuma
-    public ResponseEntity<EmpresaConfig> obtenerConfiguracionPublica() {
-        return ResponseEntity.ok(empresaConfigService.obtenerConfiguracion());
+    public ResponseEntity<EmpresaConfig> obtenerConfiguracionPublica(WebRequest request) {
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(empresaConfigService.obtenerConfiguracion());
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/dashboard")
@@ -64,7 +65,7 @@ public class DashboardController {
     // --- MENTOR: MÉTODO ACTUALIZADO ---
     @PostMapping("/reporte-pdf")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
-    public ResponseEntity<byte[]> generarReportePdf(@RequestBody DashboardFilterDTO filtro, Principal principal) {
+    public ResponseEntity<StreamingResponseBody> generarReportePdf(@RequestBody DashboardFilterDTO filtro, Principal principal) {
         
         // 1. Obtener nombre del usuario que genera el reporte
         String nombreResponsable = principal.getName(); // Por defecto el email
@@ -78,12 +79,16 @@ public class DashboardController {
         // 2. Pasarlo al DTO
         filtro.setGeneradoPor(nombreResponsable);
 
-        byte[] pdf = pdfService.generarReporteDashboard(filtro); 
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "reporte_dashboard.pdf");
 
+        // 3. Los datos se cargan acá, en el hilo del request: si la consulta falla, todavía se puede
+        //    responder con el error en vez de cortar una descarga ya empezada
+        DashboardStatsDTO stats = dashboardService.getEstadisticasFiltradas(filtro.getFechaInicio(), filtro.getFechaFin());
+
+        // 4. El PDF se escribe directo a la respuesta (chunked), sin armarlo antes en memoria
+        StreamingResponseBody pdf = out -> pdfService.escribirReporteDashboard(filtro, stats, out);
         return ResponseEntity.ok().headers(headers).body(pdf);
     }
     
@@ -1,10 +1,14 @@
 package com.masterserv.productos.controller;
 
 import com.masterserv.productos.entity.EmpresaConfig;
+import com.masterserv.productos.service.CatalogoVersionService;
 import com.masterserv.productos.service.EmpresaConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/configuracion")
@@ -14,13 +18,20 @@ public class EmpresaConfigController {
     @Autowired
     private EmpresaConfigService service;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
     @GetMapping
-    public ResponseEntity<EmpresaConfig> obtener() {
-        return ResponseEntity.ok(service.obtenerConfiguracion());
+    public ResponseEntity<EmpresaConfig> obtener(WebRequest request) {
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(service.paraMostrar(service.obtenerConfiguracion()));
     }
 
     @PutMapping
     public ResponseEntity<EmpresaConfig> actualizar(@RequestBody EmpresaConfig config) {
-        return ResponseEntity.ok(service.actualizarConfiguracion(config));
+        return ResponseEntity.ok(service.paraMostrar(service.actualizarConfiguracion(config)));
     }
 }
\ No newline at end of file
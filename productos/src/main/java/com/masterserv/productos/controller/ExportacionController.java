@@ -0,0 +1,83 @@
+package com.masterserv.productos.controller;
+
+import com.masterserv.productos.service.ExportacionService;
+import com.masterserv.productos.service.ExportacionService.Formato;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+/**
+ * Exportación masiva a CSV o XLSX. El archivo se escribe a la respuesta a medida que se leen
+ * las filas (chunked, sin Content-Length).
+ *
+ * Parámetros: formato=csv|xlsx (default csv), desde/hasta en ISO (yyyy-MM-dd, ambos incluidos).
+ * Sin fechas se exporta el último año.
+ */
+@RestController
+@RequestMapping("/exportaciones")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportacionController {
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @GetMapping("/ventas")
+    public ResponseEntity<StreamingResponseBody> exportarVentas(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        Periodo p = Periodo.de(desde, hasta);
+        Formato f = Formato.desde(formato);
+        return construirRespuesta("ventas", p, f,
+                out -> exportacionService.exportarVentas(p.desde(), p.hasta(), f, out));
+    }
+
+    @GetMapping("/movimientos-stock")
+    public ResponseEntity<StreamingResponseBody> exportarMovimientosStock(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        Periodo p = Periodo.de(desde, hasta);
+        Formato f = Formato.desde(formato);
+        return construirRespuesta("movimientos_stock", p, f,
+                out -> exportacionService.exportarMovimientosStock(p.desde(), p.hasta(), f, out));
+    }
+
+    @GetMapping("/auditoria")
+    public ResponseEntity<StreamingResponseBody> exportarAuditoria(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        Periodo p = Periodo.de(desde, hasta);
+        Formato f = Formato.desde(formato);
+        return construirRespuesta("auditoria", p, f,
+                out -> exportacionService.exportarAuditoria(p.desde(), p.hasta(), f, out));
+    }
+
+    private record Periodo(LocalDate desde, LocalDate hasta) {
+        static Periodo de(LocalDate desde, LocalDate hasta) {
+            LocalDate h = hasta != null ? hasta : LocalDate.now();
+            LocalDate d = desde != null ? desde : h.minusYears(1);
+            if (d.isAfter(h)) {
+                throw new IllegalArgumentException("La fecha 'desde' no puede ser posterior a 'hasta'.");
+            }
+            return new Periodo(d, h);
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> construirRespuesta(String nombre, Periodo p, Formato f, StreamingResponseBody cuerpo) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(f.getTipoContenido()));
+        headers.setContentDispositionFormData("attachment",
+                nombre + "_" + p.desde() + "_" + p.hasta() + "." + f.getExtension());
+        headers.setCacheControl("no-store");
+        return ResponseEntity.ok().headers(headers).body(cuerpo);
+    }
+}
@@ -0,0 +1,91 @@
+package com.masterserv.productos.controller;
+
+import com.masterserv.productos.service.ImagenService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/imagenes")
+public class ImagenController {
+
+    // Atributos de Tomcat para sendfile (los mismos que usa su DefaultServlet)
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    // El nombre es el hash del contenido: el archivo nunca cambia
+    private static final String CACHE_INMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+
+    @Autowired
+    private ImagenService imagenService;
+
+    /**
+     * Sube una imagen y devuelve su URL (para usar en imagenUrl / logoUrl).
+     * Los data URI que todavía manda el front se convierten igual al guardar el producto.
+     * Sin almacén persistente la "URL" es el mismo data URI.
+     */
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
+    public ResponseEntity<Map<String, String>> subir(@RequestParam("archivo") MultipartFile archivo) throws IOException {
+        String valor = imagenService.almacenar(archivo.getBytes());
+        return new ResponseEntity<>(Map.of("url", imagenService.url(valor), "miniaturaUrl", imagenService.urlMiniatura(valor)), HttpStatus.CREATED);
+    }
+
+    /**
+     * GET público. Con Tomcat el archivo sale por sendfile (del page cache al socket, sin pasar
+     * por el heap); si no, por FileChannel.transferTo.
+     */
+    @GetMapping("/{nombre:.+}")
+    public void servir(@PathVariable String nombre, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> archivo = imagenService.archivo(nombre);
+        if (archivo.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_INMUTABLE);
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + nombre + "\"")) {
+            return;
+        }
+
+        Path path = archivo.get();
+        long tamano = Files.size(path);
+        response.setContentType(ImagenService.tipoContenido(path.getFileName().toString()));
+        response.setContentLengthLong(tamano);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, path.toString());
+            request.setAttribute(SENDFILE_INICIO, 0L);
+            request.setAttribute(SENDFILE_FIN, tamano);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(path, StandardOpenOption.READ)) {
+            var salida = Channels.newChannel(response.getOutputStream());
+            long enviado = 0;
+            while (enviado < tamano) {
+                enviado += canal.transferTo(enviado, tamano - enviado, salida);
+            }
+        }
+    }
+}
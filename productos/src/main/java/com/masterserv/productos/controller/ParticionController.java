@@ -0,0 +1,42 @@
+package com.masterserv.productos.controller;
+
+import com.masterserv.productos.dto.ParticionDTO;
+import com.masterserv.productos.service.ParticionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Particiones mensuales de auditoria_logs y movimientos_stock (ver ParticionService).
+ * {tabla} es el nombre de la tabla y {mes} va en formato yyyy-MM.
+ */
+@RestController
+@RequestMapping("/particiones")
+@PreAuthorize("hasRole('ADMIN')")
+public class ParticionController {
+
+    @Autowired
+    private ParticionService particionService;
+
+    @GetMapping
+    public ResponseEntity<List<ParticionDTO>> listar() {
+        return ResponseEntity.ok(particionService.listar());
+    }
+
+    // Trae un mes archivado de vuelta a la base para poder consultarlo
+    @PostMapping("/{tabla}/{mes}/reincorporar")
+    public ResponseEntity<Map<String, Object>> reincorporar(@PathVariable String tabla, @PathVariable String mes) {
+        long filas = particionService.reincorporar(tabla, mes);
+        return ResponseEntity.ok(Map.of("tabla", tabla, "mes", mes, "filas", filas));
+    }
+
+    @PostMapping("/{tabla}/{mes}/archivar")
+    public ResponseEntity<Map<String, Object>> archivar(@PathVariable String tabla, @PathVariable String mes) {
+        long filas = particionService.archivar(tabla, mes);
+        return ResponseEntity.ok(Map.of("tabla", tabla, "mes", mes, "filas", filas));
+    }
+}
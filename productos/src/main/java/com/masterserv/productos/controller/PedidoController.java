@@ -1,5 +1,6 @@
 package com.masterserv.productos.controller;
 
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.PedidoDTO;
 import com.masterserv.productos.dto.PedidoDetalladoDTO;
 import com.masterserv.productos.dto.PedidoFiltroDTO;
@@ -103,4 +104,13 @@ public class PedidoController {
     Page<PedidoDTO> resultado = pedidoService.filter(filtro, pageable);
     return ResponseEntity.ok(resultado);
 }
+
+    // Variante por cursor (sin COUNT): siguiente página con ?cursor=<siguienteCursor>
+    @PostMapping("/filtrar/cursor")
+    public ResponseEntity<PaginaCursorDTO<PedidoDTO>> filtrarPedidosCursor(
+            @RequestBody PedidoFiltroDTO filtro,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int tamano) {
+        return ResponseEntity.ok(pedidoService.filterCursor(filtro, cursor, tamano));
+    }
 }
\ No newline at end of file
@@ -1,17 +1,22 @@
 package com.masterserv.productos.controller;
 
 import com.masterserv.productos.dto.MovimientoStockDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.ProductoDTO;
 import com.masterserv.productos.dto.ProductoFiltroDTO;
+import com.masterserv.productos.dto.SugerenciaProductoDTO;
 import com.masterserv.productos.entity.Usuario;
 import com.masterserv.productos.repository.UsuarioRepository;
 import com.masterserv.productos.service.MovimientoStockService; // ✅ IMPORTANTE
 import com.masterserv.productos.service.ProductoService;
+import com.masterserv.productos.service.SugerenciaProductoService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,6 +24,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.Sort;
 
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -35,6 +41,9 @@ public class ProductoController {
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    @Autowired
+    private SugerenciaProductoService sugerenciaProductoService;
+
     // --- MENTOR: ENDPOINT PARA GENERAR CÓDIGO ---
     @GetMapping("/generar-codigo")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
@@ -47,6 +56,17 @@ public class ProductoController {
     }
     // --------------------------------------------
 
+    /**
+     * Autocompletado de los buscadores (POS y catálogo): GET público como el resto de /productos.
+     * Se resuelve en memoria; no pagina ni cuenta.
+     */
+    @GetMapping("/sugerencias")
+    public ResponseEntity<List<SugerenciaProductoDTO>> getSugerencias(
+            @RequestParam("q") String texto,
+            @RequestParam(defaultValue = "8") int limite) {
+        return ResponseEntity.ok(sugerenciaProductoService.sugerir(texto, limite));
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
     public ResponseEntity<Page<ProductoDTO>> getAllProductos(
@@ -64,6 +84,16 @@ public class ProductoController {
     return ResponseEntity.ok(productoPage);
 }
 
+    // Variante por cursor (nombre, id), sin COUNT: siguiente página con ?cursor=<siguienteCursor>
+    @PostMapping("/filtrar/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
+    public ResponseEntity<PaginaCursorDTO<ProductoDTO>> filterProductosCursor(
+            @RequestBody ProductoFiltroDTO filtro,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int tamano) {
+        return ResponseEntity.ok(productoService.filterCursor(filtro, cursor, tamano));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
     public ResponseEntity<ProductoDTO> getProductoById(@PathVariable Long id) {
@@ -109,6 +139,17 @@ public class ProductoController {
         return ResponseEntity.ok(pagina);
     }
 
+    // Misma búsqueda sin COUNT (scroll infinito del armado de pedidos)
+    @GetMapping("/search-by-proveedor/slice")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
+    public ResponseEntity<Slice<ProductoDTO>> searchByProveedorSlice(
+            @RequestParam Long proveedorId,
+            @RequestParam(defaultValue = "") String search,
+            Pageable pageable
+    ) {
+        return ResponseEntity.ok(productoService.searchByProveedorSlice(proveedorId, search, pageable));
+    }
+
     @PostMapping("/ajuste-stock")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
     public ResponseEntity<Void> realizarAjusteStock(@RequestBody @Valid MovimientoStockDTO dto, Principal principal) {
@@ -132,7 +173,10 @@ public class ProductoController {
 
     @GetMapping("/{id}/movimientos")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
-    public ResponseEntity<List<MovimientoStockDTO>> getHistorialStock(@PathVariable Long id) {
-        return ResponseEntity.ok(movimientoStockService.obtenerMovimientosPorProducto(id));
+    public ResponseEntity<List<MovimientoStockDTO>> getHistorialStock(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(movimientoStockService.obtenerMovimientosPorProducto(id, desde, hasta));
     }
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -50,43 +51,47 @@ public class ReporteAvanzadoController {
 
     // ==========================================
     // 📄 PDF ENDPOINTS
+    // Los datos se leen en el hilo del request (un error ahí sigue siendo un 4xx/5xx normal);
+    // el PDF se escribe directo a la respuesta, con transferencia chunked.
     // ==========================================
 
     @GetMapping("/valorizacion/pdf")
-    public ResponseEntity<byte[]> descargarPdfValorizacion() {
+    public ResponseEntity<StreamingResponseBody> descargarPdfValorizacion() {
         List<ValorizacionInventarioDTO> datos = reporteService.getValorizacionInventario();
-        byte[] pdfBytes = pdfService.generarReporteValorizacionPdf(datos);
-        return construirRespuestaPdf(pdfBytes, "Valorizacion_Inventario.pdf");
+        return construirRespuestaPdf(out -> pdfService.escribirReporteValorizacionPdf(datos, out),
+                "Valorizacion_Inventario.pdf");
     }
 
     @GetMapping("/inmovilizado/pdf")
-    public ResponseEntity<byte[]> descargarPdfInmovilizado(@RequestParam(defaultValue = "90") int dias) {
+    public ResponseEntity<StreamingResponseBody> descargarPdfInmovilizado(@RequestParam(defaultValue = "90") int dias) {
         // Obtenemos la Response y la pasamos directamente al generador de PDF
         List<StockInmovilizadoResponse> response = reporteService.obtenerStockInmovilizado(dias);
-        byte[] pdfBytes = pdfService.generarReporteStockInmovilizadoPdf(response, dias);
-        return construirRespuestaPdf(pdfBytes, "Stock_Inmovilizado.pdf");
+        return construirRespuestaPdf(out -> pdfService.escribirReporteStockInmovilizadoPdf(response, dias, out),
+                "Stock_Inmovilizado.pdf");
     }
 
     @GetMapping("/historial-costos/pdf")
-    public ResponseEntity<byte[]> descargarPdfHistorialCostos(@RequestParam(required = false) String nombre) {
+    public ResponseEntity<StreamingResponseBody> descargarPdfHistorialCostos(@RequestParam(required = false) String nombre) {
         List<VariacionCostoDTO> datos;
         if (nombre != null && !nombre.isBlank()) {
             datos = reporteService.buscarCostosPorNombre(nombre);
         } else {
             datos = reporteService.getUltimosCostosGenerales();
         }
-        byte[] pdfBytes = pdfService.generarReporteEvolucionCostosPdf(datos, nombre != null ? nombre : "Generales");
-        return construirRespuestaPdf(pdfBytes, "Evolucion_Costos.pdf");
+        String titulo = nombre != null ? nombre : "Generales";
+        return construirRespuestaPdf(out -> pdfService.escribirReporteEvolucionCostosPdf(datos, titulo, out),
+                "Evolucion_Costos.pdf");
     }
 
     // ==========================================
     // MÉTODO AUXILIAR
     // ==========================================
-    private ResponseEntity<byte[]> construirRespuestaPdf(byte[] contenido, String nombreArchivo) {
+    // Sin Content-Length: el tamaño no se conoce hasta terminar, así que sale chunked
+    private ResponseEntity<StreamingResponseBody> construirRespuestaPdf(StreamingResponseBody cuerpo, String nombreArchivo) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", nombreArchivo);
         headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-        return new ResponseEntity<>(contenido, headers, HttpStatus.OK);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
     }
-}
\ No newline at end of file
+}
@@ -2,11 +2,15 @@ package com.masterserv.productos.controller;
 
 import com.masterserv.productos.entity.TipoDocumento;
 import com.masterserv.productos.repository.TipoDocumentoRepository;
+import com.masterserv.productos.service.CatalogoVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 
 @RestController
@@ -16,8 +20,16 @@ public class TipoDocumentoController {
     @Autowired
     private TipoDocumentoRepository tipoDocumentoRepository;
 
+    @Autowired
+    private CatalogoVersionService catalogoVersionService;
+
+    // Los tipos de documento no se editan desde la app: con la versión del catálogo alcanza
     @GetMapping
-    public ResponseEntity<List<TipoDocumento>> getAllTiposDocumento() {
-        return ResponseEntity.ok(tipoDocumentoRepository.findAll());
+    public ResponseEntity<List<TipoDocumento>> getAllTiposDocumento(WebRequest request) {
+        String etag = catalogoVersionService.etag();
+        if (catalogoVersionService.noModificado(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(tipoDocumentoRepository.findAll());
     }
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
 package com.masterserv.productos.controller;
 
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.VentaDTO;
 import com.masterserv.productos.dto.VentaFiltroDTO;
 import com.masterserv.productos.entity.Venta;
-import com.masterserv.productos.service.PdfService;
+import com.masterserv.productos.service.ComprobanteCacheService;
 import com.masterserv.productos.service.VentaService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort; // <--- IMPORTADO
 import org.springframework.data.web.PageableDefault;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -30,7 +33,7 @@ public class VentaController {
     private VentaService ventaService;
 
     @Autowired
-    private PdfService pdfService;
+    private ComprobanteCacheService comprobanteCacheService;
 
     private static final Logger logger = LoggerFactory.getLogger(VentaController.class);
 
@@ -47,24 +50,29 @@ public class VentaController {
 
     @GetMapping("/{id}/comprobante")
     @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR', 'CLIENTE')")
-    public ResponseEntity<byte[]> descargarComprobante(@PathVariable Long id, Authentication authentication) {
-        Venta ventaCompleta = ventaService.findVentaByIdWithDetails(id); 
+    public ResponseEntity<Resource> descargarComprobante(@PathVariable Long id, Authentication authentication) {
+        // Reimpresión: si está en caché no se carga la venta ni se vuelve a generar el PDF
+        ComprobanteCacheService.ComprobanteCacheado comprobante = comprobanteCacheService.obtener(id)
+                .orElseGet(() -> {
+                    Venta ventaCompleta = ventaService.findVentaByIdWithDetails(id);
+                    byte[] pdf = comprobanteCacheService.obtenerOGenerar(ventaCompleta);
+                    return new ComprobanteCacheService.ComprobanteCacheado(id, ventaCompleta.getEstado(),
+                            ventaCompleta.getCliente().getEmail(), new ByteArrayResource(pdf), pdf.length);
+                });
 
         if (authentication != null && authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_CLIENTE"))) {
             String emailUsuario = authentication.getName();
-            if (!ventaCompleta.getCliente().getEmail().equals(emailUsuario)) {
+            if (!emailUsuario.equals(comprobante.clienteEmail())) {
                 return new ResponseEntity<>(HttpStatus.FORBIDDEN);
             }
         }
 
-        byte[] pdfBytes = pdfService.generarComprobanteVenta(ventaCompleta);
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "Comprobante-Venta-" + id + ".pdf");
-        headers.setContentLength(pdfBytes.length);
+        headers.setContentLength(comprobante.tamano());
 
-        return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+        return new ResponseEntity<>(comprobante.contenido(), headers, HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
@@ -132,6 +140,38 @@ public class VentaController {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
     }
 
+    // --- Variantes por cursor (sin COUNT): siguiente página con ?cursor=<siguienteCursor> ---
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
+    public ResponseEntity<PaginaCursorDTO<VentaDTO>> getAllVentasCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int tamano) {
+        return ResponseEntity.ok(ventaService.findAllCursor(cursor, tamano));
+    }
+
+    @PostMapping("/filtrar/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VENDEDOR')")
+    public ResponseEntity<PaginaCursorDTO<VentaDTO>> findVentasByCriteriaCursor(
+            @RequestBody VentaFiltroDTO filtro,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int tamano,
+            Authentication authentication) {
+
+        boolean isVendedor = authentication.getAuthorities().stream()
+                .anyMatch(ga -> ga.getAuthority().equals("ROLE_VENDEDOR"));
+
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(ga -> ga.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin && isVendedor) {
+            return ResponseEntity.ok(ventaService.findByCriteriaForVendedorCursor(filtro, authentication.getName(), cursor, tamano));
+        } else if (isAdmin) {
+            return ResponseEntity.ok(ventaService.findByCriteriaCursor(filtro, cursor, tamano));
+        }
+
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+
     @PostMapping("/{id}/cancelar")
     @PreAuthorize("hasRole('ADMIN')") 
     public ResponseEntity<Void> cancelarVenta(
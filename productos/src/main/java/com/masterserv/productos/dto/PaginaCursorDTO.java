@@ -0,0 +1,23 @@
+package com.masterserv.productos.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de un listado por cursor (keyset): no trae total ni número de página.
+ *
+ * @param contenido Los elementos de esta página.
+ * @param siguienteCursor Token opaco para pedir la página siguiente; null si no hay más.
+ */
+public record PaginaCursorDTO<T>(
+    List<T> contenido,
+    String siguienteCursor
+) {
+    public boolean isHaySiguiente() {
+        return siguienteCursor != null;
+    }
+
+    public <R> PaginaCursorDTO<R> map(Function<? super T, ? extends R> mapper) {
+        return new PaginaCursorDTO<>(contenido.stream().<R>map(mapper).toList(), siguienteCursor);
+    }
+}
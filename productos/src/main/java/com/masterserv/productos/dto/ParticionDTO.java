@@ -0,0 +1,17 @@
+package com.masterserv.productos.dto;
+
+/**
+ * Estado de una partición mensual (ver ParticionService).
+ *
+ * @param tabla Tabla particionada (auditoria_logs, movimientos_stock).
+ * @param mes Mes que cubre la partición, en formato yyyy-MM.
+ * @param estado ACTIVA, REINCORPORADA (traída de vuelta del archivo) o ARCHIVADA (solo en disco).
+ * @param filas Aproximado según las estadísticas de PostgreSQL; null si está archivada.
+ */
+public record ParticionDTO(
+    String tabla,
+    String mes,
+    String estado,
+    Long filas
+) {
+}
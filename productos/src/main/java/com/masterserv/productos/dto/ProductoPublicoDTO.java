@@ -17,6 +17,7 @@ public class ProductoPublicoDTO {
     private BigDecimal precioVenta;
     private Integer stockActual;
     private String imagenUrl;
+    private String imagenMiniaturaUrl; // Para las tarjetas del catálogo
     private String nombreCategoria;
     private int stockMinimo;
 }
\ No newline at end of file
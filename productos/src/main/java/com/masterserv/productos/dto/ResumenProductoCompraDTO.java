@@ -1,12 +1,19 @@
 package com.masterserv.productos.dto;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.math.BigDecimal;
 
-public interface ResumenProductoCompraDTO {
-    Long getProductoId();
-    String getNombre();
-    String getCodigo();
-    String getImagenUrl();
-    Long getCantidadCotizaciones(); // Cuántos proveedores ofertaron
-    BigDecimal getMejorPrecio();    // El precio más bajo encontrado
-}
\ No newline at end of file
+@Data
+@AllArgsConstructor // Constructor para la query JPQL
+@NoArgsConstructor
+public class ResumenProductoCompraDTO {
+    private Long productoId;
+    private String nombre;
+    private String codigo;
+    private String imagenUrl; // La query trae el valor de la columna; ComprasController arma la URL
+    private Long cantidadCotizaciones; // Cuántos proveedores ofertaron
+    private BigDecimal mejorPrecio;    // El precio más bajo encontrado
+}
@@ -0,0 +1,11 @@
+package com.masterserv.productos.dto;
+
+/**
+ * Sugerencia del buscador (typeahead): lo mínimo para mostrar la opción y abrir el producto.
+ */
+public record SugerenciaProductoDTO(
+    Long id,
+    String codigo,
+    String nombre
+) {
+}
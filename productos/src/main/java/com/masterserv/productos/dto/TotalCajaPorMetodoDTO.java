@@ -0,0 +1,11 @@
+package com.masterserv.productos.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Proyección: total neto de ventas (ingresos - anulaciones) de una caja por método de pago.
+ */
+public interface TotalCajaPorMetodoDTO {
+    String getMetodoPago();
+    BigDecimal getTotal();
+}
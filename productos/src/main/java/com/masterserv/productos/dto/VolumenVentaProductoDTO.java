@@ -0,0 +1,9 @@
+package com.masterserv.productos.dto;
+
+/**
+ * Proyección: unidades vendidas de un producto en un período.
+ */
+public interface VolumenVentaProductoDTO {
+    Long getProductoId();
+    Long getCantidad();
+}
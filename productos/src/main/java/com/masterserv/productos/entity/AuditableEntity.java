@@ -1,8 +1,5 @@
 package com.masterserv.productos.entity;
 
-import com.fasterxml.jackson.databind.ObjectMapper; // Importante
-import com.masterserv.productos.config.BeanUtil;   // Importante
-import com.masterserv.productos.listener.AuditoriaListener;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,10 +9,12 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
 
+// La auditoría de cambios (AuditoriaListener) se engancha a los eventos de Hibernate en el flush:
+// leer una entidad ya no cuesta nada extra, el estado anterior sale del snapshot del dirty-checking.
 @Getter
 @Setter
 @MappedSuperclass 
-@EntityListeners({AuditingEntityListener.class, AuditoriaListener.class}) 
+@EntityListeners(AuditingEntityListener.class) 
 public abstract class AuditableEntity {
 
     @CreatedDate 
@@ -25,22 +24,4 @@ public abstract class AuditableEntity {
     @LastModifiedDate 
     @Column(name = "fecha_modificacion", nullable = false)
     protected LocalDateTime fechaModificacion;
-
-    @Transient
-    private String estadoAnterior; // Aquí guardaremos el JSON viejo
-
-    @PostLoad
-    public void cargarEstadoAnterior() {
-        try {
-            // Usamos Jackson para convertir el objeto a JSON String (Texto legible)
-            ObjectMapper mapper = BeanUtil.getBean(ObjectMapper.class);
-            this.estadoAnterior = mapper.writeValueAsString(this);
-        } catch (Exception e) {
-            this.estadoAnterior = "Error al serializar: " + e.getMessage();
-        }
-    }
-    
-    public String getEstadoAnterior() {
-        return estadoAnterior;
-    }
-}
\ No newline at end of file
+}
@@ -5,12 +5,17 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "auditoria_logs")
+@Table(
+    name = "auditoria_logs",
+    // Listados por cursor: ORDER BY fecha DESC, id DESC
+    indexes = @Index(name = "idx_auditoria_logs_fecha_id", columnList = "fecha, id")
+)
 @Data
 public class Auditoria {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auditoria_logs_id_generator")
+    @SequenceGenerator(name = "auditoria_logs_id_generator", sequenceName = "auditoria_logs_pool_seq", allocationSize = 50)
     private Long id;
 
     private String entidad;
@@ -22,7 +27,14 @@ public class Auditoria {
     @Column(columnDefinition = "TEXT")
     private String detalle; // Resumen corto
 
-    // --- NUEVAS COLUMNAS ---
+    // Parche JSON de los cambios (ver CodificadorAuditoria); comprimido en gzip si es grande
+    @Column(columnDefinition = "TEXT")
+    private String cambios;
+
+    @Column(columnDefinition = "bytea")
+    private byte[] cambiosComprimidos;
+
+    // Documentos completos: solo filas anteriores al parche o valores que no son JSON
     @Column(columnDefinition = "TEXT")
     private String valorAnterior;
 
@@ -23,7 +23,8 @@ import java.math.BigDecimal;
 public class DetalleVenta {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalles_venta_id_generator")
+    @SequenceGenerator(name = "detalles_venta_id_generator", sequenceName = "detalles_venta_pool_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -46,6 +47,13 @@ public class DetalleVenta {
     @ToString.Exclude // Para evitar bucles
     private Producto producto;
 
+    // Categoría "congelada" al momento de la venta (null en ventas anteriores: vale la del producto)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "categoria_id")
+    @JsonIgnore
+    @ToString.Exclude
+    private Categoria categoria;
+
     // Nota: El método @Transient getSubtotal() se puede añadir aquí si lo necesitas,
     //       igual que lo tenías en DetallePedido.java. Por ahora lo omito
     //       para mantenerlo simple, pero es buena idea tenerlo.
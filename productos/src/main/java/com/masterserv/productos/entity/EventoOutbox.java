@@ -0,0 +1,52 @@
+package com.masterserv.productos.entity;
+
+import com.masterserv.productos.enums.EstadoOutbox;
+import com.masterserv.productos.enums.TipoEventoOutbox;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Outbox transaccional: se inserta en la misma transacción que la operación de negocio
+ * y un despachador en segundo plano materializa los efectos secundarios.
+ * La restricción única (tipo, agregado_id) evita encolar dos veces el mismo evento.
+ */
+@Entity
+@Table(name = "outbox_eventos",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"tipo", "agregado_id"}),
+    indexes = @Index(name = "idx_outbox_estado_id", columnList = "estado, id")
+)
+@Data
+public class EventoOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_eventos_id_generator")
+    @SequenceGenerator(name = "outbox_eventos_id_generator", sequenceName = "outbox_eventos_pool_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private TipoEventoOutbox tipo;
+
+    @Column(name = "agregado_id", nullable = false)
+    private Long agregadoId; // ID de la Venta
+
+    @Column(columnDefinition = "TEXT")
+    private String payload; // JSON con los datos que no se pueden leer de la Venta (usuario, motivo)
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoOutbox estado;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_procesado")
+    private LocalDateTime fechaProcesado;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+}
@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class MovimientoCaja {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimientos_caja_id_generator")
+    @SequenceGenerator(name = "movimientos_caja_id_generator", sequenceName = "movimientos_caja_pool_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,6 +36,11 @@ public class MovimientoCaja {
     @Column(name = "metodo_pago", length = 50)
     private String metodoPago; 
 
+    // Qué generó el movimiento: "VENTA", "ANULACION", "APERTURA", "RETIRO" o "INGRESO_EXTRA".
+    // Los totales de ventas de la caja se calculan a partir de VENTA/ANULACION.
+    @Column(name = "origen", length = 30)
+    private String origen;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id")
     private Usuario usuario; 
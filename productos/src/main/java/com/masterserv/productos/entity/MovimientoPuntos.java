@@ -19,7 +19,8 @@ import java.time.LocalDateTime;
 public class MovimientoPuntos extends AuditableEntity { 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimientos_puntos_id_generator")
+    @SequenceGenerator(name = "movimientos_puntos_id_generator", sequenceName = "movimientos_puntos_pool_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
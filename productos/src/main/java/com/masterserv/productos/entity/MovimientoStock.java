@@ -8,14 +8,23 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "movimientos_stock")
+@Table(
+    name = "movimientos_stock",
+    indexes = {
+        // Exportación por rango de fechas: ORDER BY fecha, id
+        @Index(name = "idx_movimientos_stock_fecha_id", columnList = "fecha, id"),
+        // Historial de un producto (ORDER BY fecha DESC), dentro de cada partición mensual
+        @Index(name = "idx_movimientos_stock_producto_fecha", columnList = "producto_id, fecha")
+    }
+)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class MovimientoStock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimientos_stock_id_generator")
+    @SequenceGenerator(name = "movimientos_stock_id_generator", sequenceName = "movimientos_stock_pool_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
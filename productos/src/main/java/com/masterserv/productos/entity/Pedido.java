@@ -16,7 +16,11 @@ import java.util.Set;
 import java.util.UUID;
 
 @Entity
-@Table(name = "pedidos")
+@Table(
+    name = "pedidos",
+    // Listados por cursor: ORDER BY fecha_pedido DESC, id DESC
+    indexes = @Index(name = "idx_pedidos_fecha_pedido_id", columnList = "fecha_pedido, id")
+)
 @Getter
 @Setter
 @NoArgsConstructor
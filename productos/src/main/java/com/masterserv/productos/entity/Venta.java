@@ -14,7 +14,11 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "ventas")
+@Table(
+    name = "ventas",
+    // Listados por cursor: ORDER BY fecha_venta DESC, id DESC
+    indexes = @Index(name = "idx_ventas_fecha_venta_id", columnList = "fecha_venta, id")
+)
 // --- ¡CAMBIO CRÍTICO! Reemplazamos @Data ---
 // @Data // ¡ELIMINADO!
 @Getter
@@ -25,7 +29,8 @@ import java.util.Set;
 public class Venta extends AuditableEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ventas_id_generator")
+    @SequenceGenerator(name = "ventas_id_generator", sequenceName = "ventas_pool_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "fecha_venta", nullable = false)
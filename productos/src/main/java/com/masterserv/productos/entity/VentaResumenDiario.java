@@ -0,0 +1,60 @@
+package com.masterserv.productos.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Resumen diario de ventas COMPLETADAS: día × producto × categoría × vendedor × método de pago.
+ * La categoría es la que quedó guardada en la línea de la venta (DetalleVenta.categoria), así
+ * que un producto que cambia de categoría a mitad del día reparte sus ventas en dos filas, igual
+ * que la consulta sobre las ventas. Lo mantiene ResumenVentasService a partir de
+ * los eventos de outbox de cada venta y cancelación; el dashboard lo lee en vez de recorrer
+ * ventas y detalles_venta.
+ *
+ * "total" es el total de la venta (con descuento) repartido entre sus líneas, así que sumado
+ * da exactamente SUM(ventas.total_venta). "ventas" cuenta cada venta una sola vez (en su
+ * primera línea). "importe" es precio unitario × cantidad, sin descuento.
+ */
+@Entity
+@Table(
+    name = "ventas_resumen_diario",
+    uniqueConstraints = @UniqueConstraint(name = "uk_ventas_resumen_diario_clave",
+            columnNames = {"fecha", "producto_id", "categoria_id", "vendedor_id", "metodo_pago"})
+)
+@Data
+public class VentaResumenDiario {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(name = "categoria_id", nullable = false)
+    private Long categoriaId;
+
+    @Column(name = "vendedor_id", nullable = false)
+    private Long vendedorId;
+
+    @Column(name = "metodo_pago", nullable = false, length = 50)
+    private String metodoPago;
+
+    @Column(nullable = false)
+    private int ventas;
+
+    @Column(nullable = false)
+    private long unidades;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal importe;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal total;
+}
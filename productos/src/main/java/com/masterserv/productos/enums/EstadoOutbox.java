@@ -0,0 +1,10 @@
+package com.masterserv.productos.enums;
+
+/**
+ * Estado de un evento de la outbox transaccional.
+ */
+public enum EstadoOutbox {
+    PENDIENTE,  // Escrito junto con la operación, esperando al despachador
+    PROCESADO,  // Efectos aplicados (se marca en la MISMA transacción que los efectos)
+    ERROR       // Superó el máximo de intentos; requiere revisión manual
+}
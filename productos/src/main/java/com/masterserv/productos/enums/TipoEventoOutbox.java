@@ -0,0 +1,10 @@
+package com.masterserv.productos.enums;
+
+/**
+ * Tipos de evento que materializa el despachador de la outbox.
+ * Mapeado a un VARCHAR en la BD.
+ */
+public enum TipoEventoOutbox {
+    VENTA_REALIZADA, // Movimientos de stock, puntos y auditoría de una venta nueva
+    VENTA_CANCELADA  // Devoluciones de stock, reversión de puntos y auditoría de la anulación
+}
@@ -0,0 +1,12 @@
+package com.masterserv.productos.event;
+
+/**
+ * Evento que se publica cuando se crea, edita o (des)activa una categoría.
+ * Los productos que la usan muestran su nombre, así que hay que refrescarlos.
+ *
+ * @param categoriaId El ID de la categoría que cambió.
+ */
+public record CategoriaActualizadaEvent(
+    Long categoriaId
+) {
+}
@@ -0,0 +1,12 @@
+package com.masterserv.productos.event;
+
+/**
+ * Evento que se publica cuando se guarda la configuración de la empresa
+ * (datos fiscales, logo, colores). La leen el login, el sidebar y los PDF.
+ *
+ * @param configId El ID de la configuración (hoy siempre 1).
+ */
+public record EmpresaConfigActualizadaEvent(
+    Long configId
+) {
+}
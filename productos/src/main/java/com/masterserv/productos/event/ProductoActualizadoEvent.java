@@ -0,0 +1,12 @@
+package com.masterserv.productos.event;
+
+/**
+ * Evento que se publica cuando se crea, edita o da de baja un producto
+ * (nombre, precio, imagen, categoría, estado...). Los cambios de stock van por StockActualizadoEvent.
+ *
+ * @param productoId El ID del producto que cambió.
+ */
+public record ProductoActualizadoEvent(
+    Long productoId
+) {
+}
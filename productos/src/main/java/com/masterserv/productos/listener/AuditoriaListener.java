@@ -1,126 +1,194 @@
 package com.masterserv.productos.listener;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.masterserv.productos.config.BeanUtil;
 import com.masterserv.productos.entity.AuditableEntity;
 import com.masterserv.productos.entity.Auditoria;
-import com.masterserv.productos.entity.Producto; // ✅ Importante
 import com.masterserv.productos.service.AuditoriaService;
-import jakarta.persistence.*;
+import com.masterserv.productos.service.CodificadorAuditoria;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+
+/**
+ * Auditoría automática de las entidades que extienden AuditableEntity (CREAR / ACTUALIZAR / ELIMINAR).
+ *
+ * Antes era un @EntityListeners de JPA y AuditableEntity serializaba la entidad entera a JSON en
+ * cada @PostLoad, "por si" se modificaba: cada página del catálogo, listado de ventas o reporte
+ * pagaba una serialización completa por fila. Ahora escuchamos los eventos post-insert/update/delete
+ * de Hibernate, que ya traen el estado cargado (el mismo snapshot que Hibernate guarda para su
+ * dirty-checking) y los índices de las propiedades sucias. Solo se trabaja en el flush y solo
+ * para las entidades que realmente cambiaron, y el log guarda únicamente los campos modificados
+ * (como parche, ver CodificadorAuditoria).
+ */
+@Component
+public class AuditoriaListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditoriaListener.class);
+
+    // Ruido: cambian en cada update y el log ya tiene su propia fecha
+    private static final Set<String> IGNORADAS = Set.of("fechaCreacion", "fechaModificacion");
+
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private AuditoriaService auditoriaService;
+    @Autowired private CodificadorAuditoria codificador;
+
+    @PostConstruct
+    public void registrar() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
 
-public class AuditoriaListener {
-
-    @PostPersist
-    public void onPersist(Object entity) { guardarLog(entity, "CREAR"); }
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof AuditableEntity)) return;
+        EntityPersister persister = event.getPersister();
+        guardarLog(event.getEntity(), event.getId(), "CREAR",
+                null, estadoCompleto(persister, event.getState()));
+    }
 
-    @PostUpdate
-    public void onUpdate(Object entity) { guardarLog(entity, "ACTUALIZAR"); }
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof AuditableEntity)) return;
+        EntityPersister persister = event.getPersister();
+        String[] nombres = persister.getPropertyNames();
+        Type[] tipos = persister.getPropertyTypes();
+        Object[] anterior = event.getOldState();
+        Object[] nuevo = event.getState();
+
+        Map<String, Object> antes = new LinkedHashMap<>();
+        Map<String, Object> despues = new LinkedHashMap<>();
+        if (anterior == null) {
+            // Sin snapshot (entidad reasociada sin cargar): solo podemos registrar el estado nuevo
+            despues = estadoCompleto(persister, nuevo);
+        } else {
+            int[] sucias = event.getDirtyProperties();
+            for (int i = 0; i < nombres.length; i++) {
+                if (!auditable(nombres[i], tipos[i])) continue;
+                boolean cambio = sucias != null ? contiene(sucias, i) : !tipos[i].isEqual(anterior[i], nuevo[i]);
+                if (!cambio) continue;
+                antes.put(nombres[i], valor(nombres[i], tipos[i], anterior[i]));
+                despues.put(nombres[i], valor(nombres[i], tipos[i], nuevo[i]));
+            }
+        }
+        guardarLog(event.getEntity(), event.getId(), "ACTUALIZAR", antes, despues);
+    }
 
-    @PostRemove
-    public void onRemove(Object entity) { guardarLog(entity, "ELIMINAR"); }
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof AuditableEntity)) return;
+        guardarLog(event.getEntity(), event.getId(), "ELIMINAR",
+                estadoCompleto(event.getPersister(), event.getDeletedState()), null);
+    }
 
-    private void guardarLog(Object entity, String accion) {
-        // Evitar bucles infinitos auditando la propia tabla de auditoría
-        if (entity instanceof Auditoria) return;
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
 
+    private void guardarLog(Object entity, Object id, String accion,
+                            Map<String, Object> valorAnterior, Map<String, Object> valorNuevo) {
         try {
-            // 1. Obtener Usuario Actual
             String usuario = "Sistema / Anónimo";
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getName())) {
                 usuario = auth.getName();
             }
 
-            // 2. Obtener Identificadores Básicos
-            String nombreEntidad = entity.getClass().getSimpleName();
-            String idEntidad = "N/A";
-            
-            try {
-                Method method = entity.getClass().getMethod("getId");
-                Object idObj = method.invoke(entity);
-                if (idObj != null) idEntidad = idObj.toString();
-            } catch (Exception ignored) {}
-
-            // 3. Preparar JSONs (Valor Anterior vs Nuevo)
-            String valorAnterior = null;
-            String valorNuevo = null;
-            ObjectMapper mapper = BeanUtil.getBean(ObjectMapper.class);
-
-            if (entity instanceof AuditableEntity) {
-                AuditableEntity auditable = (AuditableEntity) entity;
-                
-                if ("ACTUALIZAR".equals(accion)) {
-                    // El valor anterior ya fue capturado al cargar la entidad (@PostLoad en AuditableEntity)
-                    valorAnterior = auditable.getEstadoAnterior(); 
-                    // El nuevo lo generamos ahora con nuestra función mejorada
-                    valorNuevo = generarJsonSeguro(entity, mapper); 
-                } else if ("ELIMINAR".equals(accion)) {
-                    valorAnterior = generarJsonSeguro(entity, mapper);
-                } else if ("CREAR".equals(accion)) {
-                    valorNuevo = generarJsonSeguro(entity, mapper);
-                }
-            }
-
-            // 4. Detalle Corto (Resumen)
-            String detalleCorto = String.format("%s en %s #%s", accion, nombreEntidad, idEntidad);
+            String nombreEntidad = Hibernate.getClass(entity).getSimpleName();
+            String idEntidad = id != null ? id.toString() : "N/A";
 
-            // 5. Construir y Guardar Auditoría
             Auditoria log = new Auditoria();
             log.setEntidad(nombreEntidad);
             log.setEntidadId(idEntidad);
             log.setAccion(accion);
             log.setUsuario(usuario);
             log.setFecha(LocalDateTime.now());
-            log.setDetalle(detalleCorto);
-            
-            log.setValorAnterior(valorAnterior);
-            log.setValorNuevo(valorNuevo);
-
-            AuditoriaService service = BeanUtil.getBean(AuditoriaService.class);
-            service.guardar(log);
+            log.setDetalle(String.format("%s en %s #%s", accion, nombreEntidad, idEntidad));
+            log.setCambios(codificador.parche(valorAnterior, valorNuevo));
 
+            auditoriaService.guardar(log);
         } catch (Exception e) {
-            // Usamos System.err para no romper el flujo principal si falla la auditoría automática
-            System.err.println(">>> AUDITORIA LISTENER ERROR: " + e.getMessage());
-            e.printStackTrace();
+            // La auditoría automática nunca debe romper la operación principal
+            logger.error("❌ Error registrando auditoría de {}: {}", entity.getClass().getSimpleName(), e.getMessage(), e);
         }
     }
 
+    // --- Armado de valores ---
+
+    private Map<String, Object> estadoCompleto(EntityPersister persister, Object[] estado) {
+        String[] nombres = persister.getPropertyNames();
+        Type[] tipos = persister.getPropertyTypes();
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        for (int i = 0; i < nombres.length; i++) {
+            if (!auditable(nombres[i], tipos[i]) || estado[i] == null) continue;
+            mapa.put(nombres[i], valor(nombres[i], tipos[i], estado[i]));
+        }
+        return mapa;
+    }
+
+    // Las colecciones (detalles, roles, items) tienen su propia auditoría o no aportan al log
+    private static boolean auditable(String nombre, Type tipo) {
+        return !IGNORADAS.contains(nombre) && !tipo.isCollectionType();
+    }
+
+    private static Object valor(String nombre, Type tipo, Object valor) {
+        if (valor == null) return null;
+        if (nombre.toLowerCase().contains("password")) return "***";
+        if (tipo.isEntityType()) return asociacion(valor);
+        return valor;
+    }
+
     /**
-     * Método auxiliar para generar un JSON limpio y resolver relaciones problemáticas
-     * como la Categoría en Producto.
+     * Una relación se registra como "Nombre (#id)" si ya está cargada y tiene nombre
+     * (p.ej. la categoría de un producto) o como su id; nunca se inicializa un proxy en pleno flush.
      */
-    private String generarJsonSeguro(Object entity, ObjectMapper mapper) {
-        try {
-            // 1. Convertimos la entidad a un Map flexible
-            // Esto evita problemas directos de serialización y nos deja editar claves
-            Map<String, Object> mapaDatos = mapper.convertValue(entity, new TypeReference<Map<String, Object>>() {});
-
-            // 2. Lógica específica: Si es PRODUCTO, arreglamos la categoría
-            if (entity instanceof Producto) {
-                Producto prod = (Producto) entity;
-                String nombreCategoria = "Sin Categoría";
-                
-                if (prod.getCategoria() != null) {
-                    nombreCategoria = prod.getCategoria().getNombre();
-                }
-                
-                // Sobrescribimos el objeto complejo 'categoria' con solo el nombre (String)
-                mapaDatos.put("categoria", nombreCategoria);
-            }
+    private static Object asociacion(Object valor) {
+        if (valor instanceof HibernateProxy proxy && proxy.getHibernateLazyInitializer().isUninitialized()) {
+            return proxy.getHibernateLazyInitializer().getInternalIdentifier();
+        }
+        Object real = Hibernate.unproxy(valor);
+        Object id = invocar(real, "getId");
+        Object nombre = invocar(real, "getNombre");
+        return nombre != null ? nombre + " (#" + id + ")" : id;
+    }
 
-            // 3. Serializamos el Mapa ya limpio a String JSON
-            return mapper.writeValueAsString(mapaDatos);
+    private static Object invocar(Object objeto, String metodo) {
+        try {
+            return objeto.getClass().getMethod(metodo).invoke(objeto);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
 
-        } catch (Exception e) {
-            return "{\"error\": \"No se pudo serializar: " + e.getMessage() + "\"}";
+    private static boolean contiene(int[] indices, int i) {
+        for (int indice : indices) {
+            if (indice == i) return true;
         }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.masterserv.productos.mapper;
+
+import com.masterserv.productos.service.ImagenService;
+import org.mapstruct.Named;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * La columna guarda solo el nombre de la imagen (ver ImagenService); los DTO llevan la URL
+ * pública armada con app.imagenes.url-base.
+ */
+@Component
+public class ImagenUrlMapper {
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Named("urlImagen")
+    public String urlImagen(String valor) {
+        return imagenService.url(valor);
+    }
+
+    @Named("urlMiniatura")
+    public String urlMiniatura(String valor) {
+        return imagenService.urlMiniatura(valor);
+    }
+}
@@ -11,7 +11,7 @@ import org.mapstruct.MappingTarget;
 
 import java.util.List;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = {ImagenUrlMapper.class})
 public interface ProductoMapper {
 
     // ============================
@@ -20,7 +20,8 @@ public interface ProductoMapper {
     @Mappings({
         @Mapping(source = "categoria.id", target = "categoriaId"),
         @Mapping(source = "categoria.nombre", target = "categoriaNombre"),
-        @Mapping(source = "loteReposicion", target = "loteReposicion")
+        @Mapping(source = "loteReposicion", target = "loteReposicion"),
+        @Mapping(source = "imagenUrl", target = "imagenUrl", qualifiedByName = "urlImagen")
     })
     ProductoDTO toProductoDTO(Producto producto);
 
@@ -58,7 +59,9 @@ public interface ProductoMapper {
     // ============================
     @Mappings({
         @Mapping(source = "categoria.nombre", target = "nombreCategoria"),
-        @Mapping(source = "codigo", target = "codigo") // <--- ASEGURATE DE QUE ESTÉ
+        @Mapping(source = "codigo", target = "codigo"), // <--- ASEGURATE DE QUE ESTÉ
+        @Mapping(source = "imagenUrl", target = "imagenUrl", qualifiedByName = "urlImagen"),
+        @Mapping(source = "imagenUrl", target = "imagenMiniaturaUrl", qualifiedByName = "urlMiniatura")
     })
     ProductoPublicoDTO toProductoPublicoDTO(Producto producto);
 }
@@ -0,0 +1,134 @@
+package com.masterserv.productos.repository;
+
+import com.masterserv.productos.dto.PaginaCursorDTO;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Listados por cursor (keyset / "seek"): en vez de OFFSET + COUNT(*), cada página pide
+ * "las N filas que vienen después de (valor, id)" sobre un índice (campo, id).
+ * El costo de la página 1000 es el mismo que el de la página 1 y no hay consulta de conteo.
+ *
+ * Se pide una fila de más para saber si hay página siguiente. El cursor es opaco para el
+ * cliente (Base64 de "id|valor") y solo sirve para el mismo orden con el que se generó.
+ */
+@Repository
+public class ConsultaKeyset {
+
+    public static final int TAMANO_MAXIMO = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Orden del listado: un campo no nulo más el ID como desempate (así el orden es total).
+     */
+    public record Orden<T, V extends Comparable<? super V>>(
+            String campo,
+            Function<T, V> valor,
+            Function<String, V> parsear,
+            boolean descendente) {
+
+        public static <T> Orden<T, LocalDateTime> porFechaDesc(String campo, Function<T, LocalDateTime> valor) {
+            return new Orden<>(campo, valor, LocalDateTime::parse, true);
+        }
+
+        public static <T> Orden<T, String> porTextoAsc(String campo, Function<T, String> valor) {
+            return new Orden<>(campo, valor, Function.identity(), false);
+        }
+    }
+
+    /**
+     * @param filtros Specification del listado (la misma que usa la versión paginada); puede ser null.
+     * @param cursor null o vacío para la primera página.
+     * @param id getter del ID de la entidad (para armar el cursor siguiente).
+     * @param grafo relaciones a traer en la misma consulta, como el @EntityGraph de la versión paginada
+     *              (sin esto, mapear cada fila dispara una consulta por relación).
+     */
+    public <T, V extends Comparable<? super V>> PaginaCursorDTO<T> buscar(
+            Class<T> entidad, Specification<T> filtros, Orden<T, V> orden,
+            Function<T, Long> id, String cursor, int tamano, String... grafo) {
+
+        int limite = Math.max(1, Math.min(tamano, TAMANO_MAXIMO));
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entidad);
+        Root<T> root = query.from(entidad);
+
+        List<Predicate> predicados = new ArrayList<>();
+        if (filtros != null) {
+            Predicate p = filtros.toPredicate(root, query, cb);
+            if (p != null) predicados.add(p);
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            predicados.add(despuesDe(cb, root, orden, cursor));
+        }
+        query.select(root).where(predicados.toArray(new Predicate[0]));
+
+        Path<V> campo = root.get(orden.campo());
+        Path<Long> idPath = root.get("id");
+        query.orderBy(orden.descendente()
+                ? List.of(cb.desc(campo), cb.desc(idPath))
+                : List.of(cb.asc(campo), cb.asc(idPath)));
+
+        TypedQuery<T> typedQuery = entityManager.createQuery(query).setMaxResults(limite + 1);
+        if (grafo.length > 0) {
+            EntityGraph<T> fetch = entityManager.createEntityGraph(entidad);
+            fetch.addAttributeNodes(grafo);
+            typedQuery.setHint("jakarta.persistence.fetchgraph", fetch);
+        }
+        List<T> filas = typedQuery.getResultList();
+
+        if (filas.size() <= limite) {
+            return new PaginaCursorDTO<>(filas, null);
+        }
+        List<T> pagina = new ArrayList<>(filas.subList(0, limite));
+        T ultima = pagina.get(limite - 1);
+        return new PaginaCursorDTO<>(pagina, codificar(id.apply(ultima), orden.valor().apply(ultima)));
+    }
+
+    // (campo, id) < (valor, ultimoId) en orden descendente; > en ascendente. Expandido para que use el índice.
+    private <T, V extends Comparable<? super V>> Predicate despuesDe(
+            CriteriaBuilder cb, Root<T> root, Orden<T, V> orden, String cursor) {
+        String decodificado;
+        long ultimoId;
+        V valor;
+        try {
+            decodificado = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = decodificado.indexOf('|');
+            ultimoId = Long.parseLong(decodificado.substring(0, separador));
+            valor = orden.parsear().apply(decodificado.substring(separador + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido.");
+        }
+
+        Path<V> campo = root.get(orden.campo());
+        Path<Long> idPath = root.get("id");
+        if (orden.descendente()) {
+            return cb.or(cb.lessThan(campo, valor),
+                    cb.and(cb.equal(campo, valor), cb.lessThan(idPath, ultimoId)));
+        }
+        return cb.or(cb.greaterThan(campo, valor),
+                cb.and(cb.equal(campo, valor), cb.greaterThan(idPath, ultimoId)));
+    }
+
+    private static String codificar(Long id, Object valor) {
+        String crudo = id + "|" + valor;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(crudo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package com.masterserv.productos.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * findAll(Specification, Pageable) sin el COUNT(*): para listados de "scroll infinito" que solo
+ * necesitan saber si hay página siguiente. Pide pageSize + 1 filas y la fila extra se descarta.
+ *
+ * (JpaSpecificationExecutor solo devuelve Page, que siempre dispara la consulta de conteo.)
+ */
+@Repository
+public class ConsultaSlice {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public <T> Slice<T> buscar(Class<T> entidad, Specification<T> filtros, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entidad);
+        Root<T> root = query.from(entidad);
+
+        if (filtros != null) {
+            Predicate p = filtros.toPredicate(root, query, cb);
+            if (p != null) query.where(p);
+        }
+        query.select(root);
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<T> typedQuery = entityManager.createQuery(query);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(typedQuery.getResultList(), pageable, false);
+        }
+        List<T> filas = typedQuery
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean haySiguiente = filas.size() > pageable.getPageSize();
+        return new SliceImpl<>(haySiguiente ? filas.subList(0, pageable.getPageSize()) : filas, pageable, haySiguiente);
+    }
+
+    /**
+     * Solo los IDs que cumplen los filtros, sin cargar las entidades (p. ej. para cruzar filtros
+     * con una lista de IDs que ya viene ordenada de otro lado).
+     */
+    public <T> List<Long> ids(Class<T> entidad, Specification<T> filtros) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entidad);
+
+        if (filtros != null) {
+            Predicate p = filtros.toPredicate(root, query, cb);
+            if (p != null) query.where(p);
+        }
+        query.select(root.get("id"));
+        return entityManager.createQuery(query).getResultList();
+    }
+}
@@ -1,15 +1,22 @@
 package com.masterserv.productos.repository;
 
+import com.masterserv.productos.dto.VolumenVentaProductoDTO;
 import com.masterserv.productos.entity.DetalleVenta;
+import com.masterserv.productos.enums.EstadoVenta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-// Podrías necesitar importar List si añades métodos que devuelvan listas
-// import java.util.List;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface DetalleVentaRepository extends JpaRepository<DetalleVenta, Long> {
 
-    // Aquí podrían ir consultas específicas para detalles si fueran necesarias en el futuro.
-    // Ej: List<DetalleVenta> findByProductoId(Long productoId);
-    // Ej: Consultas para reportes de productos más vendidos, etc.
-}
\ No newline at end of file
+    // Unidades vendidas por producto desde una fecha (ranking de sugerencias del buscador)
+    @Query("SELECT d.producto.id AS productoId, SUM(d.cantidad) AS cantidad FROM DetalleVenta d " +
+           "WHERE d.venta.estado = :estado AND d.venta.fechaVenta >= :desde GROUP BY d.producto.id")
+    List<VolumenVentaProductoDTO> sumarCantidadesPorProducto(@Param("estado") EstadoVenta estado,
+                                                             @Param("desde") LocalDateTime desde);
+}
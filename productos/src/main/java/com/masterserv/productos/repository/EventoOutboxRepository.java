@@ -0,0 +1,55 @@
+package com.masterserv.productos.repository;
+
+import com.masterserv.productos.entity.EventoOutbox;
+import com.masterserv.productos.enums.EstadoOutbox;
+import com.masterserv.productos.enums.EstadoVenta;
+import com.masterserv.productos.enums.TipoEventoOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EventoOutboxRepository extends JpaRepository<EventoOutbox, Long> {
+
+    List<EventoOutbox> findByEstadoOrderByIdAsc(EstadoOutbox estado, Pageable pageable);
+
+    /**
+     * "Reclama" el evento marcándolo PROCESADO solo si seguía PENDIENTE.
+     * Se ejecuta dentro de la transacción de los efectos: si algo falla, vuelve a PENDIENTE
+     * con el rollback; si otro hilo/instancia ya lo tomó, devuelve 0 y no se aplica nada.
+     */
+    @Modifying
+    @Query("UPDATE EventoOutbox e SET e.estado = :procesado, e.fechaProcesado = :fecha " +
+           "WHERE e.id = :id AND e.estado = :pendiente")
+    int reclamar(@Param("id") Long id, @Param("fecha") LocalDateTime fecha,
+                 @Param("pendiente") EstadoOutbox pendiente, @Param("procesado") EstadoOutbox procesado);
+
+    @Modifying
+    @Query("UPDATE EventoOutbox e SET e.intentos = e.intentos + 1, e.ultimoError = :error WHERE e.id = :id")
+    int sumarIntento(@Param("id") Long id, @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE EventoOutbox e SET e.estado = :estado WHERE e.id = :id AND e.intentos >= :maxIntentos")
+    int marcarSiSuperaIntentos(@Param("id") Long id, @Param("maxIntentos") int maxIntentos, @Param("estado") EstadoOutbox estado);
+
+    long countByEstado(EstadoOutbox estado);
+
+    boolean existsByAgregadoIdAndTipoAndEstadoNot(Long agregadoId, TipoEventoOutbox tipo, EstadoOutbox estado);
+
+    // Ventas de [desde, hasta) en el estado dado con un evento de ese tipo sin aplicar (pendiente o en ERROR).
+    // Parte de los eventos (pocos, por idx_outbox_estado_id) y no de las ventas del rango.
+    @Query("SELECT DISTINCT v.id FROM EventoOutbox e JOIN Venta v ON v.id = e.agregadoId " +
+           "WHERE e.tipo = :tipo AND e.estado <> :procesado AND v.estado = :estadoVenta " +
+           "AND v.fechaVenta >= :desde AND v.fechaVenta < :hasta")
+    List<Long> findVentasConEventoSinAplicar(@Param("tipo") TipoEventoOutbox tipo,
+                                             @Param("procesado") EstadoOutbox procesado,
+                                             @Param("estadoVenta") EstadoVenta estadoVenta,
+                                             @Param("desde") LocalDateTime desde,
+                                             @Param("hasta") LocalDateTime hasta);
+}
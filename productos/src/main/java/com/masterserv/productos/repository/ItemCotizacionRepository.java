@@ -37,12 +37,13 @@ public interface ItemCotizacionRepository extends JpaRepository<ItemCotizacion,
                                @Param("estados") Collection<EstadoCotizacion> estados);
 
     // 1. Obtener lista de productos listos para comparar (Solo los que ya tienen precio: COTIZADO)
-    @Query("SELECT i.producto.id as productoId, " +
-           "i.producto.nombre as nombre, " +
-           "i.producto.codigo as codigo, " +
-           "i.producto.imagenUrl as imagenUrl, " +
-           "COUNT(distinct i.cotizacion.id) as cantidadCotizaciones, " +
-           "MIN(i.precioUnitarioOfertado) as mejorPrecio " +
+    @Query("SELECT new com.masterserv.productos.dto.ResumenProductoCompraDTO(" +
+           "i.producto.id, " +
+           "i.producto.nombre, " +
+           "i.producto.codigo, " +
+           "i.producto.imagenUrl, " +
+           "COUNT(distinct i.cotizacion.id), " +
+           "MIN(i.precioUnitarioOfertado)) " +
            "FROM ItemCotizacion i " +
            "WHERE i.cotizacion.estado = 'RECIBIDA' " +
            "AND i.estado = com.masterserv.productos.enums.EstadoItemCotizacion.COTIZADO " + // 👈 CAMBIADO A COTIZADO
@@ -1,7 +1,10 @@
 package com.masterserv.productos.repository;
 
+import com.masterserv.productos.dto.TotalCajaPorMetodoDTO;
 import com.masterserv.productos.entity.MovimientoCaja;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,4 +12,17 @@ import java.util.List;
 @Repository
 public interface MovimientoCajaRepository extends JpaRepository<MovimientoCaja, Long> {
     List<MovimientoCaja> findByCajaIdOrderByFechaDesc(Long cajaId);
+
+    /**
+     * Totales de ventas de la caja derivados del libro de movimientos (fuente de verdad).
+     * Los movimientos anteriores a la columna 'origen' se reconocen por el concepto.
+     */
+    @Query("SELECT m.metodoPago AS metodoPago, " +
+           "SUM(CASE WHEN m.tipoMovimiento = 'EGRESO' THEN m.monto * -1 ELSE m.monto END) AS total " +
+           "FROM MovimientoCaja m " +
+           "WHERE m.caja.id = :cajaId " +
+           "AND (m.origen IN ('VENTA', 'ANULACION') " +
+           "     OR (m.origen IS NULL AND (m.concepto LIKE 'Venta #%' OR m.concepto LIKE 'Anulación Vta #%'))) " +
+           "GROUP BY m.metodoPago")
+    List<TotalCajaPorMetodoDTO> sumarVentasPorMetodoPago(@Param("cajaId") Long cajaId);
 }
\ No newline at end of file
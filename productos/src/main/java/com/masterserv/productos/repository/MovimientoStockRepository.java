@@ -3,8 +3,11 @@ package com.masterserv.productos.repository;
 import com.masterserv.productos.entity.MovimientoStock;
 import com.masterserv.productos.entity.Producto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -12,4 +15,11 @@ public interface MovimientoStockRepository extends JpaRepository<MovimientoStock
 
     // Método para obtener el historial de un producto específico
     List<MovimientoStock> findByProductoOrderByFechaDesc(Producto producto);
+
+    // Con rango de fechas PostgreSQL solo recorre las particiones mensuales de ese rango
+    @Query("SELECT m FROM MovimientoStock m WHERE m.producto = :producto " +
+           "AND m.fecha >= :desde AND m.fecha < :hasta ORDER BY m.fecha DESC")
+    List<MovimientoStock> findByProductoEntreFechas(@Param("producto") Producto producto,
+                                                    @Param("desde") LocalDateTime desde,
+                                                    @Param("hasta") LocalDateTime hasta);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.masterserv.productos.entity.Producto;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
@@ -14,6 +15,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,25 +37,45 @@ public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSp
             "ORDER BY p.nombre ASC")
     List<Producto> findActivosByProveedorId(@Param("proveedorId") Long proveedorId);
 
-    @Query("SELECT p FROM Producto p " +
+    String SEARCH_BY_PROVEEDOR = "SELECT p FROM Producto p " +
             "JOIN p.categoria c " +
             "JOIN c.proveedores provs " +
             "WHERE provs.id = :proveedorId AND p.estado = 'ACTIVO' " +
             "AND (LOWER(p.nombre) LIKE LOWER(CONCAT('%', :search, '%')) " +
-            " OR LOWER(p.codigo) LIKE LOWER(CONCAT('%', :search, '%')) )"
-            )
+            " OR LOWER(p.codigo) LIKE LOWER(CONCAT('%', :search, '%')) )";
+
+    @Query(SEARCH_BY_PROVEEDOR)
     Page<Producto> searchByProveedor(
         @Param("proveedorId") Long proveedorId, 
         @Param("search") String search, 
         Pageable pageable
     );
 
+    // Misma consulta devolviendo Slice: Spring Data pide pageSize + 1 filas y no ejecuta el COUNT
+    @Query(SEARCH_BY_PROVEEDOR)
+    Slice<Producto> searchByProveedorSlice(
+        @Param("proveedorId") Long proveedorId,
+        @Param("search") String search,
+        Pageable pageable
+    );
+
     @Query("SELECT COUNT(p) FROM Producto p WHERE p.stockActual <= p.stockMinimo AND p.estado = 'ACTIVO'")
     long countProductosBajoStock();
 
     @Query("SELECT p FROM Producto p WHERE p.stockActual <= p.stockMinimo AND p.estado = 'ACTIVO'")
     List<Producto> findProductosConStockBajo();
 
+    @Query("SELECT p FROM Producto p WHERE p.id IN :ids AND p.stockActual <= p.stockMinimo AND p.estado = 'ACTIVO'")
+    List<Producto> findProductosConStockBajoByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Snapshot del checkout: todos los productos de la venta con su categoría, en una sola consulta
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria WHERE p.id IN :ids")
+    List<Producto> findAllByIdInConCategoria(@Param("ids") Collection<Long> ids);
+
+    // Carga inicial del catálogo en memoria (CatalogoMemoriaService)
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria WHERE p.estado = 'ACTIVO'")
+    List<Producto> findActivosConCategoria();
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT p FROM Producto p WHERE p.id = :id")
     Optional<Producto> findByIdForUpdate(@Param("id") Long id);
@@ -64,7 +86,7 @@ public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSp
     List<Producto> findByNombreContainingIgnoreCase(String nombre);
 
     // --- BÚSQUEDA DEFINITIVA (Flexible: Sin acentos, Sin mayúsculas, Código+Nombre+Desc) ---
-    @Query(value = """
+    String BUSCAR_FLEXIBLE = """
         SELECT * FROM productos p 
         WHERE p.estado = 'ACTIVO' 
         AND (
@@ -74,7 +96,9 @@ public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSp
             OR 
             unaccent(p.codigo) ILIKE unaccent(concat('%', :termino, '%'))
         )
-        """,
+        """;
+
+    @Query(value = BUSCAR_FLEXIBLE,
         countQuery = """
         SELECT count(*) FROM productos p 
         WHERE p.estado = 'ACTIVO' 
@@ -89,6 +113,9 @@ public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSp
         nativeQuery = true)
     Page<Producto> buscarFlexible(@Param("termino") String termino, Pageable pageable);
 
+    @Query(value = BUSCAR_FLEXIBLE, nativeQuery = true)
+    Slice<Producto> buscarFlexibleSlice(@Param("termino") String termino, Pageable pageable);
+
 
     // --- VALIDACIÓN DE DUPLICADOS ---
     boolean existsByNombreIgnoreCase(String nombre);
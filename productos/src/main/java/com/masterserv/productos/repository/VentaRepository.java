@@ -16,6 +16,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +36,10 @@ public interface VentaRepository extends JpaRepository<Venta, Long>, JpaSpecific
     @EntityGraph(attributePaths = {"cliente", "vendedor"})
     Page<Venta> findByFechaVentaBetween(LocalDateTime inicio, LocalDateTime fin, Pageable pageable);
 
+    // Ventas que el resumen diario todavía no refleja (DashboardService)
+    @EntityGraph(attributePaths = {"detalles", "detalles.producto", "detalles.producto.categoria"})
+    List<Venta> findByIdIn(Collection<Long> ids);
+
     @Query("SELECT v FROM Venta v WHERE v.id = :id")
     @EntityGraph(attributePaths = {"cliente", "vendedor", "detalles", "detalles.producto", "cupon"}) 
     Optional<Venta> findByIdWithDetails(@Param("id") Long id);
@@ -76,11 +81,13 @@ public interface VentaRepository extends JpaRepository<Venta, Long>, JpaSpecific
     long countVentasEntreFechas(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 
     // --- GRÁFICO DE DONA (CATEGORÍAS) ---
-    @Query("SELECT new com.masterserv.productos.dto.VentasPorCategoriaDTO(p.categoria.nombre, SUM(dv.precioUnitario * dv.cantidad)) " +
+    // Categoría de la línea al venderse (las ventas anteriores a guardarla usan la actual del producto)
+    @Query("SELECT new com.masterserv.productos.dto.VentasPorCategoriaDTO(c.nombre, SUM(dv.precioUnitario * dv.cantidad)) " +
            "FROM DetalleVenta dv " +
            "JOIN dv.producto p " +
            "JOIN dv.venta v " +
+           "JOIN Categoria c ON c.id = COALESCE(dv.categoria.id, p.categoria.id) " +
            "WHERE v.estado = 'COMPLETADA' AND v.fechaVenta BETWEEN :inicio AND :fin " +
-           "GROUP BY p.categoria.nombre")
+           "GROUP BY c.nombre")
     List<VentasPorCategoriaDTO> findVentasPorCategoria(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 }
\ No newline at end of file
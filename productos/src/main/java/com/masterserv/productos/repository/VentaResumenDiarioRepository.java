@@ -0,0 +1,52 @@
+package com.masterserv.productos.repository;
+
+import com.masterserv.productos.dto.TopProductoDTO;
+import com.masterserv.productos.dto.VentasPorCategoriaDTO;
+import com.masterserv.productos.dto.VentasPorDiaDTO;
+import com.masterserv.productos.entity.VentaResumenDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lecturas del dashboard sobre el resumen diario (días completos, ambos extremos incluidos).
+ * Mismas formas que las consultas de VentaRepository para poder sumar las dos.
+ */
+@Repository
+public interface VentaResumenDiarioRepository extends JpaRepository<VentaResumenDiario, Long> {
+
+    @Query("SELECT SUM(r.total) FROM VentaResumenDiario r WHERE r.fecha BETWEEN :desde AND :hasta")
+    Optional<BigDecimal> findTotalVentas(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT SUM(r.ventas) FROM VentaResumenDiario r WHERE r.fecha BETWEEN :desde AND :hasta")
+    Optional<Long> countVentas(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT new com.masterserv.productos.dto.VentasPorDiaDTO(r.fecha, SUM(r.total)) " +
+           "FROM VentaResumenDiario r " +
+           "WHERE r.fecha BETWEEN :desde AND :hasta " +
+           "GROUP BY r.fecha " +
+           "ORDER BY r.fecha ASC")
+    List<VentasPorDiaDTO> findVentasPorDia(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT new com.masterserv.productos.dto.TopProductoDTO(p.id, p.nombre, SUM(r.unidades)) " +
+           "FROM VentaResumenDiario r JOIN Producto p ON p.id = r.productoId " +
+           "WHERE r.fecha BETWEEN :desde AND :hasta " +
+           "GROUP BY p.id, p.nombre " +
+           "ORDER BY SUM(r.unidades) DESC")
+    List<TopProductoDTO> findTopProductos(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT new com.masterserv.productos.dto.VentasPorCategoriaDTO(c.nombre, SUM(r.importe)) " +
+           "FROM VentaResumenDiario r JOIN Categoria c ON c.id = r.categoriaId " +
+           "WHERE r.fecha BETWEEN :desde AND :hasta " +
+           "GROUP BY c.nombre")
+    List<VentasPorCategoriaDTO> findVentasPorCategoria(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT MIN(r.fecha) FROM VentaResumenDiario r")
+    LocalDate findPrimerDia();
+}
@@ -1,16 +1,21 @@
 package com.masterserv.productos.service;
 
 import com.masterserv.productos.dto.AuditoriaFiltroDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.entity.Auditoria;
 import com.masterserv.productos.repository.AuditoriaRepository;
+import com.masterserv.productos.repository.ConsultaKeyset;
 import com.masterserv.productos.specification.AuditoriaSpecification; // <--- Importante
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
 
 @Service
 public class AuditoriaService {
@@ -21,9 +26,31 @@ public class AuditoriaService {
     @Autowired
     private AuditoriaSpecification auditoriaSpecification; // <--- Faltaba esto
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Autowired
+    private ConsultaKeyset consultaKeyset;
+
+    private static final ConsultaKeyset.Orden<Auditoria, LocalDateTime> ORDEN_CURSOR =
+            ConsultaKeyset.Orden.porFechaDesc("fecha", Auditoria::getFecha);
+
+    @Autowired
+    private EscritorAuditoriaService escritorAuditoria;
+
+    /**
+     * Registra un log de auditoría sin escribirlo en el momento: va al escritor asíncrono, que
+     * lo inserta por lotes. Dentro de una transacción se encola recién después del commit
+     * (si la operación se revierte, no queda auditada).
+     */
     public void guardar(Auditoria log) {
-        auditoriaRepository.save(log);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    escritorAuditoria.encolar(log);
+                }
+            });
+        } else {
+            escritorAuditoria.encolar(log);
+        }
     }
 
     // Método para obtener todos (sin filtro)
@@ -40,4 +67,16 @@ public class AuditoriaService {
         // Buscamos usando filtros + paginación
         return auditoriaRepository.findAll(spec, pageable);
     }
-}
\ No newline at end of file
+
+    // --- Variantes por cursor (fecha, id) descendente: no cuentan la tabla completa ---
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<Auditoria> getLogsCursor(String cursor, int tamano) {
+        return consultaKeyset.buscar(Auditoria.class, null, ORDEN_CURSOR, Auditoria::getId, cursor, tamano);
+    }
+
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<Auditoria> filtrarAuditoriaCursor(AuditoriaFiltroDTO filtro, String cursor, int tamano) {
+        Specification<Auditoria> spec = auditoriaSpecification.getByFilters(filtro);
+        return consultaKeyset.buscar(Auditoria.class, spec, ORDEN_CURSOR, Auditoria::getId, cursor, tamano);
+    }
+}
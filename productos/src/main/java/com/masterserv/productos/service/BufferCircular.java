@@ -0,0 +1,92 @@
+package com.masterserv.productos.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cola circular acotada sin locks (algoritmo de D. Vyukov): varios productores y consumidores
+ * compiten solo con un CAS sobre su índice, y cada celda lleva un número de secuencia que dice
+ * si está libre para escribir o lista para leer. Nunca crece: si está llena, ofrecer() devuelve
+ * false y el que llama decide qué hacer.
+ */
+class BufferCircular<T> {
+
+    private final int mascara;
+    private final AtomicReferenceArray<T> elementos;
+    private final AtomicLongArray secuencias;
+    private final AtomicLong posEscritura = new AtomicLong();
+    private final AtomicLong posLectura = new AtomicLong();
+
+    BufferCircular(int capacidadMinima) {
+        // Potencia de 2 para calcular la celda con una máscara
+        int capacidad = Integer.highestOneBit(Math.max(2, capacidadMinima - 1)) << 1;
+        this.mascara = capacidad - 1;
+        this.elementos = new AtomicReferenceArray<>(capacidad);
+        this.secuencias = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            secuencias.set(i, i);
+        }
+    }
+
+    boolean ofrecer(T elemento) {
+        long pos = posEscritura.get();
+        while (true) {
+            int celda = (int) (pos & mascara);
+            long diferencia = secuencias.get(celda) - pos;
+            if (diferencia == 0) {
+                if (posEscritura.compareAndSet(pos, pos + 1)) {
+                    elementos.lazySet(celda, elemento);
+                    secuencias.set(celda, pos + 1); // publica el elemento
+                    return true;
+                }
+                pos = posEscritura.get();
+            } else if (diferencia < 0) {
+                return false; // lleno: la celda todavía tiene un elemento sin leer
+            } else {
+                pos = posEscritura.get();
+            }
+        }
+    }
+
+    T tomar() {
+        long pos = posLectura.get();
+        while (true) {
+            int celda = (int) (pos & mascara);
+            long diferencia = secuencias.get(celda) - (pos + 1);
+            if (diferencia == 0) {
+                if (posLectura.compareAndSet(pos, pos + 1)) {
+                    T elemento = elementos.get(celda);
+                    elementos.lazySet(celda, null);
+                    secuencias.set(celda, pos + mascara + 1); // libera la celda para la próxima vuelta
+                    return elemento;
+                }
+                pos = posLectura.get();
+            } else if (diferencia < 0) {
+                return null; // vacío
+            } else {
+                pos = posLectura.get();
+            }
+        }
+    }
+
+    /** Pasa hasta max elementos a destino; devuelve cuántos pasó. */
+    int drenar(List<T> destino, int max) {
+        int n = 0;
+        T elemento;
+        while (n < max && (elemento = tomar()) != null) {
+            destino.add(elemento);
+            n++;
+        }
+        return n;
+    }
+
+    int tamano() {
+        return (int) Math.max(0, posEscritura.get() - posLectura.get());
+    }
+
+    int capacidad() {
+        return mascara + 1;
+    }
+}
@@ -0,0 +1,380 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de productos por texto.
+ * Reemplaza a ProductoRepository.buscarFlexible (tres unaccent(...) ILIKE '%x%' + count,
+ * o sea un scan secuencial por tecla) en el admin, el catálogo público y el chatbot.
+ *
+ * Indexa nombre, código y descripción de los productos ACTIVO, sin tildes ni mayúsculas:
+ *  - trigramas: resuelven "contiene" (lo mismo que el ILIKE) para términos de 3+ caracteres;
+ *  - palabras ordenadas: resuelven prefijos, sobre todo para términos de 1-2 caracteres.
+ * Los trigramas solo dan candidatos; cada candidato se confirma contra el texto del producto.
+ *
+ * Con varias palabras, el producto tiene que contenerlas todas (en cualquier orden).
+ * El resultado sale ordenado por relevancia: palabra exacta > prefijo > contenido,
+ * y código > nombre > descripción.
+ *
+ * Se mantiene al día con ProductoActualizadoEvent (alta, edición, baja) después del commit.
+ * Mientras no terminó la carga inicial, buscar() devuelve vacío y el llamador usa buscarFlexible.
+ *
+ * Los eventos solo anotan el ID; quien tiene el lock de escritura relee de la base y aplica
+ * todo lo anotado. Como la lectura se hace bajo el lock (igual que la de resincronizar), dos
+ * cambios del mismo producto nunca se aplican en orden inverso, y lo que llega durante la carga
+ * inicial queda anotado y se aplica al terminarla. El hilo del request no espera el lock: si
+ * otro lo tiene, ese mismo hilo aplica lo anotado antes de soltarlo.
+ */
+@Service
+public class BusquedaProductoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusquedaProductoService.class);
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    // Peso de cada campo y de cada tipo de coincidencia en la relevancia
+    private static final int PESO_CODIGO = 4;
+    private static final int PESO_NOMBRE = 3;
+    private static final int PESO_DESCRIPCION = 1;
+    private static final int EXACTA = 10;
+    private static final int PREFIJO = 6;
+    private static final int CONTIENE = 3;
+
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    /** Texto ya plegado de cada campo y sus palabras. Inmutable: un cambio reemplaza el documento. */
+    private record Documento(Long id, String nombre, String codigo, String descripcion,
+                             Set<String> palabrasNombre, Set<String> palabrasCodigo, Set<String> palabrasDescripcion) {
+
+        Set<String> palabras() {
+            Set<String> todas = new HashSet<>(palabrasNombre);
+            todas.addAll(palabrasCodigo);
+            todas.addAll(palabrasDescripcion);
+            return todas;
+        }
+
+        Set<String> trigramas() {
+            Set<String> grams = new HashSet<>();
+            agregarTrigramas(nombre, grams);
+            agregarTrigramas(codigo, grams);
+            agregarTrigramas(codigo.replace(" ", ""), grams);
+            agregarTrigramas(descripcion, grams);
+            return grams;
+        }
+    }
+
+    private final Map<Long, Documento> documentos = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> porTrigrama = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Set<Long>> porPalabra = new ConcurrentSkipListMap<>();
+
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock escritura = new ReentrantLock();
+    private volatile boolean listo = false;
+    private TransactionTemplate lectura;
+
+    private final Timer duracionBusqueda;
+
+    public BusquedaProductoService(MeterRegistry registry) {
+        this.duracionBusqueda = Timer.builder("busqueda.productos.duracion")
+                .description("Tiempo de cada búsqueda en el índice de productos").register(registry);
+        Gauge.builder("busqueda.productos.documentos", documentos, Map::size).register(registry);
+        Gauge.builder("busqueda.productos.pendientes", pendientes, Set::size).register(registry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        // REQUIRES_NEW: en un afterCommit la transacción del cambio sigue ligada al hilo, y sin una
+        // nueva la lectura devolvería la entidad de ese contexto en vez de lo último commiteado
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        lectura.setReadOnly(true);
+    }
+
+    /**
+     * Busca productos ACTIVO que contengan todas las palabras del texto (sin tildes ni mayúsculas).
+     *
+     * @return los IDs de todos los que coinciden, del más relevante al menos relevante;
+     *         vacío si el índice todavía no está cargado (el llamador debe ir a la base).
+     */
+    public Optional<List<Long>> buscar(String texto) {
+        if (!listo) return Optional.empty();
+        return Optional.of(duracionBusqueda.record(() -> rankear(terminos(texto))));
+    }
+
+    /**
+     * Carga una página de resultados (con categoría) en una sola consulta por ID,
+     * respetando el orden de relevancia de buscar().
+     */
+    public List<Producto> cargarEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Producto> porId = new HashMap<>();
+        for (Producto p : productoRepository.findAllByIdInConCategoria(ids)) {
+            porId.put(p.getId(), p);
+        }
+        List<Producto> ordenados = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Producto p = porId.get(id);
+            if (p != null) ordenados.add(p);
+        }
+        return ordenados;
+    }
+
+    /** Pasa el texto a minúsculas sin tildes ni signos, con un espacio entre palabras. */
+    public static String plegar(String texto) {
+        if (texto == null) return "";
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(sinMarcas.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // --- Mantenimiento ---
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent event) {
+        pendientes.add(event.productoId());
+        if (listo) aplicarPendientes(); // si no, lo aplica resincronizar() al terminar la carga
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        resincronizar();
+    }
+
+    // Red de seguridad por cambios que no pasen por ProductoService (misma frecuencia que el catálogo)
+    @Scheduled(fixedDelayString = "${app.catalogo.resincronizar-ms:600000}",
+               initialDelayString = "${app.catalogo.resincronizar-ms:600000}")
+    public void resincronizar() {
+        escritura.lock();
+        try {
+            long inicio = System.currentTimeMillis();
+            List<Producto> activos = lectura.execute(status -> productoRepository.findActivosConCategoria());
+            Set<Long> vigentes = new HashSet<>();
+            for (Producto p : activos) {
+                poner(p);
+                vigentes.add(p.getId());
+            }
+            for (Long id : new ArrayList<>(documentos.keySet())) {
+                if (!vigentes.contains(id)) quitar(id);
+            }
+            listo = true;
+            logger.info("🔎 Índice de búsqueda: {} productos, {} trigramas ({} ms).",
+                    documentos.size(), porTrigrama.size(), System.currentTimeMillis() - inicio);
+        } catch (Exception e) {
+            logger.error("❌ Error cargando índice de búsqueda (se sigue usando buscarFlexible): {}", e.getMessage());
+        } finally {
+            escritura.unlock();
+        }
+        aplicarPendientes();
+    }
+
+    /**
+     * Relee y aplica los productos anotados. Si otro hilo tiene el lock no espera: ese hilo vuelve
+     * a mirar 'pendientes' después de soltarlo, así que lo anotado antes de este intento no se pierde.
+     */
+    private void aplicarPendientes() {
+        while (listo && !pendientes.isEmpty() && escritura.tryLock()) {
+            try {
+                Set<Long> lote = new HashSet<>(pendientes);
+                pendientes.removeAll(lote);
+                try {
+                    List<Producto> recargados = lectura.execute(status -> productoRepository.findAllByIdInConCategoria(lote));
+                    Set<Long> vistos = new HashSet<>();
+                    for (Producto p : recargados) {
+                        vistos.add(p.getId());
+                        if ("ACTIVO".equals(p.getEstado())) poner(p);
+                        else quitar(p.getId());
+                    }
+                    // Los que ya no existen salen del índice
+                    for (Long id : lote) {
+                        if (!vistos.contains(id)) quitar(id);
+                    }
+                } catch (Exception e) {
+                    // Quedan para el próximo evento o resincronización; no reintentamos en este bucle
+                    pendientes.addAll(lote);
+                    logger.error("❌ Error actualizando índice de búsqueda para {} productos: {}", lote.size(), e.getMessage());
+                    return;
+                }
+            } finally {
+                escritura.unlock();
+            }
+        }
+    }
+
+    private void poner(Producto p) {
+        String nombre = plegar(p.getNombre());
+        String codigo = plegar(p.getCodigo());
+        String descripcion = plegar(p.getDescripcion());
+        Set<String> palabrasCodigo = palabras(codigo);
+        // "ACE-MOT-01" también se puede buscar pegado ("acemot01")
+        if (palabrasCodigo.size() > 1) palabrasCodigo.add(codigo.replace(" ", ""));
+        Documento nuevo = new Documento(p.getId(), nombre, codigo, descripcion,
+                palabras(nombre), palabrasCodigo, palabras(descripcion));
+
+        Documento viejo = documentos.put(p.getId(), nuevo);
+        if (viejo != null) desindexar(viejo);
+        indexar(nuevo);
+    }
+
+    private void quitar(Long id) {
+        Documento viejo = documentos.remove(id);
+        if (viejo != null) desindexar(viejo);
+    }
+
+    private void indexar(Documento d) {
+        for (String gram : d.trigramas()) {
+            porTrigrama.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(d.id());
+        }
+        for (String palabra : d.palabras()) {
+            porPalabra.computeIfAbsent(palabra, k -> ConcurrentHashMap.newKeySet()).add(d.id());
+        }
+    }
+
+    private void desindexar(Documento d) {
+        for (String gram : d.trigramas()) {
+            porTrigrama.computeIfPresent(gram, (k, ids) -> ids.remove(d.id()) && ids.isEmpty() ? null : ids);
+        }
+        for (String palabra : d.palabras()) {
+            porPalabra.computeIfPresent(palabra, (k, ids) -> ids.remove(d.id()) && ids.isEmpty() ? null : ids);
+        }
+    }
+
+    // --- Consulta ---
+
+    private static List<String> terminos(String texto) {
+        String plegado = plegar(texto);
+        if (plegado.isEmpty()) return List.of();
+        // Sin repetidos: "aceite aceite" no debe puntuar doble
+        return new ArrayList<>(new LinkedHashSet<>(Arrays.asList(plegado.split(" "))));
+    }
+
+    private List<Long> rankear(List<String> terminos) {
+        if (terminos.isEmpty()) return List.of();
+
+        // Empezamos por el término más selectivo para achicar la intersección cuanto antes
+        List<Set<Long>> porTermino = new ArrayList<>(terminos.size());
+        for (String termino : terminos) {
+            Set<Long> candidatos = candidatos(termino);
+            if (candidatos.isEmpty()) return List.of();
+            porTermino.add(candidatos);
+        }
+        porTermino.sort(Comparator.comparingInt(Set::size));
+        Set<Long> ids = new HashSet<>(porTermino.get(0));
+        for (int i = 1; i < porTermino.size() && !ids.isEmpty(); i++) {
+            ids.retainAll(porTermino.get(i));
+        }
+
+        Map<Long, Integer> puntajes = new HashMap<>();
+        Map<Long, Documento> encontrados = new HashMap<>();
+        for (Long id : ids) {
+            Documento d = documentos.get(id);
+            if (d == null) continue;
+            int puntaje = 0;
+            for (String termino : terminos) {
+                int p = puntaje(d, termino);
+                if (p == 0) { puntaje = 0; break; } // el índice estaba desfasado: no coincide de verdad
+                puntaje += p;
+            }
+            if (puntaje > 0) {
+                puntajes.put(id, puntaje);
+                encontrados.put(id, d);
+            }
+        }
+
+        List<Long> resultado = new ArrayList<>(puntajes.keySet());
+        resultado.sort(Comparator.<Long>comparingInt(puntajes::get).reversed()
+                .thenComparingInt(id -> encontrados.get(id).nombre().length())
+                .thenComparing(Comparator.naturalOrder()));
+        return resultado;
+    }
+
+    // Productos que pueden contener el término (confirmar con puntaje())
+    private Set<Long> candidatos(String termino) {
+        if (termino.length() < 3) {
+            Set<Long> ids = new HashSet<>();
+            porPalabra.subMap(termino, true, termino + Character.MAX_VALUE, false).values().forEach(ids::addAll);
+            return ids;
+        }
+        Set<String> grams = new HashSet<>();
+        agregarTrigramas(termino, grams);
+        List<Set<Long>> listas = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Long> ids = porTrigrama.get(gram);
+            if (ids == null) return Set.of();
+            listas.add(ids);
+        }
+        listas.sort(Comparator.comparingInt(Set::size));
+        Set<Long> ids = new HashSet<>(listas.get(0));
+        for (int i = 1; i < listas.size() && !ids.isEmpty(); i++) {
+            ids.retainAll(listas.get(i));
+        }
+        return ids;
+    }
+
+    private static int puntaje(Documento d, String termino) {
+        // Los términos cortos solo valen como inicio de palabra ("ca" no debe traer todo lo que tenga "ca" adentro)
+        boolean corto = termino.length() < 3;
+        return Math.max(Math.max(
+                PESO_CODIGO * coincidencia(d.codigo(), d.palabrasCodigo(), termino, corto),
+                PESO_NOMBRE * coincidencia(d.nombre(), d.palabrasNombre(), termino, corto)),
+                PESO_DESCRIPCION * coincidencia(d.descripcion(), d.palabrasDescripcion(), termino, corto));
+    }
+
+    private static int coincidencia(String campo, Collection<String> palabras, String termino, boolean corto) {
+        if (palabras.contains(termino)) return EXACTA;
+        for (String palabra : palabras) {
+            if (palabra.startsWith(termino)) return PREFIJO;
+        }
+        return !corto && campo.contains(termino) ? CONTIENE : 0;
+    }
+
+    private static Set<String> palabras(String plegado) {
+        Set<String> palabras = new HashSet<>();
+        if (plegado.isEmpty()) return palabras;
+        palabras.addAll(Arrays.asList(plegado.split(" ")));
+        return palabras;
+    }
+
+    // Trigramas del texto tal cual (con espacios): "contiene" sobre el campo entero, como el ILIKE
+    private static void agregarTrigramas(String texto, Set<String> destino) {
+        for (int i = 0; i + 3 <= texto.length(); i++) {
+            destino.add(texto.substring(i, i + 3));
+        }
+    }
+}
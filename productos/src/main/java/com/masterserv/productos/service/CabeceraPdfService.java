@@ -0,0 +1,154 @@
+package com.masterserv.productos.service;
+
+import com.lowagie.text.Image;
+import com.masterserv.productos.entity.EmpresaConfig;
+import com.masterserv.productos.event.EmpresaConfigActualizadaEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cabecera de empresa de los PDF (logo + textos) armada una sola vez.
+ *
+ * Antes cada comprobante, orden de compra y reporte abría una transacción de escritura para
+ * leer EmpresaConfig y volvía a descargar (http) o decodificar (base64) el logo. Ahora se arma
+ * al primer uso con el logo ya decodificado y escalado, y se rearma solo cuando se guarda la
+ * configuración (EmpresaConfigActualizadaEvent, después del commit).
+ *
+ * Las construcciones van de a una (lock 'construccion'), así una más vieja y lenta no pisa a la
+ * que leyó la configuración nueva. Si el logo está configurado pero no se pudo cargar (p. ej. la
+ * URL no respondió), no queda "sin logo" para siempre: se reintenta en un uso posterior, como
+ * mucho cada app.pdf.logo-reintento-ms y sin frenar a los PDF que se generan mientras tanto.
+ */
+@Service
+public class CabeceraPdfService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CabeceraPdfService.class);
+
+    private static final float LOGO_ANCHO = 90;
+    private static final float LOGO_ALTO = 45;
+    private static final String PIE_ORDEN_COMPRA = "Favor de confirmar recepción y disponibilidad.";
+
+    @Autowired private EmpresaConfigService empresaConfigService;
+    @Autowired private ImagenService imagenService;
+
+    @Value("${app.pdf.logo-reintento-ms:60000}")
+    private long logoReintentoMs;
+
+    /**
+     * Datos ya formateados para la cabecera. El logo es la "plantilla": usar logo() para
+     * obtener una copia por documento (comparte los bytes decodificados, no se decodifica de nuevo).
+     * logoPendiente: hay logo configurado pero falló la carga (se va a reintentar).
+     */
+    public record CabeceraEmpresa(
+            String nombreFantasia,
+            String titulo,
+            String lineaFiscal,
+            String direccion,
+            String piePaginaPresupuesto,
+            Image logoPlantilla,
+            boolean logoPendiente) {
+
+        public Optional<Image> logo() {
+            if (logoPlantilla == null) return Optional.empty();
+            return Optional.of(Image.getInstance(logoPlantilla));
+        }
+    }
+
+    private final ReentrantLock construccion = new ReentrantLock();
+    private volatile CabeceraEmpresa cabecera;
+    private volatile long proximoReintentoLogo;
+
+    public CabeceraEmpresa obtener() {
+        CabeceraEmpresa actual = cabecera;
+        if (actual == null) {
+            construccion.lock();
+            try {
+                if (cabecera == null) publicar(construir());
+                return cabecera;
+            } finally {
+                construccion.unlock();
+            }
+        }
+        // Si otro hilo ya está construyendo, este PDF sale con lo que hay
+        if (actual.logoPendiente() && System.currentTimeMillis() >= proximoReintentoLogo && construccion.tryLock()) {
+            try {
+                if (cabecera == actual) {
+                    publicar(construir());
+                    logger.info("🧾 Reintento del logo de los PDF: {}.", cabecera.logoPendiente() ? "sigue fallando" : "cargado");
+                }
+                return cabecera;
+            } finally {
+                construccion.unlock();
+            }
+        }
+        return actual;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEmpresaConfigActualizada(EmpresaConfigActualizadaEvent event) {
+        // Se rearma acá (y no en el próximo PDF) para que ningún comprobante pague la descarga del logo
+        CabeceraEmpresa nueva;
+        construccion.lock();
+        try {
+            nueva = construir();
+            publicar(nueva);
+        } finally {
+            construccion.unlock();
+        }
+        logger.info("🧾 Cabecera de PDF reconstruida (logo: {}).",
+                nueva.logoPlantilla() != null ? "sí" : nueva.logoPendiente() ? "falló, se reintenta" : "no");
+    }
+
+    // Llamar con el lock de construcción
+    private void publicar(CabeceraEmpresa nueva) {
+        if (nueva.logoPendiente()) proximoReintentoLogo = System.currentTimeMillis() + logoReintentoMs;
+        cabecera = nueva;
+    }
+
+    private CabeceraEmpresa construir() {
+        EmpresaConfig config = empresaConfigService.obtenerConfiguracion();
+        String pie = config.getPiePaginaPresupuesto() != null && !config.getPiePaginaPresupuesto().isEmpty()
+                ? config.getPiePaginaPresupuesto() : PIE_ORDEN_COMPRA;
+        Image logo = null;
+        boolean logoPendiente = false;
+        try {
+            logo = cargarLogo(config.getLogoUrl());
+        } catch (Exception e) {
+            logger.warn("⚠️ Error cargando logo para los PDF: {}", e.getMessage());
+            logoPendiente = true;
+        }
+        return new CabeceraEmpresa(
+                config.getNombreFantasia(),
+                config.getNombreFantasia().toUpperCase(),
+                config.getRazonSocial() + " | CUIT: " + config.getCuit(),
+                config.getDireccion(),
+                pie,
+                logo,
+                logoPendiente);
+    }
+
+    // null si no hay logo (o el formato no es uno de los conocidos); excepción si falló la carga
+    private Image cargarLogo(String logoData) throws Exception {
+        if (logoData == null || logoData.isEmpty()) return null;
+        Image logo = null;
+        Optional<byte[]> local = imagenService.leer(logoData);
+        if (local.isPresent()) {
+            logo = Image.getInstance(local.get());
+        } else if (logoData.startsWith("http")) {
+            logo = Image.getInstance(logoData);
+        } else if (logoData.contains("base64,")) {
+            logo = Image.getInstance(Base64.getDecoder().decode(logoData.split(",")[1]));
+        }
+        if (logo != null) logo.scaleToFit(LOGO_ANCHO, LOGO_ALTO);
+        return logo;
+    }
+}
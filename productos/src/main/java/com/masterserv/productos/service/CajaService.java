@@ -9,7 +9,6 @@ import com.masterserv.productos.entity.Auditoria;
 import com.masterserv.productos.entity.Caja;
 import com.masterserv.productos.entity.MovimientoCaja;
 import com.masterserv.productos.entity.Usuario;
-import com.masterserv.productos.repository.AuditoriaRepository;
 import com.masterserv.productos.repository.CajaRepository;
 import com.masterserv.productos.repository.MovimientoCajaRepository;
 import com.masterserv.productos.repository.UsuarioRepository;
@@ -27,17 +26,26 @@ public class CajaService {
 
     @Autowired private CajaRepository cajaRepository;
     @Autowired private UsuarioRepository usuarioRepository;
-    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private AuditoriaService auditoriaService;
     @Autowired private MovimientoCajaRepository movimientoCajaRepository;
+    @Autowired private TotalesCajaService totalesCajaService;
 
+    /**
+     * Caja abierta del usuario (cada terminal/vendedor trabaja sobre la suya).
+     * Sin usuario se mantiene el comportamiento anterior: la primera caja abierta del local.
+     * Los totales de ventas se devuelven en vivo desde el libro de movimientos.
+     */
     public Caja obtenerCajaAbierta(Long usuarioId) {
-        return cajaRepository.findFirstByEstado("ABIERTA").orElse(null);
+        Caja caja = usuarioId != null
+                ? cajaRepository.findCajaAbiertaByUsuario(usuarioId).orElse(null)
+                : cajaRepository.findFirstByEstado("ABIERTA").orElse(null);
+        return totalesCajaService.conTotalesEnVivo(caja);
     }
 
     @Transactional
     public Caja abrirCaja(AbrirCajaDTO dto) {
-        if (obtenerCajaAbierta(null) != null) {
-            throw new RuntimeException("Ya existe una caja abierta en el local.");
+        if (cajaRepository.findCajaAbiertaByUsuario(dto.getUsuarioId()).isPresent()) {
+            throw new RuntimeException("Ya tienes una caja abierta.");
         }
 
         Usuario cajeroQueAbre = usuarioRepository.findById(dto.getUsuarioId())
@@ -58,6 +66,7 @@ public class CajaService {
             mov.setConcepto("Apertura de Caja (Fondo Inicial)");
             mov.setMonto(dto.getMontoInicial());
             mov.setMetodoPago("EFECTIVO");
+            mov.setOrigen(TotalesCajaService.ORIGEN_APERTURA);
             mov.setUsuario(cajeroQueAbre);
             mov.setFecha(LocalDateTime.now());
             movimientoCajaRepository.save(mov);
@@ -82,6 +91,9 @@ public class CajaService {
         Usuario cajeroQueCierra = usuarioRepository.findById(dto.getUsuarioId())
                 .orElse(caja.getUsuario());
 
+        // Los totales de ventas salen del libro de movimientos (no de la fila de caja)
+        totalesCajaService.conciliar(caja);
+
         caja.setFechaCierre(LocalDateTime.now());
         caja.setEstado("CERRADA");
         caja.setMontoDeclarado(dto.getMontoDeclarado());
@@ -119,7 +131,7 @@ public class CajaService {
         }
 
         BigDecimal extraccionActual = caja.getExtracciones() != null ? caja.getExtracciones() : BigDecimal.ZERO;
-        BigDecimal efectivoActual = caja.getVentasEfectivo() != null ? caja.getVentasEfectivo() : BigDecimal.ZERO;
+        BigDecimal efectivoActual = totalesCajaService.efectivoEnVivo(caja.getId());
         
         // ✅ VALIDACIÓN DE SALDO MÁXIMO (No permite retirar más de lo que hay en cajón)
         BigDecimal totalDisponible = caja.getMontoInicial().add(efectivoActual).subtract(extraccionActual);
@@ -138,6 +150,7 @@ public class CajaService {
         mov.setConcepto("Retiro: " + dto.getMotivo());
         mov.setMonto(dto.getMonto());
         mov.setMetodoPago("EFECTIVO"); 
+        mov.setOrigen(TotalesCajaService.ORIGEN_RETIRO);
         mov.setUsuario(operario);
         mov.setFecha(LocalDateTime.now());
         movimientoCajaRepository.save(mov);
@@ -174,6 +187,7 @@ public class CajaService {
         mov.setConcepto("Ingreso Extra: " + dto.getMotivo());
         mov.setMonto(dto.getMonto());
         mov.setMetodoPago("EFECTIVO"); 
+        mov.setOrigen(TotalesCajaService.ORIGEN_INGRESO_EXTRA);
         mov.setUsuario(operario);
         mov.setFecha(LocalDateTime.now());
         movimientoCajaRepository.save(mov);
@@ -216,7 +230,7 @@ public class CajaService {
             audit.setValorAnterior(anterior);
             audit.setValorNuevo(nuevo);
 
-            auditoriaRepository.save(audit);
+            auditoriaService.guardar(audit);
         } catch (Exception e) {
             System.err.println("Error al registrar auditoría de caja: " + e.getMessage());
         }
@@ -128,7 +128,8 @@ public class CarritoService {
     }
 
     // --- MÉTODO SIN SETTERS DE FECHA ---
-    private CarritoDTO mapAndCalculateTotals(Carrito carrito) {
+    // Package-private y estático: lo mide el módulo productos-benchmarks
+    static CarritoDTO mapAndCalculateTotals(Carrito carrito) {
         BigDecimal total = BigDecimal.ZERO;
         int cantidadTotalItems = 0;
         
@@ -0,0 +1,334 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.dto.ProductoPublicoDTO;
+import com.masterserv.productos.dto.ProductoPublicoFiltroDTO;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.event.CategoriaActualizadaEvent;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.event.StockActualizadoEvent;
+import com.masterserv.productos.mapper.ProductoMapper;
+import com.masterserv.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Catálogo público en memoria (modelo de lectura).
+ * El catálogo se lee muchísimo más de lo que cambia: en vez de ir a Postgres con
+ * ProductoSpecification y mapear cada fila en cada request, se guarda un ProductoPublicoDTO
+ * por producto ACTIVO, indexado por categoría, precio y "tiene stock".
+ *
+ * Los DTO publicados no se modifican nunca: un cambio arma uno nuevo y reemplaza al anterior,
+ * así los lectores no necesitan locks. Los índices solo acotan candidatos; cada candidato se
+ * vuelve a comparar contra su DTO, así que un índice desfasado por un instante no da resultados falsos.
+ *
+ * Se refresca por eventos (stock, producto, categoría) después del commit, juntando los
+ * productos tocados y recargándolos en una sola consulta cada app.catalogo.refresco-ms.
+ * Mientras no terminó la carga inicial, o si el pedido no se puede resolver acá,
+ * buscar() devuelve vacío y el llamador va a la base como antes.
+ */
+@Service
+public class CatalogoMemoriaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoMemoriaService.class);
+
+    // Campos por los que se puede ordenar en memoria; cualquier otro sort va a la base.
+    private static final Map<String, Comparator<ProductoPublicoDTO>> ORDENES = Map.of(
+            "id", Comparator.comparing(ProductoPublicoDTO::getId, Comparator.nullsLast(Comparator.naturalOrder())),
+            "nombre", Comparator.comparing(ProductoPublicoDTO::getNombre, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "codigo", Comparator.comparing(ProductoPublicoDTO::getCodigo, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "precioVenta", Comparator.comparing(ProductoPublicoDTO::getPrecioVenta, Comparator.nullsLast(Comparator.naturalOrder())),
+            "stockActual", Comparator.comparing(ProductoPublicoDTO::getStockActual, Comparator.nullsLast(Comparator.naturalOrder())),
+            "stockMinimo", Comparator.comparingInt(ProductoPublicoDTO::getStockMinimo)
+    );
+
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private ProductoMapper productoMapper;
+    @Autowired private BusquedaProductoService busquedaProductoService;
+    @Autowired private CatalogoVersionService catalogoVersionService;
+
+    private record Entrada(ProductoPublicoDTO dto, Long categoriaId) {}
+
+    private final Map<Long, Entrada> productos = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> porCategoria = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<BigDecimal, Set<Long>> porPrecio = new ConcurrentSkipListMap<>();
+    private final Set<Long> conStock = ConcurrentHashMap.newKeySet();
+
+    // Productos tocados desde el último refresco
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    // Un solo escritor a la vez (refresco incremental o resincronización completa)
+    private final Object escritura = new Object();
+    private volatile boolean listo = false;
+
+    private final Counter aciertos;
+    private final Counter derivadas;
+
+    public CatalogoMemoriaService(MeterRegistry registry) {
+        this.aciertos = Counter.builder("catalogo.memoria.consultas")
+                .description("Consultas del catálogo resueltas en memoria").register(registry);
+        this.derivadas = Counter.builder("catalogo.memoria.derivadas")
+                .description("Consultas del catálogo que fueron a la base").register(registry);
+        Gauge.builder("catalogo.memoria.productos", productos, Map::size).register(registry);
+        Gauge.builder("catalogo.memoria.pendientes", pendientes, Set::size).register(registry);
+    }
+
+    /**
+     * Busca en el catálogo en memoria con la misma semántica que ProductoSpecification
+     * para el público (solo ACTIVO, categorías, rango de precio, solo con stock).
+     * El nombre se busca con BusquedaProductoService. Sin orden explícito se ordena por
+     * relevancia si hay búsqueda por nombre, o por ID si no la hay.
+     *
+     * @return vacío si la consulta debe ir a la base (catálogo o índice de búsqueda aún no
+     *         cargados, u orden por un campo que no está en el DTO).
+     */
+    public Optional<Page<ProductoPublicoDTO>> buscar(ProductoPublicoFiltroDTO filtro, Pageable pageable) {
+        Comparator<ProductoPublicoDTO> orden = comparador(pageable.getSort());
+        boolean porTexto = filtro != null && filtro.getNombre() != null && !filtro.getNombre().isBlank();
+        Optional<List<Long>> encontrados = porTexto ? busquedaProductoService.buscar(filtro.getNombre()) : Optional.empty();
+        if (!listo || orden == null || (porTexto && encontrados.isEmpty())) {
+            derivadas.increment();
+            return Optional.empty();
+        }
+
+        List<ProductoPublicoDTO> resultado = new ArrayList<>();
+        for (Long id : porTexto ? encontrados.get() : candidatos(filtro)) {
+            Entrada entrada = productos.get(id);
+            if (entrada != null && cumple(entrada, filtro)) {
+                resultado.add(entrada.dto());
+            }
+        }
+        // La búsqueda por nombre ya viene ordenada por relevancia
+        if (!porTexto || pageable.getSort().isSorted()) {
+            resultado.sort(orden);
+        }
+        aciertos.increment();
+
+        if (pageable.isUnpaged()) {
+            return Optional.of(new PageImpl<>(resultado, pageable, resultado.size()));
+        }
+        int desde = (int) Math.min(pageable.getOffset(), resultado.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), resultado.size());
+        return Optional.of(new PageImpl<>(new ArrayList<>(resultado.subList(desde, hasta)), pageable, resultado.size()));
+    }
+
+    // --- Eventos: solo marcan el producto; el refresco lo recarga junto con los demás ---
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockActualizado(StockActualizadoEvent event) {
+        pendientes.add(event.productoId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent event) {
+        pendientes.add(event.productoId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoriaActualizada(CategoriaActualizadaEvent event) {
+        pendientes.addAll(porCategoria.getOrDefault(event.categoriaId(), Set.of()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogo.refresco-ms:1000}")
+    public void aplicarPendientes() {
+        if (!listo) return;
+
+        // La lectura va dentro del lock: si no, una resincronización (o otro refresco) que leyó
+        // antes podría aplicar su foto después de esta y dejar el catálogo con datos viejos.
+        // Mirar 'pendientes' adentro hace que, si otro refresco ya tomó el lote, se espere a que lo aplique.
+        synchronized (escritura) {
+            if (pendientes.isEmpty()) return;
+            Set<Long> lote = new HashSet<>(pendientes);
+            pendientes.removeAll(lote);
+            try {
+                List<Producto> recargados = productoRepository.findAllByIdInConCategoria(lote);
+                Set<Long> vistos = new HashSet<>();
+                for (Producto p : recargados) {
+                    vistos.add(p.getId());
+                    if ("ACTIVO".equals(p.getEstado())) poner(p);
+                    else quitar(p.getId());
+                }
+                // Los que ya no existen salen del catálogo
+                for (Long id : lote) {
+                    if (!vistos.contains(id)) quitar(id);
+                }
+                // Lo servido con el ETag anterior pudo salir de la foto vieja: se invalida recién ahora
+                catalogoVersionService.incrementar();
+            } catch (Exception e) {
+                // Se reintentan en la próxima vuelta
+                pendientes.addAll(lote);
+                logger.error("❌ Error refrescando catálogo en memoria: {}", e.getMessage());
+            }
+        }
+    }
+
+    // --- Carga completa: al arrancar y, como red de seguridad, cada tanto ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        resincronizar();
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogo.resincronizar-ms:600000}",
+               initialDelayString = "${app.catalogo.resincronizar-ms:600000}")
+    public void resincronizar() {
+        // Foto tomada con el lock: un refresco incremental aplicado antes no puede quedar pisado por ella.
+        // Lo que cambie después de leerla ya está en 'pendientes' y lo aplica el próximo refresco.
+        synchronized (escritura) {
+            try {
+                long inicio = System.currentTimeMillis();
+                List<Producto> activos = productoRepository.findActivosConCategoria();
+                Set<Long> vigentes = new HashSet<>();
+                boolean cambios = false;
+                for (Producto p : activos) {
+                    cambios |= poner(p);
+                    vigentes.add(p.getId());
+                }
+                for (Long id : new ArrayList<>(productos.keySet())) {
+                    if (!vigentes.contains(id)) cambios |= quitar(id);
+                }
+                listo = true;
+                if (cambios) catalogoVersionService.incrementar();
+                logger.info("📦 Catálogo en memoria: {} productos ({} ms).", productos.size(), System.currentTimeMillis() - inicio);
+            } catch (Exception e) {
+                logger.error("❌ Error cargando catálogo en memoria (se sigue consultando la base): {}", e.getMessage());
+            }
+        }
+    }
+
+    // --- Índices (llamar con el lock de escritura) ---
+
+    // Ambos devuelven si el catálogo cambió (la resincronización solo sube la versión si hubo cambios)
+    private boolean poner(Producto p) {
+        Long categoriaId = p.getCategoria() != null ? p.getCategoria().getId() : null;
+        Entrada nueva = new Entrada(productoMapper.toProductoPublicoDTO(p), categoriaId);
+        Entrada vieja = productos.put(p.getId(), nueva);
+        if (vieja != null) desindexar(p.getId(), vieja);
+        indexar(p.getId(), nueva);
+        return !nueva.equals(vieja);
+    }
+
+    private boolean quitar(Long id) {
+        Entrada vieja = productos.remove(id);
+        if (vieja != null) desindexar(id, vieja);
+        return vieja != null;
+    }
+
+    private void indexar(Long id, Entrada e) {
+        if (e.categoriaId() != null) {
+            porCategoria.computeIfAbsent(e.categoriaId(), k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        if (e.dto().getPrecioVenta() != null) {
+            porPrecio.computeIfAbsent(e.dto().getPrecioVenta(), k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        if (tieneStock(e.dto())) conStock.add(id);
+    }
+
+    private void desindexar(Long id, Entrada e) {
+        if (e.categoriaId() != null) {
+            porCategoria.computeIfPresent(e.categoriaId(), (k, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+        }
+        if (e.dto().getPrecioVenta() != null) {
+            porPrecio.computeIfPresent(e.dto().getPrecioVenta(), (k, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+        }
+        // Si el producto sigue con stock, indexar() lo vuelve a agregar enseguida
+        conStock.remove(id);
+    }
+
+    // --- Consulta ---
+
+    // Elige el índice más chico de los que aplican al filtro
+    private Collection<Long> candidatos(ProductoPublicoFiltroDTO filtro) {
+        Collection<Long> mejor = productos.keySet();
+        if (filtro == null) return mejor;
+
+        if (filtro.getCategoriaIds() != null && !filtro.getCategoriaIds().isEmpty()) {
+            Set<Long> ids = new HashSet<>();
+            for (Long categoriaId : filtro.getCategoriaIds()) {
+                ids.addAll(porCategoria.getOrDefault(categoriaId, Set.of()));
+            }
+            mejor = ids;
+        }
+        if (filtro.getPrecioMin() != null || filtro.getPrecioMax() != null) {
+            Map<BigDecimal, Set<Long>> rango = porPrecio;
+            if (filtro.getPrecioMin() != null && filtro.getPrecioMax() != null) {
+                rango = filtro.getPrecioMin().compareTo(filtro.getPrecioMax()) <= 0
+                        ? porPrecio.subMap(filtro.getPrecioMin(), true, filtro.getPrecioMax(), true)
+                        : Map.of();
+            } else if (filtro.getPrecioMin() != null) {
+                rango = porPrecio.tailMap(filtro.getPrecioMin(), true);
+            } else {
+                rango = porPrecio.headMap(filtro.getPrecioMax(), true);
+            }
+            Set<Long> ids = new HashSet<>();
+            rango.values().forEach(ids::addAll);
+            if (ids.size() < mejor.size()) mejor = ids;
+        }
+        if (Boolean.TRUE.equals(filtro.getSoloConStock()) && conStock.size() < mejor.size()) {
+            mejor = conStock;
+        }
+        return mejor;
+    }
+
+    private static boolean cumple(Entrada e, ProductoPublicoFiltroDTO filtro) {
+        if (filtro == null) return true;
+        ProductoPublicoDTO dto = e.dto();
+        if (filtro.getCategoriaIds() != null && !filtro.getCategoriaIds().isEmpty()
+                && !filtro.getCategoriaIds().contains(e.categoriaId())) {
+            return false;
+        }
+        if (filtro.getPrecioMin() != null
+                && (dto.getPrecioVenta() == null || dto.getPrecioVenta().compareTo(filtro.getPrecioMin()) < 0)) {
+            return false;
+        }
+        if (filtro.getPrecioMax() != null
+                && (dto.getPrecioVenta() == null || dto.getPrecioVenta().compareTo(filtro.getPrecioMax()) > 0)) {
+            return false;
+        }
+        return !Boolean.TRUE.equals(filtro.getSoloConStock()) || tieneStock(dto);
+    }
+
+    private static boolean tieneStock(ProductoPublicoDTO dto) {
+        return dto.getStockActual() != null && dto.getStockActual() > 0;
+    }
+
+    /**
+     * Traduce el Sort del Pageable a un comparador. Sin orden: por ID.
+     * Devuelve null si algún campo no se puede ordenar en memoria.
+     */
+    private static Comparator<ProductoPublicoDTO> comparador(Sort sort) {
+        Comparator<ProductoPublicoDTO> resultado = null;
+        for (Sort.Order order : sort) {
+            Comparator<ProductoPublicoDTO> campo = ORDENES.get(order.getProperty());
+            if (campo == null) return null;
+            if (order.isDescending()) campo = campo.reversed();
+            resultado = resultado == null ? campo : resultado.thenComparing(campo);
+        }
+        Comparator<ProductoPublicoDTO> porId = ORDENES.get("id");
+        return resultado == null ? porId : resultado.thenComparing(porId);
+    }
+}
@@ -0,0 +1,81 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.event.CategoriaActualizadaEvent;
+import com.masterserv.productos.event.EmpresaConfigActualizadaEvent;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.event.StockActualizadoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión del catálogo para los ETag de los datos "casi estáticos" que cada sesión del navegador
+ * pide una y otra vez (catálogo público, categorías, tipos de documento, configuración).
+ *
+ * Sube con cada escritura de Producto, Categoria o EmpresaConfig (después del commit) y cuando
+ * el catálogo en memoria aplica cambios. Mientras no suba, el controlador contesta 304 sin
+ * consultar nada. Arranca en el reloj para que un reinicio no repita versiones viejas.
+ */
+@Service
+public class CatalogoVersionService {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private final Counter noModificados;
+
+    public CatalogoVersionService(MeterRegistry registry) {
+        this.noModificados = Counter.builder("catalogo.etag.no-modificado")
+                .description("Respuestas 304 por ETag vigente").register(registry);
+        Gauge.builder("catalogo.version", version, AtomicLong::get).register(registry);
+    }
+
+    public long actual() {
+        return version.get();
+    }
+
+    /** ETag fuerte de la versión actual. */
+    public String etag() {
+        return "\"catalogo-" + version.get() + "\"";
+    }
+
+    /**
+     * Compara contra If-None-Match. Si el cliente ya tiene esta versión deja la respuesta en 304
+     * (con el ETag) y devuelve true: el controlador no debe ejecutar la consulta.
+     */
+    public boolean noModificado(WebRequest request, String etag) {
+        boolean vigente = request.checkNotModified(etag);
+        if (vigente) noModificados.increment();
+        return vigente;
+    }
+
+    public void incrementar() {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent event) {
+        incrementar();
+    }
+
+    // El catálogo muestra el stock
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockActualizado(StockActualizadoEvent event) {
+        incrementar();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoriaActualizada(CategoriaActualizadaEvent event) {
+        incrementar();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEmpresaConfigActualizada(EmpresaConfigActualizadaEvent event) {
+        incrementar();
+    }
+}
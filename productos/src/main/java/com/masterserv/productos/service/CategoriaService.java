@@ -2,9 +2,11 @@ package com.masterserv.productos.service;
 
 import com.masterserv.productos.dto.CategoriaDTO;
 import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.event.CategoriaActualizadaEvent;
 import com.masterserv.productos.mapper.CategoriaMapper;
 import com.masterserv.productos.repository.CategoriaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,9 @@ public class CategoriaService {
     @Autowired
     private CategoriaMapper categoriaMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // --- ¡MÉTODO CORREGIDO! ---
     @Transactional(readOnly = true)
     public List<CategoriaDTO> findAll(String estado) { 
@@ -56,6 +61,7 @@ public class CategoriaService {
         Categoria categoria = categoriaMapper.toCategoria(categoriaDTO);
         categoria.setEstado("ACTIVO"); 
         Categoria categoriaGuardada = categoriaRepository.save(categoria);
+        eventPublisher.publishEvent(new CategoriaActualizadaEvent(categoriaGuardada.getId()));
         return categoriaMapper.toCategoriaDTO(categoriaGuardada);
     }
 
@@ -77,6 +83,8 @@ public class CategoriaService {
         }
         
         Categoria categoriaActualizada = categoriaRepository.save(categoriaExistente);
+        // El catálogo en memoria muestra el nombre de la categoría en cada producto
+        eventPublisher.publishEvent(new CategoriaActualizadaEvent(id));
         return categoriaMapper.toCategoriaDTO(categoriaActualizada);
     }
 
@@ -87,6 +95,7 @@ public class CategoriaService {
         
         categoria.setEstado("INACTIVO");
         categoriaRepository.save(categoria);
+        eventPublisher.publishEvent(new CategoriaActualizadaEvent(id));
     }
     
      @Transactional
@@ -95,5 +104,6 @@ public class CategoriaService {
                  .orElseThrow(() -> new RuntimeException("Categoría no encontrada con id: " + id));
          categoria.setEstado("ACTIVO");
          categoriaRepository.save(categoria);
+         eventPublisher.publishEvent(new CategoriaActualizadaEvent(id));
      }
 }
\ No newline at end of file
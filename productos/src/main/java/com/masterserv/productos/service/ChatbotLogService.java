@@ -3,6 +3,7 @@ package com.masterserv.productos.service;
 import com.masterserv.productos.entity.InteraccionChatbot;
 import com.masterserv.productos.entity.Usuario;
 import com.masterserv.productos.repository.InteraccionChatbotRepository;
+import com.masterserv.productos.config.AsyncConfig;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -20,7 +21,7 @@ public class ChatbotLogService {
     }
 
     // ✅ Al ser una clase pública externa, @Async AHORA SÍ FUNCIONA
-    @Async 
+    @Async(AsyncConfig.CHATBOT_LOG)
     @Transactional(propagation = Propagation.REQUIRES_NEW) // Crea una transacción nueva e independiente
     public void registrarInteraccion(String in, String out, Usuario u) {
         try {
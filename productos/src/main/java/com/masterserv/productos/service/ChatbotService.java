@@ -42,6 +42,8 @@ public class ChatbotService {
     private final CuponService cuponService;
     private final AlertaService alertaService;
     private final SesionChatRepository sesionRepository;
+    private final BusquedaProductoService busquedaProductoService;
+    private final ImagenService imagenService;
 
     public ChatbotService(UsuarioRepository usuarioRepository,
                           ProductoRepository productoRepository,
@@ -53,7 +55,9 @@ public class ChatbotService {
                           ListaEsperaRepository listaEsperaRepository,
                           CuponService cuponService,
                           AlertaService alertaService,
-                          SesionChatRepository sesionRepository) {
+                          SesionChatRepository sesionRepository,
+                          BusquedaProductoService busquedaProductoService,
+                          ImagenService imagenService) {
         this.usuarioRepository = usuarioRepository;
         this.productoRepository = productoRepository;
         this.interaccionRepository = interaccionRepository;
@@ -65,6 +69,8 @@ public class ChatbotService {
         this.cuponService = cuponService;
         this.alertaService = alertaService;
         this.sesionRepository = sesionRepository;
+        this.busquedaProductoService = busquedaProductoService;
+        this.imagenService = imagenService;
     }
 
     private static class BotResponse {
@@ -223,7 +229,10 @@ public class ChatbotService {
         Pageable top5 = PageRequest.of(0, 5);
         List<Producto> encontrados;
         try {
-             encontrados = productoRepository.buscarFlexible(termino, top5).getContent();
+             // Índice en memoria (sin tildes, por relevancia); buscarFlexible solo si aún no cargó
+             encontrados = busquedaProductoService.buscar(termino)
+                     .map(ids -> busquedaProductoService.cargarEnOrden(ids.subList(0, Math.min(5, ids.size()))))
+                     .orElseGet(() -> productoRepository.buscarFlexible(termino, top5).getContent());
         } catch (Exception e) {
              encontrados = productoRepository.findByNombreILike(termino, top5);
         }
@@ -447,7 +456,9 @@ public class ChatbotService {
 
     private BotResponse formatearRespuestaProducto(Producto p) {
         String precioStr = (p.getPrecioVenta() != null) ? String.format("$%,.2f", p.getPrecioVenta().doubleValue()) : "Consultar";
-        String imagen = (p.getImagenUrl() != null && p.getImagenUrl().startsWith("http")) ? p.getImagenUrl() : null;
+        // WhatsApp descarga la imagen: alcanza la miniatura (la URL tiene que ser absoluta)
+        String miniatura = imagenService.urlMiniatura(p.getImagenUrl());
+        String imagen = (miniatura != null && miniatura.startsWith("http")) ? miniatura : null;
         return new BotResponse("✅ *¡Sí hay stock!*\n📦 " + p.getNombre() + "\n💲 " + precioStr + "\n🟢 Disponibles: " + p.getStockActual() + "\n📍 Ven al local.", imagen);
     }
     
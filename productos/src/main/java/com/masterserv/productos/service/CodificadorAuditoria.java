@@ -0,0 +1,229 @@
+package com.masterserv.productos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.masterserv.productos.entity.Auditoria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato compacto de los valores de auditoría.
+ *
+ * Antes cada log guardaba dos documentos JSON completos (valor_anterior y valor_nuevo), muchas
+ * veces la entidad entera dos veces para cambiar un campo. Ahora se guarda UN parche estilo
+ * JSON-Patch (RFC 6902) en la columna "cambios":
+ *
+ *   [{"op":"replace","path":"/precioVenta","old":30000,"value":32500}]
+ *
+ * "add" y "replace" llevan el valor nuevo; "remove" y "replace" llevan además el anterior en
+ * "old" (extensión propia: el RFC no lo necesita, pero sin él no se puede reconstruir el "antes").
+ * Los objetos se comparan campo a campo; arrays y escalares se reemplazan enteros.
+ *
+ * Las auditorías manuales (ventas, stock, caja) traen JSON armado a mano donde los campos que no
+ * cambian son contexto ("Retiros anteriores", "Detalle"...): esas se guardan enteras, con una sola
+ * operación sobre la raíz (path ""), y se reconstruyen tal cual se escribieron.
+ * Si el parche supera app.auditoria.compresion-umbral bytes se guarda en gzip en
+ * "cambios_comprimidos" y "cambios" queda en null.
+ *
+ * Al leer, vista() reconstruye los dos documentos; las filas viejas (sin parche) se devuelven tal cual.
+ */
+@Component
+public class CodificadorAuditoria {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodificadorAuditoria.class);
+
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${app.auditoria.compresion-umbral:1024}")
+    private int umbralCompresion;
+
+    /** Valores completos de un log, como los guardaba la auditoría antes del parche. */
+    public record Vista(String valorAnterior, String valorNuevo) {}
+
+    /** Parche entre dos estados (mapas, DTOs o null). */
+    public String parche(Object antes, Object despues) {
+        ArrayNode ops = objectMapper.createArrayNode();
+        diferencias(arbol(antes), arbol(despues), "", ops);
+        return ops.toString();
+    }
+
+    /**
+     * Deja el log listo para insertar: si trae valorAnterior/valorNuevo en JSON (las auditorías
+     * manuales de ventas, stock y caja) los pasa a la columna de cambios como documentos enteros,
+     * y comprime si es grande. Si no son JSON se dejan como texto en las columnas viejas. Es idempotente.
+     */
+    public void codificar(Auditoria a) {
+        if (a.getCambios() == null && a.getCambiosComprimidos() == null
+                && (a.getValorAnterior() != null || a.getValorNuevo() != null)) {
+            try {
+                JsonNode antes = leer(a.getValorAnterior());
+                JsonNode despues = leer(a.getValorNuevo());
+                a.setCambios(documentosEnteros(antes, despues).toString());
+                a.setValorAnterior(null);
+                a.setValorNuevo(null);
+            } catch (JsonProcessingException e) {
+                return; // texto libre: queda como estaba
+            }
+        }
+        if (a.getCambios() != null) {
+            byte[] crudo = a.getCambios().getBytes(StandardCharsets.UTF_8);
+            if (crudo.length > umbralCompresion) {
+                a.setCambiosComprimidos(comprimir(crudo));
+                a.setCambios(null);
+            }
+        }
+    }
+
+    public Vista vista(Auditoria a) {
+        return vista(a.getCambios(), a.getCambiosComprimidos(), a.getValorAnterior(), a.getValorNuevo());
+    }
+
+    /** Para quien lee las columnas por JDBC (exportaciones). */
+    public Vista vista(String cambios, byte[] cambiosComprimidos, String valorAnterior, String valorNuevo) {
+        if (cambiosComprimidos != null) {
+            cambios = new String(descomprimir(cambiosComprimidos), StandardCharsets.UTF_8);
+        }
+        if (cambios == null) {
+            return new Vista(valorAnterior, valorNuevo);
+        }
+        try {
+            JsonNode[] raices = new JsonNode[2]; // [antes, despues]
+            for (JsonNode op : objectMapper.readTree(cambios)) {
+                String tipo = op.path("op").asText();
+                String path = op.path("path").asText();
+                if (!"add".equals(tipo)) raices[0] = poner(raices[0], path, op.get("old"));
+                if (!"remove".equals(tipo)) raices[1] = poner(raices[1], path, op.get("value"));
+            }
+            return new Vista(texto(raices[0]), texto(raices[1]));
+        } catch (JsonProcessingException e) {
+            logger.warn("⚠️ Parche de auditoría ilegible: {}", e.getMessage());
+            return new Vista(valorAnterior, valorNuevo);
+        }
+    }
+
+    // --- Diff ---
+
+    private void diferencias(JsonNode antes, JsonNode despues, String path, ArrayNode ops) {
+        if (antes instanceof ObjectNode a && despues instanceof ObjectNode d) {
+            Iterator<Map.Entry<String, JsonNode>> campos = a.fields();
+            while (campos.hasNext()) {
+                Map.Entry<String, JsonNode> campo = campos.next();
+                String hijo = path + "/" + escapar(campo.getKey());
+                if (d.has(campo.getKey())) {
+                    diferencias(campo.getValue(), d.get(campo.getKey()), hijo, ops);
+                } else {
+                    ops.addObject().put("op", "remove").put("path", hijo).set("old", campo.getValue());
+                }
+            }
+            campos = d.fields();
+            while (campos.hasNext()) {
+                Map.Entry<String, JsonNode> campo = campos.next();
+                if (!a.has(campo.getKey())) {
+                    ops.addObject().put("op", "add").put("path", path + "/" + escapar(campo.getKey()))
+                            .set("value", campo.getValue());
+                }
+            }
+        } else if (antes == null && despues instanceof ObjectNode) {
+            diferencias(objectMapper.createObjectNode(), despues, path, ops); // CREAR: un "add" por campo
+        } else if (despues == null && antes instanceof ObjectNode) {
+            diferencias(antes, objectMapper.createObjectNode(), path, ops); // ELIMINAR: un "remove" por campo
+        } else if (antes == null) {
+            if (despues != null) ops.addObject().put("op", "add").put("path", path).set("value", despues);
+        } else if (despues == null) {
+            ops.addObject().put("op", "remove").put("path", path).set("old", antes);
+        } else if (!antes.equals(despues)) {
+            ObjectNode op = ops.addObject().put("op", "replace").put("path", path);
+            op.set("old", antes);
+            op.set("value", despues);
+        }
+    }
+
+    // Sin diff: una op sobre la raíz con los dos documentos, así no se pierde ningún campo
+    private ArrayNode documentosEnteros(JsonNode antes, JsonNode despues) {
+        ArrayNode ops = objectMapper.createArrayNode();
+        if (antes != null && despues != null) {
+            ObjectNode op = ops.addObject().put("op", "replace").put("path", "");
+            op.set("old", antes);
+            op.set("value", despues);
+        } else if (despues != null) {
+            ops.addObject().put("op", "add").put("path", "").set("value", despues);
+        } else if (antes != null) {
+            ops.addObject().put("op", "remove").put("path", "").set("old", antes);
+        }
+        return ops;
+    }
+
+    // Reconstrucción: path "" es el documento entero
+    private JsonNode poner(JsonNode raiz, String path, JsonNode valor) {
+        if (path.isEmpty()) return valor;
+        ObjectNode actual = raiz instanceof ObjectNode o ? o : objectMapper.createObjectNode();
+        ObjectNode resultado = actual;
+        String[] partes = path.substring(1).split("/", -1);
+        for (int i = 0; i < partes.length - 1; i++) {
+            String clave = desescapar(partes[i]);
+            JsonNode siguiente = actual.get(clave);
+            actual = siguiente instanceof ObjectNode o ? o : actual.putObject(clave);
+        }
+        actual.set(desescapar(partes[partes.length - 1]), valor);
+        return resultado;
+    }
+
+    // RFC 6901: "~" -> "~0", "/" -> "~1"
+    private static String escapar(String clave) {
+        return clave.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String desescapar(String parte) {
+        return parte.replace("~1", "/").replace("~0", "~");
+    }
+
+    private JsonNode arbol(Object valor) {
+        return valor != null ? objectMapper.valueToTree(valor) : null;
+    }
+
+    private JsonNode leer(String json) throws JsonProcessingException {
+        return json != null && !json.isBlank() ? objectMapper.readTree(json) : null;
+    }
+
+    // Un lado sin campos (el "antes" de un CREAR, el "después" de un ELIMINAR) se muestra como null
+    private static String texto(JsonNode nodo) {
+        if (nodo == null || (nodo.isObject() && nodo.isEmpty())) return null;
+        return nodo.toString();
+    }
+
+    // --- gzip ---
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(datos.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] descomprimir(byte[] datos) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(datos))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
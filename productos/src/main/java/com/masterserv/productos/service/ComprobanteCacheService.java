@@ -0,0 +1,252 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.Venta;
+import com.masterserv.productos.enums.EstadoVenta;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caché de comprobantes de venta (PDF).
+ *
+ * Un comprobante de una venta COMPLETADA no cambia nunca, salvo que la venta se anule.
+ * Se genera una sola vez (al enviarse el email de la venta) y las reimpresiones salen de acá
+ * sin volver a cargar la venta ni a renderizar el PDF.
+ *
+ * Dos niveles:
+ *  - memoria: LRU acotado por bytes (hash -> PDF).
+ *  - disco: archivos direccionados por contenido ({sha256}.pdf). Lo que sale de memoria
+ *    se sigue sirviendo desde disco, como FileSystemResource (sin pasar el PDF por el heap).
+ *
+ * La clave lógica es (ventaId, estado). cancelarVenta llama a invalidar() y deja una marca
+ * para que un render "viejo" en vuelo no vuelva a guardar el comprobante de COMPLETADA.
+ * Las marcas tienen el mismo tope que el índice (app.comprobantes.cache.disco-max-entradas):
+ * un render en vuelo dura segundos, así que olvidar las anulaciones más viejas no abre nada.
+ */
+@Service
+public class ComprobanteCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ComprobanteCacheService.class);
+
+    @Autowired private PdfService pdfService;
+
+    @Value("${app.comprobantes.cache.memoria-max-bytes:8388608}")
+    private long memoriaMaxBytes;
+
+    @Value("${app.comprobantes.cache.disco-max-entradas:5000}")
+    private int discoMaxEntradas;
+
+    @Value("${app.comprobantes.cache.directorio:${java.io.tmpdir}/masterserv-comprobantes}")
+    private String directorio;
+
+    private Path raiz;
+
+    /** Comprobante listo para servir. clienteEmail permite validar el acceso sin cargar la venta. */
+    public record ComprobanteCacheado(Long ventaId, EstadoVenta estado, String clienteEmail, Resource contenido, long tamano) {}
+
+    private record Entrada(EstadoVenta estado, String hash, String clienteEmail, long tamano) {}
+
+    // ventaId -> entrada (orden de inserción: las más viejas salen primero al superar el tope de disco)
+    private final LinkedHashMap<Long, Entrada> indice = new LinkedHashMap<>();
+
+    // hash -> bytes, en orden de acceso (LRU)
+    private final LinkedHashMap<String, byte[]> memoria = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoriaBytes = 0;
+
+    // Ventas anuladas, en orden de anulación (las más viejas se olvidan primero al superar el tope)
+    private final LinkedHashSet<Long> anuladas = new LinkedHashSet<>();
+
+    @PostConstruct
+    public void inicializar() {
+        raiz = Paths.get(directorio);
+        try {
+            Files.createDirectories(raiz);
+            // El índice vive en memoria: lo que quedó de una ejecución anterior no se puede reutilizar
+            try (DirectoryStream<Path> viejos = Files.newDirectoryStream(raiz, "*.pdf")) {
+                for (Path p : viejos) Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo preparar el directorio de comprobantes {}: {}", raiz, e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve el comprobante si está en caché (memoria o disco).
+     */
+    public Optional<ComprobanteCacheado> obtener(Long ventaId) {
+        Entrada entrada;
+        byte[] bytes;
+        synchronized (this) {
+            entrada = indice.get(ventaId);
+            if (entrada == null) return Optional.empty();
+            bytes = memoria.get(entrada.hash());
+        }
+        if (bytes != null) {
+            return Optional.of(new ComprobanteCacheado(ventaId, entrada.estado(), entrada.clienteEmail(),
+                    new ByteArrayResource(bytes), bytes.length));
+        }
+        Path archivo = raiz.resolve(entrada.hash() + ".pdf");
+        if (!Files.isReadable(archivo)) {
+            synchronized (this) { indice.remove(ventaId, entrada); }
+            return Optional.empty();
+        }
+        return Optional.of(new ComprobanteCacheado(ventaId, entrada.estado(), entrada.clienteEmail(),
+                new FileSystemResource(archivo), entrada.tamano()));
+    }
+
+    /**
+     * Devuelve el PDF cacheado de la venta o lo genera y lo guarda.
+     * La venta debe venir con sus detalles cargados (findByIdWithDetails).
+     */
+    public byte[] obtenerOGenerar(Venta venta) {
+        Optional<ComprobanteCacheado> cacheado = obtener(venta.getId());
+        if (cacheado.isPresent() && cacheado.get().estado() == venta.getEstado()) {
+            try {
+                return cacheado.get().contenido().getContentAsByteArray();
+            } catch (IOException e) {
+                logger.warn("⚠️ Comprobante #{} ilegible en disco, se regenera: {}", venta.getId(), e.getMessage());
+            }
+        }
+        byte[] pdf = pdfService.generarComprobanteVenta(venta);
+        guardar(venta, pdf);
+        return pdf;
+    }
+
+    public void guardar(Venta venta, byte[] pdf) {
+        if (pdf == null || pdf.length == 0) return;
+        Long ventaId = venta.getId();
+        if (anulada(venta)) return;
+
+        String hash = sha256(pdf);
+        Path archivo = raiz.resolve(hash + ".pdf");
+        try {
+            if (!Files.exists(archivo)) {
+                Path tmp = Files.createTempFile(raiz, hash, ".tmp");
+                Files.write(tmp, pdf);
+                Files.move(tmp, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo escribir el comprobante #{} en disco: {}", ventaId, e.getMessage());
+            archivo = null;
+        }
+
+        String clienteEmail = venta.getCliente() != null ? venta.getCliente().getEmail() : null;
+        synchronized (this) {
+            // La anulación pudo llegar mientras se escribía el archivo
+            if (anulada(venta)) {
+                descartarContenido(hash);
+                return;
+            }
+            Entrada anterior = indice.put(ventaId, new Entrada(venta.getEstado(), hash, clienteEmail, pdf.length));
+            if (anterior != null && !anterior.hash().equals(hash)) descartarContenido(anterior.hash());
+
+            if (pdf.length <= memoriaMaxBytes && memoria.put(hash, pdf) == null) {
+                memoriaBytes += pdf.length;
+            }
+            recortar();
+            // Sin copia en disco, la entrada solo sirve mientras siga en memoria
+            if (archivo == null && !memoria.containsKey(hash)) indice.remove(ventaId);
+        }
+    }
+
+    /**
+     * Saca el comprobante de la venta. Con transacción activa se aplica también después
+     * del commit, para cubrir un render que haya leído el estado anterior.
+     */
+    public void invalidar(Long ventaId) {
+        synchronized (this) {
+            anuladas.add(ventaId);
+            Iterator<Long> it = anuladas.iterator();
+            while (anuladas.size() > discoMaxEntradas && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        quitar(ventaId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        quitar(ventaId);
+                    } else {
+                        synchronized (ComprobanteCacheService.this) { anuladas.remove(ventaId); }
+                    }
+                }
+            });
+        }
+    }
+
+    // Render iniciado antes de la anulación: no debe pisar la invalidación
+    private synchronized boolean anulada(Venta venta) {
+        return venta.getEstado() != EstadoVenta.CANCELADA && anuladas.contains(venta.getId());
+    }
+
+    private void quitar(Long ventaId) {
+        synchronized (this) {
+            Entrada entrada = indice.remove(ventaId);
+            if (entrada != null) descartarContenido(entrada.hash());
+        }
+    }
+
+    // Llamar con el lock tomado
+    private void recortar() {
+        Iterator<Map.Entry<String, byte[]>> itMem = memoria.entrySet().iterator();
+        while (memoriaBytes > memoriaMaxBytes && itMem.hasNext()) {
+            memoriaBytes -= itMem.next().getValue().length;
+            itMem.remove();
+        }
+        Iterator<Map.Entry<Long, Entrada>> itIdx = indice.entrySet().iterator();
+        while (indice.size() > discoMaxEntradas && itIdx.hasNext()) {
+            String hash = itIdx.next().getValue().hash();
+            itIdx.remove();
+            descartarContenido(hash);
+        }
+    }
+
+    // Llamar con el lock tomado. Cada venta tiene su propio PDF, pero por las dudas
+    // no borramos un contenido que otra entrada siga usando.
+    private void descartarContenido(String hash) {
+        for (Entrada e : indice.values()) {
+            if (e.hash().equals(hash)) return;
+        }
+        byte[] quitado = memoria.remove(hash);
+        if (quitado != null) memoriaBytes -= quitado.length;
+        try {
+            Files.deleteIfExists(raiz.resolve(hash + ".pdf"));
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo borrar {}.pdf: {}", hash, e.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] contenido) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -260,8 +261,19 @@ public class CotizacionService {
     }
     
     private void recalcularTotalCotizacion(Cotizacion cotizacion) {
+        cotizacion.setPrecioTotalOfertado(sumarTotalOfertado(cotizacion.getItems()));
+        cotizacionRepository.save(cotizacion);
+        
+        recalcularRecomendacion(cotizacion);
+    }
+
+    /**
+     * Total ofertado: suma de los ítems cotizados/confirmados con precio.
+     * Package-private y estático: lo mide el módulo productos-benchmarks.
+     */
+    static BigDecimal sumarTotalOfertado(Collection<ItemCotizacion> items) {
         BigDecimal nuevoTotal = BigDecimal.ZERO;
-        for (ItemCotizacion item : cotizacion.getItems()) {
+        for (ItemCotizacion item : items) {
             if ((item.getEstado() == EstadoItemCotizacion.COTIZADO || item.getEstado() == EstadoItemCotizacion.CONFIRMADO) 
                     && item.getPrecioUnitarioOfertado() != null) {
                 nuevoTotal = nuevoTotal.add(
@@ -269,10 +281,7 @@ public class CotizacionService {
                 );
             }
         }
-        cotizacion.setPrecioTotalOfertado(nuevoTotal);
-        cotizacionRepository.save(cotizacion);
-        
-        recalcularRecomendacion(cotizacion);
+        return nuevoTotal;
     }
 
     private void recalcularRecomendacion(Cotizacion cotizacionRef) {
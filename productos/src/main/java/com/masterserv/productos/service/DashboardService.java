@@ -4,11 +4,18 @@ import com.masterserv.productos.dto.DashboardStatsDTO;
 import com.masterserv.productos.dto.TopProductoDTO;
 import com.masterserv.productos.dto.VentasPorCategoriaDTO;
 import com.masterserv.productos.dto.VentasPorDiaDTO;
+import com.masterserv.productos.entity.DetalleVenta;
+import com.masterserv.productos.entity.Venta;
+import com.masterserv.productos.enums.EstadoOutbox;
 import com.masterserv.productos.enums.EstadoPedido; 
+import com.masterserv.productos.enums.EstadoVenta;
+import com.masterserv.productos.enums.TipoEventoOutbox;
+import com.masterserv.productos.repository.EventoOutboxRepository;
 import com.masterserv.productos.repository.PedidoRepository; 
 import com.masterserv.productos.repository.ProductoRepository;
 import com.masterserv.productos.repository.UsuarioRepository;
 import com.masterserv.productos.repository.VentaRepository;
+import com.masterserv.productos.repository.VentaResumenDiarioRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,9 +25,25 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit; 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+/**
+ * Los días ya cerrados se leen de ventas_resumen_diario (ResumenVentasService), una fila por
+ * día/producto/vendedor/método en lugar de escanear ventas y detalles. El día de hoy se sigue
+ * consultando sobre las ventas: sus eventos de outbox pueden no haberse aplicado todavía.
+ *
+ * Si el evento de una venta de un día cerrado sigue sin aplicarse (pendiente pasada la
+ * medianoche, o en ERROR) el resumen no la refleja: esas ventas se leen crudas y se suman (o
+ * se restan, si es una cancelación) sobre el resumen. Ver pendientes().
+ */
 @Service
 public class DashboardService {
 
@@ -32,34 +55,106 @@ public class DashboardService {
     private UsuarioRepository usuarioRepository;
     @Autowired
     private PedidoRepository pedidoRepository; 
+    @Autowired
+    private VentaResumenDiarioRepository resumenRepository;
+    @Autowired
+    private EventoOutboxRepository eventoOutboxRepository;
+
+    /**
+     * Parte [inicio, fin] en días cerrados (resumen, si desde <= hasta) y lo que cae de hoy en
+     * adelante (ventas crudas, si vivoDesde <= vivoHasta).
+     */
+    private record Tramos(LocalDate desde, LocalDate hasta, LocalDateTime vivoDesde, LocalDateTime vivoHasta) {
+
+        static Tramos de(LocalDate inicio, LocalDate fin) {
+            LocalDate hoy = LocalDate.now();
+            LocalDate hastaCerrado = fin.isBefore(hoy) ? fin : hoy.minusDays(1);
+            LocalDate desdeVivo = inicio.isAfter(hoy) ? inicio : hoy;
+            return new Tramos(inicio, hastaCerrado, desdeVivo.atStartOfDay(), fin.atTime(LocalTime.MAX));
+        }
+
+        boolean conResumen() {
+            return !desde.isAfter(hasta);
+        }
+
+        boolean conVivo() {
+            return !vivoDesde.isAfter(vivoHasta);
+        }
+    }
+
+    /** Venta de un día cerrado que el resumen no refleja: signo 1 falta sumarla, -1 falta restarla. */
+    private record Pendiente(Venta venta, int signo) {}
+
+    /**
+     * Completadas cuyo VENTA_REALIZADA no se aplicó (faltan en el resumen) y canceladas cuyo
+     * VENTA_CANCELADA no se aplicó pero su alta sí (el resumen las sigue sumando). Lo normal es
+     * que no haya ninguna: es una consulta sobre los eventos sin procesar y nada más.
+     */
+    private List<Pendiente> pendientes(Tramos tramos) {
+        if (!tramos.conResumen()) return List.of();
+        LocalDateTime desde = tramos.desde().atStartOfDay();
+        LocalDateTime hasta = tramos.hasta().plusDays(1).atStartOfDay();
+
+        List<Long> sinSumar = eventoOutboxRepository.findVentasConEventoSinAplicar(
+                TipoEventoOutbox.VENTA_REALIZADA, EstadoOutbox.PROCESADO, EstadoVenta.COMPLETADA, desde, hasta);
+        Set<Long> sinRestar = new HashSet<>(eventoOutboxRepository.findVentasConEventoSinAplicar(
+                TipoEventoOutbox.VENTA_CANCELADA, EstadoOutbox.PROCESADO, EstadoVenta.CANCELADA, desde, hasta));
+        if (!sinRestar.isEmpty()) {
+            // Si el alta tampoco se aplicó la venta nunca entró al resumen: no hay nada que restar
+            sinRestar.removeAll(eventoOutboxRepository.findVentasConEventoSinAplicar(
+                    TipoEventoOutbox.VENTA_REALIZADA, EstadoOutbox.PROCESADO, EstadoVenta.CANCELADA, desde, hasta));
+        }
+        if (sinSumar.isEmpty() && sinRestar.isEmpty()) return List.of();
+
+        List<Long> ids = new ArrayList<>(sinSumar);
+        ids.addAll(sinRestar);
+        List<Pendiente> resultado = new ArrayList<>();
+        for (Venta v : ventaRepository.findByIdIn(ids)) {
+            resultado.add(new Pendiente(v, sinRestar.contains(v.getId()) ? -1 : 1));
+        }
+        return resultado;
+    }
 
     // --- MÉTODO PRINCIPAL (Stats Generales) ---
     public DashboardStatsDTO getEstadisticas() {
         // Por defecto: Mes actual completo
-        LocalDateTime inicioMes = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        LocalDateTime finMes = LocalDate.now().plusMonths(1).withDayOfMonth(1).atStartOfDay().minusNanos(1);
+        LocalDate inicioMes = LocalDate.now().withDayOfMonth(1);
+        LocalDate finMes = LocalDate.now().plusMonths(1).withDayOfMonth(1).minusDays(1);
         return getStats(inicioMes, finMes);
     }
 
     // --- MÉTODO CON FILTROS DE FECHA ---
     public DashboardStatsDTO getEstadisticasFiltradas(LocalDate inicio, LocalDate fin) {
-        // Si viene null, usamos inicio de mes. Si viene fecha, usamos 00:00:00
-        LocalDateTime fechaInicio = (inicio != null) ? inicio.atStartOfDay() : LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        
-        // Si viene null, usamos fin de hoy. Si viene fecha, usamos 23:59:59.999999999 (LocalTime.MAX)
-        LocalDateTime fechaFin = (fin != null) ? fin.atTime(LocalTime.MAX) : LocalDate.now().atTime(LocalTime.MAX);
+        // Si viene null, usamos inicio de mes. Si viene null el fin, hasta hoy (días completos)
+        LocalDate fechaInicio = (inicio != null) ? inicio : LocalDate.now().withDayOfMonth(1);
+        LocalDate fechaFin = (fin != null) ? fin : LocalDate.now();
+        if (fechaInicio.isAfter(fechaFin)) {
+            throw new IllegalArgumentException("La fecha de inicio no puede ser posterior a la fecha de fin.");
+        }
         
         return getStats(fechaInicio, fechaFin);
     }
 
     // Lógica común para calcular stats
-    private DashboardStatsDTO getStats(LocalDateTime inicio, LocalDateTime fin) {
-        // 1. Ventas en el rango seleccionado ($)
-        BigDecimal totalVentasRango = ventaRepository.findTotalVentasEntreFechas(inicio, fin)
-                .orElse(BigDecimal.ZERO);
-        
-        // 2. Cantidad de Ventas (#)
-        long cantidadVentas = ventaRepository.countVentasEntreFechas(inicio, fin);
+    private DashboardStatsDTO getStats(LocalDate inicio, LocalDate fin) {
+        Tramos tramos = Tramos.de(inicio, fin);
+
+        // 1. Ventas en el rango seleccionado ($) y 2. Cantidad de Ventas (#): días cerrados + hoy
+        BigDecimal totalVentasRango = BigDecimal.ZERO;
+        long cantidadVentas = 0;
+        if (tramos.conResumen()) {
+            totalVentasRango = resumenRepository.findTotalVentas(tramos.desde(), tramos.hasta()).orElse(BigDecimal.ZERO);
+            cantidadVentas = resumenRepository.countVentas(tramos.desde(), tramos.hasta()).orElse(0L);
+            for (Pendiente p : pendientes(tramos)) {
+                totalVentasRango = totalVentasRango.add(p.venta().getTotalVenta().multiply(BigDecimal.valueOf(p.signo())));
+                cantidadVentas += p.signo();
+            }
+        }
+        if (tramos.conVivo()) {
+            totalVentasRango = totalVentasRango.add(ventaRepository
+                    .findTotalVentasEntreFechas(tramos.vivoDesde(), tramos.vivoHasta()).orElse(BigDecimal.ZERO));
+            cantidadVentas += ventaRepository.countVentasEntreFechas(tramos.vivoDesde(), tramos.vivoHasta());
+        }
         
         // 3. Ventas de HOY (KPI rápido) - Siempre calcula el día actual real
         LocalDateTime inicioHoy = LocalDate.now().atStartOfDay();
@@ -114,29 +209,89 @@ public class DashboardService {
 
     // --- GRÁFICO: VENTAS POR RANGO (Evolución) ---
     public List<VentasPorDiaDTO> getVentasPorRango(LocalDate inicio, LocalDate fin) {
-        LocalDateTime fechaInicio = (inicio != null) ? inicio.atStartOfDay() : LocalDate.now().minusDays(7).atStartOfDay();
-        // Corrección: Usar LocalTime.MAX para incluir todo el día final
-        LocalDateTime fechaFin = (fin != null) ? fin.atTime(LocalTime.MAX) : LocalDate.now().atTime(LocalTime.MAX);
-        
-        return ventaRepository.findVentasSumarizadasPorDia(fechaInicio, fechaFin);
+        LocalDate fechaInicio = (inicio != null) ? inicio : LocalDate.now().minusDays(7);
+        LocalDate fechaFin = (fin != null) ? fin : LocalDate.now();
+        Tramos tramos = Tramos.de(fechaInicio, fechaFin);
+
+        // Los dos tramos no se pisan; las pendientes caen en días del resumen y se suman por fecha
+        Map<LocalDate, BigDecimal> porDia = new TreeMap<>();
+        if (tramos.conResumen()) {
+            resumenRepository.findVentasPorDia(tramos.desde(), tramos.hasta())
+                    .forEach(d -> porDia.put(d.fecha(), d.total()));
+            for (Pendiente p : pendientes(tramos)) {
+                porDia.merge(p.venta().getFechaVenta().toLocalDate(),
+                        p.venta().getTotalVenta().multiply(BigDecimal.valueOf(p.signo())), BigDecimal::add);
+            }
+        }
+        if (tramos.conVivo()) {
+            ventaRepository.findVentasSumarizadasPorDia(tramos.vivoDesde(), tramos.vivoHasta())
+                    .forEach(d -> porDia.merge(d.fecha(), d.total(), BigDecimal::add));
+        }
+        List<VentasPorDiaDTO> resultado = new ArrayList<>();
+        porDia.forEach((fecha, total) -> {
+            if (total.signum() > 0) resultado.add(new VentasPorDiaDTO(fecha, total));
+        });
+        return resultado;
     }
     
     // --- TOP PRODUCTOS ---
     public List<TopProductoDTO> getTopProductosPorRango(LocalDate inicio, LocalDate fin) {
-        LocalDateTime fechaInicio = (inicio != null) ? inicio.atStartOfDay() : LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        LocalDateTime fechaFin = (fin != null) ? fin.atTime(LocalTime.MAX) : LocalDate.now().atTime(LocalTime.MAX);
+        LocalDate fechaInicio = (inicio != null) ? inicio : LocalDate.now().withDayOfMonth(1);
+        LocalDate fechaFin = (fin != null) ? fin : LocalDate.now();
+        Tramos tramos = Tramos.de(fechaInicio, fechaFin);
 
-        // CORRECCIÓN IMPORTANTE: Antes solo pasabas fechaInicio e ignorabas fechaFin.
-        // Ahora pasamos ambas para que el top respete el filtro del dashboard.
-        return ventaRepository.findTop5ProductosVendidos(fechaInicio, fechaFin); 
+        // Un mismo producto puede venir de los dos tramos: se suman y se reordena
+        Map<Long, TopProductoDTO> porProducto = new LinkedHashMap<>();
+        List<TopProductoDTO> parciales = new ArrayList<>();
+        if (tramos.conResumen()) {
+            parciales.addAll(resumenRepository.findTopProductos(tramos.desde(), tramos.hasta()));
+            for (Pendiente p : pendientes(tramos)) {
+                for (DetalleVenta d : p.venta().getDetalles()) {
+                    parciales.add(new TopProductoDTO(d.getProducto().getId(), d.getProducto().getNombre(),
+                            (long) p.signo() * d.getCantidad()));
+                }
+            }
+        }
+        if (tramos.conVivo()) {
+            parciales.addAll(ventaRepository.findTop5ProductosVendidos(tramos.vivoDesde(), tramos.vivoHasta()));
+        }
+        for (TopProductoDTO p : parciales) {
+            porProducto.merge(p.getProductoId(), p, (a, b) ->
+                    new TopProductoDTO(a.getProductoId(), a.getNombre(), a.getCantidadVendida() + b.getCantidadVendida()));
+        }
+        return porProducto.values().stream()
+                .filter(p -> p.getCantidadVendida() > 0)
+                .sorted(Comparator.comparing(TopProductoDTO::getCantidadVendida).reversed())
+                .collect(Collectors.toList());
     }
 
     // --- GRÁFICO: VENTAS POR CATEGORÍA ---
     public List<VentasPorCategoriaDTO> getVentasPorCategoria(LocalDate inicio, LocalDate fin) {
-        LocalDateTime fechaInicio = (inicio != null) ? inicio.atStartOfDay() : LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        LocalDateTime fechaFin = (fin != null) ? fin.atTime(LocalTime.MAX) : LocalDate.now().atTime(LocalTime.MAX);
-        
-        return ventaRepository.findVentasPorCategoria(fechaInicio, fechaFin);
+        LocalDate fechaInicio = (inicio != null) ? inicio : LocalDate.now().withDayOfMonth(1);
+        LocalDate fechaFin = (fin != null) ? fin : LocalDate.now();
+        Tramos tramos = Tramos.de(fechaInicio, fechaFin);
+
+        Map<String, VentasPorCategoriaDTO> porCategoria = new LinkedHashMap<>();
+        List<VentasPorCategoriaDTO> parciales = new ArrayList<>();
+        if (tramos.conResumen()) {
+            parciales.addAll(resumenRepository.findVentasPorCategoria(tramos.desde(), tramos.hasta()));
+            for (Pendiente p : pendientes(tramos)) {
+                for (DetalleVenta d : p.venta().getDetalles()) {
+                    BigDecimal importe = d.getPrecioUnitario().multiply(BigDecimal.valueOf((long) p.signo() * d.getCantidad()));
+                    parciales.add(new VentasPorCategoriaDTO(d.getProducto().getCategoria().getNombre(), importe));
+                }
+            }
+        }
+        if (tramos.conVivo()) {
+            parciales.addAll(ventaRepository.findVentasPorCategoria(tramos.vivoDesde(), tramos.vivoHasta()));
+        }
+        for (VentasPorCategoriaDTO c : parciales) {
+            porCategoria.merge(c.getCategoria(), c, (a, b) ->
+                    new VentasPorCategoriaDTO(a.getCategoria(), a.getTotal().add(b.getTotal())));
+        }
+        return porCategoria.values().stream()
+                .filter(c -> c.getTotal().signum() > 0)
+                .collect(Collectors.toList());
     }
     
     // --- MÉTODOS LEGACY ---
@@ -0,0 +1,162 @@
+package com.masterserv.productos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disparador de reposición con "debounce".
+ * Reemplaza al new Thread por venta: todas las solicitudes que llegan dentro de la
+ * ventana de silencio se juntan en UNA sola corrida de generarPrePedidosAgrupados,
+ * que solo revisa los productos tocados desde la corrida anterior.
+ *
+ * Hay un único hilo trabajador y, como máximo, una corrida programada a la vez
+ * (flag 'programado'), así que la cola nunca crece con el tráfico.
+ */
+@Service
+public class DisparadorReposicionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisparadorReposicionService.class);
+
+    @Autowired private ProcesoAutomaticoService procesoAutomaticoService;
+
+    @Value("${app.reposicion.ventana-ms:2000}")
+    private long ventanaMs;
+
+    // Con tráfico continuo la ventana se correría indefinidamente; este tope garantiza que igual se ejecute.
+    @Value("${app.reposicion.espera-maxima-ms:10000}")
+    private long esperaMaximaMs;
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "reposicion-trigger");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Set<Long> productosPendientes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean programado = new AtomicBoolean(false);
+    private final AtomicLong primeraSolicitudMs = new AtomicLong();
+    private final AtomicLong ultimaSolicitudMs = new AtomicLong();
+
+    private final Counter solicitudes;
+    private final Counter coalescidas;
+    private final Counter ejecuciones;
+    private final Timer duracion;
+
+    public DisparadorReposicionService(MeterRegistry registry) {
+        this.solicitudes = Counter.builder("reposicion.trigger.solicitudes")
+                .description("Pedidos de reposición recibidos").register(registry);
+        this.coalescidas = Counter.builder("reposicion.trigger.coalescidas")
+                .description("Pedidos absorbidos por una corrida ya programada").register(registry);
+        this.ejecuciones = Counter.builder("reposicion.trigger.ejecuciones")
+                .description("Corridas reales de generarPrePedidosAgrupados").register(registry);
+        this.duracion = Timer.builder("reposicion.trigger.duracion")
+                .description("Duración de cada corrida de reposición").register(registry);
+        Gauge.builder("reposicion.trigger.productos.pendientes", productosPendientes, Set::size)
+                .register(registry);
+    }
+
+    /**
+     * Pide una revisión de reposición para los productos indicados.
+     * Si hay una transacción activa, el pedido se encola recién después del commit
+     * (antes el hilo dormía 2s "esperando" a que la venta se confirmara).
+     */
+    public void solicitar(Collection<Long> productoIds) {
+        if (productoIds == null || productoIds.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Set<Long> copia = new HashSet<>(productoIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    encolar(copia);
+                }
+            });
+        } else {
+            encolar(productoIds);
+        }
+    }
+
+    private void encolar(Collection<Long> productoIds) {
+        solicitudes.increment();
+        productosPendientes.addAll(productoIds);
+        long ahora = System.currentTimeMillis();
+        ultimaSolicitudMs.set(ahora);
+
+        if (programado.compareAndSet(false, true)) {
+            primeraSolicitudMs.set(ahora);
+            worker.schedule(this::ejecutarSiCorresponde, ventanaMs, TimeUnit.MILLISECONDS);
+        } else {
+            coalescidas.increment();
+        }
+    }
+
+    private void ejecutarSiCorresponde() {
+        long ahora = System.currentTimeMillis();
+        long silencioRestante = ultimaSolicitudMs.get() + ventanaMs - ahora;
+        long esperaRestante = primeraSolicitudMs.get() + esperaMaximaMs - ahora;
+
+        // Sigue llegando tráfico: esperamos a que se calme (sin pasar la espera máxima)
+        if (silencioRestante > 0 && esperaRestante > 0) {
+            worker.schedule(this::ejecutarSiCorresponde, Math.min(silencioRestante, esperaRestante), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        // Tomamos el lote y liberamos el flag ANTES de correr: lo que llegue durante la corrida
+        // programa la siguiente, que quedará detrás de esta en el único hilo.
+        Set<Long> lote = new HashSet<>(productosPendientes);
+        productosPendientes.removeAll(lote);
+        programado.set(false);
+        if (!productosPendientes.isEmpty() && programado.compareAndSet(false, true)) {
+            primeraSolicitudMs.set(ahora);
+            worker.schedule(this::ejecutarSiCorresponde, ventanaMs, TimeUnit.MILLISECONDS);
+        }
+        if (lote.isEmpty()) return;
+
+        ejecuciones.increment();
+        duracion.record(() -> {
+            try {
+                logger.info("⏰ [REPOSICION] Corrida agrupada para {} productos.", lote.size());
+                procesoAutomaticoService.generarPrePedidosAgrupados(lote);
+            } catch (Exception e) {
+                logger.error("Error trigger automático reposición: {}", e.getMessage());
+            }
+        });
+    }
+
+    public long getSolicitudes() {
+        return (long) solicitudes.count();
+    }
+
+    public long getCoalescidas() {
+        return (long) coalescidas.count();
+    }
+
+    public long getEjecuciones() {
+        return (long) ejecuciones.count();
+    }
+
+    @PreDestroy
+    public void detener() {
+        worker.shutdownNow();
+    }
+}
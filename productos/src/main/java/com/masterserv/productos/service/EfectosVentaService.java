@@ -0,0 +1,200 @@
+package com.masterserv.productos.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.dto.MovimientoStockDTO;
+import com.masterserv.productos.entity.Auditoria;
+import com.masterserv.productos.entity.DetalleVenta;
+import com.masterserv.productos.entity.EventoOutbox;
+import com.masterserv.productos.entity.Usuario;
+import com.masterserv.productos.entity.Venta;
+import com.masterserv.productos.enums.EstadoOutbox;
+import com.masterserv.productos.enums.TipoEventoOutbox;
+import com.masterserv.productos.enums.TipoMovimiento;
+import com.masterserv.productos.enums.TipoMovimientoPuntos;
+import com.masterserv.productos.repository.EventoOutboxRepository;
+import com.masterserv.productos.repository.MovimientoPuntosRepository;
+import com.masterserv.productos.repository.UsuarioRepository;
+import com.masterserv.productos.repository.VentaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Materializa los efectos secundarios de una venta a partir de su evento de outbox:
+ * movimientos de stock, puntos, auditoría y el resumen diario del dashboard. Antes todo esto corría dentro de
+ * VentaService.create y alargaba el tiempo hasta el ticket en el mostrador.
+ *
+ * Cada evento se aplica en su propia transacción, que empieza "reclamando" el evento
+ * (PENDIENTE -> PROCESADO). Efectos y marca se confirman juntos: un reintento o una
+ * segunda instancia nunca aplican dos veces lo mismo.
+ *
+ * La fecha y el stock anterior de cada producto viajan en el evento: los movimientos y su
+ * auditoría reflejan el momento de la venta aunque el outbox los aplique mucho después.
+ * Una cancelación espera a que la venta tenga sus efectos aplicados (si VENTA_REALIZADA
+ * quedó en ERROR, la cancelación también termina en ERROR en vez de reponer lo que nunca salió).
+ */
+@Service
+public class EfectosVentaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EfectosVentaService.class);
+
+    @Autowired private EventoOutboxRepository eventoOutboxRepository;
+    @Autowired private VentaRepository ventaRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private MovimientoStockService movimientoStockService;
+    @Autowired private MovimientoPuntosRepository movimientoPuntosRepository;
+    @Autowired private PuntosService puntosService;
+    @Autowired private AuditoriaService auditoriaService;
+    @Autowired private ResumenVentasService resumenVentasService;
+    @Autowired private ObjectMapper objectMapper;
+
+    /**
+     * @return false si el evento ya había sido aplicado (por otro hilo o en un intento anterior)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean aplicar(EventoOutbox evento) throws Exception {
+        int reclamado = eventoOutboxRepository.reclamar(evento.getId(), LocalDateTime.now(),
+                EstadoOutbox.PENDIENTE, EstadoOutbox.PROCESADO);
+        if (reclamado == 0) return false;
+
+        JsonNode payload = objectMapper.readTree(evento.getPayload());
+        if (evento.getTipo() == TipoEventoOutbox.VENTA_CANCELADA
+                && eventoOutboxRepository.existsByAgregadoIdAndTipoAndEstadoNot(evento.getAgregadoId(),
+                        TipoEventoOutbox.VENTA_REALIZADA, EstadoOutbox.PROCESADO)) {
+            throw new IllegalStateException("La venta #" + evento.getAgregadoId()
+                    + " todavía no tiene aplicado su evento VENTA_REALIZADA");
+        }
+        Venta venta = ventaRepository.findByIdWithDetails(evento.getAgregadoId())
+                .orElseThrow(() -> new RuntimeException("Venta no encontrada: " + evento.getAgregadoId()));
+        Long usuarioId = payload.path("usuarioId").asLong();
+        Usuario usuario = usuarioRepository.findById(usuarioId)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + usuarioId));
+
+        // Eventos encolados antes de que el payload trajera fecha y stock: se usa lo de ahora, como antes
+        LocalDateTime fecha = payload.hasNonNull("fecha")
+                ? LocalDateTime.parse(payload.get("fecha").asText())
+                : LocalDateTime.now();
+        Map<Long, Integer> stock = new HashMap<>();
+        payload.path("stockAnterior").fields()
+                .forEachRemaining(e -> stock.put(Long.valueOf(e.getKey()), e.getValue().asInt()));
+
+        switch (evento.getTipo()) {
+            case VENTA_REALIZADA -> aplicarVentaRealizada(venta, usuario, fecha, stock);
+            case VENTA_CANCELADA -> aplicarVentaCancelada(venta, usuario, payload.path("motivo").asText(""), fecha, stock);
+        }
+        return true;
+    }
+
+    /**
+     * Cuenta un intento fallido en una transacción aparte (la del efecto ya hizo rollback).
+     * Al llegar al máximo, el evento queda en ERROR y el despachador deja de tomarlo.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void registrarFallo(Long eventoId, String error, int maxIntentos) {
+        String mensaje = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        eventoOutboxRepository.sumarIntento(eventoId, mensaje);
+        if (eventoOutboxRepository.marcarSiSuperaIntentos(eventoId, maxIntentos, EstadoOutbox.ERROR) > 0) {
+            logger.error("🔴 Evento outbox #{} pasó a ERROR tras {} intentos: {}", eventoId, maxIntentos, mensaje);
+        }
+    }
+
+    private void aplicarVentaRealizada(Venta venta, Usuario vendedor, LocalDateTime fecha, Map<Long, Integer> stock) {
+        for (DetalleVenta det : venta.getDetalles()) {
+            registrarMovimientoStock(venta, det, vendedor, TipoMovimiento.SALIDA_VENTA,
+                    "Salida por Venta #" + venta.getId(), fecha, stock);
+        }
+
+        if (!movimientoPuntosRepository.existsByVentaAndTipoMovimiento(venta, TipoMovimientoPuntos.GANADO)) {
+            puntosService.asignarPuntosPorVenta(venta);
+        }
+        resumenVentasService.sumar(venta);
+        registrarAuditoriaVenta(venta, vendedor);
+    }
+
+    private void aplicarVentaCancelada(Venta venta, Usuario usuario, String motivo, LocalDateTime fecha, Map<Long, Integer> stock) {
+        for (DetalleVenta det : venta.getDetalles()) {
+            registrarMovimientoStock(venta, det, usuario, TipoMovimiento.DEVOLUCION,
+                    "Cancelación Venta #" + venta.getId() + " - " + motivo, fecha, stock);
+        }
+
+        // Ya es idempotente: no revierte dos veces ni revierte si la venta no generó puntos
+        puntosService.revertirPuntosPorVenta(venta);
+        resumenVentasService.restar(venta);
+        registrarAuditoriaCancelacion(venta, usuario, motivo, fecha);
+    }
+
+    /**
+     * 'stock' trae el stock de cada producto antes de la operación y se va actualizando línea a
+     * línea (un producto puede repetirse en varios detalles).
+     */
+    private void registrarMovimientoStock(Venta venta, DetalleVenta det, Usuario usuario, TipoMovimiento tipo,
+                                          String motivo, LocalDateTime fecha, Map<Long, Integer> stock) {
+        MovimientoStockDTO mov = new MovimientoStockDTO();
+        mov.setProductoId(det.getProducto().getId());
+        mov.setUsuarioId(usuario.getId());
+        mov.setTipoMovimiento(tipo);
+        mov.setCantidad(det.getCantidad());
+        mov.setVentaId(venta.getId());
+        mov.setMotivo(motivo);
+
+        Integer anterior = stock.get(det.getProducto().getId());
+        if (anterior == null) {
+            movimientoStockService.registrarMovimiento(mov, det.getProducto(), usuario);
+            return;
+        }
+        int variacion = tipo == TipoMovimiento.SALIDA_VENTA ? -det.getCantidad() : det.getCantidad();
+        movimientoStockService.registrarMovimiento(mov, det.getProducto(), usuario, fecha, anterior);
+        stock.put(det.getProducto().getId(), anterior + variacion);
+    }
+
+    private void registrarAuditoriaVenta(Venta venta, Usuario vendedor) {
+        try {
+            Auditoria audit = new Auditoria();
+            audit.setFecha(venta.getFechaVenta());
+            audit.setUsuario(vendedor.getEmail());
+            audit.setEntidad("Venta");
+            audit.setEntidadId(venta.getId().toString());
+            audit.setAccion("NUEVA_VENTA");
+
+            String detalle = String.format("Venta #%d realizada. Cliente: %s | Total: $%.2f | Ítems: %d",
+                    venta.getId(),
+                    venta.getCliente().getNombre() + " " + venta.getCliente().getApellido(),
+                    venta.getTotalVenta(),
+                    venta.getDetalles().size());
+
+            audit.setDetalle(detalle);
+            audit.setValorNuevo("{ \"total\": " + venta.getTotalVenta() + ", \"estado\": \"COMPLETADA\" }");
+
+            auditoriaService.guardar(audit);
+        } catch (Exception e) {
+            logger.error("🔴 Error al auditar la venta: " + e.getMessage());
+        }
+    }
+
+    private void registrarAuditoriaCancelacion(Venta venta, Usuario usuario, String motivo, LocalDateTime fecha) {
+        try {
+            Auditoria audit = new Auditoria();
+            audit.setFecha(fecha);
+            audit.setUsuario(usuario.getEmail());
+            audit.setEntidad("Venta");
+            audit.setEntidadId(venta.getId().toString());
+            audit.setAccion("CANCELACION_VENTA");
+
+            audit.setDetalle("Venta #" + venta.getId() + " ANULADA. Motivo: " + motivo + ". (Stock repuesto y plata restada de caja)");
+            audit.setValorAnterior("{ \"estado\": \"COMPLETADA\" }");
+            audit.setValorNuevo("{ \"estado\": \"CANCELADA\" }");
+
+            auditoriaService.guardar(audit);
+        } catch (Exception e) {
+            logger.error("🔴 Error al auditar cancelación: " + e.getMessage());
+        }
+    }
+}
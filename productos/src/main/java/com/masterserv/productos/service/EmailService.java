@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import com.masterserv.productos.config.AsyncConfig;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
@@ -19,7 +20,7 @@ public class EmailService {
     private JavaMailSender mailSender;
 
     // --- NUEVO MÉTODO DE BIENVENIDA ---
-    @Async
+    @Async(AsyncConfig.MAIL)
     public void sendWelcomeEmail(String para, String nombre) {
         String asunto = "¡Bienvenido a Masterserv360! 🏍️";
         
@@ -50,7 +51,7 @@ public class EmailService {
     }
     // ----------------------------------
 
-    @Async
+    @Async(AsyncConfig.MAIL)
     public void sendPasswordResetEmail(String para, String nombre, String token) {
         // OJO: Cambia esto por tu URL real de Vercel (Frontend)
         String urlFrontend = "https://masterserv360.vercel.app/reset-password?token=" + token;
@@ -79,12 +80,12 @@ public class EmailService {
         enviarEmailHtml(para, asunto, cuerpoHtml);
     }
 
-    @Async
+    @Async(AsyncConfig.MAIL)
     public void enviarEmail(String para, String asunto, String cuerpo) {
         enviarEmailHtml(para, asunto, cuerpo);
     }
 
-    @Async
+    @Async(AsyncConfig.MAIL)
     public void enviarEmailHtml(String para, String asunto, String cuerpoHtml) {
         try {
             MimeMessage mimeMessage = mailSender.createMimeMessage();
@@ -104,7 +105,7 @@ public class EmailService {
         }
     }
 
-    @Async
+    @Async(AsyncConfig.MAIL)
     public void enviarEmailConAdjunto(String para, String asunto, String cuerpoHtml, byte[] adjuntoBytes, String adjuntoNombre) {
         if (adjuntoBytes == null || adjuntoBytes.length == 0) {
             logger.warn("EmailService: Se intentó enviar un email a {} con un adjunto nulo o vacío.", para);
@@ -1,8 +1,11 @@
 package com.masterserv.productos.service;
 
 import com.masterserv.productos.entity.EmpresaConfig;
+import com.masterserv.productos.event.EmpresaConfigActualizadaEvent;
 import com.masterserv.productos.repository.EmpresaConfigRepository;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,6 +15,12 @@ public class EmpresaConfigService {
     @Autowired
     private EmpresaConfigRepository repository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ImagenService imagenService;
+
     @Transactional
     public EmpresaConfig obtenerConfiguracion() {
         // Buscamos el ID 1, si no existe, creamos uno por defecto
@@ -40,10 +49,24 @@ public class EmpresaConfigService {
         actual.setTelefono(nuevaConfig.getTelefono());
         actual.setEmailContacto(nuevaConfig.getEmailContacto());
         actual.setSitioWeb(nuevaConfig.getSitioWeb());
-        actual.setLogoUrl(nuevaConfig.getLogoUrl());
+        // El logo va al almacén de imágenes; en la columna queda solo el nombre
+        actual.setLogoUrl(imagenService.normalizar(nuevaConfig.getLogoUrl()));
         actual.setColorPrincipal(nuevaConfig.getColorPrincipal());
         actual.setPiePaginaPresupuesto(nuevaConfig.getPiePaginaPresupuesto());
         
-        return repository.save(actual);
+        EmpresaConfig guardada = repository.save(actual);
+        eventPublisher.publishEvent(new EmpresaConfigActualizadaEvent(guardada.getId()));
+        return guardada;
+    }
+
+    /**
+     * Copia para responder al front: el logo con su URL pública en lugar del nombre guardado.
+     * Copia y no la misma entidad, para que el cambio no termine persistido.
+     */
+    public EmpresaConfig paraMostrar(EmpresaConfig config) {
+        EmpresaConfig copia = new EmpresaConfig();
+        BeanUtils.copyProperties(config, copia);
+        copia.setLogoUrl(imagenService.url(config.getLogoUrl()));
+        return copia;
     }
-}
\ No newline at end of file
+}
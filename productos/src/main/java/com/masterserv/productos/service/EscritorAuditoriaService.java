@@ -0,0 +1,388 @@
+package com.masterserv.productos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.entity.Auditoria;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escritura asíncrona y por lotes de la auditoría.
+ *
+ * Antes cada registro abría su propia transacción (REQUIRES_NEW desde AuditoriaListener) o se
+ * guardaba dentro de la transacción de la venta/ajuste/caja: una conexión y un INSERT extra por
+ * cada escritura auditada. Ahora AuditoriaService.guardar() deja el registro en un buffer
+ * circular sin locks y un hilo propio lo vacía con INSERT en batch de JDBC cuando junta
+ * app.auditoria.lote registros o pasan app.auditoria.intervalo-ms.
+ *
+ * Si la base no responde (o el buffer está lleno) los registros van a un archivo local de solo
+ * agregado (una línea JSON por registro) y se reprocesan cada app.auditoria.reintento-ms.
+ * Las líneas que no se pueden leer (p. ej. cortadas por un apagado a mitad de escritura) no
+ * frenan el reproceso: se apartan en un archivo .descartado para revisarlas a mano.
+ *
+ * Métricas: auditoria.buffer.pendientes, auditoria.escritas, auditoria.spool.escritas,
+ * auditoria.spool.reprocesadas, auditoria.spool.descartadas, auditoria.lote.duracion.
+ */
+@Service
+public class EscritorAuditoriaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EscritorAuditoriaService.class);
+
+    private static final String SECUENCIA = "auditoria_logs_pool_seq";
+    // Mismo allocationSize que el @SequenceGenerator de Auditoria (ver asignarId)
+    private static final int BLOQUE_IDS = 50;
+
+    private static final String INSERT =
+            "INSERT INTO auditoria_logs (id, entidad, entidad_id, accion, usuario, fecha, detalle, " +
+            "cambios, cambios_comprimidos, valor_anterior, valor_nuevo) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ARCHIVO_SPOOL = "auditoria.spool";
+    private static final String EXTENSION_REPROCESO = ".reproceso";
+    private static final String EXTENSION_DESCARTADO = ".descartado";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private CodificadorAuditoria codificador;
+
+    @Value("${app.auditoria.lote:200}")
+    private int tamanoLote;
+
+    @Value("${app.auditoria.intervalo-ms:500}")
+    private long intervaloMs;
+
+    @Value("${app.auditoria.spool-dir:./data/auditoria}")
+    private String directorioSpool;
+
+    private final BufferCircular<Auditoria> buffer;
+    private final Counter escritas;
+    private final Counter spooleadas;
+    private final Counter reprocesadas;
+    private final Counter descartadas;
+    private final Timer duracionLote;
+
+    private final Object lockSpool = new Object();
+    private TransactionTemplate transaccion;
+    private Path spool;
+    private Thread hilo;
+    private volatile boolean activo;
+
+    // Solo los usa quien escribe un lote (bajo el lock del servicio)
+    private long proximoId;
+    private long limiteId;
+
+    public EscritorAuditoriaService(MeterRegistry registry,
+                                    @Value("${app.auditoria.buffer:8192}") int capacidad) {
+        this.buffer = new BufferCircular<>(capacidad);
+        Gauge.builder("auditoria.buffer.pendientes", buffer, BufferCircular::tamano)
+                .description("Registros de auditoría esperando el próximo lote")
+                .register(registry);
+        this.escritas = Counter.builder("auditoria.escritas").register(registry);
+        this.spooleadas = Counter.builder("auditoria.spool.escritas")
+                .description("Registros que fueron al archivo local (base caída o buffer lleno)")
+                .register(registry);
+        this.reprocesadas = Counter.builder("auditoria.spool.reprocesadas").register(registry);
+        this.descartadas = Counter.builder("auditoria.spool.descartadas")
+                .description("Líneas del spool que no se pudieron leer y se apartaron en un .descartado")
+                .register(registry);
+        this.duracionLote = Timer.builder("auditoria.lote.duracion").register(registry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        transaccion = new TransactionTemplate(transactionManager);
+        Path directorio = Paths.get(directorioSpool).toAbsolutePath();
+        try {
+            Files.createDirectories(directorio);
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo crear el directorio de spool de auditoría {}: {}", directorio, e.getMessage());
+        }
+        spool = directorio.resolve(ARCHIVO_SPOOL);
+
+        activo = true;
+        hilo = new Thread(this::bucle, "auditoria-escritor");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /** Encola un registro. Nunca bloquea ni lanza: con el buffer lleno va directo al spool. */
+    public void encolar(Auditoria log) {
+        if (!buffer.ofrecer(log)) {
+            logger.warn("⚠️ Buffer de auditoría lleno ({}), el registro va al spool.", buffer.capacidad());
+            escribirSpool(List.of(log));
+            return;
+        }
+        if (buffer.tamano() >= tamanoLote) {
+            LockSupport.unpark(hilo); // lote completo: no esperar al intervalo
+        }
+    }
+
+    /** Escribe ya todo lo pendiente, incluido un lote que el hilo escritor tenga en curso (tests, apagado). */
+    public synchronized void vaciar() {
+        List<Auditoria> lote = new ArrayList<>(tamanoLote);
+        do {
+            drenarYEscribir(lote);
+        } while (!lote.isEmpty());
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        LockSupport.unpark(hilo);
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        vaciar();
+    }
+
+    // Los registros quedan en el buffer hasta que se escriben (así vaciar() ve todo lo pendiente)
+    private void bucle() {
+        List<Auditoria> lote = new ArrayList<>(tamanoLote);
+        long ultimaEscritura = 0;
+        while (activo) {
+            try {
+                int pendientes = buffer.tamano();
+                long ahora = System.currentTimeMillis();
+                if (pendientes >= tamanoLote || (pendientes > 0 && ahora - ultimaEscritura >= intervaloMs)) {
+                    drenarYEscribir(lote);
+                    ultimaEscritura = ahora;
+                } else {
+                    long espera = pendientes > 0 ? intervaloMs - (ahora - ultimaEscritura) : intervaloMs;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, espera)));
+                }
+            } catch (RuntimeException e) {
+                logger.error("❌ Error en el escritor de auditoría: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    // synchronized: lo usan el hilo escritor, vaciar() y el reproceso del spool; también protege los ids
+    private synchronized void drenarYEscribir(List<Auditoria> lote) {
+        lote.clear();
+        buffer.drenar(lote, tamanoLote);
+        if (!lote.isEmpty()) escribirLote(lote);
+    }
+
+    private void escribirLote(List<Auditoria> lote) {
+        long inicio = System.nanoTime();
+        try {
+            transaccion.executeWithoutResult(status -> insertar(lote));
+            escritas.increment(lote.size());
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ No se pudo escribir un lote de {} registros de auditoría ({}), va al spool.",
+                    lote.size(), e.getMessage());
+            escribirSpool(lote);
+        } finally {
+            duracionLote.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void insertar(List<Auditoria> lote) {
+        for (Auditoria a : lote) {
+            if (a.getId() == null) a.setId(asignarId());
+            codificador.codificar(a); // parche + gzip acá, fuera del hilo de la request
+        }
+        jdbcTemplate.batchUpdate(INSERT, lote, lote.size(), (ps, a) -> {
+            ps.setLong(1, a.getId());
+            ps.setString(2, a.getEntidad());
+            ps.setString(3, a.getEntidadId());
+            ps.setString(4, a.getAccion());
+            ps.setString(5, a.getUsuario());
+            ps.setTimestamp(6, a.getFecha() != null ? Timestamp.valueOf(a.getFecha()) : null);
+            ps.setString(7, a.getDetalle());
+            ps.setString(8, a.getCambios());
+            ps.setBytes(9, a.getCambiosComprimidos());
+            ps.setString(10, a.getValorAnterior());
+            ps.setString(11, a.getValorNuevo());
+        });
+    }
+
+    /**
+     * Igual que el optimizador "pooled" de Hibernate: cada nextval reserva el bloque (valor-49 .. valor],
+     * así los ids nunca chocan con los que asigne Hibernate con la misma secuencia.
+     */
+    private long asignarId() {
+        if (proximoId == 0 || proximoId > limiteId) {
+            Long hi = jdbcTemplate.queryForObject("SELECT nextval('" + SECUENCIA + "')", Long.class);
+            limiteId = hi;
+            proximoId = hi - BLOQUE_IDS + 1;
+        }
+        return proximoId++;
+    }
+
+    // --- Spool en disco ---
+
+    private void escribirSpool(List<Auditoria> registros) {
+        StringBuilder sb = new StringBuilder();
+        for (Auditoria a : registros) {
+            try {
+                sb.append(objectMapper.writeValueAsString(a)).append('\n');
+            } catch (IOException e) {
+                logger.error("❌ Registro de auditoría perdido (no serializable): {}", a.getDetalle());
+            }
+        }
+        synchronized (lockSpool) {
+            try (FileChannel canal = FileChannel.open(spool,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer datos = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (datos.hasRemaining()) canal.write(datos);
+                canal.force(false);
+                spooleadas.increment(registros.size());
+            } catch (IOException e) {
+                logger.error("❌ No se pudo escribir el spool de auditoría, se pierden {} registros: {}",
+                        registros.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reprocesa lo que quedó en el spool. El archivo se renombra primero (lo que llegue mientras
+     * tanto va a un spool nuevo) y cada archivo se inserta en una sola transacción: si la base
+     * vuelve a fallar queda entero para el próximo intento, sin registros duplicados.
+     */
+    @Scheduled(fixedDelayString = "${app.auditoria.reintento-ms:30000}",
+               initialDelayString = "${app.auditoria.reintento-ms:30000}")
+    public void reprocesarSpool() {
+        synchronized (lockSpool) {
+            if (Files.exists(spool)) {
+                try {
+                    Files.move(spool, spool.resolveSibling(ARCHIVO_SPOOL + "." + System.currentTimeMillis() + EXTENSION_REPROCESO),
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    logger.warn("⚠️ No se pudo rotar el spool de auditoría: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(spool.getParent(), "*" + EXTENSION_REPROCESO)) {
+            for (Path archivo : archivos) {
+                if (!reprocesar(archivo)) return; // la base sigue caída: probamos en la próxima vuelta
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo listar el spool de auditoría: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve false solo si falló la base (el archivo queda para el próximo intento). Una línea
+     * ilegible se aparta y se sigue con el resto; un archivo que no se puede leer se aparta entero,
+     * así ninguno de los dos bloquea los archivos siguientes.
+     */
+    private boolean reprocesar(Path archivo) {
+        long[] total = {0};
+        List<String> ilegibles = new ArrayList<>();
+        try {
+            synchronized (this) { // comparte ids con drenarYEscribir
+                transaccion.executeWithoutResult(status -> {
+                    total[0] = 0;
+                    ilegibles.clear();
+                    // InputStreamReader reemplaza los bytes UTF-8 inválidos: una línea cortada falla al parsear, no al leer
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(Files.newInputStream(archivo), StandardCharsets.UTF_8))) {
+                        List<Auditoria> lote = new ArrayList<>(tamanoLote);
+                        String linea;
+                        int numero = 0;
+                        while ((linea = reader.readLine()) != null) {
+                            numero++;
+                            if (linea.isBlank()) continue;
+                            try {
+                                lote.add(objectMapper.readValue(linea, Auditoria.class));
+                            } catch (JsonProcessingException e) {
+                                logger.warn("⚠️ Línea {} de {} ilegible, se aparta: {}",
+                                        numero, archivo.getFileName(), e.getOriginalMessage());
+                                ilegibles.add(linea);
+                                continue;
+                            }
+                            if (lote.size() >= tamanoLote) {
+                                insertar(lote);
+                                total[0] += lote.size();
+                                lote.clear();
+                            }
+                        }
+                        if (!lote.isEmpty()) {
+                            insertar(lote);
+                            total[0] += lote.size();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            logger.error("❌ Spool de auditoría ilegible {} ({}), se aparta sin reprocesar.",
+                    archivo.getFileName(), e.getCause().getMessage());
+            apartar(archivo);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ No se pudo reprocesar {}: {}", archivo.getFileName(), e.getMessage());
+            return false;
+        }
+
+        try {
+            if (!ilegibles.isEmpty()) {
+                Files.write(descartado(archivo), ilegibles, StandardCharsets.UTF_8);
+                descartadas.increment(ilegibles.size());
+                logger.error("❌ {} líneas ilegibles de {} quedaron en {} para revisar a mano.",
+                        ilegibles.size(), archivo.getFileName(), descartado(archivo).getFileName());
+            }
+            Files.delete(archivo);
+        } catch (IOException e) {
+            // Los registros ya están en la base: si el archivo quedara, el próximo reproceso los duplicaría
+            logger.error("❌ No se pudo cerrar el reproceso de {}: {}", archivo.getFileName(), e.getMessage());
+            apartar(archivo);
+        }
+        reprocesadas.increment(total[0]);
+        logger.info("📼 Spool de auditoría reprocesado: {} registros ({}).", total[0], archivo.getFileName());
+        return true;
+    }
+
+    // Renombra el archivo fuera del patrón *.reproceso para que no se vuelva a tomar
+    private void apartar(Path archivo) {
+        try {
+            Files.move(archivo, descartado(archivo), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("❌ No se pudo apartar {}: {}", archivo.getFileName(), e.getMessage());
+        }
+    }
+
+    private static Path descartado(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return archivo.resolveSibling(nombre.substring(0, nombre.length() - EXTENSION_REPROCESO.length()) + EXTENSION_DESCARTADO);
+    }
+}
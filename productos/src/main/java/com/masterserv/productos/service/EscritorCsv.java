@@ -0,0 +1,72 @@
+package com.masterserv.productos.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * CSV (RFC 4180, separador coma) en UTF-8 con BOM para que Excel respete los acentos.
+ * Fechas en ISO (yyyy-MM-dd HH:mm:ss) y decimales con punto: pensado para importarlo en otra herramienta.
+ */
+class EscritorCsv implements EscritorTabular {
+
+    private static final DateTimeFormatter FECHA_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Writer writer;
+
+    EscritorCsv(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        writer.write('\uFEFF'); // BOM
+    }
+
+    @Override
+    public void encabezado(String... columnas) throws IOException {
+        fila((Object[]) columnas);
+    }
+
+    @Override
+    public void fila(Object... valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) writer.write(',');
+            escribirValor(valores[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void escribirValor(Object valor) throws IOException {
+        if (valor == null) return;
+        String texto;
+        if (valor instanceof LocalDateTime f) texto = f.format(FECHA_HORA);
+        else if (valor instanceof LocalDate f) texto = f.toString();
+        else if (valor instanceof BigDecimal d) texto = d.toPlainString();
+        else if (valor instanceof String s) texto = neutralizarFormula(s);
+        else texto = valor.toString();
+
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            writer.write(texto);
+            return;
+        }
+        writer.write('"');
+        writer.write(texto.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // Un texto que empieza con =, +, - o @ Excel lo toma como fórmula (inyección de CSV)
+    private static String neutralizarFormula(String s) {
+        if (s.isEmpty()) return s;
+        char c = s.charAt(0);
+        return (c == '=' || c == '+' || c == '-' || c == '@') ? "'" + s : s;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
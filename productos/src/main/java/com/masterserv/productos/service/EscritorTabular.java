@@ -0,0 +1,19 @@
+package com.masterserv.productos.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destino de una exportación (CSV o XLSX) que se escribe fila por fila sobre un stream.
+ * Los valores pueden ser String, Number, LocalDateTime, LocalDate o null.
+ */
+interface EscritorTabular extends Closeable {
+
+    void encabezado(String... columnas) throws IOException;
+
+    void fila(Object... valores) throws IOException;
+
+    /** Termina el archivo. No cierra el stream de destino (es de quien lo abrió). */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,231 @@
+package com.masterserv.productos.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * XLSX escrito "a mano" (SpreadsheetML dentro de un zip) fila por fila sobre el stream.
+ *
+ * No usamos un modelo de planilla en memoria: cada fila se escribe como XML en la entrada
+ * del zip y se va comprimiendo hacia la respuesta, así que la memoria no depende del tamaño.
+ * Las hojas se escriben primero y el workbook, los estilos y [Content_Types].xml al cerrar
+ * (el orden de las entradas en el zip no importa), lo que permite pasar a una hoja nueva
+ * cuando se llega al máximo de filas de Excel.
+ *
+ * Textos como inlineStr (sin tabla de strings compartidos, que habría que tener en memoria).
+ */
+class EscritorXlsx implements EscritorTabular {
+
+    private static final int MAX_FILAS_HOJA = 1_048_576;
+    private static final int MAX_TEXTO_CELDA = 32_767;
+    private static final LocalDateTime EPOCA_EXCEL = LocalDateTime.of(1899, 12, 30, 0, 0);
+
+    // Índices de cellXfs en styles.xml
+    private static final int ESTILO_FECHA_HORA = 1;
+    private static final int ESTILO_ENCABEZADO = 2;
+    private static final int ESTILO_FECHA = 3;
+
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String XML_DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private final String nombreHoja;
+
+    private String[] encabezado;
+    private int hojas = 0;
+    private int filasHoja = 0;
+    private boolean hojaAbierta = false;
+
+    EscritorXlsx(OutputStream out, String nombreHoja) {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 16 * 1024);
+        this.nombreHoja = nombreHoja.length() > 25 ? nombreHoja.substring(0, 25) : nombreHoja;
+    }
+
+    @Override
+    public void encabezado(String... columnas) throws IOException {
+        this.encabezado = columnas;
+        if (!hojaAbierta) abrirHoja();
+    }
+
+    @Override
+    public void fila(Object... valores) throws IOException {
+        if (!hojaAbierta) abrirHoja();
+        if (filasHoja >= MAX_FILAS_HOJA) {
+            cerrarHoja();
+            abrirHoja();
+        }
+        writer.write("<row>");
+        for (Object valor : valores) {
+            escribirCelda(valor);
+        }
+        writer.write("</row>");
+        filasHoja++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!hojaAbierta) abrirHoja();
+        cerrarHoja();
+        escribirEntrada("xl/styles.xml", estilos());
+        escribirEntrada("xl/workbook.xml", workbook());
+        escribirEntrada("xl/_rels/workbook.xml.rels", relacionesWorkbook());
+        escribirEntrada("_rels/.rels", XML_DECL +
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                "</Relationships>");
+        escribirEntrada("[Content_Types].xml", tiposDeContenido());
+        // finish() y no close(): el stream de destino no es nuestro
+        zip.finish();
+        zip.flush();
+    }
+
+    // --- Hojas ---
+
+    private void abrirHoja() throws IOException {
+        hojas++;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + hojas + ".xml"));
+        writer.write(XML_DECL);
+        writer.write("<worksheet xmlns=\"" + NS_MAIN + "\">");
+        if (encabezado != null) {
+            // Fila de encabezado fija al hacer scroll
+            writer.write("<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" " +
+                    "activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>");
+        }
+        writer.write("<sheetData>");
+        hojaAbierta = true;
+        filasHoja = 0;
+        if (encabezado != null) {
+            writer.write("<row>");
+            for (String columna : encabezado) {
+                escribirTexto(columna, ESTILO_ENCABEZADO);
+            }
+            writer.write("</row>");
+            filasHoja++;
+        }
+    }
+
+    private void cerrarHoja() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+        hojaAbierta = false;
+    }
+
+    private void escribirCelda(Object valor) throws IOException {
+        if (valor == null) {
+            writer.write("<c/>");
+        } else if (valor instanceof LocalDateTime f) {
+            double dias = Duration.between(EPOCA_EXCEL, f).toMillis() / 86_400_000.0;
+            writer.write("<c s=\"" + ESTILO_FECHA_HORA + "\"><v>" + dias + "</v></c>");
+        } else if (valor instanceof LocalDate f) {
+            long dias = ChronoUnit.DAYS.between(EPOCA_EXCEL.toLocalDate(), f);
+            writer.write("<c s=\"" + ESTILO_FECHA + "\"><v>" + dias + "</v></c>");
+        } else if (valor instanceof BigDecimal d) {
+            writer.write("<c><v>" + d.toPlainString() + "</v></c>");
+        } else if (valor instanceof Number n) {
+            writer.write("<c><v>" + n + "</v></c>");
+        } else {
+            escribirTexto(valor.toString(), 0);
+        }
+    }
+
+    private void escribirTexto(String texto, int estilo) throws IOException {
+        writer.write(estilo > 0 ? "<c t=\"inlineStr\" s=\"" + estilo + "\"><is><t xml:space=\"preserve\">"
+                : "<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        // Excel no abre celdas de más de 32767 caracteres (puede pasar con los JSON de auditoría)
+        int largo = Math.min(texto.length(), MAX_TEXTO_CELDA);
+        for (int i = 0; i < largo; i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> writer.write("&amp;");
+                case '<' -> writer.write("&lt;");
+                case '>' -> writer.write("&gt;");
+                case '"' -> writer.write("&quot;");
+                default -> {
+                    // Caracteres de control que XML 1.0 no admite
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') writer.write(c);
+                }
+            }
+        }
+        writer.write("</t></is></c>");
+    }
+
+    // --- Partes fijas del paquete ---
+
+    private void escribirEntrada(String nombre, String contenido) throws IOException {
+        zip.putNextEntry(new ZipEntry(nombre));
+        writer.write(contenido);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private String workbook() {
+        StringBuilder sb = new StringBuilder(XML_DECL)
+                .append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_REL).append("\"><sheets>");
+        for (int i = 1; i <= hojas; i++) {
+            String nombre = i == 1 ? nombreHoja : nombreHoja + " (" + i + ")";
+            sb.append("<sheet name=\"").append(nombre).append("\" sheetId=\"").append(i)
+              .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return sb.append("</sheets></workbook>").toString();
+    }
+
+    private String relacionesWorkbook() {
+        StringBuilder sb = new StringBuilder(XML_DECL)
+                .append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= hojas; i++) {
+            sb.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_REL)
+              .append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        sb.append("<Relationship Id=\"rId").append(hojas + 1).append("\" Type=\"").append(NS_REL)
+          .append("/styles\" Target=\"styles.xml\"/>");
+        return sb.append("</Relationships>").toString();
+    }
+
+    private String tiposDeContenido() {
+        StringBuilder sb = new StringBuilder(XML_DECL)
+                .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+                .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= hojas; i++) {
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+              .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return sb.append("</Types>").toString();
+    }
+
+    private static String estilos() {
+        return XML_DECL +
+                "<styleSheet xmlns=\"" + NS_MAIN + "\">" +
+                "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"dd/mm/yyyy hh:mm\"/></numFmts>" +
+                "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>" +
+                "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>" +
+                "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>" +
+                "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>" +
+                "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                "<cellXfs count=\"4\">" +
+                "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" +
+                "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>" +
+                "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>" +
+                "<xf numFmtId=\"14\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>" +
+                "</cellXfs>" +
+                "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>" +
+                "</styleSheet>";
+    }
+}
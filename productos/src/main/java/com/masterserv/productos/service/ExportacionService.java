@@ -0,0 +1,204 @@
+package com.masterserv.productos.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Exportaciones masivas (ventas, movimientos de stock, auditoría) a CSV o XLSX.
+ *
+ * Antes la única forma de sacar un año de datos era recorrer los listados paginados.
+ * Acá cada exportación es UNA consulta JDBC forward-only con fetch size: el driver trae las
+ * filas de a bloques (en PostgreSQL con un cursor de servidor, por eso corre dentro de una
+ * transacción de solo lectura) y cada fila se escribe al stream apenas llega, sin armar
+ * entidades ni listas. La memoria no depende de cuántas filas se exporten.
+ */
+@Service
+public class ExportacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionService.class);
+
+    public enum Formato {
+        CSV("text/csv; charset=UTF-8", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        Formato(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension = extension;
+        }
+
+        public String getTipoContenido() { return tipoContenido; }
+        public String getExtension() { return extension; }
+
+        public static Formato desde(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Formato de exportación no soportado: " + valor + " (csv o xlsx).");
+            }
+        }
+    }
+
+    private static final String SQL_VENTAS =
+            "SELECT v.id, v.fecha_venta, v.estado, v.metodo_pago, v.total_venta, v.monto_descuento, " +
+            "       ve.nombre AS vendedor_nombre, ve.apellido AS vendedor_apellido, " +
+            "       c.nombre AS cliente_nombre, c.apellido AS cliente_apellido, c.email AS cliente_email " +
+            "FROM ventas v " +
+            "JOIN usuarios ve ON ve.id = v.vendedor_usuario_id " +
+            "JOIN usuarios c ON c.id = v.cliente_usuario_id " +
+            "WHERE v.fecha_venta >= ? AND v.fecha_venta < ? " +
+            "ORDER BY v.fecha_venta, v.id";
+
+    private static final String SQL_MOVIMIENTOS =
+            "SELECT m.id, m.fecha, m.tipo_movimiento, p.codigo, p.nombre AS producto, m.cantidad, m.motivo, " +
+            "       u.email AS usuario " +
+            "FROM movimientos_stock m " +
+            "JOIN productos p ON p.id = m.producto_id " +
+            "JOIN usuarios u ON u.id = m.usuario_id " +
+            "WHERE m.fecha >= ? AND m.fecha < ? " +
+            "ORDER BY m.fecha, m.id";
+
+    private static final String SQL_AUDITORIA =
+            "SELECT a.id, a.fecha, a.entidad, a.entidad_id, a.accion, a.usuario, a.detalle, " +
+            "       a.cambios, a.cambios_comprimidos, a.valor_anterior, a.valor_nuevo " +
+            "FROM auditoria_logs a " +
+            "WHERE a.fecha >= ? AND a.fecha < ? " +
+            "ORDER BY a.fecha, a.id";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private CodificadorAuditoria codificadorAuditoria;
+
+    @Value("${app.exportacion.fetch-size:1000}")
+    private int fetchSize;
+
+    private final TransactionTemplate soloLectura;
+
+    public ExportacionService(PlatformTransactionManager transactionManager) {
+        this.soloLectura = new TransactionTemplate(transactionManager);
+        this.soloLectura.setReadOnly(true);
+    }
+
+    public void exportarVentas(LocalDate desde, LocalDate hasta, Formato formato, OutputStream out) {
+        exportar("ventas", SQL_VENTAS, desde, hasta, formato, out,
+                new String[]{"ID", "Fecha", "Estado", "Método de pago", "Total", "Descuento", "Vendedor", "Cliente", "Email cliente"},
+                (rs, fila) -> {
+                    fila[0] = rs.getLong("id");
+                    fila[1] = fecha(rs, "fecha_venta");
+                    fila[2] = rs.getString("estado");
+                    fila[3] = rs.getString("metodo_pago");
+                    fila[4] = rs.getBigDecimal("total_venta");
+                    fila[5] = rs.getBigDecimal("monto_descuento");
+                    fila[6] = nombreCompleto(rs.getString("vendedor_nombre"), rs.getString("vendedor_apellido"));
+                    fila[7] = nombreCompleto(rs.getString("cliente_nombre"), rs.getString("cliente_apellido"));
+                    fila[8] = rs.getString("cliente_email");
+                });
+    }
+
+    public void exportarMovimientosStock(LocalDate desde, LocalDate hasta, Formato formato, OutputStream out) {
+        exportar("movimientos_stock", SQL_MOVIMIENTOS, desde, hasta, formato, out,
+                new String[]{"ID", "Fecha", "Tipo", "Código", "Producto", "Cantidad", "Motivo", "Usuario"},
+                (rs, fila) -> {
+                    fila[0] = rs.getLong("id");
+                    fila[1] = fecha(rs, "fecha");
+                    fila[2] = rs.getString("tipo_movimiento");
+                    fila[3] = rs.getString("codigo");
+                    fila[4] = rs.getString("producto");
+                    fila[5] = rs.getInt("cantidad");
+                    fila[6] = rs.getString("motivo");
+                    fila[7] = rs.getString("usuario");
+                });
+    }
+
+    public void exportarAuditoria(LocalDate desde, LocalDate hasta, Formato formato, OutputStream out) {
+        exportar("auditoria", SQL_AUDITORIA, desde, hasta, formato, out,
+                new String[]{"ID", "Fecha", "Entidad", "ID Entidad", "Acción", "Usuario", "Detalle", "Valor anterior", "Valor nuevo"},
+                (rs, fila) -> {
+                    fila[0] = rs.getLong("id");
+                    fila[1] = fecha(rs, "fecha");
+                    fila[2] = rs.getString("entidad");
+                    fila[3] = rs.getString("entidad_id");
+                    fila[4] = rs.getString("accion");
+                    fila[5] = rs.getString("usuario");
+                    fila[6] = rs.getString("detalle");
+                    CodificadorAuditoria.Vista vista = codificadorAuditoria.vista(rs.getString("cambios"),
+                            rs.getBytes("cambios_comprimidos"), rs.getString("valor_anterior"), rs.getString("valor_nuevo"));
+                    fila[7] = vista.valorAnterior();
+                    fila[8] = vista.valorNuevo();
+                });
+    }
+
+    @FunctionalInterface
+    private interface MapeoFila {
+        void mapear(ResultSet rs, Object[] fila) throws SQLException;
+    }
+
+    // [desde, hasta] en días completos: hasta se incluye entero
+    private void exportar(String nombre, String sql, LocalDate desde, LocalDate hasta, Formato formato,
+                          OutputStream out, String[] columnas, MapeoFila mapeo) {
+        long inicio = System.currentTimeMillis();
+        long[] filas = {0};
+        try {
+            EscritorTabular escritor = formato == Formato.XLSX ? new EscritorXlsx(out, nombre) : new EscritorCsv(out);
+            escritor.encabezado(columnas);
+            Object[] fila = new Object[columnas.length]; // se reutiliza: nada se acumula por fila
+
+            soloLectura.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setTimestamp(1, Timestamp.valueOf(desde.atStartOfDay()));
+                ps.setTimestamp(2, Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                mapeo.mapear(rs, fila);
+                try {
+                    escritor.fila(fila);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                filas[0]++;
+            }));
+
+            // Solo se cierra si salió todo: si la consulta falla a mitad, el archivo queda
+            // incompleto (XLSX inválido / respuesta cortada) en vez de parecer una exportación entera
+            escritor.close();
+        } catch (IOException e) {
+            logger.warn("⚠️ Exportación de {} interrumpida tras {} filas: {}", nombre, filas[0], e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (UncheckedIOException e) {
+            // Lo típico: el cliente cortó la descarga
+            logger.warn("⚠️ Exportación de {} interrumpida tras {} filas: {}", nombre, filas[0], e.getMessage());
+            throw e;
+        }
+        logger.info("📤 Exportación de {} ({} a {}, {}): {} filas en {} ms", nombre, desde, hasta,
+                formato.getExtension(), filas[0], System.currentTimeMillis() - inicio);
+    }
+
+    private static LocalDateTime fecha(ResultSet rs, String columna) throws SQLException {
+        Timestamp ts = rs.getTimestamp(columna);
+        return ts != null ? ts.toLocalDateTime() : null;
+    }
+
+    private static String nombreCompleto(String nombre, String apellido) {
+        if (nombre == null) return apellido;
+        return apellido != null ? nombre + " " + apellido : nombre;
+    }
+}
@@ -0,0 +1,320 @@
+package com.masterserv.productos.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Almacén de imágenes (productos y logo) en disco, direccionado por contenido.
+ *
+ * Antes las imágenes viajaban como data URI "base64," dentro de columnas TEXT: cada página del
+ * catálogo, el chatbot y cada PDF arrastraban la imagen completa por la base y el JSON.
+ * Ahora la columna guarda solo el nombre (sha256.ext) y el archivo vive en
+ * app.imagenes.directorio/ab/sha256.ext. Mismo contenido = mismo archivo, así que un
+ * archivo nunca cambia y se puede cachear "para siempre". La URL pública
+ * (app.imagenes.url-base + "/" + nombre) se arma al responder (url(), ProductoMapper): cambiar
+ * de dominio no obliga a reescribir la base.
+ *
+ * Junto al original se guarda una miniatura de LADO_MINIATURA px (sha256_m.ext) para las
+ * tarjetas del catálogo y el chatbot.
+ *
+ * Solo se escribe en disco si app.imagenes.persistente=true (el directorio es un volumen que
+ * sobrevive a los redeploys). Si no, las imágenes siguen inline como data URI, como antes.
+ */
+@Service
+public class ImagenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagenService.class);
+
+    public static final int LADO_MINIATURA = 240;
+
+    // sha256 + "_m" opcional (miniatura) + extensión; también evita path traversal en el controlador
+    private static final Pattern NOMBRE = Pattern.compile("([0-9a-f]{64})(_m)?\\.(jpg|png|gif|webp)");
+    private static final Pattern ORIGINAL = Pattern.compile("([0-9a-f]{64})\\.(jpg|png|gif|webp)");
+    // Filas guardadas con la URL completa antes de que la columna tuviera solo el nombre
+    private static final Pattern URL_NUESTRA = Pattern.compile("/imagenes/([0-9a-f]{64}\\.(jpg|png|gif|webp))$");
+    private static final Pattern DATA_URI = Pattern.compile("^data:([\\w/+.-]+)?(;[\\w=-]+)*;base64,", Pattern.CASE_INSENSITIVE);
+
+    @Value("${app.imagenes.directorio:./data/imagenes}")
+    private String directorio;
+
+    @Value("${app.imagenes.url-base:/api/imagenes}")
+    private String urlBase;
+
+    @Value("${app.imagenes.max-bytes:5242880}")
+    private long maxBytes;
+
+    // Tope de ancho x alto antes de decodificar: un PNG de pocos KB puede declarar 50000x50000
+    @Value("${app.imagenes.max-pixeles:25000000}")
+    private long maxPixeles;
+
+    @Value("${app.imagenes.persistente:false}")
+    private boolean persistente;
+
+    private Path raiz;
+
+    @PostConstruct
+    public void inicializar() {
+        raiz = Paths.get(directorio).toAbsolutePath();
+        try {
+            Files.createDirectories(raiz);
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo crear el directorio de imágenes {}: {}", raiz, e.getMessage());
+        }
+        if (!persistente) {
+            logger.warn("⚠️ app.imagenes.persistente=false: las imágenes quedan inline en la base (data URI). " +
+                    "Activarlo solo si {} es un volumen que sobrevive a los redeploys.", raiz);
+        }
+    }
+
+    public boolean isPersistente() {
+        return persistente;
+    }
+
+    /**
+     * Valor a guardar en Producto.imagenUrl o EmpresaConfig.logoUrl. Un data URI se guarda en
+     * disco y queda su nombre (si el almacén es persistente); una URL nuestra (la que devolvió
+     * url() y el front manda de vuelta al editar) vuelve a ser el nombre; cualquier otro valor
+     * (URL externa, null) se devuelve igual.
+     */
+    public String normalizar(String valor) {
+        if (valor == null) return null;
+        if (DATA_URI.matcher(valor).find()) {
+            return persistente ? guardarDataUri(valor) : valor;
+        }
+        String nombre = nombreLocal(valor);
+        return nombre != null ? nombre : valor;
+    }
+
+    /** Imagen subida por el controlador: mismo criterio que normalizar(). */
+    public String almacenar(byte[] datos) {
+        if (persistente) return guardar(datos);
+        validar(datos);
+        String extension = extension(datos);
+        return "data:" + tipoContenido("x." + extension) + ";base64," + Base64.getEncoder().encodeToString(datos);
+    }
+
+    /** URL pública de un valor de la columna (nombre nuestro, URL externa o data URI). */
+    public String url(String valor) {
+        String nombre = nombreLocal(valor);
+        return nombre != null ? urlBase + "/" + nombre : valor;
+    }
+
+    /**
+     * URL de la miniatura; para URLs externas, data URIs (o webp, que ImageIO no puede achicar)
+     * devuelve lo mismo que url().
+     */
+    public String urlMiniatura(String valor) {
+        String nombre = nombreLocal(valor);
+        if (nombre == null || nombre.endsWith(".webp")) return valor;
+        int punto = nombre.lastIndexOf('.');
+        return urlBase + "/" + nombre.substring(0, punto) + "_m" + nombre.substring(punto);
+    }
+
+    public String guardarDataUri(String dataUri) {
+        Matcher m = DATA_URI.matcher(dataUri);
+        if (!m.find()) {
+            throw new IllegalArgumentException("La imagen no es un data URI en base64.");
+        }
+        byte[] datos;
+        try {
+            datos = Base64.getMimeDecoder().decode(dataUri.substring(m.end()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("La imagen no es un base64 válido.");
+        }
+        return guardar(datos);
+    }
+
+    /** Guarda la imagen (si no estaba) y su miniatura. Devuelve el nombre del original (sha256.ext). */
+    public String guardar(byte[] datos) {
+        validar(datos);
+        String extension = extension(datos);
+        String nombre = sha256(datos) + "." + extension;
+        Path archivo = ruta(nombre);
+        try {
+            if (!Files.exists(archivo)) {
+                Files.createDirectories(archivo.getParent());
+                Path tmp = Files.createTempFile(archivo.getParent(), nombre, ".tmp");
+                Files.write(tmp, datos);
+                Files.move(tmp, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                generarMiniatura(nombre, datos);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo guardar la imagen: " + e.getMessage(), e);
+        }
+        return nombre;
+    }
+
+    /**
+     * Archivo a servir para un nombre pedido por URL. Si es una miniatura que falta (imagen
+     * migrada sin miniatura, o borrada a mano) se genera en el momento.
+     */
+    public Optional<Path> archivo(String nombre) {
+        Matcher m = NOMBRE.matcher(nombre);
+        if (!m.matches()) return Optional.empty();
+
+        Path archivo = ruta(nombre);
+        if (Files.isReadable(archivo)) return Optional.of(archivo);
+
+        if (m.group(2) != null) {
+            Path original = ruta(m.group(1) + "." + m.group(3));
+            if (Files.isReadable(original)) {
+                try {
+                    generarMiniatura(m.group(1) + "." + m.group(3), Files.readAllBytes(original));
+                } catch (IOException e) {
+                    logger.warn("⚠️ No se pudo leer {}: {}", original, e.getMessage());
+                }
+                // Si no se pudo generar (formato que ImageIO no lee) se sirve el original
+                return Optional.of(Files.isReadable(archivo) ? archivo : original);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Bytes de una imagen nuestra a partir del valor de la columna (para el logo de los PDF). */
+    public Optional<byte[]> leer(String valor) {
+        String nombre = nombreLocal(valor);
+        if (nombre == null) return Optional.empty();
+        return archivo(nombre).flatMap(p -> {
+            try {
+                return Optional.of(Files.readAllBytes(p));
+            } catch (IOException e) {
+                logger.warn("⚠️ No se pudo leer la imagen {}: {}", p, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    public static String tipoContenido(String nombre) {
+        if (nombre.endsWith(".png")) return "image/png";
+        if (nombre.endsWith(".gif")) return "image/gif";
+        if (nombre.endsWith(".webp")) return "image/webp";
+        return "image/jpeg";
+    }
+
+    // --- Internos ---
+
+    // Nombre de un original nuestro: el valor tal cual, o el final de una URL vieja (con cualquier url-base)
+    private static String nombreLocal(String valor) {
+        if (valor == null) return null;
+        if (ORIGINAL.matcher(valor).matches()) return valor;
+        Matcher m = URL_NUESTRA.matcher(valor);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private void validar(byte[] datos) {
+        if (datos == null || datos.length == 0) {
+            throw new IllegalArgumentException("La imagen está vacía.");
+        }
+        if (datos.length > maxBytes) {
+            throw new IllegalArgumentException("La imagen supera el máximo de " + (maxBytes / 1024) + " KB.");
+        }
+        long pixeles = pixeles(datos);
+        if (pixeles > maxPixeles) {
+            throw new IllegalArgumentException("La imagen es demasiado grande (" + pixeles + " píxeles, máximo " + maxPixeles + ").");
+        }
+    }
+
+    // Ancho x alto según la cabecera, sin decodificar la imagen; -1 si ImageIO no conoce el formato (webp)
+    private static long pixeles(byte[] datos) {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(new ByteArrayInputStream(datos))) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) return -1;
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                return (long) lector.getWidth(0) * lector.getHeight(0);
+            } finally {
+                lector.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("La imagen está dañada: " + e.getMessage());
+        }
+    }
+
+    private Path ruta(String nombre) {
+        return raiz.resolve(nombre.substring(0, 2)).resolve(nombre);
+    }
+
+    private void generarMiniatura(String nombreOriginal, byte[] datos) {
+        try {
+            // Archivos que ya estaban en disco (o migrados) no pasaron por validar()
+            long pixeles = pixeles(datos);
+            if (pixeles > maxPixeles) {
+                logger.warn("⚠️ Sin miniatura para {}: {} píxeles supera el máximo de {}.", nombreOriginal, pixeles, maxPixeles);
+                return;
+            }
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(datos));
+            if (original == null) return; // webp u otro formato sin lector
+
+            String extension = nombreOriginal.substring(nombreOriginal.lastIndexOf('.') + 1);
+            double escala = Math.min(1.0, (double) LADO_MINIATURA / Math.max(original.getWidth(), original.getHeight()));
+            int ancho = Math.max(1, (int) Math.round(original.getWidth() * escala));
+            int alto = Math.max(1, (int) Math.round(original.getHeight() * escala));
+
+            // JPEG no tiene canal alfa
+            int tipo = "jpg".equals(extension) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+            BufferedImage miniatura = new BufferedImage(ancho, alto, tipo);
+            Graphics2D g = miniatura.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(original, 0, 0, ancho, alto, null);
+            } finally {
+                g.dispose();
+            }
+
+            String nombre = nombreOriginal.replace("." + extension, "_m." + extension);
+            Path archivo = ruta(nombre);
+            Path tmp = Files.createTempFile(archivo.getParent(), nombre, ".tmp");
+            if (!ImageIO.write(miniatura, "jpg".equals(extension) ? "jpeg" : extension, tmp.toFile())) {
+                Files.deleteIfExists(tmp);
+                return;
+            }
+            Files.move(tmp, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("⚠️ No se pudo generar la miniatura de {}: {}", nombreOriginal, e.getMessage());
+        }
+    }
+
+    // Por firma del archivo, no por lo que diga el data URI
+    private static String extension(byte[] d) {
+        if (d.length > 3 && (d[0] & 0xFF) == 0xFF && (d[1] & 0xFF) == 0xD8 && (d[2] & 0xFF) == 0xFF) return "jpg";
+        if (d.length > 8 && (d[0] & 0xFF) == 0x89 && d[1] == 'P' && d[2] == 'N' && d[3] == 'G') return "png";
+        if (d.length > 6 && d[0] == 'G' && d[1] == 'I' && d[2] == 'F' && d[3] == '8') return "gif";
+        if (d.length > 12 && d[0] == 'R' && d[1] == 'I' && d[2] == 'F' && d[3] == 'F'
+                && d[8] == 'W' && d[9] == 'E' && d[10] == 'B' && d[11] == 'P') return "webp";
+        throw new IllegalArgumentException("Formato de imagen no soportado (JPG, PNG, GIF o WEBP).");
+    }
+
+    private static String sha256(byte[] datos) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.Producto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Motor de mutación de stock.
+ * Aplica todas las líneas de una operación con UPDATE condicionales agrupados
+ * en un único batch JDBC, en lugar del ciclo findById -> comparar -> save por producto.
+ * La condición va en el WHERE, así que dos terminales vendiendo el mismo producto
+ * nunca dejan el stock en negativo.
+ *
+ * Devuelve las filas afectadas por producto: 0 significa que la condición no se cumplió
+ * (o que el producto no existe) y es responsabilidad del llamador traducirlo a una excepción.
+ */
+@Service
+public class MotorStockService {
+
+    private static final String SQL_DESCONTAR =
+            "UPDATE productos SET stock_actual = stock_actual - ?, fecha_modificacion = ? " +
+            "WHERE id = ? AND stock_actual >= ?";
+
+    private static final String SQL_AJUSTAR =
+            "UPDATE productos SET stock_actual = stock_actual + ?, fecha_modificacion = ? " +
+            "WHERE id = ? AND stock_actual + ? >= 0";
+
+    private static final String SQL_REPONER =
+            "UPDATE productos SET stock_actual = stock_actual + ?, precio_costo = COALESCE(?, precio_costo), fecha_modificacion = ? " +
+            "WHERE id = ?";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Descuenta las cantidades indicadas (productoId -> cantidad) solo si hay stock suficiente.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public Map<Long, Integer> descontar(Map<Long, Integer> cantidades) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return ejecutar(SQL_DESCONTAR, cantidades, (id, cantidad) ->
+                new Object[]{cantidad, ahora, id, cantidad});
+    }
+
+    /**
+     * Suma las cantidades indicadas. Si hay un costo nuevo (> 0) para el producto, también lo actualiza.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public Map<Long, Integer> reponer(Map<Long, Integer> cantidades, Map<Long, BigDecimal> nuevosCostos) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return ejecutar(SQL_REPONER, cantidades, (id, cantidad) -> {
+            BigDecimal costo = nuevosCostos != null ? nuevosCostos.get(id) : null;
+            if (costo != null && costo.compareTo(BigDecimal.ZERO) <= 0) costo = null;
+            return new Object[]{cantidad, costo, ahora, id};
+        });
+    }
+
+    /**
+     * Aplica variaciones con signo (ajuste manual) sin permitir que el stock quede negativo.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public Map<Long, Integer> ajustar(Map<Long, Integer> variaciones) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return ejecutar(SQL_AJUSTAR, variaciones, (id, variacion) ->
+                new Object[]{variacion, ahora, id, variacion});
+    }
+
+    private Map<Long, Integer> ejecutar(String sql, Map<Long, Integer> lineas, ParametrosLinea parametros) {
+        if (lineas == null || lineas.isEmpty()) return Collections.emptyMap();
+
+        // Orden fijo por ID: dos ventas concurrentes toman los locks de fila en el mismo orden (sin deadlocks).
+        Map<Long, Integer> ordenadas = new TreeMap<>(lineas);
+
+        // Lo pendiente en el contexto JPA debe llegar a la base ANTES que nuestros UPDATE.
+        entityManager.flush();
+
+        List<Object[]> batch = new ArrayList<>(ordenadas.size());
+        ordenadas.forEach((id, cantidad) -> batch.add(parametros.de(id, cantidad)));
+        int[] filas = jdbcTemplate.batchUpdate(sql, batch);
+
+        Map<Long, Integer> afectadas = new LinkedHashMap<>();
+        int i = 0;
+        for (Long id : ordenadas.keySet()) {
+            // PgJDBC y H2 informan el conteo real en UPDATE; SUCCESS_NO_INFO solo aparece si el driver reescribe el batch.
+            int n = filas[i++];
+            afectadas.put(id, n == Statement.SUCCESS_NO_INFO ? 1 : n);
+        }
+
+        sincronizarContexto(afectadas);
+        return afectadas;
+    }
+
+    /**
+     * Los UPDATE por JDBC no pasan por Hibernate: si algún Producto afectado ya estaba
+     * cargado en esta transacción, lo refrescamos para que no quede con el stock viejo.
+     * getReference no consulta la base; solo devuelve la instancia gestionada si existe.
+     */
+    private void sincronizarContexto(Map<Long, Integer> afectadas) {
+        afectadas.forEach((id, filas) -> {
+            if (filas <= 0) return;
+            Producto gestionado = entityManager.getReference(Producto.class, id);
+            if (Hibernate.isInitialized(gestionado)) {
+                entityManager.refresh(gestionado);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParametrosLinea {
+        Object[] de(Long productoId, Integer cantidad);
+    }
+}
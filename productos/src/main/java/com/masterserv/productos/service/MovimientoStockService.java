@@ -7,7 +7,6 @@ import com.masterserv.productos.entity.Producto;
 import com.masterserv.productos.entity.Usuario;
 import com.masterserv.productos.enums.TipoMovimiento;
 import com.masterserv.productos.mapper.MovimientoStockMapper;
-import com.masterserv.productos.repository.AuditoriaRepository;
 import com.masterserv.productos.repository.MovimientoStockRepository;
 import com.masterserv.productos.repository.ProductoRepository;
 import com.masterserv.productos.repository.UsuarioRepository;
@@ -16,6 +15,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -27,7 +27,7 @@ public class MovimientoStockService {
     @Autowired private UsuarioRepository usuarioRepository;
     @Autowired private MovimientoStockRepository movimientoStockRepository;
     @Autowired private MovimientoStockMapper movimientoStockMapper;
-    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private AuditoriaService auditoriaService;
 
     @Transactional(propagation = Propagation.REQUIRED) 
     public void registrarMovimiento(MovimientoStockDTO dto) {
@@ -37,10 +37,30 @@ public class MovimientoStockService {
         Usuario usuario = usuarioRepository.findById(dto.getUsuarioId())
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + dto.getUsuarioId()));
 
+        registrarMovimiento(dto, producto, usuario);
+    }
+
+    /**
+     * Variante para quien ya tiene el Producto y el Usuario cargados (p. ej. VentaService),
+     * así no se vuelven a buscar por cada línea. El stock ya fue modificado: el anterior se deduce del actual.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void registrarMovimiento(MovimientoStockDTO dto, Producto producto, Usuario usuario) {
+        int cantidad = cantidadConSigno(dto);
+        registrarMovimiento(dto, producto, usuario, LocalDateTime.now(), producto.getStockActual() - cantidad);
+    }
+
+    /**
+     * Variante para los efectos diferidos del outbox: la fecha y el stock anterior son los del
+     * momento de la venta/cancelación (vienen en el evento), no los de cuando se aplica.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void registrarMovimiento(MovimientoStockDTO dto, Producto producto, Usuario usuario,
+                                    LocalDateTime fecha, int stockAnterior) {
         MovimientoStock movimiento = movimientoStockMapper.toMovimientoStock(dto);
         movimiento.setProducto(producto);
         movimiento.setUsuario(usuario);
-        movimiento.setFecha(LocalDateTime.now());
+        movimiento.setFecha(fecha);
 
         String motivoFinal = "Movimiento registrado por el sistema";
         if (dto.getMotivo() != null && !dto.getMotivo().trim().isEmpty()) {
@@ -48,21 +68,27 @@ public class MovimientoStockService {
         }
         movimiento.setMotivo(motivoFinal);
 
-        int cantidadGuardar = dto.getCantidad();
-        if (dto.getTipoMovimiento() == TipoMovimiento.SALIDA_VENTA) {
-            cantidadGuardar = -Math.abs(cantidadGuardar); 
-        }
-        
+        int cantidadGuardar = cantidadConSigno(dto);
         movimiento.setCantidad(cantidadGuardar);
         movimientoStockRepository.save(movimiento);
 
-        registrarEnAuditoriaGeneral(producto, usuario, dto.getTipoMovimiento(), cantidadGuardar, motivoFinal);
+        registrarEnAuditoriaGeneral(producto, usuario, dto.getTipoMovimiento(), cantidadGuardar, motivoFinal,
+                fecha, stockAnterior);
     }
 
-    private void registrarEnAuditoriaGeneral(Producto producto, Usuario usuario, TipoMovimiento tipo, int cantidad, String motivo) {
+    private static int cantidadConSigno(MovimientoStockDTO dto) {
+        int cantidad = dto.getCantidad();
+        if (dto.getTipoMovimiento() == TipoMovimiento.SALIDA_VENTA) {
+            cantidad = -Math.abs(cantidad);
+        }
+        return cantidad;
+    }
+
+    private void registrarEnAuditoriaGeneral(Producto producto, Usuario usuario, TipoMovimiento tipo, int cantidad, String motivo,
+                                             LocalDateTime fecha, int stockAnterior) {
         try {
             Auditoria audit = new Auditoria();
-            audit.setFecha(LocalDateTime.now());
+            audit.setFecha(fecha);
             audit.setUsuario(usuario != null ? usuario.getEmail() : "sistema@masterserv.com");
             audit.setEntidad("Producto");
             audit.setEntidadId(producto.getId().toString());
@@ -85,13 +111,12 @@ public class MovimientoStockService {
             if (detalleCompleto.length() > 255) detalleCompleto = detalleCompleto.substring(0, 255);
             audit.setDetalle(detalleCompleto); 
 
-            int stockNuevo = producto.getStockActual();
-            int stockAnterior = stockNuevo - cantidad;
+            int stockNuevo = stockAnterior + cantidad;
 
             audit.setValorAnterior("{ \"Stock\": " + stockAnterior + " }");
             audit.setValorNuevo("{ \"Stock\": " + stockNuevo + ", \"Variacion\": " + cantidad + " }");
 
-            auditoriaRepository.save(audit);
+            auditoriaService.guardar(audit);
         } catch (Exception e) {
             System.err.println(">>> [ERROR] Auditoría: " + e.getMessage());
         }
@@ -100,10 +125,22 @@ public class MovimientoStockService {
     // ✅ CORREGIDO: Mapeo manual del nombre de usuario y uso del nuevo método del mapper
     @Transactional(readOnly = true)
     public List<MovimientoStockDTO> obtenerMovimientosPorProducto(Long productoId) {
+        return obtenerMovimientosPorProducto(productoId, null, null);
+    }
+
+    // Con desde/hasta (ambos incluidos) la consulta solo toca las particiones de ese rango
+    @Transactional(readOnly = true)
+    public List<MovimientoStockDTO> obtenerMovimientosPorProducto(Long productoId, LocalDate desde, LocalDate hasta) {
         Producto producto = productoRepository.findById(productoId)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        
-        return movimientoStockRepository.findByProductoOrderByFechaDesc(producto)
+
+        List<MovimientoStock> movimientos = desde == null && hasta == null
+                ? movimientoStockRepository.findByProductoOrderByFechaDesc(producto)
+                : movimientoStockRepository.findByProductoEntreFechas(producto,
+                        desde != null ? desde.atStartOfDay() : LocalDateTime.of(1970, 1, 1, 0, 0),
+                        (hasta != null ? hasta : LocalDate.now()).plusDays(1).atStartOfDay());
+
+        return movimientos
                 .stream()
                 .map(mov -> {
                     MovimientoStockDTO dto = movimientoStockMapper.toMovimientoStockDTO(mov);
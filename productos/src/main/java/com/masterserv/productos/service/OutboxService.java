@@ -0,0 +1,139 @@
+package com.masterserv.productos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.entity.EventoOutbox;
+import com.masterserv.productos.enums.EstadoOutbox;
+import com.masterserv.productos.enums.TipoEventoOutbox;
+import com.masterserv.productos.repository.EventoOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbox transaccional para los efectos secundarios de las ventas.
+ *
+ * registrar() inserta el evento en la MISMA transacción que la venta: o quedan los dos
+ * o ninguno. Un despachador programado toma los pendientes en lotes y los aplica con
+ * un pool acotado. Los eventos de una misma venta se procesan en orden y por un solo
+ * hilo (una cancelación nunca se adelanta a su venta); ventas distintas van en paralelo.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    @Autowired private EventoOutboxRepository eventoOutboxRepository;
+    @Autowired private EfectosVentaService efectosVentaService;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${app.outbox.tamano-lote:50}")
+    private int tamanoLote;
+
+    @Value("${app.outbox.max-intentos:5}")
+    private int maxIntentos;
+
+    private final ThreadPoolExecutor pool;
+
+    public OutboxService(@Value("${app.outbox.paralelismo:2}") int paralelismo) {
+        AtomicInteger contador = new AtomicInteger();
+        // Cola acotada + CallerRunsPolicy: si los efectos se atrasan, el propio despachador
+        // trabaja y deja de leer lotes nuevos (backpressure natural, sin crecer en memoria).
+        this.pool = new ThreadPoolExecutor(paralelismo, paralelismo, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(paralelismo * 4),
+                r -> {
+                    Thread t = new Thread(r, "outbox-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Encola un evento. Debe llamarse dentro de la transacción del agregado.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public EventoOutbox registrar(TipoEventoOutbox tipo, Long agregadoId, Map<String, Object> payload) {
+        EventoOutbox evento = new EventoOutbox();
+        evento.setTipo(tipo);
+        evento.setAgregadoId(agregadoId);
+        evento.setEstado(EstadoOutbox.PENDIENTE);
+        evento.setIntentos(0);
+        evento.setFechaCreacion(LocalDateTime.now());
+        try {
+            evento.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("No se pudo serializar el evento " + tipo + ": " + e.getMessage(), e);
+        }
+        return eventoOutboxRepository.save(evento);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.intervalo-ms:500}")
+    public void despachar() {
+        List<EventoOutbox> pendientes = eventoOutboxRepository
+                .findByEstadoOrderByIdAsc(EstadoOutbox.PENDIENTE, PageRequest.of(0, tamanoLote));
+        if (pendientes.isEmpty()) return;
+
+        Map<Long, List<EventoOutbox>> porAgregado = new LinkedHashMap<>();
+        for (EventoOutbox e : pendientes) {
+            porAgregado.computeIfAbsent(e.getAgregadoId(), k -> new ArrayList<>()).add(e);
+        }
+
+        List<Future<?>> tareas = new ArrayList<>(porAgregado.size());
+        for (List<EventoOutbox> grupo : porAgregado.values()) {
+            tareas.add(pool.submit(() -> procesarGrupo(grupo)));
+        }
+        // Esperamos el lote completo antes de leer el siguiente: así nunca hay dos hilos con la misma venta.
+        for (Future<?> t : tareas) {
+            try {
+                t.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Error despachando outbox: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void procesarGrupo(List<EventoOutbox> grupo) {
+        for (EventoOutbox evento : grupo) {
+            try {
+                efectosVentaService.aplicar(evento);
+            } catch (Exception e) {
+                logger.warn("⚠️ Outbox #{} ({} venta #{}) falló: {}",
+                        evento.getId(), evento.getTipo(), evento.getAgregadoId(), e.getMessage());
+                efectosVentaService.registrarFallo(evento.getId(), e.getMessage(), maxIntentos);
+                // Los siguientes de esta venta esperan al reintento del que falló
+                return;
+            }
+        }
+    }
+
+    public long pendientes() {
+        return eventoOutboxRepository.countByEstado(EstadoOutbox.PENDIENTE);
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,446 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.dto.ParticionDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Particiones mensuales por rango de "fecha" para auditoria_logs y movimientos_stock (solo PostgreSQL).
+ *
+ * Las dos tablas solo crecen y todas sus consultas filtran u ordenan por fecha (filtros de
+ * auditoría, exportaciones, listados por cursor). Particionadas por mes, PostgreSQL descarta
+ * las particiones fuera del rango pedido (partition pruning) y los índices de cada una quedan
+ * del tamaño de un mes.
+ *
+ * - Al arrancar: si la tabla todavía es una tabla común se convierte UNA vez (se renombra, se crea
+ *   la particionada con las mismas columnas, se copian las filas y se rearman PK, FKs e índices).
+ *   La PK pasa a ser (id, fecha) porque PostgreSQL exige que incluya la clave de partición.
+ * - Todos los días (app.particiones.cron): se crean las particiones de los próximos
+ *   app.particiones.meses-adelante meses y las que superan la retención de su tabla se separan
+ *   (DETACH), se vuelcan a un archivo gzip (una línea JSON por fila, row_to_json) en
+ *   app.particiones.archivo-dir y se borran.
+ * - Sin app.particiones.archivo-dir explícito no se archiva nada (las particiones viejas quedan en
+ *   la base): el archivo es la única copia de esos meses y tiene que ir a un volumen que sobreviva
+ *   a los redeploys, no al disco efímero del contenedor.
+ * - A pedido: reincorporar() vuelve a cargar un mes archivado y lo adjunta; queda marcado para
+ *   que el mantenimiento no lo vuelva a archivar hasta que se pida con archivar().
+ *
+ * No hay partición DEFAULT: una fila con fecha fuera de las particiones creadas falla al insertar
+ * (en auditoría va al spool y se reintenta). Con meses-adelante >= 1 no debería pasar nunca.
+ * Con varias instancias, el trabajo se serializa con un advisory lock.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class ParticionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParticionService.class);
+
+    private static final DateTimeFormatter SUFIJO = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String EXTENSION_ARCHIVO = ".jsonl.gz";
+    private static final String MARCA_REINCORPORADA = "reincorporada";
+    private static final long CLAVE_LOCK = 360_024L;
+    private static final int FILAS_POR_LOTE = 500;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Value("${app.particiones.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${app.particiones.meses-adelante:3}")
+    private int mesesAdelante;
+
+    @Value("${app.particiones.archivo-dir:}")
+    private String directorioArchivo;
+
+    @Value("${app.exportacion.fetch-size:1000}")
+    private int fetchSize;
+
+    // Tabla -> meses de retención (0 = no se archiva nunca)
+    private final Map<String, Integer> tablas = new LinkedHashMap<>();
+
+    private TransactionTemplate transaccion;
+    private Path archivo;
+    private volatile boolean activo;
+
+    public ParticionService(@Value("${app.particiones.auditoria.retencion-meses:12}") int retencionAuditoria,
+                            @Value("${app.particiones.movimientos-stock.retencion-meses:24}") int retencionMovimientos) {
+        tablas.put("auditoria_logs", retencionAuditoria);
+        tablas.put("movimientos_stock", retencionMovimientos);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        transaccion = new TransactionTemplate(transactionManager);
+        if (!habilitado) {
+            logger.info("🗂️ Particionado desactivado (app.particiones.habilitado=false).");
+            return;
+        }
+        String base = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(base)) {
+            logger.info("🗂️ Particionado desactivado: la base es {} (solo PostgreSQL).", base);
+            return;
+        }
+
+        if (directorioArchivo == null || directorioArchivo.isBlank()) {
+            logger.warn("⚠️ Sin app.particiones.archivo-dir (PARTICIONES_ARCHIVO_DIR): las particiones vencidas no se archivan.");
+        } else {
+            archivo = Paths.get(directorioArchivo).toAbsolutePath();
+            try {
+                Files.createDirectories(archivo);
+            } catch (IOException e) {
+                logger.warn("⚠️ No se pudo crear el directorio de archivo {}: {}", archivo, e.getMessage());
+            }
+        }
+
+        for (String tabla : tablas.keySet()) {
+            try {
+                transaccion.executeWithoutResult(status -> {
+                    jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + CLAVE_LOCK + ")");
+                    particionar(tabla);
+                    crearParticionesFuturas(tabla);
+                });
+            } catch (DataAccessException e) {
+                logger.error("❌ No se pudo particionar {}: {}", tabla, e.getMessage(), e);
+            }
+        }
+        activo = true;
+    }
+
+    /** Crea las particiones que vienen y archiva las vencidas. */
+    @Scheduled(cron = "${app.particiones.cron:0 30 3 * * *}")
+    public void mantener() {
+        if (!activo) return;
+        for (Map.Entry<String, Integer> entrada : tablas.entrySet()) {
+            String tabla = entrada.getKey();
+            try {
+                transaccion.executeWithoutResult(status -> {
+                    jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + CLAVE_LOCK + ")");
+                    crearParticionesFuturas(tabla);
+                });
+                if (entrada.getValue() > 0 && archivo != null) {
+                    archivarVencidas(tabla, YearMonth.now().minusMonths(entrada.getValue()));
+                }
+            } catch (RuntimeException e) {
+                logger.error("❌ Error en el mantenimiento de particiones de {}: {}", tabla, e.getMessage(), e);
+            }
+        }
+    }
+
+    public List<ParticionDTO> listar() {
+        verificarActivo();
+        List<ParticionDTO> resultado = new ArrayList<>();
+        for (String tabla : tablas.keySet()) {
+            jdbcTemplate.query(
+                    "SELECT c.relname, GREATEST(c.reltuples, 0)::bigint AS filas, obj_description(c.oid, 'pg_class') AS marca " +
+                    "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "WHERE i.inhparent = CAST(? AS regclass) ORDER BY c.relname",
+                    (RowCallbackHandler) rs -> {
+                        YearMonth mes = mesDe(tabla, rs.getString("relname"));
+                        if (mes == null) return;
+                        String estado = MARCA_REINCORPORADA.equals(rs.getString("marca")) ? "REINCORPORADA" : "ACTIVA";
+                        resultado.add(new ParticionDTO(tabla, mes.toString(), estado, rs.getLong("filas")));
+                    }, tabla);
+            if (archivo == null) continue;
+            try (var archivos = Files.newDirectoryStream(archivo, tabla + "_*" + EXTENSION_ARCHIVO)) {
+                for (Path a : archivos) {
+                    String particion = a.getFileName().toString().replace(EXTENSION_ARCHIVO, "");
+                    YearMonth mes = mesDe(tabla, particion);
+                    boolean cargada = resultado.stream().anyMatch(p -> p.tabla().equals(tabla) && mes != null && p.mes().equals(mes.toString()));
+                    if (mes != null && !cargada) resultado.add(new ParticionDTO(tabla, mes.toString(), "ARCHIVADA", null));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return resultado;
+    }
+
+    /** Vuelve a cargar y adjuntar un mes archivado. Devuelve las filas cargadas. */
+    public long reincorporar(String tabla, String mes) {
+        verificarActivo();
+        verificarArchivo();
+        YearMonth ym = mes(tabla, mes);
+        String particion = nombre(tabla, ym);
+        Path origen = archivo.resolve(particion + EXTENSION_ARCHIVO);
+        if (!Files.exists(origen)) {
+            throw new EntityNotFoundException("No hay archivo de " + tabla + " para " + ym + ".");
+        }
+        if (existe(particion)) {
+            throw new IllegalArgumentException("La partición " + particion + " ya está en la base.");
+        }
+
+        long[] filas = {0};
+        transaccion.executeWithoutResult(status -> {
+            jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + CLAVE_LOCK + ")");
+            jdbcTemplate.execute("CREATE TABLE " + particion + " (LIKE " + tabla + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            String insert = "INSERT INTO " + particion + " SELECT * FROM json_populate_record(NULL::" + tabla + ", CAST(? AS json))";
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(origen)), StandardCharsets.UTF_8))) {
+                List<Object[]> lote = new ArrayList<>(FILAS_POR_LOTE);
+                String linea;
+                while ((linea = reader.readLine()) != null) {
+                    if (linea.isBlank()) continue;
+                    lote.add(new Object[]{linea});
+                    if (lote.size() == FILAS_POR_LOTE) {
+                        jdbcTemplate.batchUpdate(insert, lote);
+                        filas[0] += lote.size();
+                        lote.clear();
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    jdbcTemplate.batchUpdate(insert, lote);
+                    filas[0] += lote.size();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + tabla + " ATTACH PARTITION " + particion + " " + rango(ym));
+            jdbcTemplate.execute("COMMENT ON TABLE " + particion + " IS '" + MARCA_REINCORPORADA + "'");
+        });
+        logger.info("🗂️ Partición {} reincorporada desde el archivo: {} filas.", particion, filas[0]);
+        return filas[0];
+    }
+
+    /** Archiva un mes a pedido (p.ej. uno reincorporado que ya no se necesita). Devuelve las filas archivadas. */
+    public long archivar(String tabla, String mes) {
+        verificarActivo();
+        verificarArchivo();
+        YearMonth ym = mes(tabla, mes);
+        String particion = nombre(tabla, ym);
+        if (!existe(particion)) {
+            throw new EntityNotFoundException("La partición " + particion + " no está en la base.");
+        }
+        if (!ym.isBefore(YearMonth.now())) {
+            throw new IllegalArgumentException("No se puede archivar el mes en curso ni los siguientes.");
+        }
+        separar(tabla, particion);
+        long filas = volcarYBorrar(particion);
+        if (existe(particion)) {
+            throw new IllegalStateException("No se pudo archivar " + particion + "; queda separada y se reintenta en el mantenimiento.");
+        }
+        return filas;
+    }
+
+    // --- Conversión inicial ---
+
+    private void particionar(String tabla) {
+        List<String> tipo = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, tabla);
+        if (tipo.isEmpty() || "p".equals(tipo.get(0))) return; // no existe todavía o ya está particionada
+
+        String vieja = tabla + "_sin_particionar";
+        logger.info("🗂️ Convirtiendo {} en tabla particionada por mes (una sola vez)...", tabla);
+        long inicio = System.currentTimeMillis();
+
+        // FKs e índices de la tabla original, para rearmarlos igual
+        List<String[]> fks = jdbcTemplate.query(
+                "SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint WHERE conrelid = CAST(? AS regclass) AND contype = 'f'",
+                (rs, n) -> new String[]{rs.getString(1), rs.getString(2)}, tabla);
+        List<String> indices = jdbcTemplate.queryForList(
+                "SELECT pg_get_indexdef(ix.indexrelid) FROM pg_index ix " +
+                "WHERE ix.indrelid = CAST(? AS regclass) AND NOT ix.indisprimary AND NOT ix.indisunique",
+                String.class, tabla);
+
+        jdbcTemplate.execute("ALTER TABLE " + tabla + " RENAME TO " + vieja);
+        jdbcTemplate.execute("CREATE TABLE " + tabla + " (LIKE " + vieja + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) " +
+                "PARTITION BY RANGE (fecha)");
+
+        // La clave de partición no admite NULL: esas filas (no debería haber) van con la fecha más vieja
+        jdbcTemplate.update("UPDATE " + vieja + " SET fecha = COALESCE((SELECT MIN(fecha) FROM " + vieja + "), now()) " +
+                "WHERE fecha IS NULL");
+        Timestamp minima = jdbcTemplate.queryForObject("SELECT MIN(fecha) FROM " + vieja, Timestamp.class);
+        YearMonth desde = minima != null ? YearMonth.from(minima.toLocalDateTime()) : YearMonth.now();
+        for (YearMonth m = desde; m.isBefore(YearMonth.now()); m = m.plusMonths(1)) {
+            crearParticion(tabla, m);
+        }
+        crearParticionesFuturas(tabla);
+
+        int filas = jdbcTemplate.update("INSERT INTO " + tabla + " SELECT * FROM " + vieja);
+        jdbcTemplate.execute("DROP TABLE " + vieja);
+
+        jdbcTemplate.execute("ALTER TABLE " + tabla + " ADD CONSTRAINT " + tabla + "_pkey PRIMARY KEY (id, fecha)");
+        for (String[] fk : fks) {
+            jdbcTemplate.execute("ALTER TABLE " + tabla + " ADD CONSTRAINT " + fk[0] + " " + fk[1]);
+        }
+        for (String indice : indices) {
+            // "CREATE INDEX x ON public.tabla_sin_particionar USING ..." -> sobre la particionada (se propaga a cada mes)
+            jdbcTemplate.execute(indice.replaceFirst(" ON (\\S+\\.)?" + vieja + " ", " ON " + tabla + " "));
+        }
+        logger.info("🗂️ {} particionada: {} filas en {} ms.", tabla, filas, System.currentTimeMillis() - inicio);
+    }
+
+    // --- Mantenimiento ---
+
+    private void crearParticionesFuturas(String tabla) {
+        YearMonth actual = YearMonth.now();
+        for (int i = 0; i <= mesesAdelante; i++) {
+            crearParticion(tabla, actual.plusMonths(i));
+        }
+    }
+
+    private void crearParticion(String tabla, YearMonth mes) {
+        String particion = nombre(tabla, mes);
+        // Si el mes está archivado no se recrea vacío: se trae con reincorporar()
+        if (archivo != null && Files.exists(archivo.resolve(particion + EXTENSION_ARCHIVO))) return;
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + particion + " PARTITION OF " + tabla + " " + rango(mes));
+    }
+
+    private void archivarVencidas(String tabla, YearMonth limite) {
+        List<String> adjuntas = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = CAST(? AS regclass) AND obj_description(c.oid, 'pg_class') IS DISTINCT FROM ?",
+                String.class, tabla, MARCA_REINCORPORADA);
+        for (String particion : adjuntas) {
+            YearMonth mes = mesDe(tabla, particion);
+            if (mes != null && mes.isBefore(limite)) separar(tabla, particion);
+        }
+
+        // Todo lo separado y no borrado: lo de recién y lo que haya quedado de una corrida que falló
+        List<String> separadas = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_class c " +
+                "WHERE c.relkind = 'r' AND NOT c.relispartition AND c.relnamespace = CAST(current_schema() AS regnamespace) " +
+                "AND c.relname ~ ?",
+                String.class, "^" + tabla + "_[0-9]{4}_[0-9]{2}$");
+        for (String particion : separadas) {
+            volcarYBorrar(particion);
+        }
+    }
+
+    private void separar(String tabla, String particion) {
+        transaccion.executeWithoutResult(status -> {
+            jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + CLAVE_LOCK + ")");
+            jdbcTemplate.execute("ALTER TABLE " + tabla + " DETACH PARTITION " + particion);
+        });
+    }
+
+    /**
+     * Vuelca la partición (ya separada) a un gzip de líneas JSON y recién después de tenerlo en
+     * disco (fsync + rename atómico) la borra. Si algo falla la tabla queda y se reintenta mañana.
+     */
+    private long volcarYBorrar(String particion) {
+        Path destino = archivo.resolve(particion + EXTENSION_ARCHIVO);
+        Path temporal = archivo.resolve(particion + EXTENSION_ARCHIVO + ".tmp");
+        long[] filas = {0};
+        try {
+            try (FileOutputStream fos = new FileOutputStream(temporal.toFile())) {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(fos), StandardCharsets.UTF_8));
+                transaccion.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT row_to_json(p)::text FROM " + particion + " p",
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                }, (RowCallbackHandler) rs -> {
+                    try {
+                        writer.write(rs.getString(1));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    filas[0]++;
+                }));
+                writer.close(); // termina el gzip; fos sigue abierto para el fsync
+                fos.getFD().sync();
+            }
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            logger.error("❌ No se pudo archivar {} (la tabla queda separada hasta el próximo intento): {}",
+                    particion, e.getMessage());
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException ignorada) {
+                // se pisa en el próximo intento
+            }
+            return 0;
+        }
+
+        jdbcTemplate.execute("DROP TABLE " + particion);
+        logger.info("🗄️ Partición {} archivada: {} filas en {}.", particion, filas[0], destino);
+        return filas[0];
+    }
+
+    // --- Auxiliares ---
+
+    private void verificarActivo() {
+        if (!activo) {
+            throw new IllegalArgumentException("El particionado no está activo (solo PostgreSQL con app.particiones.habilitado=true).");
+        }
+    }
+
+    private void verificarArchivo() {
+        if (archivo == null) {
+            throw new IllegalArgumentException("No hay directorio de archivo configurado (app.particiones.archivo-dir / PARTICIONES_ARCHIVO_DIR).");
+        }
+    }
+
+    private YearMonth mes(String tabla, String mes) {
+        if (!tablas.containsKey(tabla)) {
+            throw new IllegalArgumentException("Tabla no particionada: " + tabla + " (" + String.join(", ", tablas.keySet()) + ").");
+        }
+        try {
+            return YearMonth.parse(mes);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Mes inválido: " + mes + " (formato yyyy-MM).");
+        }
+    }
+
+    private boolean existe(String particion) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, particion));
+    }
+
+    private static String nombre(String tabla, YearMonth mes) {
+        return tabla + "_" + mes.format(SUFIJO);
+    }
+
+    private static YearMonth mesDe(String tabla, String particion) {
+        Matcher m = Pattern.compile("^" + Pattern.quote(tabla) + "_(\\d{4})_(\\d{2})$").matcher(particion);
+        return m.matches() ? YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))) : null;
+    }
+
+    private static String rango(YearMonth mes) {
+        LocalDateTime desde = mes.atDay(1).atStartOfDay();
+        LocalDateTime hasta = mes.plusMonths(1).atDay(1).atStartOfDay();
+        return "FOR VALUES FROM ('" + Timestamp.valueOf(desde) + "') TO ('" + Timestamp.valueOf(hasta) + "')";
+    }
+}
@@ -11,7 +11,6 @@ import com.masterserv.productos.dto.reporte.ValorizacionInventarioDTO;
 import com.masterserv.productos.dto.reporte.VariacionCostoDTO;
 import com.masterserv.productos.entity.DetallePedido;
 import com.masterserv.productos.entity.DetalleVenta;
-import com.masterserv.productos.entity.EmpresaConfig;
 import com.masterserv.productos.entity.Pedido;
 import com.masterserv.productos.entity.Venta;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,13 +20,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.masterserv.productos.dto.reporte.StockInmovilizadoResponse;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.awt.Color;
 import java.time.format.DateTimeFormatter;
-import java.util.Base64;
 import java.util.List;
 
 @Service
@@ -46,7 +45,7 @@ public class PdfService {
     private static final Font FONT_FOOTER = FontFactory.getFont(FontFactory.HELVETICA_OBLIQUE, 8, Color.GRAY);
 
     @Autowired private DashboardService dashboardService;
-    @Autowired private EmpresaConfigService empresaConfigService;
+    @Autowired private CabeceraPdfService cabeceraPdfService;
 
     // ========================================================================
     // ✅ CLASE DE EVENTOS: PARA "PÁGINA X DE Y" Y PIE DE PÁGINA
@@ -121,7 +120,13 @@ public class PdfService {
     }
 
     private void construirCabeceraEmpresa(Document document, String subtituloReporte) throws DocumentException {
-        EmpresaConfig config = empresaConfigService.obtenerConfiguracion();
+        construirCabeceraEmpresa(document, subtituloReporte, java.time.LocalDateTime.now(), obtenerUsuarioActual());
+    }
+
+    // Los comprobantes se cachean: fecha y emisor salen del documento, no del momento de la reimpresión
+    private void construirCabeceraEmpresa(Document document, String subtituloReporte,
+                                          java.time.LocalDateTime fecha, String emitidoPor) throws DocumentException {
+        CabeceraPdfService.CabeceraEmpresa cabecera = cabeceraPdfService.obtener();
         PdfPTable headerTable = new PdfPTable(2);
         headerTable.setWidthPercentage(100);
         headerTable.setSpacingAfter(10);
@@ -130,36 +135,20 @@ public class PdfService {
         PdfPCell cellLeft = new PdfPCell();
         cellLeft.setBorder(Rectangle.NO_BORDER);
 
-        if (config.getLogoUrl() != null && !config.getLogoUrl().isEmpty()) {
-            try {
-                Image logo = null;
-                String logoData = config.getLogoUrl();
-                if (logoData.startsWith("http")) {
-                    logo = Image.getInstance(logoData);
-                } else if (logoData.contains("base64,")) {
-                    byte[] imageBytes = Base64.getDecoder().decode(logoData.split(",")[1]);
-                    logo = Image.getInstance(imageBytes);
-                }
-                if (logo != null) {
-                    logo.scaleToFit(90, 45);
-                    cellLeft.addElement(logo);
-                }
-            } catch (Exception e) {
-                logger.warn("Error cargando logo en PDF");
-            }
-        }
+        // Logo ya decodificado y escalado (se arma una vez, no por documento)
+        cabecera.logo().ifPresent(cellLeft::addElement);
 
-        cellLeft.addElement(new Paragraph(config.getNombreFantasia().toUpperCase(), FONT_TITULO));
-        cellLeft.addElement(new Paragraph(config.getRazonSocial() + " | CUIT: " + config.getCuit(), FONT_DATA_EMPRESA));
-        cellLeft.addElement(new Paragraph(config.getDireccion(), FONT_DATA_EMPRESA));
+        cellLeft.addElement(new Paragraph(cabecera.titulo(), FONT_TITULO));
+        cellLeft.addElement(new Paragraph(cabecera.lineaFiscal(), FONT_DATA_EMPRESA));
+        cellLeft.addElement(new Paragraph(cabecera.direccion(), FONT_DATA_EMPRESA));
         headerTable.addCell(cellLeft);
 
         PdfPCell cellRight = new PdfPCell();
         cellRight.setBorder(Rectangle.NO_BORDER);
         cellRight.setHorizontalAlignment(Element.ALIGN_RIGHT);
         cellRight.setVerticalAlignment(Element.ALIGN_BOTTOM);
-        cellRight.addElement(new Paragraph("Fecha: " + java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")), FONT_NORMAL));
-        cellRight.addElement(new Paragraph("Emitido por: " + obtenerUsuarioActual(), FONT_NORMAL));
+        cellRight.addElement(new Paragraph("Fecha: " + fecha.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")), FONT_NORMAL));
+        cellRight.addElement(new Paragraph("Emitido por: " + emitidoPor, FONT_NORMAL));
         
         Paragraph pDoc = new Paragraph("\n" + subtituloReporte.toUpperCase(), FONT_SUBTITULO);
         pDoc.setAlignment(Element.ALIGN_RIGHT);
@@ -178,7 +167,7 @@ public class PdfService {
         Document document = new Document(PageSize.A4, 36, 36, 36, 60);
         try {
             PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
+            writer.setPageEvent(new HeaderFooterPageEvent(cabeceraPdfService.obtener().nombreFantasia()));
             document.open();
             construirCabeceraEmpresa(document, "Orden de Compra (Interno)");
 
@@ -222,8 +211,8 @@ public class PdfService {
         Document document = new Document(PageSize.A4, 36, 36, 36, 60);
         try {
             PdfWriter writer = PdfWriter.getInstance(document, baos);
-            EmpresaConfig config = empresaConfigService.obtenerConfiguracion();
-            writer.setPageEvent(new HeaderFooterPageEvent(config.getNombreFantasia()));
+            CabeceraPdfService.CabeceraEmpresa cabecera = cabeceraPdfService.obtener();
+            writer.setPageEvent(new HeaderFooterPageEvent(cabecera.nombreFantasia()));
             document.open();
             construirCabeceraEmpresa(document, "Solicitud de Mercadería");
 
@@ -242,8 +231,7 @@ public class PdfService {
                 table.addCell(c);
             }
             document.add(table);
-            String textoPie = (config.getPiePaginaPresupuesto() != null && !config.getPiePaginaPresupuesto().isEmpty()) ? config.getPiePaginaPresupuesto() : "Favor de confirmar recepción y disponibilidad.";
-            Paragraph pPie = new Paragraph("\n" + textoPie, FONT_DATA_EMPRESA);
+            Paragraph pPie = new Paragraph("\n" + cabecera.piePaginaPresupuesto(), FONT_DATA_EMPRESA);
             pPie.setAlignment(Element.ALIGN_CENTER);
             document.add(pPie);
         } catch (Exception e) { throw new RuntimeException("Error en OC PDF", e); } 
@@ -256,9 +244,11 @@ public class PdfService {
         Document document = new Document(PageSize.A4, 36, 36, 36, 60);
         try {
             PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
+            writer.setPageEvent(new HeaderFooterPageEvent(cabeceraPdfService.obtener().nombreFantasia()));
             document.open();
-            construirCabeceraEmpresa(document, "Comprobante de Venta (No Fiscal)");
+            construirCabeceraEmpresa(document, "Comprobante de Venta (No Fiscal)",
+                    venta.getFechaVenta() != null ? venta.getFechaVenta() : java.time.LocalDateTime.now(),
+                    venta.getVendedor() != null ? venta.getVendedor().getEmail() : "Sistema");
 
             Paragraph info = new Paragraph();
             info.add(new Chunk("\nVenta Nº: " + venta.getId() + "\n", FONT_BOLD));
@@ -297,23 +287,37 @@ public class PdfService {
 
     // ========================================================================
     // REPORTES AVANZADOS (DASHBOARD)
+    //
+    // Cada reporte tiene dos variantes: escribirX(..., OutputStream) que escribe el PDF a medida
+    // que se arma (los controladores le pasan directo el stream de la respuesta, con transferencia
+    // chunked) y generarX(...) que devuelve byte[] para los adjuntos de mail y otros usos internos.
     // ========================================================================
+
+    // Filas que se acumulan en la tabla antes de volcarlas al documento (y de ahí al stream)
+    private static final int FILAS_POR_BLOQUE = 200;
+
+    @FunctionalInterface
+    private interface CuerpoReporte {
+        void escribir(Document document) throws DocumentException;
+    }
+
     public byte[] generarReporteDashboard(DashboardFilterDTO filtro) {
+        DashboardStatsDTO stats = dashboardService.getEstadisticasFiltradas(filtro.getFechaInicio(), filtro.getFechaFin());
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4, 36, 36, 36, 60);
-        try {
-            PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
-            document.open();
-            construirCabeceraEmpresa(document, "Reporte Analítico de Gestión");
+        escribirReporteDashboard(filtro, stats, baos);
+        return baos.toByteArray();
+    }
 
+    // 'stats' ya cargado por el llamador: con streaming esto corre en el hilo async, con la
+    // respuesta comprometida (un error en la consulta ya no podría volver como 4xx/5xx)
+    public void escribirReporteDashboard(DashboardFilterDTO filtro, DashboardStatsDTO stats, OutputStream out) {
+        escribirReporte(out, "Reporte Analítico de Gestión", "Error en Reporte PDF", document -> {
             DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
             String rango = "Periodo: " + (filtro.getFechaInicio() != null ? filtro.getFechaInicio().format(fmt) : "Inicio") + 
                            " al " + (filtro.getFechaFin() != null ? filtro.getFechaFin().format(fmt) : "Hoy");
             Paragraph pRango = new Paragraph(rango, FONT_SUBTITULO); pRango.setAlignment(Element.ALIGN_CENTER); pRango.setSpacingAfter(15);
             document.add(pRango);
 
-            DashboardStatsDTO stats = dashboardService.getEstadisticasFiltradas(filtro.getFechaInicio(), filtro.getFechaFin());
             PdfPTable tableM = new PdfPTable(3); tableM.setWidthPercentage(100); tableM.setSpacingBefore(10);
             tableM.addCell(crearCeldaHeader("Ventas Totales")); tableM.addCell(crearCeldaHeader("Operaciones")); tableM.addCell(crearCeldaHeader("Ticket Promedio"));
             tableM.addCell(crearCeldaDatoCenter(formatearMoneda(stats.getTotalVentasMes())));
@@ -321,25 +325,19 @@ public class PdfService {
             BigDecimal avg = (stats.getCantidadVentasPeriodo() > 0) ? stats.getTotalVentasMes().divide(BigDecimal.valueOf(stats.getCantidadVentasPeriodo()), 2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
             tableM.addCell(crearCeldaDatoCenter(formatearMoneda(avg)));
             document.add(tableM);
-
-        } catch (Exception e) { throw new RuntimeException("Error en Reporte PDF", e); } 
-        finally { document.close(); }
-        return baos.toByteArray();
+        });
     }
 
     // ✅ NUEVO: REPORTE VALORIZACIÓN
     public byte[] generarReporteValorizacionPdf(List<ValorizacionInventarioDTO> datos) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4, 36, 36, 36, 60);
-        try {
-            PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
-            document.open();
-            construirCabeceraEmpresa(document, "Valorización de Inventario");
+        escribirReporteValorizacionPdf(datos, baos);
+        return baos.toByteArray();
+    }
 
-            PdfPTable table = new PdfPTable(3);
-            table.setWidthPercentage(100);
-            table.setWidths(new float[]{4f, 2f, 3f});
+    public void escribirReporteValorizacionPdf(List<ValorizacionInventarioDTO> datos, OutputStream out) {
+        escribirReporte(out, "Valorización de Inventario", "Error PDF Valorizacion", document -> {
+            PdfPTable table = crearTablaIncremental(3, new float[]{4f, 2f, 3f});
             table.setSpacingBefore(15);
             table.addCell(crearCeldaHeader("Categoría"));
             table.addCell(crearCeldaHeader("Unidades Físicas"));
@@ -347,6 +345,7 @@ public class PdfService {
 
             long totalUnidades = 0;
             BigDecimal totalGlobal = BigDecimal.ZERO;
+            int filas = 0;
 
             for (ValorizacionInventarioDTO d : datos) {
                 table.addCell(new Paragraph(d.getCategoria(), FONT_NORMAL));
@@ -355,34 +354,30 @@ public class PdfService {
 
                 totalUnidades += d.getCantidadUnidades();
                 totalGlobal = totalGlobal.add(d.getValorTotal() != null ? d.getValorTotal() : BigDecimal.ZERO);
+                volcarSiCorresponde(document, table, ++filas);
             }
-            document.add(table);
+            cerrarTabla(document, table);
 
             Paragraph pTot = new Paragraph("\nResumen: " + totalUnidades + " unidades | Capital Invertido: " + formatearMoneda(totalGlobal), FONT_TITULO);
             pTot.setAlignment(Element.ALIGN_RIGHT);
             document.add(pTot);
-        } catch (Exception e) { throw new RuntimeException("Error PDF Valorizacion", e); } 
-        finally { document.close(); }
-        return baos.toByteArray();
+        });
     }
 
     // ✅ NUEVO: REPORTE STOCK INMOVILIZADO
     public byte[] generarReporteStockInmovilizadoPdf(List<StockInmovilizadoResponse> datos, int dias) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4, 36, 36, 36, 60);
-        try {
-            PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
-            document.open();
-            construirCabeceraEmpresa(document, "Reporte de Stock Inmovilizado");
-            
+        escribirReporteStockInmovilizadoPdf(datos, dias, baos);
+        return baos.toByteArray();
+    }
+
+    public void escribirReporteStockInmovilizadoPdf(List<StockInmovilizadoResponse> datos, int dias, OutputStream out) {
+        escribirReporte(out, "Reporte de Stock Inmovilizado", "Error PDF Inmovilizado", document -> {
             Paragraph desc = new Paragraph("Productos sin ventas en los últimos " + dias + " días.", FONT_SUBTITULO);
             desc.setSpacingAfter(10);
             document.add(desc);
 
-            PdfPTable table = new PdfPTable(5);
-            table.setWidthPercentage(100);
-            table.setWidths(new float[]{4f, 2f, 1f, 2f, 2f});
+            PdfPTable table = crearTablaIncremental(5, new float[]{4f, 2f, 1f, 2f, 2f});
             table.addCell(crearCeldaHeader("Producto"));
             table.addCell(crearCeldaHeader("Categoría"));
             table.addCell(crearCeldaHeader("Stock"));
@@ -391,6 +386,7 @@ public class PdfService {
 
             BigDecimal capitalTotal = BigDecimal.ZERO;
             DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+            int filas = 0;
 
             for (StockInmovilizadoResponse d : datos) {
                 table.addCell(new Paragraph(d.getNombre(), FONT_NORMAL));
@@ -402,42 +398,39 @@ public class PdfService {
                 table.addCell(crearCeldaDatoCenter(fechaUltima));
 
                 capitalTotal = capitalTotal.add(d.getCapitalParado() != null ? d.getCapitalParado() : BigDecimal.ZERO);
+                volcarSiCorresponde(document, table, ++filas);
             }
-            document.add(table);
+            cerrarTabla(document, table);
 
             Paragraph pTot = new Paragraph("\nCapital Total Parado: " + formatearMoneda(capitalTotal), FONT_TITULO);
             pTot.setAlignment(Element.ALIGN_RIGHT);
             document.add(pTot);
-        } catch (Exception e) { throw new RuntimeException("Error PDF Inmovilizado", e); } 
-        finally { document.close(); }
-        return baos.toByteArray();
+        });
     }
 
     // ✅ NUEVO: REPORTE EVOLUCIÓN DE COSTOS
     public byte[] generarReporteEvolucionCostosPdf(List<VariacionCostoDTO> datos, String productoId) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4, 36, 36, 36, 60);
-        try {
-            PdfWriter writer = PdfWriter.getInstance(document, baos);
-            writer.setPageEvent(new HeaderFooterPageEvent(empresaConfigService.obtenerConfiguracion().getNombreFantasia()));
-            document.open();
-            construirCabeceraEmpresa(document, "Evolución de Costos de Compra");
-            
+        escribirReporteEvolucionCostosPdf(datos, productoId, baos);
+        return baos.toByteArray();
+    }
+
+    public void escribirReporteEvolucionCostosPdf(List<VariacionCostoDTO> datos, String productoId, OutputStream out) {
+        escribirReporte(out, "Evolución de Costos de Compra", "Error PDF Evolucion", document -> {
             // Si el nombre del producto viene en el primer elemento, lo mostramos
             String nombreProd = (!datos.isEmpty()) ? datos.get(0).getProducto() : "Producto " + productoId;
             Paragraph desc = new Paragraph("Historial de precios para: " + nombreProd, FONT_SUBTITULO);
             desc.setSpacingAfter(10);
             document.add(desc);
 
-            PdfPTable table = new PdfPTable(4);
-            table.setWidthPercentage(100);
-            table.setWidths(new float[]{2f, 4f, 2f, 2f});
+            PdfPTable table = crearTablaIncremental(4, new float[]{2f, 4f, 2f, 2f});
             table.addCell(crearCeldaHeader("Fecha"));
             table.addCell(crearCeldaHeader("Proveedor"));
             table.addCell(crearCeldaHeader("Nro. Orden"));
             table.addCell(crearCeldaHeader("Costo Pagado"));
 
             DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+            int filas = 0;
 
             for (VariacionCostoDTO d : datos) {
                 String fecha = d.getFechaCompra() != null ? d.getFechaCompra().format(fmt) : "N/A";
@@ -445,12 +438,52 @@ public class PdfService {
                 table.addCell(new Paragraph(d.getProveedor(), FONT_NORMAL));
                 table.addCell(crearCeldaDatoCenter(d.getNroOrden()));
                 table.addCell(crearCeldaMoneda(d.getCostoPagado()));
+                volcarSiCorresponde(document, table, ++filas);
             }
+            cerrarTabla(document, table);
+        });
+    }
+
+    /**
+     * Arma un reporte A4 con pie de página y cabecera de empresa sobre el stream recibido.
+     * El stream no se cierra (es del que llama: el de la respuesta HTTP o un ByteArrayOutputStream).
+     */
+    private void escribirReporte(OutputStream out, String titulo, String mensajeError, CuerpoReporte cuerpo) {
+        Document document = new Document(PageSize.A4, 36, 36, 36, 60);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
+            writer.setPageEvent(new HeaderFooterPageEvent(cabeceraPdfService.obtener().nombreFantasia()));
+            document.open();
+            construirCabeceraEmpresa(document, titulo);
+            cuerpo.escribir(document);
+        } catch (Exception e) { throw new RuntimeException(mensajeError, e); } 
+        finally {
+            if (document.isOpen()) document.close();
+        }
+    }
+
+    // Tabla "grande" (LargeElement): se agrega al documento por bloques y las páginas completas
+    // se escriben al stream, en vez de tener la tabla entera en memoria hasta el final.
+    private PdfPTable crearTablaIncremental(int columnas, float[] anchos) throws DocumentException {
+        PdfPTable table = new PdfPTable(columnas);
+        table.setWidthPercentage(100);
+        table.setWidths(anchos);
+        table.setHeaderRows(1); // el encabezado se repite en cada página
+        table.setComplete(false);
+        return table;
+    }
+
+    private void volcarSiCorresponde(Document document, PdfPTable table, int filas) throws DocumentException {
+        if (filas % FILAS_POR_BLOQUE == 0) {
             document.add(table);
+            table.setSpacingBefore(0); // el espaciado va solo antes del primer bloque
+        }
+    }
 
-        } catch (Exception e) { throw new RuntimeException("Error PDF Evolucion", e); } 
-        finally { document.close(); }
-        return baos.toByteArray();
+    private void cerrarTabla(Document document, PdfPTable table) throws DocumentException {
+        table.setComplete(true);
+        document.add(table);
     }
 
     // ========================================================================
@@ -3,6 +3,7 @@ package com.masterserv.productos.service;
 import com.masterserv.productos.dto.ConfirmacionPedidoDTO;
 import com.masterserv.productos.dto.DetallePedidoDTO;
 import com.masterserv.productos.dto.MovimientoStockDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.PedidoDTO;
 import com.masterserv.productos.dto.PedidoDetalladoDTO;
 import com.masterserv.productos.dto.PedidoFiltroDTO;
@@ -25,6 +26,7 @@ import com.masterserv.productos.repository.ProductoRepository;
 import com.masterserv.productos.repository.ProveedorRepository;
 import com.masterserv.productos.repository.UsuarioRepository;
 import com.masterserv.productos.specification.PedidoSpecification;
+import com.masterserv.productos.repository.ConsultaKeyset;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -57,6 +59,11 @@ public class PedidoService {
 
     private static final Logger logger = LoggerFactory.getLogger(PedidoService.class);
 
+    private static final ConsultaKeyset.Orden<Pedido, LocalDateTime> ORDEN_CURSOR =
+            ConsultaKeyset.Orden.porFechaDesc("fechaPedido", Pedido::getFechaPedido);
+    // Lo mismo que trae el @EntityGraph de PedidoRepository.findAll(Pageable)
+    private static final String[] GRAFO_CURSOR = {"proveedor", "usuario"};
+
     @Autowired private PedidoRepository pedidoRepository;
     @Autowired private ProveedorRepository proveedorRepository;
     @Autowired private UsuarioRepository usuarioRepository;
@@ -65,6 +72,7 @@ public class PedidoService {
     @Autowired private PedidoMapper pedidoMapper;
     @Autowired private MovimientoStockService movimientoStockService;
     @Autowired private PedidoSpecification pedidoSpecification;
+    @Autowired private ConsultaKeyset consultaKeyset;
 
     @Autowired private ItemCotizacionRepository itemCotizacionRepository;
     @Autowired private CotizacionRepository cotizacionRepository;
@@ -283,6 +291,14 @@ public class PedidoService {
         return pedidosPage.map(pedidoMapper::toPedidoDTO);
     }
 
+    // Variante por cursor: (fecha_pedido, id) descendente, sin COUNT
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<PedidoDTO> filterCursor(PedidoFiltroDTO filtro, String cursor, int tamano) {
+        var spec = pedidoSpecification.getByFilters(filtro);
+        return consultaKeyset.buscar(Pedido.class, spec, ORDEN_CURSOR, Pedido::getId, cursor, tamano, GRAFO_CURSOR)
+                .map(pedidoMapper::toPedidoDTO);
+    }
+
     @Transactional
     public Map<String, Object> generarPedidosMasivos(List<Long> itemIds, Long usuarioId) {
         Usuario usuarioAdmin = usuarioRepository.findById(usuarioId)
@@ -7,7 +7,9 @@ import com.masterserv.productos.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import com.masterserv.productos.config.AsyncConfig;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -48,8 +50,20 @@ public class ProcesoAutomaticoService {
     @Scheduled(fixedDelay = 60000) 
     public void generarPrePedidosAgrupados() {
         logger.info("⏰ [AUTO] Iniciando ciclo de reabastecimiento...");
+        procesarFaltantes(productoRepository.findProductosConStockBajo());
+    }
+
+    /**
+     * Variante acotada que usa DisparadorReposicionService después de las ventas:
+     * solo revisa los productos tocados desde la última corrida, sin escanear el catálogo.
+     */
+    public void generarPrePedidosAgrupados(Collection<Long> productoIds) {
+        if (productoIds == null || productoIds.isEmpty()) return;
+        procesarFaltantes(productoRepository.findProductosConStockBajoByIdIn(productoIds));
+    }
 
-        List<Cotizacion> cotizacionesParaNotificar = crearCotizacionesEnTransaccion();
+    private void procesarFaltantes(List<Producto> productosFaltantes) {
+        List<Cotizacion> cotizacionesParaNotificar = crearCotizacionesEnTransaccion(productosFaltantes);
 
         if (!cotizacionesParaNotificar.isEmpty()) {
             logger.info("📨 Iniciando envío de {} solicitudes agrupadas...", cotizacionesParaNotificar.size());
@@ -77,9 +91,7 @@ public class ProcesoAutomaticoService {
     }
 
     @Transactional
-protected List<Cotizacion> crearCotizacionesEnTransaccion() {
-    List<Producto> productosFaltantes = productoRepository.findProductosConStockBajo(); 
-
+protected List<Cotizacion> crearCotizacionesEnTransaccion(List<Producto> productosFaltantes) {
     if (productosFaltantes.isEmpty()) return Collections.emptyList();
     Set<Long> categoriaIds = productosFaltantes.stream()
             .map(p -> p.getCategoria().getId())
@@ -231,14 +243,15 @@ protected List<Cotizacion> crearCotizacionesEnTransaccion() {
 
     /**
      * 🟢 TAREA 3: LISTA DE ESPERA (Reactiva)
-     * Se ejecuta cuando entra stock (evento).
+     * Se ejecuta cuando entra stock (evento), después del commit: así procesarListaEspera
+     * ya lee el stock nuevo. Solo interesa cuando el producto vuelve a tener stock.
      */
-    @Async
-    @EventListener 
+    @Async(AsyncConfig.STOCK_EVENTS)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleStockActualizado(StockActualizadoEvent event) {
         // System.out.println("⚡ [LISTENER] ¡Evento de stock recibido! ID: " + event.productoId() + " Nuevo Stock: " + event.stockNuevo());
         
-        if (event.stockNuevo() <= 0) {
+        if (event.stockAnterior() > 0 || event.stockNuevo() <= 0) {
             return;
         }
         try {
@@ -1,6 +1,7 @@
 package com.masterserv.productos.service;
 
 import com.masterserv.productos.dto.MovimientoStockDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.ProductoDTO;
 import com.masterserv.productos.dto.ProductoFiltroDTO;
 import com.masterserv.productos.dto.ProductoPublicoDTO;
@@ -8,24 +9,35 @@ import com.masterserv.productos.dto.ProductoPublicoFiltroDTO;
 import com.masterserv.productos.entity.*;
 import com.masterserv.productos.enums.EstadoListaEspera;
 import com.masterserv.productos.enums.TipoMovimiento;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.event.StockActualizadoEvent;
 import com.masterserv.productos.repository.*;
 import com.masterserv.productos.mapper.ProductoMapper;
 import com.masterserv.productos.specification.ProductoSpecification;
 import com.masterserv.productos.exceptions.StockInsuficienteException;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy; 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
+import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.Optional;
+import java.util.Set;
 import jakarta.persistence.EntityNotFoundException;
 import java.time.LocalDate; 
 import java.time.LocalDateTime;
@@ -33,19 +45,24 @@ import java.time.LocalDateTime;
 @Service
 public class ProductoService {
 
+    private static final ConsultaKeyset.Orden<Producto, String> ORDEN_CURSOR =
+            ConsultaKeyset.Orden.porTextoAsc("nombre", Producto::getNombre);
+
     @Autowired private ProductoRepository productoRepository;
     @Autowired private ProductoMapper productoMapper;
     @Autowired private ProductoSpecification productoSpecification;
+    @Autowired private ConsultaKeyset consultaKeyset;
+    @Autowired private ConsultaSlice consultaSlice;
+    @Autowired private ImagenService imagenService;
     @Autowired private CategoriaRepository categoriaRepository; 
     @Autowired private MovimientoStockRepository movimientoStockRepository;
     @Autowired private UsuarioRepository usuarioRepository;
     @Autowired private SolicitudProductoRepository solicitudProductoRepository;
     @Autowired private ListaEsperaRepository listaEsperaRepository;
-    @Autowired private AuditoriaRepository auditoriaRepository;
-
-    @Autowired 
-    @Lazy
-    private ProcesoAutomaticoService procesoAutomaticoService;
+    @Autowired private AuditoriaService auditoriaService;
+    @Autowired private MotorStockService motorStockService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private BusquedaProductoService busquedaProductoService;
 
     @Transactional(readOnly = true)
     public String generarCodigoAutomatico(Long categoriaId, String nombreProducto) {
@@ -89,7 +106,7 @@ public class ProductoService {
     @Transactional(readOnly = true)
     public Page<ProductoDTO> filter(ProductoFiltroDTO filtro, Pageable pageable) {
         if (filtro.getNombre() != null && !filtro.getNombre().isBlank()) {
-             Page<Producto> productosPage = productoRepository.buscarFlexible(filtro.getNombre(), pageable);
+             Page<Producto> productosPage = buscarPorTexto(filtro.getNombre(), null, pageable);
              return productosPage.map(productoMapper::toProductoDTO);
         }
         Specification<Producto> spec = productoSpecification.getProductosByFilters(filtro);
@@ -97,6 +114,15 @@ public class ProductoService {
         return productosPage.map(productoMapper::toProductoDTO);
     }
 
+    // Variante por cursor (nombre, id) ascendente: el filtro por nombre va por LIKE para
+    // conservar un orden estable entre páginas (el índice de texto ordena por relevancia).
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<ProductoDTO> filterCursor(ProductoFiltroDTO filtro, String cursor, int tamano) {
+        Specification<Producto> spec = productoSpecification.getProductosByFilters(filtro);
+        return consultaKeyset.buscar(Producto.class, spec, ORDEN_CURSOR, Producto::getId, cursor, tamano)
+                .map(productoMapper::toProductoDTO);
+    }
+
     @Transactional(readOnly = true)
     public ProductoDTO findById(Long id) {
         Producto producto = productoRepository.findById(id)
@@ -117,6 +143,7 @@ public class ProductoService {
                 .orElseThrow(() -> new EntityNotFoundException("La Categoría con ID " + productoDTO.categoriaId() + " no existe."));
         
         Producto producto = productoMapper.toProducto(productoDTO);
+        producto.setImagenUrl(imagenService.normalizar(producto.getImagenUrl()));
         producto.setCategoria(categoria);
         producto.setEstado("ACTIVO");
         producto.setPrecioCosto(BigDecimal.ZERO);
@@ -127,6 +154,7 @@ public class ProductoService {
             } else {
                 vincularSolicitudesPorNombre(productoGuardado);
             }
+        eventPublisher.publishEvent(new ProductoActualizadoEvent(productoGuardado.getId()));
         return productoMapper.toProductoDTO(productoGuardado);
     }
     
@@ -175,6 +203,7 @@ public class ProductoService {
                 .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado con ID: " + id));
 
         productoMapper.updateProductoFromDto(productoDTO, productoExistente);
+        productoExistente.setImagenUrl(imagenService.normalizar(productoExistente.getImagenUrl()));
 
         if (productoDTO.categoriaId() != null && 
             !productoDTO.categoriaId().equals(productoExistente.getCategoria().getId())) {
@@ -189,6 +218,7 @@ public class ProductoService {
         }
 
         Producto productoActualizado = productoRepository.save(productoExistente);
+        eventPublisher.publishEvent(new ProductoActualizadoEvent(id));
         return productoMapper.toProductoDTO(productoActualizado);
     }
 
@@ -198,6 +228,7 @@ public class ProductoService {
                 .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado con ID: " + id));
         producto.setEstado("INACTIVO");
         productoRepository.save(producto);
+        eventPublisher.publishEvent(new ProductoActualizadoEvent(id));
     }
 
     @Transactional(readOnly = true)
@@ -216,45 +247,146 @@ public class ProductoService {
 
     @Transactional(readOnly = true)
     public Page<ProductoPublicoDTO> findAllPublico(Pageable pageable) {
-        ProductoFiltroDTO filtroVacio = new ProductoFiltroDTO();
-        filtroVacio.setEstado("ACTIVO");
-        Specification<Producto> spec = productoSpecification.getProductosByFilters(filtroVacio);
-        Page<Producto> productosPage = productoRepository.findAll(spec, pageable);
+        Page<Producto> productosPage = productoRepository.findAll(especificacionPublica(null), pageable);
         return productosPage.map(productoMapper::toProductoPublicoDTO);
     }
 
     @Transactional(readOnly = true)
     public Page<ProductoPublicoDTO> findPublicoByCriteria(ProductoPublicoFiltroDTO filtroPublico, Pageable pageable) {
         if (filtroPublico.getNombre() != null && !filtroPublico.getNombre().isBlank()) {
-             Page<Producto> productosPage = productoRepository.buscarFlexible(filtroPublico.getNombre(), pageable);
+             Page<Producto> productosPage = buscarPorTexto(filtroPublico.getNombre(), filtrosPublicos(filtroPublico), pageable);
              return productosPage.map(productoMapper::toProductoPublicoDTO);
         }
-        ProductoFiltroDTO filtroInterno = new ProductoFiltroDTO();
-        filtroInterno.setNombre(filtroPublico.getNombre());
-        filtroInterno.setCategoriaIds(filtroPublico.getCategoriaIds());
-        filtroInterno.setPrecioMin(filtroPublico.getPrecioMin());
-        filtroInterno.setPrecioMax(filtroPublico.getPrecioMax());
-        filtroInterno.setSoloConStock(filtroPublico.getSoloConStock());
-        filtroInterno.setEstado("ACTIVO"); 
-        Specification<Producto> spec = productoSpecification.getProductosByFilters(filtroInterno);
-        Page<Producto> productosPage = productoRepository.findAll(spec, pageable);
+        Page<Producto> productosPage = productoRepository.findAll(especificacionPublica(filtroPublico), pageable);
         return productosPage.map(productoMapper::toProductoPublicoDTO);
     }
 
+    // --- Variantes Slice (scroll infinito): solo saben si hay página siguiente, no cuentan ---
+
+    @Transactional(readOnly = true)
+    public Slice<ProductoDTO> searchByProveedorSlice(Long proveedorId, String search, Pageable pageable) {
+        return productoRepository.searchByProveedorSlice(proveedorId, search, pageable)
+                .map(productoMapper::toProductoDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<ProductoPublicoDTO> findAllPublicoSlice(Pageable pageable) {
+        return consultaSlice.buscar(Producto.class, especificacionPublica(null), pageable)
+                .map(productoMapper::toProductoPublicoDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<ProductoPublicoDTO> findPublicoByCriteriaSlice(ProductoPublicoFiltroDTO filtroPublico, Pageable pageable) {
+        if (filtroPublico.getNombre() != null && !filtroPublico.getNombre().isBlank()) {
+            return buscarPorTextoSlice(filtroPublico.getNombre(), filtrosPublicos(filtroPublico), pageable)
+                    .map(productoMapper::toProductoPublicoDTO);
+        }
+        return consultaSlice.buscar(Producto.class, especificacionPublica(filtroPublico), pageable)
+                .map(productoMapper::toProductoPublicoDTO);
+    }
+
+    // Filtro del catálogo público (siempre solo ACTIVOS); null = catálogo completo.
+    // El texto no entra acá: lo resuelven el índice o buscarFlexible (sin tildes, también en descripción y código)
+    private Specification<Producto> especificacionPublica(ProductoPublicoFiltroDTO filtroPublico) {
+        ProductoFiltroDTO filtroInterno = new ProductoFiltroDTO();
+        if (filtroPublico != null) {
+            filtroInterno.setCategoriaIds(filtroPublico.getCategoriaIds());
+            filtroInterno.setPrecioMin(filtroPublico.getPrecioMin());
+            filtroInterno.setPrecioMax(filtroPublico.getPrecioMax());
+            filtroInterno.setSoloConStock(filtroPublico.getSoloConStock());
+        }
+        filtroInterno.setEstado("ACTIVO");
+        return productoSpecification.getProductosByFilters(filtroInterno);
+    }
+
+    // Categoría/precio/stock del catálogo público para combinar con el texto; null si no pidió ninguno
+    private Specification<Producto> filtrosPublicos(ProductoPublicoFiltroDTO filtro) {
+        boolean hayFiltros = !CollectionUtils.isEmpty(filtro.getCategoriaIds())
+                || filtro.getPrecioMin() != null
+                || filtro.getPrecioMax() != null
+                || Boolean.TRUE.equals(filtro.getSoloConStock());
+        return hayFiltros ? especificacionPublica(filtro) : null;
+    }
+
+    /**
+     * Búsqueda por texto con el índice en memoria (ordenada por relevancia): solo va a la base
+     * a buscar los productos de la página pedida. Si el índice aún no cargó, usa buscarFlexible.
+     * 'filtros' (puede ser null) se aplica igual en los dos caminos.
+     */
+    private Page<Producto> buscarPorTexto(String texto, Specification<Producto> filtros, Pageable pageable) {
+        Optional<List<Long>> resultado = busquedaProductoService.buscar(texto);
+        if (resultado.isEmpty()) {
+            if (filtros == null) return productoRepository.buscarFlexible(texto, pageable);
+            return productoRepository.findAll(filtros.and(productoSpecification.getTextoFlexible(texto)), pageable);
+        }
+        return paginarIds(filtrarIds(resultado.get(), filtros), pageable);
+    }
+
+    private Slice<Producto> buscarPorTextoSlice(String texto, Specification<Producto> filtros, Pageable pageable) {
+        Optional<List<Long>> resultado = busquedaProductoService.buscar(texto);
+        if (resultado.isEmpty()) {
+            if (filtros == null) return productoRepository.buscarFlexibleSlice(texto, pageable);
+            return consultaSlice.buscar(Producto.class, filtros.and(productoSpecification.getTextoFlexible(texto)), pageable);
+        }
+        Page<Producto> pagina = paginarIds(filtrarIds(resultado.get(), filtros), pageable);
+        return new SliceImpl<>(pagina.getContent(), pageable, pagina.hasNext());
+    }
+
+    // Deja, en el orden de relevancia del índice, solo los IDs que cumplen los filtros.
+    // La base solo devuelve IDs (de a 1000 para no armar IN gigantes).
+    private List<Long> filtrarIds(List<Long> ids, Specification<Producto> filtros) {
+        if (ids.isEmpty() || filtros == null) return ids;
+        Set<Long> cumplen = new HashSet<>();
+        for (int desde = 0; desde < ids.size(); desde += 1000) {
+            List<Long> tramo = ids.subList(desde, Math.min(desde + 1000, ids.size()));
+            Specification<Producto> enTramo = (root, query, cb) -> root.get("id").in(tramo);
+            cumplen.addAll(consultaSlice.ids(Producto.class, filtros.and(enTramo)));
+        }
+        return ids.stream().filter(cumplen::contains).collect(Collectors.toList());
+    }
+
+    // El total sale gratis de la lista de IDs del índice; solo se cargan los de la página
+    private Page<Producto> paginarIds(List<Long> ids, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(busquedaProductoService.cargarEnOrden(ids), pageable, ids.size());
+        }
+        int desde = (int) Math.min(pageable.getOffset(), ids.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(busquedaProductoService.cargarEnOrden(ids.subList(desde, hasta)), pageable, ids.size());
+    }
+
     @Transactional(propagation = Propagation.REQUIRED)
     public Producto descontarStock(Long productoId, int cantidadADescontar) {
-        if (cantidadADescontar <= 0) throw new IllegalArgumentException("Cantidad debe ser positiva.");
-        
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado: ID " + productoId));
+        return descontarStockLote(Map.of(productoId, cantidadADescontar)).get(productoId);
+    }
 
-        int stockAnterior = producto.getStockActual(); 
-        if (stockAnterior < cantidadADescontar) {
-            throw new StockInsuficienteException("Stock insuficiente.");
-        }
+    /**
+     * Descuenta el stock de todas las líneas en un solo round trip (ver MotorStockService).
+     * Si algún producto no alcanza, lanza StockInsuficienteException y la transacción
+     * completa vuelve atrás, incluidas las líneas que sí tenían stock.
+     *
+     * @param cantidadesPorProducto productoId -> cantidad total a descontar
+     * @return los productos afectados, ya con el stock actualizado y la categoría cargada.
+     *         Es el snapshot que usa el checkout para precios, cupones y detalles (sin lazy loads).
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public Map<Long, Producto> descontarStockLote(Map<Long, Integer> cantidadesPorProducto) {
+        cantidadesPorProducto.values().forEach(cantidad -> {
+            if (cantidad == null || cantidad <= 0) throw new IllegalArgumentException("Cantidad debe ser positiva.");
+        });
 
-        producto.setStockActual(stockAnterior - cantidadADescontar);
-        return productoRepository.save(producto);
+        Map<Long, Integer> filas = motorStockService.descontar(cantidadesPorProducto);
+        Map<Long, Producto> productos = cargarProductos(cantidadesPorProducto.keySet());
+
+        filas.forEach((id, afectadas) -> {
+            if (afectadas > 0) return;
+            Producto producto = productos.get(id);
+            if (producto == null) throw new EntityNotFoundException("Producto no encontrado: ID " + id);
+            throw new StockInsuficienteException("Stock insuficiente para '" + producto.getNombre()
+                    + "'. Disponible: " + producto.getStockActual() + ", solicitado: " + cantidadesPorProducto.get(id) + ".");
+        });
+        publicarCambiosStock(productos, cantidadesPorProducto, -1);
+        return productos;
     }
     
     @Transactional(propagation = Propagation.REQUIRED)
@@ -264,45 +396,48 @@ public class ProductoService {
 
     @Transactional(propagation = Propagation.REQUIRED)
     public Producto reponerStock(Long productoId, int cantidadAReponer, BigDecimal nuevoCosto) {
-         if (cantidadAReponer <= 0) throw new IllegalArgumentException("Cantidad debe ser positiva.");
-
-         Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado: ID " + productoId));
-
-        int stockAnterior = producto.getStockActual();
-        int stockNuevo = stockAnterior + cantidadAReponer;
+        Map<Long, BigDecimal> costos = nuevoCosto != null ? Map.of(productoId, nuevoCosto) : null;
+        return reponerStockLote(Map.of(productoId, cantidadAReponer), costos).get(productoId);
+    }
 
-        producto.setStockActual(stockNuevo);
-        if (nuevoCosto != null && nuevoCosto.compareTo(BigDecimal.ZERO) > 0) {
-            producto.setPrecioCosto(nuevoCosto);
-        }
-        Producto productoGuardado = productoRepository.save(producto);
+    /**
+     * Versión en lote de reponerStock (cancelaciones de venta, recepción de pedidos).
+     * La lista de espera de los productos que pasan de 0 a positivo la dispara
+     * el StockActualizadoEvent, después del commit.
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public Map<Long, Producto> reponerStockLote(Map<Long, Integer> cantidadesPorProducto, Map<Long, BigDecimal> nuevosCostos) {
+        cantidadesPorProducto.values().forEach(cantidad -> {
+            if (cantidad == null || cantidad <= 0) throw new IllegalArgumentException("Cantidad debe ser positiva.");
+        });
 
-        if (stockAnterior <= 0 && stockNuevo > 0) {
-             try { procesoAutomaticoService.procesarListaEspera(productoId); } catch (Exception e) {}
-        }
+        Map<Long, Integer> filas = motorStockService.reponer(cantidadesPorProducto, nuevosCostos);
+        filas.forEach((id, afectadas) -> {
+            if (afectadas <= 0) throw new EntityNotFoundException("Producto no encontrado: ID " + id);
+        });
 
-         return productoGuardado;
+        Map<Long, Producto> productos = cargarProductos(cantidadesPorProducto.keySet());
+        publicarCambiosStock(productos, cantidadesPorProducto, 1);
+        return productos;
     }
 
     @Transactional
     public void ajustarStock(MovimientoStockDTO dto, String emailUsuario) {
-        Producto producto = productoRepository.findById(dto.getProductoId())
-                .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado"));
-
         Usuario usuario = usuarioRepository.findByEmail(emailUsuario)
                 .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado: " + emailUsuario));
 
-        int stockAnterior = producto.getStockActual();
         int cantidadAjuste = dto.getCantidad(); 
-        int nuevoStock = stockAnterior + cantidadAjuste;
+        Map<Long, Integer> filas = motorStockService.ajustar(Map.of(dto.getProductoId(), cantidadAjuste));
+
+        Producto producto = productoRepository.findById(dto.getProductoId())
+                .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado"));
 
-        if (nuevoStock < 0) {
+        if (filas.getOrDefault(producto.getId(), 0) <= 0) {
             throw new StockInsuficienteException("El ajuste dejaría el stock en negativo.");
         }
 
-        producto.setStockActual(nuevoStock);
-        productoRepository.save(producto);
+        int nuevoStock = producto.getStockActual();
+        int stockAnterior = nuevoStock - cantidadAjuste;
 
         // Registro detallado en MovimientoStock
         MovimientoStock movimiento = new MovimientoStock();
@@ -317,13 +452,30 @@ public class ProductoService {
         // Registro explícito en Auditoría para seguimiento de inventario
         registrarAuditoriaManual(producto, usuario, stockAnterior, nuevoStock, cantidadAjuste, dto.getMotivo());
 
-        if (stockAnterior <= 0 && nuevoStock > 0) {
-            try {
-                procesoAutomaticoService.procesarListaEspera(producto.getId());
-            } catch (Exception e) {
-                System.err.println("Error en notificación de lista de espera: " + e.getMessage());
-            }
-        }
+        eventPublisher.publishEvent(new StockActualizadoEvent(producto.getId(), stockAnterior, nuevoStock));
+    }
+
+    /**
+     * Un StockActualizadoEvent por producto tocado. Los oyentes (lista de espera, catálogo en memoria)
+     * lo reciben recién después del commit; si la transacción vuelve atrás no se entera nadie.
+     *
+     * @param signo -1 si las cantidades se descontaron, 1 si se sumaron
+     */
+    private void publicarCambiosStock(Map<Long, Producto> productos, Map<Long, Integer> cantidades, int signo) {
+        productos.forEach((id, producto) -> {
+            int stockNuevo = producto.getStockActual();
+            int stockAnterior = stockNuevo - signo * cantidades.get(id);
+            eventPublisher.publishEvent(new StockActualizadoEvent(id, stockAnterior, stockNuevo));
+        });
+    }
+
+    /**
+     * Carga todos los productos de una operación (con su categoría) en una sola consulta IN.
+     * Se llama después del UPDATE por lote, así que el stock ya viene actualizado.
+     */
+    private Map<Long, Producto> cargarProductos(Collection<Long> ids) {
+        return productoRepository.findAllByIdInConCategoria(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
     }
 
     /**
@@ -347,7 +499,7 @@ public class ProductoService {
             audit.setValorAnterior("{ \"Stock\": " + anterior + " }");
             audit.setValorNuevo("{ \"Stock\": " + nuevo + ", \"Variacion\": " + variacion + " }");
 
-            auditoriaRepository.save(audit);
+            auditoriaService.guardar(audit);
         } catch (Exception e) {
             System.err.println("Error al registrar auditoría de ajuste: " + e.getMessage());
         }
@@ -106,9 +106,9 @@ public class PuntosService {
     }
 
     /**
-     * Helper para calcular los puntos según la regla.
+     * Helper para calcular los puntos según la regla (package-private: lo mide productos-benchmarks).
      */
-    private int calcularPuntos(BigDecimal totalVenta, ReglaPuntos regla) {
+    static int calcularPuntos(BigDecimal totalVenta, ReglaPuntos regla) {
         if (regla.getMontoGasto() == null || regla.getMontoGasto().compareTo(BigDecimal.ZERO) <= 0) {
             return 0;
         }
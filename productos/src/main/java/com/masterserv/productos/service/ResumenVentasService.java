@@ -0,0 +1,324 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.entity.DetalleVenta;
+import com.masterserv.productos.entity.Venta;
+import com.masterserv.productos.repository.VentaResumenDiarioRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mantiene ventas_resumen_diario (ver VentaResumenDiario).
+ *
+ * Se actualiza desde los efectos de outbox de cada venta: VENTA_REALIZADA (el mismo momento
+ * en que se publica VentaRealizadaEvent) suma y VENTA_CANCELADA (VentaService.cancelarVenta)
+ * resta, siempre sobre el día de la venta. Como el evento se reclama y se aplica en la misma
+ * transacción, cada venta entra y sale del resumen exactamente una vez.
+ *
+ * Cada venta toca una fila por producto: un UPDATE en batch y un INSERT en batch para las
+ * claves nuevas. Si dos eventos crean la misma clave a la vez, uno choca con la restricción
+ * única, hace rollback y el despachador de outbox lo reintenta.
+ *
+ * Al arrancar, si hay ventas más viejas que el resumen (primer despliegue), se reconstruye.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class ResumenVentasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumenVentasService.class);
+
+    static final String SIN_METODO = "SIN_ESPECIFICAR";
+
+    private static final String UPDATE =
+            "UPDATE ventas_resumen_diario SET ventas = ventas + ?, unidades = unidades + ?, " +
+            "importe = importe + ?, total = total + ? " +
+            "WHERE fecha = ? AND producto_id = ? AND categoria_id = ? AND vendedor_id = ? AND metodo_pago = ?";
+
+    private static final String INSERT =
+            "INSERT INTO ventas_resumen_diario (fecha, producto_id, categoria_id, vendedor_id, metodo_pago, " +
+            "ventas, unidades, importe, total) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Una fila que quedó en cero (se cancelaron todas sus ventas) se borra, como si nunca hubiera vendido
+    private static final String BORRAR_VACIAS =
+            "DELETE FROM ventas_resumen_diario " +
+            "WHERE fecha = ? AND producto_id = ? AND categoria_id = ? AND vendedor_id = ? AND metodo_pago = ? AND unidades = 0";
+
+    // Ventas cuyo efecto ya está (o estaría) aplicado: sin VENTA_REALIZADA pendiente y, si están
+    // canceladas, con la cancelación todavía pendiente (cuando se aplique, la va a restar)
+    private static final String SQL_RECONSTRUIR =
+            "SELECT v.id, v.fecha_venta, v.vendedor_usuario_id, v.metodo_pago, v.total_venta, " +
+            "       d.id AS detalle_id, d.producto_id, COALESCE(d.categoria_id, p.categoria_id) AS categoria_id, " +
+            "       d.cantidad, d.precio_unitario " +
+            "FROM ventas v " +
+            "JOIN detalles_venta d ON d.venta_id = v.id " +
+            "JOIN productos p ON p.id = d.producto_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM outbox_eventos e WHERE e.agregado_id = v.id " +
+            "                  AND e.tipo = 'VENTA_REALIZADA' AND e.estado <> 'PROCESADO') " +
+            "  AND (v.estado = 'COMPLETADA' OR EXISTS (SELECT 1 FROM outbox_eventos e WHERE e.agregado_id = v.id " +
+            "                  AND e.tipo = 'VENTA_CANCELADA' AND e.estado <> 'PROCESADO')) " +
+            "ORDER BY v.fecha_venta, v.id, d.id";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private VentaResumenDiarioRepository resumenRepository;
+
+    record Clave(LocalDate fecha, long productoId, long categoriaId, long vendedorId, String metodoPago) {}
+
+    // Orden fijo de las claves: dos eventos concurrentes bloquean filas en el mismo orden (sin deadlocks)
+    private static final Comparator<Clave> ORDEN_CLAVES = Comparator.comparing(Clave::fecha)
+            .thenComparingLong(Clave::productoId)
+            .thenComparingLong(Clave::categoriaId)
+            .thenComparingLong(Clave::vendedorId)
+            .thenComparing(Clave::metodoPago);
+
+    static final class Aporte {
+        int ventas;
+        long unidades;
+        BigDecimal importe = BigDecimal.ZERO;
+        BigDecimal total = BigDecimal.ZERO;
+    }
+
+    private record Linea(long detalleId, long productoId, long categoriaId, int cantidad, BigDecimal precioUnitario) {}
+
+    @PostConstruct
+    public void iniciar() {
+        LocalDateTime primeraVenta = jdbcTemplate.queryForObject(
+                "SELECT MIN(fecha_venta) FROM ventas WHERE estado = 'COMPLETADA'", LocalDateTime.class);
+        LocalDate primerDia = resumenRepository.findPrimerDia();
+        if (primeraVenta != null && (primerDia == null || primerDia.isAfter(primeraVenta.toLocalDate()))) {
+            reconstruir();
+        }
+    }
+
+    /** Suma una venta completada. Corre dentro de la transacción del evento de outbox. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sumar(Venta venta) {
+        aplicar(aportes(venta), 1);
+    }
+
+    /** Resta una venta cancelada, con los mismos importes con que se sumó. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void restar(Venta venta) {
+        aplicar(aportes(venta), -1);
+    }
+
+    /**
+     * Rearma el resumen completo desde ventas y detalles_venta. En PostgreSQL la tabla queda
+     * bloqueada para escritura mientras tanto: los eventos que se apliquen en paralelo esperan
+     * y no se cuentan dos veces.
+     */
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        long[] filas = {0};
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.executeWithoutResult(status -> {
+            String base = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            if ("PostgreSQL".equalsIgnoreCase(base)) {
+                jdbcTemplate.execute("LOCK TABLE ventas_resumen_diario IN SHARE ROW EXCLUSIVE MODE");
+            }
+            jdbcTemplate.update("DELETE FROM ventas_resumen_diario");
+
+            // Filas ordenadas por fecha y venta: se acumula una venta, y un día entero antes de escribirlo
+            Map<Clave, Aporte> dia = new TreeMap<>(ORDEN_CLAVES);
+            List<Linea> lineas = new ArrayList<>();
+            Object[] ventaActual = new Object[5]; // id, fecha, vendedor, metodo, total
+            jdbcTemplate.query(SQL_RECONSTRUIR, (RowCallbackHandler) rs -> {
+                long ventaId = rs.getLong("id");
+                if (ventaActual[0] != null && (Long) ventaActual[0] != ventaId) {
+                    acumularVenta(dia, ventaActual, lineas);
+                    LocalDate fecha = rs.getObject("fecha_venta", LocalDateTime.class).toLocalDate();
+                    if (!fecha.equals(ventaActual[1])) {
+                        filas[0] += insertar(dia);
+                        dia.clear();
+                    }
+                }
+                if (lineas.isEmpty()) {
+                    ventaActual[0] = ventaId;
+                    ventaActual[1] = rs.getObject("fecha_venta", LocalDateTime.class).toLocalDate();
+                    ventaActual[2] = rs.getLong("vendedor_usuario_id");
+                    ventaActual[3] = metodo(rs.getString("metodo_pago"));
+                    ventaActual[4] = rs.getBigDecimal("total_venta");
+                }
+                lineas.add(linea(rs));
+            });
+            if (!lineas.isEmpty()) acumularVenta(dia, ventaActual, lineas);
+            filas[0] += insertar(dia);
+        });
+        logger.info("📊 Resumen diario de ventas reconstruido: {} filas en {} ms.", filas[0], System.currentTimeMillis() - inicio);
+    }
+
+    // --- Cálculo de aportes ---
+
+    private Map<Clave, Aporte> aportes(Venta venta) {
+        List<Linea> lineas = new ArrayList<>(venta.getDetalles().size());
+        for (DetalleVenta d : venta.getDetalles()) {
+            // Misma regla que SQL_RECONSTRUIR: la categoría de la línea, o la del producto en ventas viejas
+            Long categoriaId = d.getCategoria() != null ? d.getCategoria().getId() : d.getProducto().getCategoria().getId();
+            lineas.add(new Linea(d.getId(), d.getProducto().getId(), categoriaId, d.getCantidad(), d.getPrecioUnitario()));
+        }
+        Map<Clave, Aporte> resultado = new TreeMap<>(ORDEN_CLAVES);
+        aportes(resultado, venta.getFechaVenta().toLocalDate(), venta.getVendedor().getId(),
+                metodo(venta.getMetodoPago()), venta.getTotalVenta(), lineas);
+        return resultado;
+    }
+
+    /**
+     * El total de la venta (ya con descuento) se reparte entre las líneas en proporción a su
+     * importe y la última se lleva el redondeo: la suma da exactamente el total. La venta se
+     * cuenta en su primera línea. Sumar y restar usan este mismo cálculo.
+     */
+    private static void aportes(Map<Clave, Aporte> destino, LocalDate fecha, long vendedorId, String metodo,
+                                BigDecimal total, List<Linea> lineas) {
+        lineas.sort(Comparator.comparingLong(Linea::detalleId));
+        BigDecimal totalVenta = total != null ? total : BigDecimal.ZERO;
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (Linea l : lineas) {
+            subtotal = subtotal.add(l.precioUnitario().multiply(BigDecimal.valueOf(l.cantidad())));
+        }
+
+        BigDecimal repartido = BigDecimal.ZERO;
+        for (int i = 0; i < lineas.size(); i++) {
+            Linea l = lineas.get(i);
+            BigDecimal importe = l.precioUnitario().multiply(BigDecimal.valueOf(l.cantidad()));
+            BigDecimal neto;
+            if (i == lineas.size() - 1) {
+                neto = totalVenta.subtract(repartido);
+            } else if (subtotal.signum() == 0) {
+                neto = BigDecimal.ZERO;
+            } else {
+                neto = totalVenta.multiply(importe).divide(subtotal, 2, RoundingMode.HALF_UP);
+            }
+            repartido = repartido.add(neto);
+
+            Aporte a = destino.computeIfAbsent(new Clave(fecha, l.productoId(), l.categoriaId(), vendedorId, metodo),
+                    k -> new Aporte());
+            a.ventas += i == 0 ? 1 : 0;
+            a.unidades += l.cantidad();
+            a.importe = a.importe.add(importe);
+            a.total = a.total.add(neto);
+        }
+    }
+
+    private static void acumularVenta(Map<Clave, Aporte> dia, Object[] venta, List<Linea> lineas) {
+        aportes(dia, (LocalDate) venta[1], (Long) venta[2], (String) venta[3], (BigDecimal) venta[4], lineas);
+        lineas.clear();
+    }
+
+    private static Linea linea(ResultSet rs) throws SQLException {
+        return new Linea(rs.getLong("detalle_id"), rs.getLong("producto_id"), rs.getLong("categoria_id"),
+                rs.getInt("cantidad"), rs.getBigDecimal("precio_unitario"));
+    }
+
+    static String metodo(String metodoPago) {
+        return metodoPago != null && !metodoPago.isBlank() ? metodoPago.trim().toUpperCase() : SIN_METODO;
+    }
+
+    // --- Escritura ---
+
+    private void aplicar(Map<Clave, Aporte> aportes, int signo) {
+        List<Map.Entry<Clave, Aporte>> filas = new ArrayList<>(aportes.entrySet());
+        if (filas.isEmpty()) return;
+        BigDecimal factor = BigDecimal.valueOf(signo);
+
+        int[] actualizadas = jdbcTemplate.batchUpdate(UPDATE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Aporte a = filas.get(i).getValue();
+                ps.setInt(1, signo * a.ventas);
+                ps.setLong(2, signo * a.unidades);
+                ps.setBigDecimal(3, a.importe.multiply(factor));
+                ps.setBigDecimal(4, a.total.multiply(factor));
+                setClave(ps, 5, filas.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return filas.size();
+            }
+        });
+
+        Map<Clave, Aporte> nuevas = new TreeMap<>(ORDEN_CLAVES);
+        for (int i = 0; i < filas.size(); i++) {
+            if (actualizadas[i] == 0) nuevas.put(filas.get(i).getKey(), filas.get(i).getValue());
+        }
+        if (signo > 0) {
+            insertar(nuevas);
+            return;
+        }
+
+        if (!nuevas.isEmpty()) {
+            // Venta que nunca entró al resumen (p.ej. su alta seguía pendiente al reconstruir): no hay nada que restar
+            logger.warn("⚠️ Resumen de ventas: {} filas a restar no existían ({}).", nuevas.size(), nuevas.keySet());
+        }
+        jdbcTemplate.batchUpdate(BORRAR_VACIAS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setClave(ps, 1, filas.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return filas.size();
+            }
+        });
+    }
+
+    private int insertar(Map<Clave, Aporte> filas) {
+        if (filas.isEmpty()) return 0;
+        List<Map.Entry<Clave, Aporte>> lista = new ArrayList<>(filas.entrySet());
+        jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Clave c = lista.get(i).getKey();
+                Aporte a = lista.get(i).getValue();
+                ps.setObject(1, c.fecha());
+                ps.setLong(2, c.productoId());
+                ps.setLong(3, c.categoriaId());
+                ps.setLong(4, c.vendedorId());
+                ps.setString(5, c.metodoPago());
+                ps.setInt(6, a.ventas);
+                ps.setLong(7, a.unidades);
+                ps.setBigDecimal(8, a.importe);
+                ps.setBigDecimal(9, a.total);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lista.size();
+            }
+        });
+        return lista.size();
+    }
+
+    private static void setClave(PreparedStatement ps, int desde, Clave c) throws SQLException {
+        ps.setObject(desde, c.fecha());
+        ps.setLong(desde + 1, c.productoId());
+        ps.setLong(desde + 2, c.categoriaId());
+        ps.setLong(desde + 3, c.vendedorId());
+        ps.setString(desde + 4, c.metodoPago());
+    }
+}
@@ -0,0 +1,332 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.dto.SugerenciaProductoDTO;
+import com.masterserv.productos.dto.VolumenVentaProductoDTO;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.enums.EstadoVenta;
+import com.masterserv.productos.event.ProductoActualizadoEvent;
+import com.masterserv.productos.repository.DetalleVentaRepository;
+import com.masterserv.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sugerencias del buscador (typeahead) para el POS y el catálogo.
+ * En vez de una búsqueda paginada con count por cada tecla, se responde desde un trie de
+ * prefijos en memoria sobre nombres y códigos, con el top-K de cada nodo ya calculado:
+ * una consulta es bajar por el trie (un carácter por nivel) y copiar como mucho K resultados.
+ *
+ * El trie compilado es inmutable y ocupa unos pocos arreglos primitivos (nada de un objeto
+ * por nodo). Se reconstruye en el hilo del scheduler y se publica con un único cambio de
+ * referencia: los lectores nunca esperan a una reconstrucción.
+ *
+ * Ranking: unidades vendidas en los últimos app.sugerencias.dias-ventas días (DetalleVenta de
+ * ventas COMPLETADA); a igualdad, el nombre más corto y después el alfabético.
+ */
+@Service
+public class SugerenciaProductoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SugerenciaProductoService.class);
+
+    // Nadie tipea más que esto en un buscador; acota el tamaño del trie con descripciones largas en el nombre.
+    private static final int LARGO_MAXIMO_CLAVE = 40;
+
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private DetalleVentaRepository detalleVentaRepository;
+
+    @Value("${app.sugerencias.top-k:10}")
+    private int topK;
+
+    @Value("${app.sugerencias.dias-ventas:30}")
+    private int diasVentas;
+
+    private volatile Trie actual = Trie.VACIO;
+    private final AtomicBoolean pendiente = new AtomicBoolean(false);
+    private final Object reconstruccion = new Object();
+
+    private final Timer duracionConsulta;
+    private final Timer duracionReconstruccion;
+
+    public SugerenciaProductoService(MeterRegistry registry) {
+        this.duracionConsulta = Timer.builder("sugerencias.consulta.duracion")
+                .description("Tiempo de cada consulta de sugerencias").register(registry);
+        this.duracionReconstruccion = Timer.builder("sugerencias.reconstruccion.duracion")
+                .description("Tiempo de cada reconstrucción del trie de sugerencias").register(registry);
+        Gauge.builder("sugerencias.trie.nodos", this, s -> s.actual.etiquetas.length).register(registry);
+    }
+
+    /**
+     * Hasta 'limite' productos cuyo nombre o código tenga una palabra que empiece con el texto
+     * (sin tildes ni mayúsculas), los más vendidos primero. El límite no puede superar app.sugerencias.top-k.
+     */
+    public List<SugerenciaProductoDTO> sugerir(String texto, int limite) {
+        String prefijo = BusquedaProductoService.plegar(texto);
+        if (prefijo.isEmpty() || limite <= 0) return List.of();
+        if (prefijo.length() > LARGO_MAXIMO_CLAVE) prefijo = prefijo.substring(0, LARGO_MAXIMO_CLAVE);
+
+        String clave = prefijo;
+        Trie trie = actual; // una sola lectura del volatile: toda la consulta ve el mismo trie
+        return duracionConsulta.record(() -> trie.buscar(clave, limite));
+    }
+
+    // --- Reconstrucción ---
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent event) {
+        pendiente.set(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        reconstruir();
+    }
+
+    // Altas/ediciones de productos: se juntan y se reconstruye una vez por vuelta
+    @Scheduled(fixedDelayString = "${app.sugerencias.refresco-ms:5000}")
+    public void reconstruirSiHayCambios() {
+        if (pendiente.compareAndSet(true, false)) {
+            reconstruir();
+        }
+    }
+
+    // El ranking por ventas cambia con cada venta: se recalcula entero cada tanto
+    @Scheduled(fixedDelayString = "${app.sugerencias.reconstruir-ms:300000}",
+               initialDelayString = "${app.sugerencias.reconstruir-ms:300000}")
+    public void reconstruir() {
+        synchronized (reconstruccion) {
+            try {
+                long inicio = System.nanoTime();
+                Trie nuevo = construir();
+                actual = nuevo;
+                Duration duracion = Duration.ofNanos(System.nanoTime() - inicio);
+                duracionReconstruccion.record(duracion);
+                logger.info("🔤 Sugerencias: {} productos, {} nodos ({} ms).",
+                        nuevo.productos.length, nuevo.etiquetas.length, duracion.toMillis());
+            } catch (Exception e) {
+                // Se sigue sirviendo el trie anterior
+                pendiente.set(true);
+                logger.error("❌ Error reconstruyendo sugerencias: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Trie construir() {
+        Map<Long, Long> vendidos = new HashMap<>();
+        for (VolumenVentaProductoDTO v : detalleVentaRepository.sumarCantidadesPorProducto(
+                EstadoVenta.COMPLETADA, LocalDateTime.now().minusDays(diasVentas))) {
+            vendidos.put(v.getProductoId(), v.getCantidad());
+        }
+
+        // El índice de cada producto ES su posición en el ranking: el top-K de un nodo son sus K índices más chicos.
+        List<Producto> activos = new ArrayList<>(productoRepository.findActivosConCategoria());
+        activos.sort(Comparator.<Producto>comparingLong(p -> vendidos.getOrDefault(p.getId(), 0L)).reversed()
+                .thenComparingInt(p -> p.getNombre() == null ? 0 : p.getNombre().length())
+                .thenComparing(p -> p.getNombre() == null ? "" : p.getNombre(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Producto::getId));
+
+        NodoTemporal raiz = new NodoTemporal();
+        SugerenciaProductoDTO[] productos = new SugerenciaProductoDTO[activos.size()];
+        for (int i = 0; i < activos.size(); i++) {
+            Producto p = activos.get(i);
+            productos[i] = new SugerenciaProductoDTO(p.getId(), p.getCodigo(), p.getNombre());
+            String nombre = BusquedaProductoService.plegar(p.getNombre());
+            String codigo = BusquedaProductoService.plegar(p.getCodigo());
+            insertarSufijosDePalabra(raiz, nombre, i);
+            insertarSufijosDePalabra(raiz, codigo, i);
+            insertar(raiz, codigo.replace(" ", ""), i); // "ACE-MOT-01" también como "acemot01"
+        }
+        calcularTop(raiz, topK);
+        return Trie.compilar(raiz, productos);
+    }
+
+    // "camara michelin 18" -> "camara michelin 18", "michelin 18", "18": así "mich" y "camara mi" encuentran el producto
+    private static void insertarSufijosDePalabra(NodoTemporal raiz, String texto, int producto) {
+        if (texto.isEmpty()) return;
+        insertar(raiz, texto, producto);
+        for (int i = texto.indexOf(' '); i >= 0; i = texto.indexOf(' ', i + 1)) {
+            insertar(raiz, texto.substring(i + 1), producto);
+        }
+    }
+
+    private static void insertar(NodoTemporal raiz, String clave, int producto) {
+        if (clave.isEmpty()) return;
+        NodoTemporal nodo = raiz;
+        int largo = Math.min(clave.length(), LARGO_MAXIMO_CLAVE);
+        for (int i = 0; i < largo; i++) {
+            nodo = nodo.hijos.computeIfAbsent(clave.charAt(i), c -> new NodoTemporal());
+        }
+        nodo.agregarTerminal(producto);
+    }
+
+    // Post-orden iterativo (las claves pueden ser largas y no queremos depender de la pila)
+    private static void calcularTop(NodoTemporal raiz, int k) {
+        ArrayDeque<NodoTemporal> pila = new ArrayDeque<>();
+        List<NodoTemporal> orden = new ArrayList<>();
+        pila.push(raiz);
+        while (!pila.isEmpty()) {
+            NodoTemporal n = pila.pop();
+            orden.add(n);
+            n.hijos.values().forEach(pila::push);
+        }
+        for (int i = orden.size() - 1; i >= 0; i--) {
+            NodoTemporal n = orden.get(i);
+            int[] candidatos = Arrays.copyOf(n.terminales, n.cantTerminales);
+            for (NodoTemporal hijo : n.hijos.values()) {
+                candidatos = unirOrdenados(candidatos, hijo.top, k);
+            }
+            Arrays.sort(candidatos);
+            n.top = primerosDistintos(candidatos, k);
+            n.terminales = null; // ya no hace falta
+        }
+    }
+
+    private static int[] unirOrdenados(int[] a, int[] b, int k) {
+        int[] union = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, union, a.length, b.length);
+        Arrays.sort(union);
+        return primerosDistintos(union, k);
+    }
+
+    private static int[] primerosDistintos(int[] ordenados, int k) {
+        int[] resultado = new int[Math.min(k, ordenados.length)];
+        int n = 0;
+        for (int i = 0; i < ordenados.length && n < resultado.length; i++) {
+            if (n == 0 || resultado[n - 1] != ordenados[i]) resultado[n++] = ordenados[i];
+        }
+        return n == resultado.length ? resultado : Arrays.copyOf(resultado, n);
+    }
+
+    /** Nodo para armar el trie; se descarta después de compilar. */
+    private static final class NodoTemporal {
+        final TreeMap<Character, NodoTemporal> hijos = new TreeMap<>();
+        int[] terminales = new int[0];
+        int cantTerminales;
+        int[] top;
+
+        void agregarTerminal(int producto) {
+            // Un producto suele entrar varias veces al mismo nodo (nombre y código); basta una
+            if (cantTerminales > 0 && terminales[cantTerminales - 1] == producto) return;
+            if (cantTerminales == terminales.length) terminales = Arrays.copyOf(terminales, Math.max(2, cantTerminales * 2));
+            terminales[cantTerminales++] = producto;
+        }
+    }
+
+    /**
+     * Trie compilado en arreglos paralelos. Los hijos de cada nodo son contiguos (numeración
+     * por niveles) y están ordenados por carácter, así que se buscan con búsqueda binaria.
+     */
+    private static final class Trie {
+
+        static final Trie VACIO = new Trie(new char[1], new int[1], new int[1], new int[2], new int[0],
+                new SugerenciaProductoDTO[0]);
+
+        final char[] etiquetas;     // carácter de la arista que llega a cada nodo (la raíz no usa el suyo)
+        final int[] primerHijo;
+        final int[] cantHijos;
+        final int[] inicioTop;      // el top del nodo i es top[inicioTop[i] .. inicioTop[i + 1])
+        final int[] top;
+        final SugerenciaProductoDTO[] productos;
+
+        private Trie(char[] etiquetas, int[] primerHijo, int[] cantHijos, int[] inicioTop, int[] top,
+                     SugerenciaProductoDTO[] productos) {
+            this.etiquetas = etiquetas;
+            this.primerHijo = primerHijo;
+            this.cantHijos = cantHijos;
+            this.inicioTop = inicioTop;
+            this.top = top;
+            this.productos = productos;
+        }
+
+        static Trie compilar(NodoTemporal raiz, SugerenciaProductoDTO[] productos) {
+            List<NodoTemporal> nodos = new ArrayList<>();
+            List<Character> etiquetasTmp = new ArrayList<>();
+            nodos.add(raiz);
+            etiquetasTmp.add('\0');
+            int totalTop = 0;
+            // Recorrido por niveles: al visitar un nodo, sus hijos quedan numerados de corrido al final
+            int[] primerHijoTmp = new int[16];
+            int[] cantHijosTmp = new int[16];
+            for (int i = 0; i < nodos.size(); i++) {
+                NodoTemporal n = nodos.get(i);
+                if (i >= primerHijoTmp.length) {
+                    primerHijoTmp = Arrays.copyOf(primerHijoTmp, primerHijoTmp.length * 2);
+                    cantHijosTmp = Arrays.copyOf(cantHijosTmp, cantHijosTmp.length * 2);
+                }
+                primerHijoTmp[i] = nodos.size();
+                cantHijosTmp[i] = n.hijos.size();
+                for (Map.Entry<Character, NodoTemporal> e : n.hijos.entrySet()) {
+                    etiquetasTmp.add(e.getKey());
+                    nodos.add(e.getValue());
+                }
+                totalTop += n.top.length;
+            }
+
+            int cantidad = nodos.size();
+            char[] etiquetas = new char[cantidad];
+            int[] inicioTop = new int[cantidad + 1];
+            int[] top = new int[totalTop];
+            int pos = 0;
+            for (int i = 0; i < cantidad; i++) {
+                etiquetas[i] = etiquetasTmp.get(i);
+                inicioTop[i] = pos;
+                int[] t = nodos.get(i).top;
+                System.arraycopy(t, 0, top, pos, t.length);
+                pos += t.length;
+            }
+            inicioTop[cantidad] = pos;
+            return new Trie(etiquetas, Arrays.copyOf(primerHijoTmp, cantidad), Arrays.copyOf(cantHijosTmp, cantidad),
+                    inicioTop, top, productos);
+        }
+
+        List<SugerenciaProductoDTO> buscar(String prefijo, int limite) {
+            int nodo = 0;
+            for (int i = 0; i < prefijo.length(); i++) {
+                nodo = hijo(nodo, prefijo.charAt(i));
+                if (nodo < 0) return List.of();
+            }
+            int desde = inicioTop[nodo];
+            int hasta = Math.min(inicioTop[nodo + 1], desde + limite);
+            List<SugerenciaProductoDTO> resultado = new ArrayList<>(hasta - desde);
+            for (int i = desde; i < hasta; i++) {
+                resultado.add(productos[top[i]]);
+            }
+            return resultado;
+        }
+
+        private int hijo(int nodo, char c) {
+            int bajo = primerHijo[nodo];
+            int alto = bajo + cantHijos[nodo] - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                char e = etiquetas[medio];
+                if (e < c) bajo = medio + 1;
+                else if (e > c) alto = medio - 1;
+                else return medio;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.masterserv.productos.service;
+
+import com.masterserv.productos.dto.TotalCajaPorMetodoDTO;
+import com.masterserv.productos.entity.Caja;
+import com.masterserv.productos.repository.MovimientoCajaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Totales de ventas de la caja derivados del libro MovimientoCaja.
+ *
+ * En el camino caliente (ventas y anulaciones) solo se INSERTA el movimiento; la fila
+ * de Caja ya no se actualiza, así que varias terminales venden sin esperar locks.
+ * Para lecturas en vivo se mantiene un acumulador en memoria por caja y método de pago
+ * (LongAdder en centavos, que ya es "striped" internamente). Al cerrar la caja se
+ * recalcula todo desde el libro y eso es lo que queda persistido.
+ *
+ * Sembrar el acumulador desde el libro y sumarle una venta tienen que verse en el mismo orden
+ * que los commits: si la siembra cae entre el commit de una venta y su afterCommit, la venta se
+ * contaría dos veces (o ninguna, si la lectura fue previa al commit). Por eso cada venta toma el
+ * lock de lectura de su caja desde beforeCommit hasta afterCompletion, y sembrar o conciliar
+ * toman el de escritura: la siembra ve cada venta o como commiteada y sin sumar, o todavía no.
+ */
+@Service
+public class TotalesCajaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TotalesCajaService.class);
+
+    public static final String ORIGEN_VENTA = "VENTA";
+    public static final String ORIGEN_ANULACION = "ANULACION";
+    public static final String ORIGEN_APERTURA = "APERTURA";
+    public static final String ORIGEN_RETIRO = "RETIRO";
+    public static final String ORIGEN_INGRESO_EXTRA = "INGRESO_EXTRA";
+
+    private static final int EFECTIVO = 0;
+    private static final int TARJETA = 1;
+    private static final int TRANSFERENCIA = 2;
+
+    // Locks por caja en franjas (número fijo, no crece con las cajas que se abren)
+    private static final int FRANJAS = 32;
+
+    @Autowired private MovimientoCajaRepository movimientoCajaRepository;
+
+    private final ConcurrentMap<Long, LongAdder[]> acumuladores = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[FRANJAS];
+
+    public TotalesCajaService() {
+        for (int i = 0; i < FRANJAS; i++) locks[i] = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Suma (o resta, si el monto es negativo) una venta al acumulador en vivo.
+     * Con transacción activa se aplica recién en el commit: un rollback no deja rastros.
+     * Debe llamarse en la misma transacción que inserta el MovimientoCaja.
+     */
+    public void acumular(Long cajaId, String metodoPago, BigDecimal monto) {
+        if (cajaId == null || monto == null) return;
+        int bucket = bucket(metodoPago);
+        long centavos = aCentavos(monto);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private Lock lectura;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    lectura = lock(cajaId).readLock();
+                    lectura.lock();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (lectura == null) return;
+                    try {
+                        if (status == STATUS_COMMITTED) sumarSiExiste(cajaId, bucket, centavos);
+                    } finally {
+                        lectura.unlock();
+                    }
+                }
+            });
+        } else {
+            sumarSiExiste(cajaId, bucket, centavos);
+        }
+    }
+
+    // Si la caja todavía no tiene acumulador no hacemos nada: al sembrarse desde el libro
+    // ya va a incluir este movimiento (sumarlo acá lo contaría dos veces).
+    private void sumarSiExiste(Long cajaId, int bucket, long centavos) {
+        LongAdder[] a = acumuladores.get(cajaId);
+        if (a != null) a[bucket].add(centavos);
+    }
+
+    /**
+     * Completa los campos ventasEfectivo / ventasTarjeta / ventasTransferencia de la caja
+     * con los valores en vivo (no toca la base). Devuelve la misma instancia.
+     */
+    public Caja conTotalesEnVivo(Caja caja) {
+        if (caja == null || caja.getId() == null || "CERRADA".equals(caja.getEstado())) return caja;
+        LongAdder[] a = acumulador(caja.getId());
+        caja.setVentasEfectivo(deCentavos(a[EFECTIVO].sum()));
+        caja.setVentasTarjeta(deCentavos(a[TARJETA].sum()));
+        caja.setVentasTransferencia(deCentavos(a[TRANSFERENCIA].sum()));
+        return caja;
+    }
+
+    public BigDecimal efectivoEnVivo(Long cajaId) {
+        return deCentavos(acumulador(cajaId)[EFECTIVO].sum());
+    }
+
+    /**
+     * Recalcula los totales desde el libro, los vuelca en la caja y descarta el acumulador.
+     * Si el acumulador en vivo no coincide con el libro, gana el libro (y lo dejamos logueado).
+     */
+    @Transactional
+    public Caja conciliar(Caja caja) {
+        long[] libro;
+        LongAdder[] vivo;
+        Lock escritura = lock(caja.getId()).writeLock();
+        escritura.lock();
+        try {
+            libro = totalesDesdeLibro(caja.getId());
+            vivo = acumuladores.remove(caja.getId());
+        } finally {
+            escritura.unlock();
+        }
+
+        if (vivo != null) {
+            for (int i = 0; i < libro.length; i++) {
+                if (vivo[i].sum() != libro[i]) {
+                    logger.warn("⚠️ Caja #{}: acumulador en vivo ({}) distinto del libro ({}) en bucket {}. Se usa el libro.",
+                            caja.getId(), deCentavos(vivo[i].sum()), deCentavos(libro[i]), i);
+                }
+            }
+        }
+
+        caja.setVentasEfectivo(deCentavos(libro[EFECTIVO]));
+        caja.setVentasTarjeta(deCentavos(libro[TARJETA]));
+        caja.setVentasTransferencia(deCentavos(libro[TRANSFERENCIA]));
+        return caja;
+    }
+
+    private LongAdder[] acumulador(Long cajaId) {
+        LongAdder[] existente = acumuladores.get(cajaId);
+        if (existente != null) return existente;
+
+        // Primera lectura de la caja (p. ej. tras reiniciar la app): se siembra desde el libro
+        ReentrantReadWriteLock lock = lock(cajaId);
+        if (lock.getReadHoldCount() > 0) {
+            // Este hilo está commiteando una venta (lock de lectura tomado): esperar el de escritura sería un deadlock
+            throw new IllegalStateException("No se pueden leer los totales de la caja #" + cajaId + " durante el commit de una venta");
+        }
+        Lock escritura = lock.writeLock();
+        escritura.lock();
+        try {
+            return acumuladores.computeIfAbsent(cajaId, id -> {
+                long[] libro = totalesDesdeLibro(id);
+                LongAdder[] a = new LongAdder[]{new LongAdder(), new LongAdder(), new LongAdder()};
+                for (int i = 0; i < libro.length; i++) a[i].add(libro[i]);
+                return a;
+            });
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock lock(Long cajaId) {
+        return locks[Math.floorMod(cajaId.hashCode(), FRANJAS)];
+    }
+
+    private long[] totalesDesdeLibro(Long cajaId) {
+        long[] totales = new long[3];
+        for (TotalCajaPorMetodoDTO fila : movimientoCajaRepository.sumarVentasPorMetodoPago(cajaId)) {
+            if (fila.getTotal() != null) {
+                totales[bucket(fila.getMetodoPago())] += aCentavos(fila.getTotal());
+            }
+        }
+        return totales;
+    }
+
+    private static int bucket(String metodoPago) {
+        String metodo = metodoPago != null ? metodoPago.toUpperCase() : "EFECTIVO";
+        if ("TARJETA".equals(metodo) || "DEBITO".equals(metodo) || "CREDITO".equals(metodo)) return TARJETA;
+        if ("TRANSFERENCIA".equals(metodo)) return TRANSFERENCIA;
+        return EFECTIVO;
+    }
+
+    private static long aCentavos(BigDecimal monto) {
+        return monto.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal deCentavos(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
@@ -6,6 +6,7 @@ import com.masterserv.productos.repository.VentaRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import com.masterserv.productos.config.AsyncConfig;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
@@ -20,11 +21,11 @@ public class VentaEventListener {
     private static final Logger logger = LoggerFactory.getLogger(VentaEventListener.class);
 
     @Autowired private VentaRepository ventaRepository;
-    @Autowired private PdfService pdfService;
+    @Autowired private ComprobanteCacheService comprobanteCacheService;
     @Autowired private EmailService emailService;
     @Autowired private TemplateEngine templateEngine;
 
-    @Async
+    @Async(AsyncConfig.PDF)
     @TransactionalEventListener
     public void handleVentaRealizada(VentaRealizadaEvent event) {
         logger.info("-> 📨 [EVENTO] Procesando venta #{} para envío de email...", event.getVentaId());
@@ -33,7 +34,8 @@ public class VentaEventListener {
             Venta venta = ventaRepository.findByIdWithDetails(event.getVentaId())
                     .orElseThrow(() -> new RuntimeException("Venta no encontrada ID: " + event.getVentaId()));
 
-            byte[] pdf = pdfService.generarComprobanteVenta(venta);
+            // Primer render del comprobante: queda en caché para las reimpresiones
+            byte[] pdf = comprobanteCacheService.obtenerOGenerar(venta);
             if (pdf == null || pdf.length == 0) {
                 logger.error("❌ Error: PDF generado vacío para Venta #{}", venta.getId());
                 return;
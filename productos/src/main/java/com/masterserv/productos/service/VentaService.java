@@ -1,7 +1,7 @@
 package com.masterserv.productos.service;
 
 import com.masterserv.productos.dto.DetalleVentaDTO;
-import com.masterserv.productos.dto.MovimientoStockDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.VentaDTO;
 import com.masterserv.productos.dto.VentaFiltroDTO;
 import com.masterserv.productos.dto.VentaResumenDTO;
@@ -10,15 +10,15 @@ import com.masterserv.productos.entity.Caja;
 import com.masterserv.productos.enums.EstadoCupon;
 import com.masterserv.productos.enums.EstadoVenta;
 import com.masterserv.productos.enums.TipoDescuento;
-import com.masterserv.productos.enums.TipoMovimiento;
+import com.masterserv.productos.enums.TipoEventoOutbox;
 import com.masterserv.productos.exceptions.CuponNoValidoException;
 import com.masterserv.productos.mapper.VentaMapper;
 import com.masterserv.productos.repository.UsuarioRepository;
 import com.masterserv.productos.repository.VentaRepository;
-import com.masterserv.productos.repository.AuditoriaRepository;
 import com.masterserv.productos.repository.CajaRepository; 
 import com.masterserv.productos.repository.MovimientoCajaRepository; // ✅ IMPORT NUEVO
 import com.masterserv.productos.specification.VentaSpecification;
+import com.masterserv.productos.repository.ConsultaKeyset;
 
 import com.masterserv.productos.event.VentaRealizadaEvent;
 import org.springframework.context.ApplicationEventPublisher;
@@ -48,6 +48,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -55,20 +57,26 @@ public class VentaService {
 
     private static final Logger logger = LoggerFactory.getLogger(VentaService.class);
 
+    private static final ConsultaKeyset.Orden<Venta, LocalDateTime> ORDEN_CURSOR =
+            ConsultaKeyset.Orden.porFechaDesc("fechaVenta", Venta::getFechaVenta);
+    // Lo mismo que trae el @EntityGraph de VentaRepository.findAll(Pageable)
+    private static final String[] GRAFO_CURSOR = {"cliente", "vendedor"};
+
     @Autowired private VentaRepository ventaRepository;
     @Autowired private UsuarioRepository usuarioRepository;
     @Autowired private VentaMapper ventaMapper;
     @Autowired private VentaSpecification ventaSpecification;
     @Autowired private ProductoService productoService;
-    @Autowired private MovimientoStockService movimientoStockService;
-    @Autowired private PuntosService puntosService;
     @Autowired private CuponService cuponService;
     @Autowired private CarritoService carritoService;
     @Autowired private ApplicationEventPublisher eventPublisher;
-    @Autowired private AuditoriaRepository auditoriaRepository; 
     @Autowired private CajaRepository cajaRepository; 
     @Autowired private MovimientoCajaRepository movimientoCajaRepository; // ✅ REPO INYECTADO
-    @Autowired private ProcesoAutomaticoService procesoAutomaticoService;
+    @Autowired private TotalesCajaService totalesCajaService;
+    @Autowired private DisparadorReposicionService disparadorReposicionService;
+    @Autowired private OutboxService outboxService;
+    @Autowired private ComprobanteCacheService comprobanteCacheService;
+    @Autowired private ConsultaKeyset consultaKeyset;
 
     @Transactional
     public VentaDTO create(VentaDTO ventaDTO, String vendedorEmail) {
@@ -106,11 +114,21 @@ public class VentaService {
         BigDecimal subtotal = BigDecimal.ZERO;
         Set<DetalleVenta> detallesVenta = new HashSet<>(); 
 
+        // Todas las líneas se descuentan juntas (un solo batch de UPDATE condicionales).
+        // Los productos vuelven en un único snapshot (IN + categoría) que se reutiliza para
+        // precios, cupón y detalles: la cantidad de consultas no depende de las líneas.
+        Map<Long, Integer> cantidadesPorProducto = new LinkedHashMap<>();
+        for (DetalleVentaDTO d : ventaDTO.getDetalles()) {
+            cantidadesPorProducto.merge(d.getProductoId(), d.getCantidad(), Integer::sum);
+        }
+        Map<Long, Producto> productos = productoService.descontarStockLote(cantidadesPorProducto);
+
         for (DetalleVentaDTO d : ventaDTO.getDetalles()) {
-            Producto p = productoService.descontarStock(d.getProductoId(), d.getCantidad());
+            Producto p = productos.get(d.getProductoId());
 
             DetalleVenta det = new DetalleVenta();
             det.setProducto(p);
+            det.setCategoria(p.getCategoria());
             det.setCantidad(d.getCantidad());
             det.setPrecioUnitario(p.getPrecioVenta()); 
             det.setVenta(venta);
@@ -126,15 +144,6 @@ public class VentaService {
         BigDecimal totalFinal = subtotal.subtract(descuentoTotal).max(BigDecimal.ZERO);
         venta.setTotalVenta(totalFinal);
 
-        if ("TARJETA".equals(metodoPago) || "DEBITO".equals(metodoPago) || "CREDITO".equals(metodoPago)) {
-            cajaAbierta.setVentasTarjeta(cajaAbierta.getVentasTarjeta().add(totalFinal));
-        } else if ("TRANSFERENCIA".equals(metodoPago)) {
-            cajaAbierta.setVentasTransferencia(cajaAbierta.getVentasTransferencia().add(totalFinal));
-        } else {
-            cajaAbierta.setVentasEfectivo(cajaAbierta.getVentasEfectivo().add(totalFinal));
-        }
-        cajaRepository.save(cajaAbierta); 
-
         if (cuponAplicado != null) {
             cuponService.marcarCuponComoUsado(cuponAplicado, venta);
         }
@@ -148,56 +157,41 @@ public class VentaService {
         movVenta.setConcepto("Venta #" + ventaGuardada.getId());
         movVenta.setMonto(totalFinal);
         movVenta.setMetodoPago(metodoPago);
+        movVenta.setOrigen(TotalesCajaService.ORIGEN_VENTA);
         movVenta.setUsuario(vendedor);
         movVenta.setFecha(LocalDateTime.now());
         movimientoCajaRepository.save(movVenta);
+        // La fila de Caja no se toca: el total vive en el libro (solo INSERT, sin locks)
+        totalesCajaService.acumular(cajaAbierta.getId(), metodoPago, totalFinal);
 
-        for (DetalleVenta det : ventaGuardada.getDetalles()) {
-            registrarMovimientoStockSalida(ventaGuardada, det, vendedor);
-        }
+        // Movimientos de stock, puntos y auditoría se aplican fuera del camino del ticket (outbox)
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("usuarioId", vendedor.getId());
+        payload.put("fecha", ventaGuardada.getFechaVenta().toString());
+        payload.put("stockAnterior", stockAnterior(productos, cantidadesPorProducto, -1));
+        outboxService.registrar(TipoEventoOutbox.VENTA_REALIZADA, ventaGuardada.getId(), payload);
 
-        puntosService.asignarPuntosPorVenta(ventaGuardada);
         carritoService.vaciarCarrito(vendedorEmail);
         eventPublisher.publishEvent(new VentaRealizadaEvent(this, ventaGuardada.getId()));
-        registrarAuditoriaVenta(ventaGuardada, vendedor);
 
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000); 
-                procesoAutomaticoService.generarPrePedidosAgrupados();
-            } catch (Exception e) {
-                logger.error("Error trigger automático reposición: " + e.getMessage());
-            }
-        }).start();
+        disparadorReposicionService.solicitar(cantidadesPorProducto.keySet());
         
         return ventaMapper.toVentaDTO(ventaGuardada);
     }
 
-    private void registrarAuditoriaVenta(Venta venta, Usuario vendedor) {
-        try {
-            Auditoria audit = new Auditoria();
-            audit.setFecha(LocalDateTime.now());
-            audit.setUsuario(vendedor.getEmail());
-            audit.setEntidad("Venta");
-            audit.setEntidadId(venta.getId().toString());
-            audit.setAccion("NUEVA_VENTA");
-            
-            String detalle = String.format("Venta #%d realizada. Cliente: %s | Total: $%.2f | Ítems: %d",
-                    venta.getId(),
-                    venta.getCliente().getNombre() + " " + venta.getCliente().getApellido(),
-                    venta.getTotalVenta(),
-                    venta.getDetalles().size());
-            
-            audit.setDetalle(detalle);
-            audit.setValorNuevo("{ \"total\": " + venta.getTotalVenta() + ", \"estado\": \"COMPLETADA\" }");
-            
-            auditoriaRepository.save(audit);
-        } catch (Exception e) {
-            logger.error("🔴 Error al auditar la venta: " + e.getMessage());
-        }
+    /**
+     * Stock de cada producto antes de la operación, leído en la misma transacción que lo modificó
+     * (signo -1 para una salida, +1 para una reposición). Los efectos diferidos auditan con estos
+     * valores y no con el stock que haya cuando el outbox los aplica.
+     */
+    private static Map<Long, Integer> stockAnterior(Map<Long, Producto> productos, Map<Long, Integer> cantidades, int signo) {
+        Map<Long, Integer> anterior = new LinkedHashMap<>();
+        cantidades.forEach((id, cantidad) -> anterior.put(id, productos.get(id).getStockActual() - signo * cantidad));
+        return anterior;
     }
 
-    private BigDecimal calcularDescuento(Cupon cupon, BigDecimal subtotal, Set<DetalleVenta> detalles) {
+    // Package-private y estático: lo mide el módulo productos-benchmarks
+    static BigDecimal calcularDescuento(Cupon cupon, BigDecimal subtotal, Set<DetalleVenta> detalles) {
         if (cupon == null) return BigDecimal.ZERO;
         if (cupon.getTipoDescuento() == TipoDescuento.FIJO) {
             return cupon.getValor().min(subtotal);
@@ -208,7 +202,9 @@ public class VentaService {
                 Long categoriaIdDescuento = cupon.getCategoria().getId();
                 BigDecimal subtotalAplicable = BigDecimal.ZERO;
                 for (DetalleVenta det : detalles) {
-                    if (det.getProducto().getCategoria().getId().equals(categoriaIdDescuento)) {
+                    // La categoría viene en el snapshot del checkout: no hay lazy load por línea
+                    Categoria categoria = det.getProducto().getCategoria();
+                    if (categoria != null && categoria.getId().equals(categoriaIdDescuento)) {
                         subtotalAplicable = subtotalAplicable.add(det.getPrecioUnitario().multiply(new BigDecimal(det.getCantidad())));
                     }
                 }
@@ -220,17 +216,6 @@ public class VentaService {
         return BigDecimal.ZERO;
     }
 
-    private void registrarMovimientoStockSalida(Venta venta, DetalleVenta det, Usuario vendedor) {
-        MovimientoStockDTO mov = new MovimientoStockDTO();
-        mov.setProductoId(det.getProducto().getId());
-        mov.setUsuarioId(vendedor.getId());
-        mov.setTipoMovimiento(TipoMovimiento.SALIDA_VENTA);
-        mov.setCantidad(det.getCantidad());
-        mov.setVentaId(venta.getId());
-        mov.setMotivo("Salida por Venta #" + venta.getId()); 
-        movimientoStockService.registrarMovimiento(mov);
-    }
-
     @Transactional
     public void cancelarVenta(Long id, String emailCancela, String motivo) {
         Venta venta = ventaRepository.findByIdWithDetails(id)
@@ -246,15 +231,6 @@ public class VentaService {
         if (cajaAbierta != null) {
             String metodo = venta.getMetodoPago() != null ? venta.getMetodoPago().toUpperCase() : "EFECTIVO";
             BigDecimal total = venta.getTotalVenta();
-            
-            if ("TARJETA".equals(metodo) || "DEBITO".equals(metodo) || "CREDITO".equals(metodo)) {
-                cajaAbierta.setVentasTarjeta(cajaAbierta.getVentasTarjeta().subtract(total));
-            } else if ("TRANSFERENCIA".equals(metodo)) {
-                cajaAbierta.setVentasTransferencia(cajaAbierta.getVentasTransferencia().subtract(total));
-            } else {
-                cajaAbierta.setVentasEfectivo(cajaAbierta.getVentasEfectivo().subtract(total));
-            }
-            cajaRepository.save(cajaAbierta);
 
             // ✅ REGISTRAR MOVIMIENTO DE EGRESO POR NOTA DE CRÉDITO (NUEVO)
             MovimientoCaja movCancelacion = new MovimientoCaja();
@@ -263,20 +239,23 @@ public class VentaService {
             movCancelacion.setConcepto("Anulación Vta #" + venta.getId() + " - " + motivo);
             movCancelacion.setMonto(total);
             movCancelacion.setMetodoPago(metodo);
+            movCancelacion.setOrigen(TotalesCajaService.ORIGEN_ANULACION);
             movCancelacion.setUsuario(user);
             movCancelacion.setFecha(LocalDateTime.now());
             movimientoCajaRepository.save(movCancelacion);
+            totalesCajaService.acumular(cajaAbierta.getId(), metodo, total.negate());
         }
 
+        Map<Long, Integer> cantidadesPorProducto = new LinkedHashMap<>();
         for (DetalleVenta det : venta.getDetalles()) {
-            productoService.reponerStock(det.getProducto().getId(), det.getCantidad());
-            registrarMovimientoStockReposicion(venta, det, user, motivo); 
+            cantidadesPorProducto.merge(det.getProducto().getId(), det.getCantidad(), Integer::sum);
         }
+        Map<Long, Producto> productos = productoService.reponerStockLote(cantidadesPorProducto, null);
+        LocalDateTime fechaCancelacion = LocalDateTime.now();
 
         venta.setEstado(EstadoVenta.CANCELADA);
         venta.setObservacionCancelacion(motivo);
-        
-        puntosService.revertirPuntosPorVenta(venta);
+        comprobanteCacheService.invalidar(venta.getId());
 
         if (venta.getCupon() != null) {
             Cupon c = venta.getCupon();
@@ -286,40 +265,15 @@ public class VentaService {
         }
 
         Venta ventaCancelada = ventaRepository.save(venta);
-        registrarAuditoriaCancelacion(ventaCancelada, user, motivo); 
-    }
 
-    private void registrarMovimientoStockReposicion(Venta venta, DetalleVenta det, Usuario user, String motivo) {
-        MovimientoStockDTO mov = new MovimientoStockDTO();
-        mov.setProductoId(det.getProducto().getId());
-        mov.setUsuarioId(user.getId());
-        mov.setTipoMovimiento(TipoMovimiento.DEVOLUCION);
-        mov.setCantidad(det.getCantidad());
-        mov.setMotivo("Cancelación Venta #" + venta.getId() + " - " + motivo);
-        mov.setVentaId(venta.getId());
-        movimientoStockService.registrarMovimiento(mov);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("usuarioId", user.getId());
+        payload.put("motivo", motivo);
+        payload.put("fecha", fechaCancelacion.toString());
+        payload.put("stockAnterior", stockAnterior(productos, cantidadesPorProducto, 1));
+        outboxService.registrar(TipoEventoOutbox.VENTA_CANCELADA, ventaCancelada.getId(), payload);
     }
 
-    private void registrarAuditoriaCancelacion(Venta venta, Usuario usuario, String motivo) {
-        try {
-            Auditoria audit = new Auditoria();
-            audit.setFecha(LocalDateTime.now());
-            audit.setUsuario(usuario.getEmail());
-            audit.setEntidad("Venta");
-            audit.setEntidadId(venta.getId().toString());
-            audit.setAccion("CANCELACION_VENTA");
-            
-            audit.setDetalle("Venta #" + venta.getId() + " ANULADA. Motivo: " + motivo + ". (Stock repuesto y plata restada de caja)");
-            audit.setValorAnterior("{ \"estado\": \"COMPLETADA\" }");
-            audit.setValorNuevo("{ \"estado\": \"CANCELADA\" }");
-            
-            auditoriaRepository.save(audit);
-        } catch (Exception e) {
-            logger.error("🔴 Error al auditar cancelación: " + e.getMessage());
-        }
-    }
-
-
     @Transactional(readOnly = true)
     public VentaDTO findById(Long id) {
         return ventaRepository.findByIdWithDetails(id)
@@ -347,6 +301,29 @@ public class VentaService {
         return ventaRepository.findAll(spec, pageable).map(ventaMapper::toVentaDTO);
     }
 
+    // --- Variantes por cursor: (fecha_venta, id) descendente, sin COUNT ---
+
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<VentaDTO> findAllCursor(String cursor, int tamano) {
+        return consultaKeyset.buscar(Venta.class, null, ORDEN_CURSOR, Venta::getId, cursor, tamano, GRAFO_CURSOR)
+                .map(ventaMapper::toVentaDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<VentaDTO> findByCriteriaForVendedorCursor(VentaFiltroDTO filtro, String vendedorEmail, String cursor, int tamano) {
+        Usuario vendedor = usuarioRepository.findByEmail(vendedorEmail)
+                .orElseThrow(() -> new RuntimeException("Vendedor logueado no encontrado: " + vendedorEmail));
+        filtro.setVendedorId(vendedor.getId());
+        return findByCriteriaCursor(filtro, cursor, tamano);
+    }
+
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<VentaDTO> findByCriteriaCursor(VentaFiltroDTO filtro, String cursor, int tamano) {
+        Specification<Venta> spec = ventaSpecification.build(filtro);
+        return consultaKeyset.buscar(Venta.class, spec, ORDEN_CURSOR, Venta::getId, cursor, tamano, GRAFO_CURSOR)
+                .map(ventaMapper::toVentaDTO);
+    }
+
     @Transactional(readOnly = true)
     public Page<VentaResumenDTO> findVentasByClienteEmail(String email, Pageable pageable) {
         Usuario cliente = usuarioRepository.findByEmail(email)
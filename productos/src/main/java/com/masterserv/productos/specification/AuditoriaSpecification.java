@@ -32,12 +32,14 @@ public class AuditoriaSpecification {
                 predicates.add(criteriaBuilder.equal(root.get("entidad"), filtro.getEntidad()));
             }
 
-            // 4. Fechas (Convirtiendo LocalDate a LocalDateTime para cubrir todo el día)
+            // 4. Fechas (Convirtiendo LocalDate a LocalDateTime para cubrir todo el día).
+            // Rango semiabierto [desde, hasta + 1 día): incluye los segundos fraccionarios del último
+            // día y coincide con los límites de las particiones mensuales (ver ParticionService)
             if (filtro.getFechaDesde() != null) {
                 predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("fecha"), filtro.getFechaDesde().atStartOfDay()));
             }
             if (filtro.getFechaHasta() != null) {
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("fecha"), filtro.getFechaHasta().atTime(23, 59, 59)));
+                predicates.add(criteriaBuilder.lessThan(root.get("fecha"), filtro.getFechaHasta().plusDays(1).atStartOfDay()));
             }
 
             // Ordenar por fecha descendente (lo más nuevo primero)
@@ -2,6 +2,7 @@ package com.masterserv.productos.specification;
 
 import com.masterserv.productos.dto.ProductoFiltroDTO;
 import com.masterserv.productos.entity.Producto;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
@@ -85,6 +86,21 @@ public class ProductoSpecification {
         };
     }
     
+    /**
+     * Mismo criterio que ProductoRepository.buscarFlexible (sin tildes ni mayúsculas, en nombre,
+     * descripción o código), para combinarlo con los demás filtros. Requiere la extensión unaccent.
+     */
+    public Specification<Producto> getTextoFlexible(String texto) {
+        return (root, query, cb) -> {
+            Expression<String> patron = cb.function("unaccent", String.class,
+                    cb.literal("%" + texto.toLowerCase() + "%"));
+            return cb.or(
+                    cb.like(cb.lower(cb.function("unaccent", String.class, root.get("nombre"))), patron),
+                    cb.like(cb.lower(cb.function("unaccent", String.class, root.get("descripcion"))), patron),
+                    cb.like(cb.lower(cb.function("unaccent", String.class, root.get("codigo"))), patron));
+        };
+    }
+
     // El método getPublicProductosByFilters ya no es necesario si usas el de arriba, 
     // pero puedes dejarlo o borrarlo. Lo importante es que el Controller use el de arriba.
 }
\ No newline at end of file
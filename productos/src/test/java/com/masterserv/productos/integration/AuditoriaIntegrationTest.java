@@ -0,0 +1,209 @@
+package com.masterserv.productos.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.entity.Auditoria;
+import com.masterserv.productos.repository.AuditoriaRepository;
+import com.masterserv.productos.service.AuditoriaService;
+import com.masterserv.productos.service.CodificadorAuditoria;
+import com.masterserv.productos.service.EscritorAuditoriaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("📝 Pruebas de Integración - Escritura asíncrona de auditoría")
+public class AuditoriaIntegrationTest {
+
+    @Autowired private AuditoriaService auditoriaService;
+    @Autowired private EscritorAuditoriaService escritorAuditoria;
+    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private CodificadorAuditoria codificadorAuditoria;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${app.auditoria.spool-dir}")
+    private String directorioSpool;
+
+    @BeforeEach
+    void setup() throws IOException {
+        escritorAuditoria.vaciar();
+        auditoriaRepository.deleteAll();
+        // Restos de corridas anteriores
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(Paths.get(directorioSpool))) {
+            for (Path archivo : archivos) Files.delete(archivo);
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Los registros se escriben por lotes con ids únicos")
+    void testGuardar_PorLotes() {
+        for (int i = 0; i < 450; i++) {
+            auditoriaService.guardar(log("Lote #" + i));
+        }
+        escritorAuditoria.vaciar();
+
+        List<Auditoria> guardados = auditoriaRepository.findAll();
+        assertEquals(450, guardados.size());
+        assertEquals(450, guardados.stream().map(Auditoria::getId).distinct().count());
+    }
+
+    @Test
+    @DisplayName("✅ Con la base caída van al spool y se reprocesan cuando vuelve")
+    void testBaseCaida_SpoolYReproceso() {
+        // Simulamos la caída: la tabla "desaparece" mientras se escribe el lote
+        jdbcTemplate.execute("ALTER TABLE auditoria_logs RENAME TO auditoria_logs_caida");
+        try {
+            for (int i = 0; i < 3; i++) {
+                auditoriaService.guardar(log("Durante la caída #" + i));
+            }
+            escritorAuditoria.vaciar();
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE auditoria_logs_caida RENAME TO auditoria_logs");
+        }
+        assertEquals(0, auditoriaRepository.count());
+
+        escritorAuditoria.reprocesarSpool();
+        assertEquals(3, auditoriaRepository.count());
+
+        // Un segundo reproceso no duplica nada
+        escritorAuditoria.reprocesarSpool();
+        assertEquals(3, auditoriaRepository.count());
+    }
+
+    @Test
+    @DisplayName("✅ Una línea cortada del spool se aparta sin bloquear ese archivo ni los siguientes")
+    void testSpool_LineaIlegibleNoBloquea() throws IOException {
+        jdbcTemplate.execute("ALTER TABLE auditoria_logs RENAME TO auditoria_logs_caida");
+        try {
+            for (int i = 0; i < 2; i++) {
+                auditoriaService.guardar(log("Antes del corte #" + i));
+            }
+            escritorAuditoria.vaciar();
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE auditoria_logs_caida RENAME TO auditoria_logs");
+        }
+        Path spool = Paths.get(directorioSpool, "auditoria.spool");
+        List<String> lineas = Files.readAllLines(spool);
+        assertEquals(2, lineas.size());
+
+        // Apagado a mitad de escritura: la última línea quedó cortada (a veces en medio de un carácter UTF-8)
+        String cortada = "{\"entidad\":\"Producto\",\"detalle\":\"Ca\u00f1o ";
+        byte[] bytes = cortada.getBytes(StandardCharsets.UTF_8);
+        Files.write(spool, Arrays.copyOf(bytes, bytes.length - 2), StandardOpenOption.APPEND);
+        // Otro archivo ya rotado, detrás del dañado
+        Files.write(Paths.get(directorioSpool, "auditoria.spool.9999999999999.reproceso"),
+                List.of(objectMapper.writeValueAsString(log("Archivo siguiente"))));
+
+        escritorAuditoria.reprocesarSpool();
+
+        assertEquals(3, auditoriaRepository.count());
+        List<Path> restantes = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(Paths.get(directorioSpool))) {
+            archivos.forEach(restantes::add);
+        }
+        assertEquals(1, restantes.size(), "Solo debería quedar el archivo con la línea apartada: " + restantes);
+        assertTrue(restantes.get(0).getFileName().toString().endsWith(".descartado"));
+        assertEquals(1, Files.readAllLines(restantes.get(0)).size());
+    }
+
+    @Test
+    @DisplayName("✅ Los valores se guardan como parche (comprimido si es grande) y se reconstruyen al leer")
+    void testValores_ParcheYCompresion() throws Exception {
+        Auditoria chico = log("Ajuste de stock");
+        chico.setValorAnterior("{ \"Stock\": 10 }");
+        chico.setValorNuevo("{ \"Stock\": 7, \"Variacion\": -3 }");
+        auditoriaService.guardar(chico);
+
+        // Una descripción larga y repetitiva: el parche pasa el umbral y va en gzip
+        String descripcion = "Casco integral con visor antiempañante y ventilación regulable. ".repeat(40);
+        Auditoria grande = log("Alta de producto");
+        grande.setValorNuevo("{ \"descripcion\": \"" + descripcion + "\", \"precioVenta\": 150000 }");
+        auditoriaService.guardar(grande);
+        escritorAuditoria.vaciar();
+
+        Auditoria guardadoChico = buscar("Ajuste de stock");
+        assertNull(guardadoChico.getValorAnterior());
+        assertNull(guardadoChico.getCambiosComprimidos());
+        CodificadorAuditoria.Vista vista = codificadorAuditoria.vista(guardadoChico);
+        assertEquals("{\"Stock\":10}", vista.valorAnterior());
+        assertEquals("{\"Stock\":7,\"Variacion\":-3}", vista.valorNuevo());
+
+        Auditoria guardadoGrande = buscar("Alta de producto");
+        assertNull(guardadoGrande.getCambios());
+        assertNotNull(guardadoGrande.getCambiosComprimidos());
+        assertTrue(guardadoGrande.getCambiosComprimidos().length < descripcion.length() / 10,
+                "El gzip debería achicar el parche al menos 10 veces");
+        vista = codificadorAuditoria.vista(guardadoGrande);
+        assertNull(vista.valorAnterior());
+        assertTrue(vista.valorNuevo().contains(descripcion));
+    }
+
+    @Test
+    @DisplayName("✅ Auditorías manuales: los campos de contexto que no cambian se reconstruyen igual")
+    void testValores_ManualConservaElContexto() throws Exception {
+        // Como CajaService.registrarAuditoriaCaja: "Caja" no cambia pero es parte de lo que se registró
+        String anterior = "{ \"Caja\": 12, \"Retiros anteriores\": 1500.00 }";
+        String nuevo = "{ \"Caja\": 12, \"Total Retiros\": 2000.00, \"Detalle\": { \"Motivo\": \"Cambio\" } }";
+        Auditoria retiro = log("Retiro de caja");
+        retiro.setValorAnterior(anterior);
+        retiro.setValorNuevo(nuevo);
+        auditoriaService.guardar(retiro);
+
+        Auditoria sinAntes = log("Apertura de caja");
+        sinAntes.setValorAnterior("");
+        sinAntes.setValorNuevo("{ \"Caja\": 12, \"Monto inicial\": 500 }");
+        auditoriaService.guardar(sinAntes);
+        escritorAuditoria.vaciar();
+
+        CodificadorAuditoria.Vista vista = codificadorAuditoria.vista(buscar("Retiro de caja"));
+        assertEquals(objectMapper.readTree(anterior), objectMapper.readTree(vista.valorAnterior()));
+        assertEquals(objectMapper.readTree(nuevo), objectMapper.readTree(vista.valorNuevo()));
+
+        vista = codificadorAuditoria.vista(buscar("Apertura de caja"));
+        assertNull(vista.valorAnterior());
+        assertEquals(objectMapper.readTree("{ \"Caja\": 12, \"Monto inicial\": 500 }"), objectMapper.readTree(vista.valorNuevo()));
+    }
+
+    private Auditoria buscar(String detalle) {
+        return auditoriaRepository.findAll().stream()
+                .filter(a -> detalle.equals(a.getDetalle()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Auditoria log(String detalle) {
+        Auditoria a = new Auditoria();
+        a.setEntidad("Test");
+        a.setEntidadId("1");
+        a.setAccion("PRUEBA");
+        a.setUsuario("test@masterserv.com");
+        a.setFecha(LocalDateTime.now());
+        a.setDetalle(detalle);
+        return a;
+    }
+}
@@ -0,0 +1,143 @@
+package com.masterserv.productos.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.repository.CategoriaRepository;
+import com.masterserv.productos.repository.ProductoRepository;
+import com.masterserv.productos.service.EmailService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Asignación de memoria al LEER una página de 1.000 productos, con la auditoría actual
+ * (snapshot de Hibernate, nada extra por fila) contra lo que hacía el @PostLoad anterior
+ * (serializar cada entidad cargada a JSON con Jackson). La variante "antes" se reproduce
+ * serializando cada Producto de la página igual que lo hacía AuditableEntity.
+ *
+ * Mide bytes asignados por el hilo (com.sun.management.ThreadMXBean). Para correrlo:
+ *   ./mvnw test -Pcarga -Dtest=AuditoriaLecturaBenchmarkTest
+ */
+@Tag("carga")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("⏱️ Benchmark - Asignación de memoria al leer productos (auditoría)")
+public class AuditoriaLecturaBenchmarkTest {
+
+    private static final int PRODUCTOS = 1_000;
+    private static final int RONDAS = Integer.getInteger("bench.rondas", 10);
+
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private EmailService emailService;
+
+    private Categoria categoria;
+
+    @BeforeEach
+    void setup() {
+        limpiar();
+        categoria = new Categoria();
+        categoria.setNombre("Bench Auditoría");
+        categoria.setEstado("ACTIVO");
+        categoria = categoriaRepository.save(categoria);
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> filas = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            filas.add(new Object[]{
+                    "AUD-" + i, "Producto Auditoría " + i, "Descripción del producto " + i,
+                    new BigDecimal(100 + i), new BigDecimal(50 + i), 1 + i % 40, 1, 1, "ACTIVO",
+                    categoria.getId(), ahora, ahora
+            });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO productos (id, codigo, nombre, descripcion, precio_venta, precio_costo, stock_actual, " +
+                "stock_minimo, lote_reposicion, estado, categoria_id, fecha_creacion, fecha_modificacion) " +
+                "VALUES (NEXT VALUE FOR productos_id_seq, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", filas);
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM productos");
+        categoriaRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("✅ Leer 1.000 productos ya no serializa cada fila")
+    void testLecturaPagina_AsignacionAntesYDespues() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        long hilo = Thread.currentThread().getId();
+
+        // Calentamiento
+        leerPagina(tx, false);
+        leerPagina(tx, true);
+
+        long bytesAhora = 0, bytesAntes = 0;
+        for (int r = 0; r < RONDAS; r++) {
+            long inicio = mx.getThreadAllocatedBytes(hilo);
+            assertEquals(PRODUCTOS, leerPagina(tx, false));
+            bytesAhora += mx.getThreadAllocatedBytes(hilo) - inicio;
+
+            inicio = mx.getThreadAllocatedBytes(hilo);
+            assertEquals(PRODUCTOS, leerPagina(tx, true));
+            bytesAntes += mx.getThreadAllocatedBytes(hilo) - inicio;
+        }
+
+        double kbAhora = bytesAhora / 1024.0 / RONDAS;
+        double kbAntes = bytesAntes / 1024.0 / RONDAS;
+        System.out.printf("⏱️ [BENCH] Página de %d productos: antes (@PostLoad JSON) %.0f KB | ahora %.0f KB | %.0f%% menos%n",
+                PRODUCTOS, kbAntes, kbAhora, 100 * (1 - kbAhora / kbAntes));
+
+        assertTrue(bytesAhora < bytesAntes, "Leer sin serializar debería asignar menos memoria");
+    }
+
+    // Con serializarComoAntes=true se reproduce el costo del viejo AuditableEntity.cargarEstadoAnterior()
+    private int leerPagina(TransactionTemplate tx, boolean serializarComoAntes) {
+        Integer leidos = tx.execute(status -> {
+            List<Producto> pagina = productoRepository
+                    .findAll(PageRequest.of(0, PRODUCTOS, Sort.by("nombre"))).getContent();
+            if (serializarComoAntes) {
+                for (Producto p : pagina) {
+                    try {
+                        objectMapper.writeValueAsString(p);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return pagina.size();
+        });
+        return leidos != null ? leidos : 0;
+    }
+}
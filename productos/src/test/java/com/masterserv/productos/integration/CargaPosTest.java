@@ -0,0 +1,354 @@
+package com.masterserv.productos.integration;
+
+import com.masterserv.productos.dto.AddItemCarritoDTO;
+import com.masterserv.productos.dto.CarritoDTO;
+import com.masterserv.productos.dto.DetalleVentaDTO;
+import com.masterserv.productos.dto.ItemCarritoDTO;
+import com.masterserv.productos.dto.VentaDTO;
+import com.masterserv.productos.entity.*;
+import com.masterserv.productos.enums.EstadoUsuario;
+import com.masterserv.productos.repository.*;
+import com.masterserv.productos.security.JwtTokenUtil;
+import com.masterserv.productos.service.OutboxService;
+import com.masterserv.productos.service.WhatsappService;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Prueba de carga local del flujo del POS: varios vendedores en paralelo armando el carrito
+ * (POST /carrito/items) y cobrando (POST /ventas) por HTTP real, con JWT, contra H2 en modo
+ * PostgreSQL. El correo va a un JavaMailSender que solo cuenta mensajes.
+ *
+ * No corre con el build normal (tag "carga"). Para correrla:
+ *   ./mvnw test -Pcarga
+ *   ./mvnw test -Pcarga -Dcarga.vendedores=16 -Dcarga.ventas=50 -Dcarga.lineas=5
+ *
+ * Imprime p50/p95/p99 de cada endpoint y ventas por segundo. Sirve para comparar una rama
+ * contra otra en la misma máquina, no como número absoluto (H2 no es PostgreSQL).
+ */
+@Tag("carga")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "twilio.account-sid=ACcarga",
+        "twilio.auth-token=carga",
+        "twilio.whatsapp-number=+10000000000",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("🏋️ Carga - Flujo del POS (carrito + venta) con vendedores concurrentes")
+public class CargaPosTest {
+
+    private static final int VENDEDORES = Integer.getInteger("carga.vendedores", 8);
+    private static final int VENTAS_POR_VENDEDOR = Integer.getInteger("carga.ventas", 25);
+    private static final int LINEAS_POR_VENTA = Integer.getInteger("carga.lineas", 3);
+    private static final int PRODUCTOS = Integer.getInteger("carga.productos", 50);
+    private static final int CALENTAMIENTO = Integer.getInteger("carga.calentamiento", 3);
+
+    private static final String ROL_VENDEDOR = "ROLE_VENDEDOR";
+
+    @Autowired private TestRestTemplate restTemplate;
+    @Autowired private JwtTokenUtil jwtTokenUtil;
+    @Autowired private OutboxService outboxService;
+    @Autowired private CorreoContador correoContador;
+
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private RolRepository rolRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private VentaRepository ventaRepository;
+    @Autowired private CarritoRepository carritoRepository;
+    @Autowired private CajaRepository cajaRepository;
+    @Autowired private MovimientoCajaRepository movimientoCajaRepository;
+    @Autowired private MovimientoStockRepository movimientoStockRepository;
+    @Autowired private MovimientoPuntosRepository movimientoPuntosRepository;
+    @Autowired private CuentaPuntosRepository cuentaPuntosRepository;
+    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private EventoOutboxRepository eventoOutboxRepository;
+    @Autowired private CuponRepository cuponRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    // Las alertas de stock bajo no deben salir a Twilio durante la prueba
+    @MockBean
+    private WhatsappService whatsappService;
+
+    private final List<String> tokens = new ArrayList<>();
+    private final List<Long> productoIds = new ArrayList<>();
+    private Usuario cliente;
+    private Rol rolCreado;
+
+    /** Reemplaza el JavaMailSender real: arma el mensaje igual que en producción pero no abre SMTP. */
+    @TestConfiguration
+    static class CorreoFalsoConfig {
+        @Bean
+        @Primary
+        public CorreoContador correoContador() {
+            return new CorreoContador();
+        }
+    }
+
+    static class CorreoContador extends JavaMailSenderImpl {
+        private final AtomicInteger enviados = new AtomicInteger();
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            enviados.addAndGet(mimeMessages.length);
+        }
+
+        int enviados() {
+            return enviados.get();
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        limpiar();
+
+        Rol rol = rolRepository.findByNombreRol(ROL_VENDEDOR).orElse(null);
+        if (rol == null) {
+            rol = new Rol();
+            rol.setNombreRol(ROL_VENDEDOR);
+            rol.setPermisos(new HashSet<>());
+            rolCreado = rolRepository.save(rol);
+            rol = rolCreado;
+        }
+
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Carga");
+        categoria.setEstado("ACTIVO");
+        categoriaRepository.save(categoria);
+
+        // Stock de sobra: la prueba mide el camino feliz, no el rechazo por stock
+        int stockInicial = VENDEDORES * (VENTAS_POR_VENDEDOR + CALENTAMIENTO) * LINEAS_POR_VENTA * 3 + 100;
+        productoIds.clear();
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Producto p = new Producto();
+            p.setNombre("Producto Carga " + i);
+            p.setCodigo("CARGA-" + i);
+            p.setCategoria(categoria);
+            p.setPrecioCosto(new BigDecimal("100"));
+            p.setPrecioVenta(new BigDecimal("250"));
+            p.setStockActual(stockInicial);
+            p.setStockMinimo(0);
+            p.setLoteReposicion(1);
+            p.setEstado("ACTIVO");
+            productoIds.add(productoRepository.save(p).getId());
+        }
+
+        cliente = crearUsuario("Cliente", "cliente.carga@test.com", "998000000", Collections.emptySet());
+
+        tokens.clear();
+        for (int v = 0; v < VENDEDORES; v++) {
+            Usuario vendedor = crearUsuario("Vendedor" + v, "vendedor" + v + ".carga@test.com",
+                    "99700" + String.format("%04d", v), Set.of(rol));
+
+            Caja caja = new Caja();
+            caja.setUsuario(vendedor);
+            caja.setEstado("ABIERTA");
+            cajaRepository.save(caja);
+
+            Carrito carrito = new Carrito();
+            carrito.setVendedor(vendedor);
+            carrito.setFechaCreacion(LocalDateTime.now());
+            carrito.setFechaModificacion(LocalDateTime.now());
+            carrito.setItems(new HashSet<>());
+            carritoRepository.save(carrito);
+
+            tokens.add(jwtTokenUtil.generateToken(vendedor));
+        }
+    }
+
+    @AfterEach
+    void limpiar() {
+        // Venta y Cupón se referencian entre sí: cortamos el ciclo antes de borrar
+        jdbcTemplate.update("UPDATE cupones SET venta_id = NULL");
+        eventoOutboxRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM ventas_resumen_diario");
+        auditoriaRepository.deleteAll();
+        movimientoStockRepository.deleteAll();
+        movimientoPuntosRepository.deleteAll();
+        cuentaPuntosRepository.deleteAll();
+        movimientoCajaRepository.deleteAll();
+        cajaRepository.deleteAll();
+        ventaRepository.deleteAll();
+        cuponRepository.deleteAll();
+        carritoRepository.deleteAll();
+        productoRepository.deleteAll();
+        categoriaRepository.deleteAll();
+        usuarioRepository.deleteAll();
+        if (rolCreado != null) {
+            rolRepository.delete(rolCreado);
+            rolCreado = null;
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Vendedores concurrentes: latencias p50/p95/p99 y ventas por segundo")
+    void testFlujoPos_VendedoresConcurrentes() throws Exception {
+        Queue<Long> latenciasItem = new ConcurrentLinkedQueue<>();
+        Queue<Long> latenciasVenta = new ConcurrentLinkedQueue<>();
+        AtomicInteger errores = new AtomicInteger();
+
+        // Calentamiento: JIT, pools de conexiones y secuencias. No se mide.
+        correr(CALENTAMIENTO, new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>(), errores);
+        errores.set(0);
+
+        long inicio = System.nanoTime();
+        correr(VENTAS_POR_VENDEDOR, latenciasItem, latenciasVenta, errores);
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        // Efectos diferidos de las ventas (stock, puntos, auditoría) que aplica el outbox
+        long inicioEfectos = System.nanoTime();
+        for (int i = 0; i < 1000 && outboxService.pendientes() > 0; i++) {
+            outboxService.despachar();
+        }
+        double segundosEfectos = (System.nanoTime() - inicioEfectos) / 1_000_000_000.0;
+
+        int ventasMedidas = latenciasVenta.size();
+        System.out.printf("🏋️ [CARGA] %d vendedores x %d ventas x %d líneas | %d productos%n",
+                VENDEDORES, VENTAS_POR_VENDEDOR, LINEAS_POR_VENTA, PRODUCTOS);
+        System.out.println("🏋️ [CARGA] " + resumen("POST /carrito/items", latenciasItem));
+        System.out.println("🏋️ [CARGA] " + resumen("POST /ventas", latenciasVenta));
+        System.out.printf("🏋️ [CARGA] %d ventas en %.2f s = %.1f ventas/s | errores: %d | outbox: %.2f s | correos: %d%n",
+                ventasMedidas, segundos, ventasMedidas / segundos, errores.get(), segundosEfectos, correoContador.enviados());
+
+        assertEquals(0, errores.get(), "Hubo respuestas con error durante la carga");
+        assertEquals((long) VENDEDORES * (VENTAS_POR_VENDEDOR + CALENTAMIENTO), ventaRepository.count());
+        assertEquals(0, outboxService.pendientes(), "Quedaron efectos de venta sin aplicar");
+    }
+
+    // Cada vendedor en su propio hilo: arma el carrito por HTTP y cobra con lo que devolvió el carrito
+    private void correr(int ventasPorVendedor, Queue<Long> latenciasItem, Queue<Long> latenciasVenta,
+                        AtomicInteger errores) throws Exception {
+        ExecutorService vendedores = Executors.newFixedThreadPool(VENDEDORES);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        try {
+            for (String token : tokens) {
+                tareas.add(vendedores.submit(() -> {
+                    largada.await();
+                    for (int n = 0; n < ventasPorVendedor; n++) {
+                        venderUna(token, latenciasItem, latenciasVenta, errores);
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> t : tareas) {
+                t.get(10, TimeUnit.MINUTES);
+            }
+        } finally {
+            vendedores.shutdownNow();
+        }
+    }
+
+    private void venderUna(String token, Queue<Long> latenciasItem, Queue<Long> latenciasVenta, AtomicInteger errores) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        CarritoDTO carrito = null;
+        for (Long productoId : elegirProductos()) {
+            AddItemCarritoDTO item = new AddItemCarritoDTO(productoId, 1 + ThreadLocalRandom.current().nextInt(3));
+            long t0 = System.nanoTime();
+            ResponseEntity<CarritoDTO> resp = restTemplate.exchange("/carrito/items", HttpMethod.POST,
+                    new HttpEntity<>(item, headers), CarritoDTO.class);
+            latenciasItem.add(System.nanoTime() - t0);
+            if (!resp.getStatusCode().is2xxSuccessful()) {
+                errores.incrementAndGet();
+                return;
+            }
+            carrito = resp.getBody();
+        }
+
+        VentaDTO venta = new VentaDTO();
+        venta.setClienteId(cliente.getId());
+        venta.setMetodoPago("EFECTIVO");
+        List<DetalleVentaDTO> detalles = new ArrayList<>();
+        for (ItemCarritoDTO item : carrito.getItems()) {
+            DetalleVentaDTO det = new DetalleVentaDTO();
+            det.setProductoId(item.getProductoId());
+            det.setCantidad(item.getCantidad());
+            detalles.add(det);
+        }
+        venta.setDetalles(detalles);
+
+        long t0 = System.nanoTime();
+        ResponseEntity<VentaDTO> resp = restTemplate.exchange("/ventas", HttpMethod.POST,
+                new HttpEntity<>(venta, headers), VentaDTO.class);
+        if (resp.getStatusCode().is2xxSuccessful()) {
+            latenciasVenta.add(System.nanoTime() - t0);
+        } else {
+            errores.incrementAndGet();
+        }
+    }
+
+    private List<Long> elegirProductos() {
+        List<Long> elegidos = new ArrayList<>(productoIds);
+        Collections.shuffle(elegidos, ThreadLocalRandom.current());
+        return elegidos.subList(0, Math.min(LINEAS_POR_VENTA, elegidos.size()));
+    }
+
+    private static String resumen(String nombre, Queue<Long> latenciasNanos) {
+        List<Long> ordenadas = new ArrayList<>(latenciasNanos);
+        Collections.sort(ordenadas);
+        return String.format("%-20s n=%d p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms", nombre, ordenadas.size(),
+                percentil(ordenadas, 50), percentil(ordenadas, 95), percentil(ordenadas, 99),
+                ordenadas.isEmpty() ? 0.0 : ordenadas.get(ordenadas.size() - 1) / 1_000_000.0);
+    }
+
+    // Percentil por rango más cercano, en milisegundos
+    private static double percentil(List<Long> ordenadas, int p) {
+        if (ordenadas.isEmpty()) return 0.0;
+        int rango = (int) Math.ceil(p / 100.0 * ordenadas.size());
+        return ordenadas.get(Math.max(0, rango - 1)) / 1_000_000.0;
+    }
+
+    private Usuario crearUsuario(String nombre, String email, String telefono, Set<Rol> roles) {
+        Usuario u = new Usuario();
+        u.setNombre(nombre);
+        u.setApellido("Carga");
+        u.setEmail(email);
+        u.setTelefono(telefono);
+        u.setPasswordHash("123456");
+        u.setEstado(EstadoUsuario.ACTIVO);
+        u.setRoles(new HashSet<>(roles));
+        return usuarioRepository.save(u);
+    }
+}
@@ -0,0 +1,164 @@
+package com.masterserv.productos.integration;
+
+import com.masterserv.productos.dto.ProductoPublicoDTO;
+import com.masterserv.productos.dto.ProductoPublicoFiltroDTO;
+import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.repository.CategoriaRepository;
+import com.masterserv.productos.service.EmailService;
+import com.masterserv.productos.service.ProductoService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark del catálogo paginado: Page (SELECT + COUNT) contra Slice (solo SELECT de pageSize + 1)
+ * recorriendo las primeras páginas de un catálogo grande con filtro de categoría y stock.
+ *
+ * No corre con el build normal (tag "carga", cargar 50k productos lleva su tiempo). Para correrlo:
+ *   ./mvnw test -Pcarga -Dtest=CatalogoSliceBenchmarkTest
+ *   ./mvnw test -Pcarga -Dtest=CatalogoSliceBenchmarkTest -Dbench.productos=200000
+ */
+@Tag("carga")
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("⏱️ Benchmark - Catálogo con Page vs Slice (sin COUNT)")
+public class CatalogoSliceBenchmarkTest {
+
+    private static final int PRODUCTOS = Integer.getInteger("bench.productos", 50_000);
+    private static final int PAGINAS = Integer.getInteger("bench.paginas", 20);
+    private static final int RONDAS = Integer.getInteger("bench.rondas", 5);
+    private static final int TAMANO_PAGINA = 24;
+
+    @Autowired private ProductoService productoService;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private EmailService emailService;
+
+    private final List<Categoria> categorias = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        limpiar();
+        for (int i = 0; i < 10; i++) {
+            Categoria c = new Categoria();
+            c.setNombre("Bench Cat " + i);
+            c.setEstado("ACTIVO");
+            categorias.add(categoriaRepository.save(c));
+        }
+
+        // Carga directa por JDBC: el benchmark mide la lectura, no el alta
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> filas = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            filas.add(new Object[]{
+                    "SLC-" + i, "Producto Slice " + i,
+                    new BigDecimal(100 + i % 900), new BigDecimal(50 + i % 450),
+                    i % 7 == 0 ? 0 : 1 + i % 40, 1, 1, "ACTIVO",
+                    categorias.get(i % categorias.size()).getId(), ahora, ahora
+            });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO productos (id, codigo, nombre, precio_venta, precio_costo, stock_actual, " +
+                "stock_minimo, lote_reposicion, estado, categoria_id, fecha_creacion, fecha_modificacion) " +
+                "VALUES (NEXT VALUE FOR productos_id_seq, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", filas);
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM productos");
+        categoriaRepository.deleteAll();
+        categorias.clear();
+    }
+
+    @Test
+    @DisplayName("✅ Slice: una consulta por página (Page necesita dos) y mismas filas")
+    void testCatalogo_PageVsSlice() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        ProductoPublicoFiltroDTO filtro = new ProductoPublicoFiltroDTO();
+        filtro.setCategoriaIds(List.of(categorias.get(0).getId(), categorias.get(1).getId(), categorias.get(2).getId()));
+        filtro.setSoloConStock(true);
+
+        // Calentamiento: planes de consulta y JIT
+        recorrerConPage(filtro);
+        recorrerConSlice(filtro);
+
+        long nanosPage = 0, nanosSlice = 0;
+        long consultasPage = 0, consultasSlice = 0;
+        for (int r = 0; r < RONDAS; r++) {
+            stats.clear();
+            long inicio = System.nanoTime();
+            recorrerConPage(filtro);
+            nanosPage += System.nanoTime() - inicio;
+            consultasPage += stats.getQueryExecutionCount();
+
+            stats.clear();
+            inicio = System.nanoTime();
+            recorrerConSlice(filtro);
+            nanosSlice += System.nanoTime() - inicio;
+            consultasSlice += stats.getQueryExecutionCount();
+        }
+
+        double msPage = nanosPage / 1_000_000.0 / (RONDAS * PAGINAS);
+        double msSlice = nanosSlice / 1_000_000.0 / (RONDAS * PAGINAS);
+        System.out.printf("⏱️ [BENCH] Catálogo %d productos, %d páginas x %d: Page %.2f ms/página (%d consultas) | Slice %.2f ms/página (%d consultas) | ahorro %.0f%%%n",
+                PRODUCTOS, PAGINAS, TAMANO_PAGINA, msPage, consultasPage / RONDAS, msSlice, consultasSlice / RONDAS,
+                100 * (1 - msSlice / msPage));
+
+        assertEquals(2L * PAGINAS, consultasPage / RONDAS, "Page debería ejecutar SELECT + COUNT por página");
+        assertEquals(PAGINAS, consultasSlice / RONDAS, "Slice debería ejecutar solo el SELECT");
+
+        // Mismo contenido en ambas variantes
+        Pageable pagina = PageRequest.of(PAGINAS - 1, TAMANO_PAGINA, Sort.by("nombre"));
+        List<String> conPage = productoService.findPublicoByCriteria(filtro, pagina).map(ProductoPublicoDTO::getNombre).getContent();
+        Slice<ProductoPublicoDTO> slice = productoService.findPublicoByCriteriaSlice(filtro, pagina);
+        assertEquals(conPage, slice.map(ProductoPublicoDTO::getNombre).getContent());
+        assertTrue(slice.hasNext());
+    }
+
+    private void recorrerConPage(ProductoPublicoFiltroDTO filtro) {
+        for (int p = 0; p < PAGINAS; p++) {
+            Page<ProductoPublicoDTO> pagina = productoService.findPublicoByCriteria(filtro, PageRequest.of(p, TAMANO_PAGINA, Sort.by("nombre")));
+            if (!pagina.hasNext()) break;
+        }
+    }
+
+    private void recorrerConSlice(ProductoPublicoFiltroDTO filtro) {
+        for (int p = 0; p < PAGINAS; p++) {
+            Slice<ProductoPublicoDTO> pagina = productoService.findPublicoByCriteriaSlice(filtro, PageRequest.of(p, TAMANO_PAGINA, Sort.by("nombre")));
+            if (!pagina.hasNext()) break;
+        }
+    }
+}
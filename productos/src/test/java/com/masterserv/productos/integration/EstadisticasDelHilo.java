@@ -0,0 +1,70 @@
+package com.masterserv.productos.integration;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Estadísticas de Hibernate que, después de cada clear(), solo cuentan lo que hace el hilo que
+ * las limpió. Las estadísticas normales son globales: el escritor de auditoría, el disparador de
+ * reposición o el refresco del catálogo meten consultas en la ventana medida cuando les toca.
+ *
+ * Uso: spring.jpa.properties.hibernate.stats.factory=com.masterserv.productos.integration.EstadisticasDelHilo
+ */
+public class EstadisticasDelHilo implements StatisticsFactory {
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new Estadisticas(sessionFactory);
+    }
+
+    private static class Estadisticas extends StatisticsImpl {
+
+        private volatile Thread medido;
+
+        Estadisticas(SessionFactoryImplementor sessionFactory) {
+            super(sessionFactory);
+        }
+
+        @Override
+        public void clear() {
+            medido = Thread.currentThread();
+            super.clear();
+        }
+
+        private boolean cuenta() {
+            return medido == null || medido == Thread.currentThread();
+        }
+
+        @Override
+        public void queryExecuted(String hql, int rows, long time) {
+            if (cuenta()) super.queryExecuted(hql, rows, time);
+        }
+
+        @Override
+        public void prepareStatement() {
+            if (cuenta()) super.prepareStatement();
+        }
+
+        @Override
+        public void closeStatement() {
+            if (cuenta()) super.closeStatement();
+        }
+
+        @Override
+        public void insertEntity(String entityName) {
+            if (cuenta()) super.insertEntity(entityName);
+        }
+
+        @Override
+        public void fetchEntity(String entityName) {
+            if (cuenta()) super.fetchEntity(entityName);
+        }
+
+        @Override
+        public void fetchCollection(String role) {
+            if (cuenta()) super.fetchCollection(role);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.masterserv.productos.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.dto.DashboardFilterDTO;
+import com.masterserv.productos.entity.EmpresaConfig;
+import com.masterserv.productos.event.EmpresaConfigActualizadaEvent;
+import com.masterserv.productos.repository.EmpresaConfigRepository;
+import com.masterserv.productos.service.CabeceraPdfService;
+import com.masterserv.productos.service.EmpresaConfigService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("🧾 Pruebas de Integración - Documentos PDF")
+public class PdfIntegrationTest {
+
+    private static final String PNG_1X1 = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+    // Base64 válido pero no es una imagen: Image.getInstance falla
+    private static final String LOGO_ROTO = "data:image/png;base64,AAAAAAAA";
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private CabeceraPdfService cabeceraPdfService;
+    @Autowired private EmpresaConfigService empresaConfigService;
+    @Autowired private EmpresaConfigRepository empresaConfigRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private String nombreOriginal;
+
+    @BeforeEach
+    void setup() {
+        nombreOriginal = empresaConfigService.obtenerConfiguracion().getNombreFantasia();
+    }
+
+    @AfterEach
+    void restaurar() {
+        guardar(nombreOriginal, null);
+        cabeceraPdfService.onEmpresaConfigActualizada(new EmpresaConfigActualizadaEvent(1L));
+    }
+
+    @Test
+    @DisplayName("✅ Un logo que no se pudo cargar no queda cacheado: se reintenta en un uso posterior")
+    void testCabecera_LogoFallidoSeReintenta() {
+        guardar(nombreOriginal, LOGO_ROTO);
+        cabeceraPdfService.onEmpresaConfigActualizada(new EmpresaConfigActualizadaEvent(1L));
+        CabeceraPdfService.CabeceraEmpresa cabecera = cabeceraPdfService.obtener();
+        assert cabecera.logoPendiente() && cabecera.logo().isEmpty();
+
+        // El logo ya se puede cargar (sin evento: p. ej. la URL volvió a responder)
+        guardar(nombreOriginal, PNG_1X1);
+        // Dentro de la espera entre reintentos se sigue usando la cabecera sin logo
+        assert cabeceraPdfService.obtener().logoPendiente();
+
+        ReflectionTestUtils.setField(cabeceraPdfService, "proximoReintentoLogo", 0L);
+        cabecera = cabeceraPdfService.obtener();
+        assert !cabecera.logoPendiente() && cabecera.logo().isPresent();
+        // Ya cargado, no se vuelve a construir en cada uso
+        assert cabeceraPdfService.obtener() == cabecera;
+    }
+
+    @Test
+    @DisplayName("✅ Sin logo configurado no hay nada que reintentar")
+    void testCabecera_SinLogo() {
+        guardar(nombreOriginal, null);
+        cabeceraPdfService.onEmpresaConfigActualizada(new EmpresaConfigActualizadaEvent(1L));
+        CabeceraPdfService.CabeceraEmpresa cabecera = cabeceraPdfService.obtener();
+        assert !cabecera.logoPendiente() && cabecera.logo().isEmpty();
+    }
+
+    @Test
+    @DisplayName("✅ Las reconstrucciones van de a una y leen la configuración con el lock tomado")
+    void testCabecera_ReconstruccionesEnOrden() throws Exception {
+        // Con una construcción en curso, la del evento espera; la configuración cambia mientras tanto
+        // y la que publica al final tiene que ser la nueva, no una leída antes de esperar.
+        ReentrantLock construccion = (ReentrantLock) ReflectionTestUtils.getField(cabeceraPdfService, "construccion");
+        Thread evento = new Thread(() -> cabeceraPdfService.onEmpresaConfigActualizada(new EmpresaConfigActualizadaEvent(1L)));
+        construccion.lock();
+        try {
+            evento.start();
+            long limite = System.currentTimeMillis() + 10_000;
+            while (!construccion.hasQueuedThread(evento) && System.currentTimeMillis() < limite) {
+                Thread.sleep(5);
+            }
+            assert construccion.hasQueuedThread(evento);
+            guardar("Taller Nuevo", null);
+        } finally {
+            construccion.unlock();
+        }
+        evento.join(10_000);
+
+        assert "Taller Nuevo".equals(cabeceraPdfService.obtener().nombreFantasia()) : cabeceraPdfService.obtener().nombreFantasia();
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Reporte del dashboard: los datos se cargan antes de empezar la descarga")
+    void testReporteDashboard_DatosAntesDelStreaming() throws Exception {
+        DashboardFilterDTO filtro = new DashboardFilterDTO();
+        filtro.setFechaInicio(LocalDate.now().withDayOfMonth(1));
+        filtro.setFechaFin(LocalDate.now());
+        long descargas = descargasEjecutadas();
+        MvcResult result = mockMvc.perform(post("/dashboard/reporte-pdf")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(filtro)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] pdf = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_PDF))
+                .andReturn().getResponse().getContentAsByteArray();
+        assert new String(pdf, 0, 5, StandardCharsets.US_ASCII).equals("%PDF-");
+        // Se escribió en el executor de descargas, no en el de los @Async (la métrica se registra al terminar la tarea)
+        long limite = System.currentTimeMillis() + 5_000;
+        while (descargasEjecutadas() == descargas && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assert descargasEjecutadas() == descargas + 1;
+
+        // Si la consulta falla, el error sale como respuesta normal: el streaming ni siquiera empieza
+        filtro.setFechaInicio(LocalDate.now());
+        filtro.setFechaFin(LocalDate.now().minusDays(7));
+        mockMvc.perform(post("/dashboard/reporte-pdf")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(filtro)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isConflict());
+    }
+
+    private long descargasEjecutadas() {
+        return meterRegistry.get("async.tarea.duracion").tag("executor", "descargas").timer().count();
+    }
+
+    // Directo al repositorio: sin evento, como un cambio que la cabecera todavía no vio
+    private void guardar(String nombreFantasia, String logo) {
+        EmpresaConfig config = empresaConfigService.obtenerConfiguracion();
+        config.setNombreFantasia(nombreFantasia);
+        config.setLogoUrl(logo);
+        empresaConfigRepository.save(config);
+    }
+}
@@ -2,12 +2,17 @@ package com.masterserv.productos.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.masterserv.productos.dto.DetallePedidoDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
 import com.masterserv.productos.dto.PedidoDTO;
+import com.masterserv.productos.dto.PedidoFiltroDTO;
 import com.masterserv.productos.entity.*;
+import com.masterserv.productos.enums.EstadoPedido;
 import com.masterserv.productos.enums.EstadoUsuario; // <--- Importante
 import com.masterserv.productos.repository.*;
 import com.masterserv.productos.service.EmailService;
 import com.masterserv.productos.service.PdfService;
+import com.masterserv.productos.service.PedidoService;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -22,8 +27,11 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set; // <--- Importar Set
 
 import static org.mockito.ArgumentMatchers.any;
@@ -48,6 +56,8 @@ public class PedidosIntegrationTest {
     @Autowired private ProveedorRepository proveedorRepository;
     @Autowired private CategoriaRepository categoriaRepository;
     @Autowired private PedidoRepository pedidoRepository;
+    @Autowired private PedidoService pedidoService;
+    @Autowired private ConsultaKeyset consultaKeyset;
 
     @MockBean private EmailService emailService;
     @MockBean private PdfService pdfService;
@@ -145,4 +155,37 @@ public class PedidosIntegrationTest {
                 any()
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("✅ Listado de pedidos por cursor: (fecha, id) descendente, con fechas iguales entre páginas")
+    void testPedidos_CursorConFechasIguales() {
+        LocalDateTime empate = LocalDateTime.of(2026, 3, 10, 12, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Pedido pedido = new Pedido();
+            pedido.setProveedor(proveedor);
+            pedido.setUsuario(admin);
+            pedido.setEstado(EstadoPedido.PENDIENTE);
+            pedido.setTotalPedido(new BigDecimal("1000"));
+            // Los cuatro primeros en el mismo instante: los cortes de página (de a 2) caen dentro del empate
+            pedido.setFechaPedido(i < 4 ? empate : empate.minusDays(1));
+            ids.add(pedidoRepository.save(pedido).getId());
+        }
+        List<Long> esperado = List.of(ids.get(3), ids.get(2), ids.get(1), ids.get(0), ids.get(4));
+
+        List<Long> recorrido = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaCursorDTO<PedidoDTO> pagina = pedidoService.filterCursor(new PedidoFiltroDTO(), cursor, 2);
+            pagina.contenido().forEach(p -> recorrido.add(p.getId()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+        assert recorrido.equals(esperado) : recorrido + " vs " + esperado;
+
+        // Proveedor y usuario vienen en la misma consulta (fuera de transacción no hay carga perezosa posible)
+        ConsultaKeyset.Orden<Pedido, LocalDateTime> orden = ConsultaKeyset.Orden.porFechaDesc("fechaPedido", Pedido::getFechaPedido);
+        List<Pedido> pedidos = consultaKeyset.buscar(Pedido.class, null, orden, Pedido::getId, null, 10, "proveedor", "usuario").contenido();
+        assert pedidos.size() == 5;
+        assert pedidos.stream().allMatch(p -> Hibernate.isInitialized(p.getProveedor()) && Hibernate.isInitialized(p.getUsuario()));
+    }
+}
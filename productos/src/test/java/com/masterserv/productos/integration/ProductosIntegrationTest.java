@@ -1,25 +1,55 @@
 package com.masterserv.productos.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.dto.CategoriaDTO;
 import com.masterserv.productos.dto.ProductoDTO;
+import com.masterserv.productos.dto.ProductoFiltroDTO;
+import com.masterserv.productos.dto.ProductoPublicoDTO;
+import com.masterserv.productos.dto.ProductoPublicoFiltroDTO;
+import com.masterserv.productos.entity.Auditoria;
 import com.masterserv.productos.entity.Categoria;
+import com.masterserv.productos.entity.Producto;
+import com.masterserv.productos.repository.AuditoriaRepository;
 import com.masterserv.productos.repository.CategoriaRepository;
 import com.masterserv.productos.repository.ProductoRepository;
+import com.masterserv.productos.service.BusquedaProductoService;
+import com.masterserv.productos.service.CatalogoMemoriaService;
+import com.masterserv.productos.service.CodificadorAuditoria;
+import com.masterserv.productos.service.EscritorAuditoriaService;
+import com.masterserv.productos.service.ProductoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,6 +64,12 @@ public class ProductosIntegrationTest {
     @Autowired private ObjectMapper objectMapper;
     @Autowired private ProductoRepository productoRepository;
     @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private EscritorAuditoriaService escritorAuditoria;
+    @Autowired private CodificadorAuditoria codificadorAuditoria;
+    @Autowired private ProductoService productoService;
+    @Autowired private BusquedaProductoService busquedaProductoService;
+    @Autowired private CatalogoMemoriaService catalogoMemoriaService;
 
     private Categoria categoria;
 
@@ -86,4 +122,358 @@ public class ProductosIntegrationTest {
         // Verificar persistencia
         assert(productoRepository.count() == 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Búsqueda por texto ignora tildes y mayúsculas (índice en memoria)")
+    void testBuscarProducto_SinTildes() throws Exception {
+        ProductoDTO nuevoProd = new ProductoDTO(
+            null, "CAM-MIC-01", "Cámara Michelin 18", "Cámara para rueda trasera",
+            new BigDecimal("15000"), new BigDecimal("8000"), null,
+            10, 2, 5, "ACTIVO", categoria.getId(), null, null
+        );
+        mockMvc.perform(post("/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nuevoProd)))
+                .andExpect(status().isCreated());
+
+        // "CAMARA" sin tilde y en mayúsculas, y un prefijo del código
+        for (String termino : new String[]{"CAMARA", "michelín", "cam-mi"}) {
+            ProductoFiltroDTO filtro = new ProductoFiltroDTO();
+            filtro.setNombre(termino);
+            mockMvc.perform(post("/productos/filtrar")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(filtro)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].nombre").value("Cámara Michelin 18"));
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Búsqueda por texto ordena por relevancia y respeta categoría, precio y stock")
+    void testBuscarProducto_RelevanciaYFiltros() throws Exception {
+        Categoria cascos = new Categoria();
+        cascos.setNombre("Cascos");
+        cascos.setEstado("ACTIVO");
+        categoriaRepository.save(cascos);
+
+        Long visor = crear("VIS-01", "Visor ahumado", "Repuesto para casco", "8000", 4, categoria.getId());
+        Long ls2 = crear("CAS-LS2", "Casco LS2", "Casco integral", "90000", 10, cascos.getId());
+        Long vertigo = crear("CAS-VRT", "Casco Vertigo", "Casco abierto", "40000", 0, cascos.getId());
+
+        // En el nombre pesa más que en la descripción; a igual puntaje, el nombre más corto
+        assert buscarPublico("casco", null, null, null, null).equals(List.of(ls2, vertigo, visor));
+
+        assert buscarPublico("casco", List.of(cascos.getId()), null, null, null).equals(List.of(ls2, vertigo));
+        assert buscarPublico("casco", null, new BigDecimal("10000"), new BigDecimal("50000"), null).equals(List.of(vertigo));
+        assert buscarPublico("casco", null, null, null, true).equals(List.of(ls2, visor));
+        assert buscarPublico("casco", List.of(cascos.getId()), null, null, true).equals(List.of(ls2));
+
+        // La paginación cuenta después de filtrar
+        Page<ProductoPublicoDTO> pagina = productoService.findPublicoByCriteria(
+                filtroPublico("casco", List.of(cascos.getId()), null, null, null), PageRequest.of(0, 1));
+        assert pagina.getTotalElements() == 2 && pagina.getContent().get(0).getId().equals(ls2);
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ El índice de búsqueda refleja ediciones y bajas, también las de la carga inicial")
+    void testBuscarProducto_CambiosEnElIndice() throws Exception {
+        Long id = crear("GUA-01", "Guantes Alpinestars", "Guantes de cuero", "30000", 5, categoria.getId());
+
+        actualizar(id, "Guantes Dainese");
+        assert busquedaProductoService.buscar("dainese").orElseThrow().equals(List.of(id));
+        assert busquedaProductoService.buscar("alpinestars").orElseThrow().isEmpty();
+
+        // Mientras el índice no terminó de cargar, los cambios quedan anotados y se aplican al terminar
+        ReflectionTestUtils.setField(busquedaProductoService, "listo", false);
+        try {
+            actualizar(id, "Guantes Fox");
+            assert busquedaProductoService.buscar("fox").isEmpty(); // el llamador va a la base
+        } finally {
+            ReflectionTestUtils.setField(busquedaProductoService, "listo", true);
+        }
+        assert busquedaProductoService.buscar("fox").orElseThrow().isEmpty();
+        ReflectionTestUtils.invokeMethod(busquedaProductoService, "aplicarPendientes");
+        assert busquedaProductoService.buscar("fox").orElseThrow().equals(List.of(id));
+        assert busquedaProductoService.buscar("dainese").orElseThrow().isEmpty();
+
+        mockMvc.perform(delete("/productos/" + id)).andExpect(status().is2xxSuccessful());
+        assert busquedaProductoService.buscar("fox").orElseThrow().isEmpty();
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Catálogo en memoria: filtros, orden y refresco por eventos")
+    void testCatalogoMemoria_FiltrosYRefresco() throws Exception {
+        Long barato = crear("ACC-01", "Traba disco", "Traba", "5000", 3, categoria.getId());
+        Long caro = crear("ACC-02", "Intercomunicador", "Bluetooth", "70000", 2, categoria.getId());
+        Long sinStock = crear("ACC-03", "Soporte celular", "Soporte", "12000", 0, categoria.getId());
+        // crear() fija el stock sin evento: el refresco programado pudo cargarlos antes, así que se relee todo
+        catalogoMemoriaService.resincronizar();
+
+        assert catalogo(null, null, null, Sort.by("precioVenta")).equals(List.of(barato, sinStock, caro));
+        assert catalogo(new BigDecimal("6000"), null, null, Sort.by("id")).equals(List.of(caro, sinStock).stream().sorted().toList());
+        assert catalogo(null, new BigDecimal("20000"), true, Sort.by("precioVenta")).equals(List.of(barato));
+
+        // Hasta el próximo refresco se sirve lo anterior; después, el precio nuevo
+        ProductoDTO cambio = new ProductoDTO(
+            barato, "ACC-01", "Traba disco", "Traba", new BigDecimal("80000"), new BigDecimal("1"), null,
+            3, 0, 1, "ACTIVO", categoria.getId(), null, null
+        );
+        mockMvc.perform(put("/productos/" + barato)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambio)))
+                .andExpect(status().isOk());
+        catalogoMemoriaService.aplicarPendientes();
+        assert catalogo(null, null, null, Sort.by("precioVenta")).equals(List.of(sinStock, caro, barato));
+
+        mockMvc.perform(delete("/productos/" + caro)).andExpect(status().is2xxSuccessful());
+        catalogoMemoriaService.aplicarPendientes();
+        assert catalogo(null, null, null, Sort.by("precioVenta")).equals(List.of(sinStock, barato));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Catálogo en memoria: la resincronización lee con el lock y no pisa con una foto vieja")
+    void testCatalogoMemoria_ResincronizarLeeConElLock() throws Exception {
+        Long id = crear("ACC-10", "Cubre puños", "Neoprene", "9000", 1, categoria.getId());
+        catalogoMemoriaService.aplicarPendientes();
+
+        // Con el lock tomado por "otro escritor", la resincronización espera. El precio cambia en la
+        // base mientras tanto: al entrar tiene que leerlo, no aplicar algo leído antes de esperar.
+        Object escritura = ReflectionTestUtils.getField(catalogoMemoriaService, "escritura");
+        Thread resincronizacion = new Thread(catalogoMemoriaService::resincronizar);
+        synchronized (escritura) {
+            resincronizacion.start();
+            long limite = System.currentTimeMillis() + 10_000;
+            while (resincronizacion.getState() != Thread.State.BLOCKED && System.currentTimeMillis() < limite) {
+                Thread.sleep(5);
+            }
+            assert resincronizacion.getState() == Thread.State.BLOCKED;
+
+            Producto producto = productoRepository.findById(id).orElseThrow();
+            producto.setPrecioVenta(new BigDecimal("9500"));
+            productoRepository.save(producto);
+        }
+        resincronizacion.join(10_000);
+
+        ProductoPublicoDTO enMemoria = catalogoMemoriaService
+                .buscar(filtroPublico(null, List.of(categoria.getId()), null, null, null), PageRequest.of(0, 10))
+                .orElseThrow().getContent().get(0);
+        assert enMemoria.getPrecioVenta().compareTo(new BigDecimal("9500")) == 0 : enMemoria.getPrecioVenta();
+    }
+
+    // IDs del catálogo en memoria para la categoría del test (los de otros tests pueden seguir en memoria)
+    private List<Long> catalogo(BigDecimal precioMin, BigDecimal precioMax, Boolean soloConStock, Sort orden) {
+        ProductoPublicoFiltroDTO filtro = filtroPublico(null, List.of(categoria.getId()), precioMin, precioMax, soloConStock);
+        return catalogoMemoriaService.buscar(filtro, PageRequest.of(0, 20, orden)).orElseThrow()
+                .getContent().stream().map(ProductoPublicoDTO::getId).toList();
+    }
+
+    private Long crear(String codigo, String nombre, String descripcion, String precio, int stock, Long categoriaId) throws Exception {
+        ProductoDTO prod = new ProductoDTO(
+            null, codigo, nombre, descripcion, new BigDecimal(precio), new BigDecimal("1"), null,
+            stock, 0, 1, "ACTIVO", categoriaId, null, null
+        );
+        String json = mockMvc.perform(post("/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(prod)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readTree(json).get("id").asLong();
+        // El alta arranca sin stock (entra por movimientos); para el filtro lo fijamos directo
+        Producto producto = productoRepository.findById(id).orElseThrow();
+        producto.setStockActual(stock);
+        productoRepository.save(producto);
+        return id;
+    }
+
+    private void actualizar(Long id, String nombre) throws Exception {
+        ProductoDTO cambio = new ProductoDTO(
+            id, "GUA-01", nombre, "Guantes de cuero", new BigDecimal("30000"), new BigDecimal("1"), null,
+            5, 0, 1, "ACTIVO", categoria.getId(), null, null
+        );
+        mockMvc.perform(put("/productos/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambio)))
+                .andExpect(status().isOk());
+    }
+
+    private static ProductoPublicoFiltroDTO filtroPublico(String nombre, List<Long> categoriaIds,
+                                                          BigDecimal precioMin, BigDecimal precioMax, Boolean soloConStock) {
+        ProductoPublicoFiltroDTO filtro = new ProductoPublicoFiltroDTO();
+        filtro.setNombre(nombre);
+        filtro.setCategoriaIds(categoriaIds);
+        filtro.setPrecioMin(precioMin);
+        filtro.setPrecioMax(precioMax);
+        filtro.setSoloConStock(soloConStock);
+        return filtro;
+    }
+
+    // Pasa directo por ProductoService (el camino de la base cuando el catálogo en memoria no está listo)
+    private List<Long> buscarPublico(String nombre, List<Long> categoriaIds,
+                                     BigDecimal precioMin, BigDecimal precioMax, Boolean soloConStock) {
+        ProductoPublicoFiltroDTO filtro = filtroPublico(nombre, categoriaIds, precioMin, precioMax, soloConStock);
+        List<Long> ids = productoService.findPublicoByCriteria(filtro, PageRequest.of(0, 20)).getContent().stream()
+                .map(ProductoPublicoDTO::getId).toList();
+        List<Long> idsSlice = productoService.findPublicoByCriteriaSlice(filtro, PageRequest.of(0, 20)).getContent().stream()
+                .map(ProductoPublicoDTO::getId).toList();
+        assert ids.equals(idsSlice) : ids + " vs " + idsSlice;
+        return ids;
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Listado por cursor recorre todo sin repetir ni saltear")
+    void testFiltrarProductos_PorCursor() throws Exception {
+        for (String nombre : new String[]{"Casco C", "Casco A", "Casco B"}) {
+            ProductoDTO prod = new ProductoDTO(
+                null, "CAS-" + nombre.charAt(6), nombre, "Casco", new BigDecimal("1000"), new BigDecimal("500"), null,
+                1, 0, 1, "ACTIVO", categoria.getId(), null, null
+            );
+            mockMvc.perform(post("/productos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(prod)))
+                    .andExpect(status().isCreated());
+        }
+
+        List<String> nombres = new ArrayList<>();
+        String cursor = null;
+        do {
+            var request = post("/productos/filtrar/cursor")
+                    .param("tamano", "2")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new ProductoFiltroDTO()));
+            if (cursor != null) request.param("cursor", cursor);
+
+            MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+            var pagina = objectMapper.readTree(result.getResponse().getContentAsString());
+            pagina.get("contenido").forEach(p -> nombres.add(p.get("nombre").asText()));
+            cursor = pagina.get("siguienteCursor").isNull() ? null : pagina.get("siguienteCursor").asText();
+        } while (cursor != null);
+
+        assert nombres.equals(List.of("Casco A", "Casco B", "Casco C")) : nombres;
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Categorías con ETag: 304 si no cambió nada, 200 después de editar")
+    void testCategorias_ETag() throws Exception {
+        String etag = mockMvc.perform(get("/categorias"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/categorias").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        CategoriaDTO cambio = new CategoriaDTO();
+        cambio.setNombre("Accesorios de moto");
+        cambio.setDescripcion("Cascos y guantes");
+        mockMvc.perform(put("/categorias/" + categoria.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambio)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/categorias").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].nombre").value("Accesorios de moto"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Imagen en base64 se guarda en el almacén y el producto queda con una URL corta")
+    void testCrearProducto_ImagenAlAlmacen() throws Exception {
+        String png1x1 = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+        ProductoDTO nuevoProd = new ProductoDTO(
+            null, "CAS-IMG-01", "Casco con foto", "Casco", new BigDecimal("1000"), new BigDecimal("500"), png1x1,
+            1, 0, 1, "ACTIVO", categoria.getId(), null, null
+        );
+        String json = mockMvc.perform(post("/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nuevoProd)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        String url = objectMapper.readTree(json).get("imagenUrl").asText();
+        assert url.matches("/api/imagenes/[0-9a-f]{64}\\.png") : url;
+
+        // En la base queda solo el nombre: la URL se arma al responder
+        String nombre = url.substring(url.lastIndexOf('/') + 1);
+        Long id = objectMapper.readTree(json).get("id").asLong();
+        assert productoRepository.findById(id).get().getImagenUrl().equals(nombre);
+        mockMvc.perform(get("/imagenes/" + nombre))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("Cache-Control", containsString("immutable")));
+        mockMvc.perform(get("/imagenes/" + nombre.replace(".png", "_m.png")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/imagenes/" + nombre).header("If-None-Match", "\"" + nombre + "\""))
+                .andExpect(status().isNotModified());
+
+        // Una cabecera PNG de pocos bytes que declara 60000x60000 se rechaza antes de decodificar
+        mockMvc.perform(multipart("/imagenes").file(new MockMultipartFile("archivo", "bomba.png", "image/png", pngDeclarado(60000, 60000))))
+                .andExpect(status().isConflict());
+    }
+
+    // Firma + IHDR válido (con CRC) y nada más: alcanza para que ImageIO lea ancho y alto
+    private static byte[] pngDeclarado(int ancho, int alto) {
+        ByteBuffer ihdr = ByteBuffer.allocate(17).put("IHDR".getBytes())
+                .putInt(ancho).putInt(alto).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+        CRC32 crc = new CRC32();
+        crc.update(ihdr.array());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        out.writeBytes(ByteBuffer.allocate(4).putInt(13).array());
+        out.writeBytes(ihdr.array());
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        return out.toByteArray();
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    @DisplayName("✅ Auditoría de una edición guarda solo los campos modificados")
+    void testActualizarProducto_AuditoriaSoloCambios() throws Exception {
+        ProductoDTO nuevoProd = new ProductoDTO(
+            null, "GUA-ALP-01", "Guantes Alpinestars", "Guantes de cuero",
+            new BigDecimal("30000"), new BigDecimal("18000"), null,
+            5, 1, 3, "ACTIVO", categoria.getId(), null, null
+        );
+        String json = mockMvc.perform(post("/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nuevoProd)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readTree(json).get("id").asLong();
+
+        ProductoDTO cambio = new ProductoDTO(
+            id, "GUA-ALP-01", "Guantes Alpinestars", "Guantes de cuero",
+            new BigDecimal("32500"), new BigDecimal("18000"), null,
+            5, 1, 3, "ACTIVO", categoria.getId(), null, null
+        );
+        mockMvc.perform(put("/productos/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambio)))
+                .andExpect(status().isOk());
+
+        escritorAuditoria.vaciar(); // la auditoría se escribe en segundo plano
+        Auditoria log = auditoriaRepository.findAll().stream()
+                .filter(a -> "Producto".equals(a.getEntidad()) && String.valueOf(id).equals(a.getEntidadId())
+                        && "ACTUALIZAR".equals(a.getAccion()))
+                .reduce((primero, segundo) -> segundo)
+                .orElseThrow();
+        // Se guarda como parche ("replace" con el valor anterior y el nuevo), no como dos documentos
+        assert log.getValorAnterior() == null && log.getValorNuevo() == null;
+        assert log.getCambios().contains("\"path\":\"/precioVenta\"") : log.getCambios();
+
+        CodificadorAuditoria.Vista vista = codificadorAuditoria.vista(log);
+        var antes = objectMapper.readTree(vista.valorAnterior());
+        var despues = objectMapper.readTree(vista.valorNuevo());
+        assert antes.get("precioVenta").decimalValue().compareTo(new BigDecimal("30000")) == 0 : vista.valorAnterior();
+        assert despues.get("precioVenta").decimalValue().compareTo(new BigDecimal("32500")) == 0 : vista.valorNuevo();
+        // Nada de lo que no cambió (ni las fechas de modificación)
+        assert !despues.has("nombre") && !despues.has("fechaModificacion") : vista.valorNuevo();
+    }
+}
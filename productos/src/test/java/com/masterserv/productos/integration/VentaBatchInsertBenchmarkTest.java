@@ -0,0 +1,218 @@
+package com.masterserv.productos.integration;
+
+import com.masterserv.productos.dto.DetalleVentaDTO;
+import com.masterserv.productos.dto.VentaDTO;
+import com.masterserv.productos.entity.*;
+import com.masterserv.productos.enums.EstadoUsuario;
+import com.masterserv.productos.repository.*;
+import com.masterserv.productos.service.EfectosVentaService;
+import com.masterserv.productos.service.EmailService;
+import com.masterserv.productos.service.EscritorAuditoriaService;
+import com.masterserv.productos.service.VentaService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de round-trips de una venta multi-línea contra H2 en modo PostgreSQL.
+ *
+ * Con IDENTITY cada INSERT es un viaje a la base (Hibernate necesita el ID generado),
+ * así que solo los detalles de una venta de 20 líneas ya son 20 sentencias. Con
+ * secuencias pooled + hibernate.jdbc.batch_size los INSERT de un mismo tipo viajan
+ * en un único PreparedStatement. Usamos las estadísticas de Hibernate para contarlos.
+ *
+ * Las estadísticas solo cuentan el hilo del test (ver EstadisticasDelHilo) y la auditoría
+ * pendiente se vacía antes de cada ventana: si no, el escritor de auditoría o los refrescos en
+ * segundo plano meten a veces una consulta más en el conteo.
+ *
+ * Que el checkout haga las mismas sentencias con 2 que con 20 líneas se verifica en el build
+ * normal (VentasIntegrationTest); esto solo mide.
+ *
+ * No corre con el build normal (tag "carga"). Para correrlo:
+ *   ./mvnw test -Pcarga -Dtest=VentaBatchInsertBenchmarkTest
+ */
+@Tag("carga")
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.stats.factory=com.masterserv.productos.integration.EstadisticasDelHilo"
+})
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+@DisplayName("⏱️ Benchmark - INSERT en batch de la venta multi-línea")
+public class VentaBatchInsertBenchmarkTest {
+
+    private static final int LINEAS = 20;
+
+    @Autowired private VentaService ventaService;
+    @Autowired private EfectosVentaService efectosVentaService;
+    @Autowired private EscritorAuditoriaService escritorAuditoria;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private VentaRepository ventaRepository;
+    @Autowired private CarritoRepository carritoRepository;
+    @Autowired private CajaRepository cajaRepository;
+    @Autowired private MovimientoCajaRepository movimientoCajaRepository;
+    @Autowired private MovimientoStockRepository movimientoStockRepository;
+    @Autowired private MovimientoPuntosRepository movimientoPuntosRepository;
+    @Autowired private CuentaPuntosRepository cuentaPuntosRepository;
+    @Autowired private AuditoriaRepository auditoriaRepository;
+    @Autowired private EventoOutboxRepository eventoOutboxRepository;
+    @Autowired private CuponRepository cuponRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private EmailService emailService;
+
+    private Usuario vendedor;
+    private Usuario cliente;
+    private Categoria categoria;
+    private final List<Producto> productos = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        limpiar();
+
+        vendedor = crearUsuario("Vendedor", "vendedor.bench@test.com", "999000111");
+        cliente = crearUsuario("Cliente", "cliente.bench@test.com", "999000222");
+
+        categoria = new Categoria();
+        categoria.setNombre("Benchmark");
+        categoria.setEstado("ACTIVO");
+        categoriaRepository.save(categoria);
+
+        productos.clear();
+        for (int i = 0; i < LINEAS; i++) {
+            Producto p = new Producto();
+            p.setNombre("Producto Bench " + i);
+            p.setCodigo("BENCH-" + i);
+            p.setCategoria(categoria);
+            p.setPrecioCosto(new BigDecimal("100"));
+            p.setPrecioVenta(new BigDecimal("200"));
+            p.setStockActual(100);
+            p.setStockMinimo(0);
+            p.setLoteReposicion(1);
+            p.setEstado("ACTIVO");
+            productos.add(productoRepository.save(p));
+        }
+
+        Caja caja = new Caja();
+        caja.setUsuario(vendedor);
+        caja.setEstado("ABIERTA");
+        cajaRepository.save(caja);
+
+        Carrito carrito = new Carrito();
+        carrito.setVendedor(vendedor);
+        carrito.setFechaCreacion(LocalDateTime.now());
+        carrito.setFechaModificacion(LocalDateTime.now());
+        carrito.setItems(new HashSet<>());
+        carritoRepository.save(carrito);
+    }
+
+    // Este test deja movimientos que referencian ventas y cajas: los borramos para no romper la limpieza de los otros.
+    @AfterEach
+    void limpiar() {
+        // Venta y Cupón se referencian entre sí: cortamos el ciclo antes de borrar
+        jdbcTemplate.update("UPDATE cupones SET venta_id = NULL");
+        eventoOutboxRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM ventas_resumen_diario");
+        escritorAuditoria.vaciar();
+        auditoriaRepository.deleteAll();
+        movimientoStockRepository.deleteAll();
+        movimientoPuntosRepository.deleteAll();
+        cuentaPuntosRepository.deleteAll();
+        movimientoCajaRepository.deleteAll();
+        cajaRepository.deleteAll();
+        ventaRepository.deleteAll();
+        cuponRepository.deleteAll();
+        carritoRepository.deleteAll();
+        productoRepository.deleteAll();
+        categoriaRepository.deleteAll();
+        usuarioRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("✅ Venta de 20 líneas: menos sentencias que líneas (detalles y movimientos van en batch)")
+    void testVentaMultiLinea_RoundTrips() throws Exception {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        List<DetalleVentaDTO> detalles = new ArrayList<>();
+        for (Producto p : productos) {
+            DetalleVentaDTO det = new DetalleVentaDTO();
+            det.setProductoId(p.getId());
+            det.setCantidad(2);
+            detalles.add(det);
+        }
+        ventaDTO.setDetalles(detalles);
+
+        // 1. Transacción de la venta (ticket)
+        escritorAuditoria.vaciar();
+        stats.clear();
+        long inicio = System.nanoTime();
+        ventaService.create(ventaDTO, vendedor.getEmail());
+        long msVenta = (System.nanoTime() - inicio) / 1_000_000;
+        long insertsVenta = stats.getEntityInsertCount();
+        long sentenciasVenta = stats.getPrepareStatementCount();
+
+        // 2. Efectos diferidos (movimientos de stock + auditoría) que aplicaría el outbox.
+        // Se aplican en este hilo: despachar() usa su pool y las estadísticas solo cuentan el hilo del test.
+        List<EventoOutbox> eventos = eventoOutboxRepository.findAll();
+        escritorAuditoria.vaciar();
+        stats.clear();
+        inicio = System.nanoTime();
+        for (EventoOutbox evento : eventos) {
+            efectosVentaService.aplicar(evento);
+        }
+        long msEfectos = (System.nanoTime() - inicio) / 1_000_000;
+        long insertsEfectos = stats.getEntityInsertCount();
+        long sentenciasEfectos = stats.getPrepareStatementCount();
+
+        System.out.printf("⏱️ [BENCH] Venta %d líneas: %d INSERT en %d sentencias (%d ms) | Efectos: %d INSERT en %d sentencias (%d ms)%n",
+                LINEAS, insertsVenta, sentenciasVenta, msVenta, insertsEfectos, sentenciasEfectos, msEfectos);
+
+        assertEquals(LINEAS, movimientoStockRepository.count());
+
+        // Con IDENTITY ni siquiera los INSERT de detalles/movimientos entrarían en este número
+        assertTrue(insertsVenta > LINEAS, "La venta debería insertar al menos un detalle por línea");
+        assertTrue(sentenciasVenta < LINEAS,
+                "Se esperaban menos de " + LINEAS + " sentencias para la venta y hubo " + sentenciasVenta);
+        assertTrue(sentenciasEfectos < LINEAS,
+                "Se esperaban menos de " + LINEAS + " sentencias para los efectos y hubo " + sentenciasEfectos);
+    }
+
+    private Usuario crearUsuario(String nombre, String email, String telefono) {
+        Usuario u = new Usuario();
+        u.setNombre(nombre);
+        u.setApellido("Bench");
+        u.setEmail(email);
+        u.setTelefono(telefono);
+        u.setPasswordHash("123456");
+        u.setEstado(EstadoUsuario.ACTIVO);
+        u.setRoles(new HashSet<>());
+        return usuarioRepository.save(u);
+    }
+}
@@ -1,34 +1,85 @@
 package com.masterserv.productos.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.masterserv.productos.dto.DashboardStatsDTO;
 import com.masterserv.productos.dto.DetalleVentaDTO;
+import com.masterserv.productos.dto.PaginaCursorDTO;
+import com.masterserv.productos.dto.SugerenciaProductoDTO;
 import com.masterserv.productos.dto.VentaDTO;
+import com.masterserv.productos.dto.VentaFiltroDTO;
+import com.masterserv.productos.dto.VentasPorCategoriaDTO;
 import com.masterserv.productos.entity.*;
+import com.masterserv.productos.enums.EstadoCupon;
+import com.masterserv.productos.enums.EstadoOutbox;
 import com.masterserv.productos.enums.EstadoUsuario;
+import com.masterserv.productos.enums.EstadoVenta;
+import com.masterserv.productos.enums.TipoDescuento;
+import com.masterserv.productos.enums.TipoEventoOutbox;
 import com.masterserv.productos.repository.*;
+import com.masterserv.productos.service.CodificadorAuditoria;
+import com.masterserv.productos.service.ComprobanteCacheService;
+import com.masterserv.productos.service.DashboardService;
+import com.masterserv.productos.service.EfectosVentaService;
 import com.masterserv.productos.service.EmailService;
+import com.masterserv.productos.service.EscritorAuditoriaService;
+import com.masterserv.productos.service.OutboxService;
+import com.masterserv.productos.service.ResumenVentasService;
+import com.masterserv.productos.service.SugerenciaProductoService;
+import com.masterserv.productos.service.TotalesCajaService;
+import com.masterserv.productos.service.VentaService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+// Estadísticas de Hibernate por hilo para contar las sentencias del checkout (ver EstadisticasDelHilo)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.stats.factory=com.masterserv.productos.integration.EstadisticasDelHilo"
+})
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @TestPropertySource(locations = "classpath:application-test.properties")
@@ -68,6 +119,69 @@ public class VentasIntegrationTest {
     @Autowired
     private CuponRepository cuponRepository; // <--- (1) Inyectar CuponRepository
 
+    @Autowired
+    private CajaRepository cajaRepository;
+
+    @Autowired
+    private MovimientoCajaRepository movimientoCajaRepository;
+
+    @Autowired
+    private EventoOutboxRepository eventoOutboxRepository;
+
+    @Autowired
+    private MovimientoStockRepository movimientoStockRepository;
+
+    @Autowired
+    private VentaResumenDiarioRepository ventaResumenDiarioRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EfectosVentaService efectosVentaService;
+
+    @Autowired
+    private AuditoriaRepository auditoriaRepository;
+
+    @Autowired
+    private EscritorAuditoriaService escritorAuditoria;
+
+    @Autowired
+    private CodificadorAuditoria codificadorAuditoria;
+
+    @Autowired
+    private TotalesCajaService totalesCajaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ConsultaKeyset consultaKeyset;
+
+    @Autowired
+    private SugerenciaProductoService sugerenciaProductoService;
+
+    @Autowired
+    private ComprobanteCacheService comprobanteCacheService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    @Value("${app.outbox.max-intentos:5}")
+    private int maxIntentos;
+
     // Datos de prueba
     private Usuario cliente;
     private Usuario vendedor;
@@ -80,12 +194,19 @@ public class VentasIntegrationTest {
         
         // 1. Limpiar módulo de Puntos (Hijos de Usuarios y Ventas)
         movimientoPuntosRepository.deleteAll();
-        cuponRepository.deleteAll(); // <--- (2) Borrar cupones antes de usuarios
+        // Venta y Cupón se referencian entre sí: cortamos el ciclo antes de borrar
+        jdbcTemplate.update("UPDATE cupones SET venta_id = NULL");
         cuentaPuntosRepository.deleteAll();
         
-        // 2. Limpiar módulo de Ventas
+        // 2. Limpiar módulo de Ventas (efectos del outbox incluidos)
+        eventoOutboxRepository.deleteAll();
+        movimientoStockRepository.deleteAll();
+        ventaResumenDiarioRepository.deleteAll();
+        movimientoCajaRepository.deleteAll();
+        cajaRepository.deleteAll();
         // DetalleVenta se borra en cascada con Venta
         ventaRepository.deleteAll();
+        cuponRepository.deleteAll(); // <--- (2) Borrar cupones antes de usuarios
         carritoRepository.deleteAll(); 
         
         // 3. Limpiar módulo de Productos
@@ -147,10 +268,19 @@ public class VentasIntegrationTest {
         carritoRepository.save(carrito);
     }
 
+    // Sin caja abierta VentaService rechaza la venta antes de validar nada más
+    private void abrirCaja() {
+        Caja caja = new Caja();
+        caja.setUsuario(vendedor);
+        caja.setEstado("ABIERTA");
+        cajaRepository.save(caja);
+    }
+
     @Test
     @WithMockUser(username = "vendedor@test.com", roles = {"VENDEDOR"}) 
     @DisplayName("✅ Debe registrar venta y descontar stock correctamente")
     void testRegistrarVenta_Exitoso() throws Exception {
+        abrirCaja();
         VentaDTO ventaDTO = new VentaDTO();
         ventaDTO.setClienteId(cliente.getId());
         
@@ -182,6 +312,7 @@ public class VentasIntegrationTest {
     @WithMockUser(username = "vendedor@test.com", roles = {"VENDEDOR"})
     @DisplayName("🛑 Debe fallar si no hay suficiente stock")
     void testRegistrarVenta_SinStock() throws Exception {
+        abrirCaja();
         VentaDTO ventaDTO = new VentaDTO();
         ventaDTO.setClienteId(cliente.getId());
         
@@ -203,4 +334,549 @@ public class VentasIntegrationTest {
         
         assert(ventaRepository.count() == 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "vendedor@test.com", roles = {"VENDEDOR"})
+    @DisplayName("🛑 Venta multi-línea: si una línea no tiene stock no se descuenta ninguna")
+    void testRegistrarVenta_MultiLinea_SinStockEnUnaLinea() throws Exception {
+        abrirCaja();
+
+        Producto escaso = new Producto();
+        escaso.setNombre("Filtro de Aire");
+        escaso.setCodigo("FIL-001");
+        escaso.setCategoria(producto.getCategoria());
+        escaso.setPrecioCosto(new BigDecimal("200"));
+        escaso.setPrecioVenta(new BigDecimal("400"));
+        escaso.setStockActual(1);
+        escaso.setStockMinimo(0);
+        escaso.setLoteReposicion(1);
+        escaso.setEstado("ACTIVO");
+        productoRepository.save(escaso);
+
+        DetalleVentaDTO conStock = new DetalleVentaDTO();
+        conStock.setProductoId(producto.getId());
+        conStock.setCantidad(3);
+
+        DetalleVentaDTO sinStock = new DetalleVentaDTO();
+        sinStock.setProductoId(escaso.getId());
+        sinStock.setCantidad(2); // Solo hay 1
+
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        ventaDTO.setDetalles(List.of(conStock, sinStock));
+
+        mockMvc.perform(post("/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ventaDTO)))
+                .andExpect(status().isBadRequest());
+
+        // El batch entero vuelve atrás: la primera línea tampoco descuenta
+        assert(productoRepository.findById(producto.getId()).get().getStockActual() == 10);
+        assert(productoRepository.findById(escaso.getId()).get().getStockActual() == 1);
+        assert(ventaRepository.count() == 0);
+    }
+
+    @Test
+    @WithMockUser(username = "vendedor@test.com", roles = {"VENDEDOR", "ADMIN"})
+    @DisplayName("✅ Exportación de ventas en streaming: CSV y XLSX")
+    void testExportarVentas_CsvYXlsx() throws Exception {
+        abrirCaja();
+        DetalleVentaDTO det = new DetalleVentaDTO();
+        det.setProductoId(producto.getId());
+        det.setCantidad(3);
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        ventaDTO.setDetalles(List.of(det));
+        mockMvc.perform(post("/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ventaDTO)))
+                .andExpect(status().isCreated());
+
+        // La respuesta es async (StreamingResponseBody): se despacha y recién ahí está el cuerpo
+        MvcResult csv = mockMvc.perform(get("/exportaciones/ventas").param("formato", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String contenido = mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", org.hamcrest.Matchers.containsString(".csv")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lineas = contenido.split("\r\n");
+        assert lineas.length == 2 : contenido; // encabezado + 1 venta
+        assert lineas[1].contains("3000.00") && lineas[1].contains("Cliente Ventas") : lineas[1];
+
+        MvcResult xlsx = mockMvc.perform(get("/exportaciones/ventas").param("formato", "xlsx"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] archivo = mockMvc.perform(asyncDispatch(xlsx))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        String hoja = null;
+        List<String> entradas = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archivo))) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                entradas.add(e.getName());
+                if (e.getName().equals("xl/worksheets/sheet1.xml")) {
+                    hoja = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        assert entradas.containsAll(List.of("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml", "xl/styles.xml")) : entradas;
+        assert hoja != null && hoja.contains("Cliente Ventas") && hoja.contains("<v>3000.00</v>") : hoja;
+    }
+
+    @Test
+    @WithMockUser(username = "vendedor@test.com", roles = {"VENDEDOR"})
+    @DisplayName("✅ Resumen diario: el outbox suma la venta y la cancelación la resta")
+    void testResumenDiario_VentaYCancelacion() throws Exception {
+        abrirCaja();
+        DetalleVentaDTO det = new DetalleVentaDTO();
+        det.setProductoId(producto.getId());
+        det.setCantidad(3);
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        ventaDTO.setDetalles(List.of(det));
+        MvcResult res = mockMvc.perform(post("/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ventaDTO)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Long ventaId = objectMapper.readTree(res.getResponse().getContentAsString()).get("id").asLong();
+
+        // El dashboard lee del resumen solo días cerrados: llevamos la venta a ayer antes de aplicar sus efectos
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        jdbcTemplate.update("UPDATE ventas SET fecha_venta = ? WHERE id = ?", ayer.atTime(12, 0), ventaId);
+
+        // Evento todavía sin aplicar (p.ej. pendiente pasada la medianoche): la venta se lee cruda
+        assert ventaResumenDiarioRepository.count() == 0;
+        DashboardStatsDTO stats = dashboardService.getEstadisticasFiltradas(ayer, ayer);
+        assert stats.getTotalVentasMes().compareTo(new BigDecimal("3000")) == 0 : stats.getTotalVentasMes();
+        assert stats.getCantidadVentasPeriodo() == 1;
+
+        outboxService.despachar();
+
+        assert ventaResumenDiarioRepository.count() == 1;
+        stats = dashboardService.getEstadisticasFiltradas(ayer, ayer);
+        assert stats.getTotalVentasMes().compareTo(new BigDecimal("3000")) == 0 : stats.getTotalVentasMes();
+        assert stats.getCantidadVentasPeriodo() == 1;
+        List<VentasPorCategoriaDTO> categorias = dashboardService.getVentasPorCategoria(ayer, ayer);
+        assert categorias.size() == 1 && categorias.get(0).getCategoria().equals("Repuestos Test") : categorias;
+        assert dashboardService.getTopProductosPorRango(ayer, LocalDate.now()).get(0).getCantidadVendida() == 3;
+
+        ventaService.cancelarVenta(ventaId, "vendedor@test.com", "Cliente se arrepintió");
+        stats = dashboardService.getEstadisticasFiltradas(ayer, ayer);
+        assert stats.getTotalVentasMes().signum() == 0 && stats.getCantidadVentasPeriodo() == 0 : stats.getTotalVentasMes();
+        assert dashboardService.getVentasPorRango(ayer, ayer).isEmpty();
+        outboxService.despachar();
+
+        assert ventaResumenDiarioRepository.count() == 0;
+        stats = dashboardService.getEstadisticasFiltradas(ayer, ayer);
+        assert stats.getTotalVentasMes().signum() == 0 && stats.getCantidadVentasPeriodo() == 0;
+    }
+
+    @Test
+    @DisplayName("✅ Resumen diario: un producto que cambia de categoría en el día reparte sus ventas igual que las ventas crudas")
+    void testResumenDiario_CambioDeCategoriaEnElDia() {
+        abrirCaja();
+        Long primera = vender(2);
+        Categoria nueva = new Categoria();
+        nueva.setNombre("Encendido");
+        nueva.setEstado("ACTIVO");
+        categoriaRepository.save(nueva);
+        Producto recategorizado = productoRepository.findById(producto.getId()).orElseThrow();
+        recategorizado.setCategoria(nueva);
+        productoRepository.save(recategorizado);
+        Long segunda = vender(1);
+
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        jdbcTemplate.update("UPDATE ventas SET fecha_venta = ? WHERE id IN (?, ?)", ayer.atTime(12, 0), primera, segunda);
+        outboxService.despachar();
+
+        Map<String, BigDecimal> esperado = Map.of("Repuestos Test", new BigDecimal("2000.00"), "Encendido", new BigDecimal("1000.00"));
+        assert ventaResumenDiarioRepository.count() == 2;
+        assert porCategoria(ventaResumenDiarioRepository.findVentasPorCategoria(ayer, ayer)).equals(esperado)
+                : ventaResumenDiarioRepository.findVentasPorCategoria(ayer, ayer);
+        assert porCategoria(ventaRepository.findVentasPorCategoria(ayer.atStartOfDay(), ayer.atTime(23, 59, 59))).equals(esperado);
+
+        // La reconstrucción toma la categoría de la línea, no la actual del producto
+        resumenVentasService.reconstruir();
+        assert porCategoria(ventaResumenDiarioRepository.findVentasPorCategoria(ayer, ayer)).equals(esperado);
+
+        // La cancelación resta de la fila de la categoría con que se sumó
+        ventaService.cancelarVenta(primera, "vendedor@test.com", "Devolución");
+        outboxService.despachar();
+        assert ventaResumenDiarioRepository.count() == 1;
+        assert porCategoria(ventaResumenDiarioRepository.findVentasPorCategoria(ayer, ayer))
+                .equals(Map.of("Encendido", new BigDecimal("1000.00")));
+    }
+
+    private static Map<String, BigDecimal> porCategoria(List<VentasPorCategoriaDTO> filas) {
+        Map<String, BigDecimal> resultado = new HashMap<>();
+        filas.forEach(f -> resultado.put(f.getCategoria(), f.getTotal().setScale(2)));
+        return resultado;
+    }
+
+    @Test
+    @DisplayName("✅ Outbox: movimientos y auditoría con la fecha y el stock del momento de la venta")
+    void testOutbox_FechaYStockDelEvento() throws Exception {
+        abrirCaja();
+        Long ventaId = vender(3); // 10 -> 7
+
+        // Hasta que corre el outbox el stock siguió cambiando (p.ej. entró mercadería)
+        jdbcTemplate.update("UPDATE productos SET stock_actual = 50 WHERE id = ?", producto.getId());
+        outboxService.despachar();
+
+        Venta venta = ventaRepository.findById(ventaId).get();
+        List<MovimientoStock> movimientos = movimientoStockRepository.findByProductoOrderByFechaDesc(producto);
+        assert movimientos.size() == 1;
+        assert movimientos.get(0).getFecha().equals(venta.getFechaVenta()) : movimientos.get(0).getFecha();
+        CodificadorAuditoria.Vista salida = auditoriaDeStock("SALIDA_VENTA");
+        assert salida.valorAnterior().equals("{\"Stock\":10}") : salida.valorAnterior();
+        assert salida.valorNuevo().equals("{\"Stock\":7,\"Variacion\":-3}") : salida.valorNuevo();
+
+        ventaService.cancelarVenta(ventaId, "vendedor@test.com", "Error de carga"); // 50 -> 53
+        jdbcTemplate.update("UPDATE productos SET stock_actual = 0 WHERE id = ?", producto.getId());
+        outboxService.despachar();
+
+        CodificadorAuditoria.Vista devolucion = auditoriaDeStock("DEVOLUCION");
+        assert devolucion.valorAnterior().equals("{\"Stock\":50}") : devolucion.valorAnterior();
+        assert devolucion.valorNuevo().equals("{\"Stock\":53,\"Variacion\":3}") : devolucion.valorNuevo();
+    }
+
+    @Test
+    @DisplayName("✅ Outbox: un evento se aplica una sola vez y los fallos se reintentan hasta ERROR")
+    void testOutbox_IdempotenciaYReintentos() throws Exception {
+        abrirCaja();
+        Long ventaId = vender(2);
+        EventoOutbox evento = eventoOutboxRepository.findAll().get(0);
+
+        assert efectosVentaService.aplicar(evento);
+        assert !efectosVentaService.aplicar(evento); // ya reclamado: no duplica nada
+        outboxService.despachar();
+        assert movimientoStockRepository.count() == 1;
+        assert ventaResumenDiarioRepository.count() == 1;
+        assert eventoOutboxRepository.findById(evento.getId()).get().getEstado() == EstadoOutbox.PROCESADO;
+
+        // Segunda venta cuyo evento no se puede aplicar (el usuario del payload no existe)
+        Long fallidaId = vender(1);
+        EventoOutbox fallido = eventoOutboxRepository.findAll().stream()
+                .filter(e -> e.getAgregadoId().equals(fallidaId)).findFirst().get();
+        fallido.setPayload("{\"usuarioId\":-1}");
+        eventoOutboxRepository.save(fallido);
+
+        outboxService.despachar();
+        fallido = eventoOutboxRepository.findById(fallido.getId()).get();
+        assert fallido.getEstado() == EstadoOutbox.PENDIENTE && fallido.getIntentos() == 1 : fallido.getEstado();
+        assert fallido.getUltimoError() != null;
+        for (int i = 1; i < maxIntentos; i++) outboxService.despachar();
+        assert eventoOutboxRepository.findById(fallido.getId()).get().getEstado() == EstadoOutbox.ERROR;
+        assert movimientoStockRepository.count() == 1;
+
+        // La cancelación no repone lo que nunca salió: espera a la venta y termina en ERROR con ella
+        ventaService.cancelarVenta(fallidaId, "vendedor@test.com", "Duplicada");
+        outboxService.despachar();
+        EventoOutbox cancelacion = eventoOutboxRepository.findAll().stream()
+                .filter(e -> e.getAgregadoId().equals(fallidaId) && e.getTipo() == TipoEventoOutbox.VENTA_CANCELADA)
+                .findFirst().get();
+        assert cancelacion.getEstado() == EstadoOutbox.PENDIENTE && cancelacion.getIntentos() == 1;
+        assert cancelacion.getUltimoError().contains("VENTA_REALIZADA") : cancelacion.getUltimoError();
+        assert movimientoStockRepository.count() == 1;
+        assert ventaResumenDiarioRepository.findAll().stream()
+                .allMatch(r -> r.getVentas() >= 0) : "El resumen no debe quedar negativo";
+    }
+
+    @Test
+    @DisplayName("✅ Caja: el total en vivo coincide con el libro aunque se siembre en medio de un commit")
+    void testTotalesCaja_SiembraDuranteElCommit() throws Exception {
+        abrirCaja();
+        Long cajaId = cajaRepository.findCajaAbiertaByUsuario(vendedor.getId()).get().getId();
+        vender(1);
+        assert totalesCajaService.efectivoEnVivo(cajaId).compareTo(new BigDecimal("1000")) == 0;
+
+        // Sin acumulador (como tras un reinicio), otro hilo lo siembra desde el libro justo cuando
+        // la segunda venta ya commiteó pero todavía no corrió su afterCommit.
+        Map<?, ?> acumuladores = (Map<?, ?>) ReflectionTestUtils.getField(totalesCajaService, "acumuladores");
+        acumuladores.clear();
+        CountDownLatch enLaVentana = new CountDownLatch(1);
+        CountDownLatch sembrado = new CountDownLatch(1);
+        ExecutorService lector = Executors.newSingleThreadExecutor();
+        Future<BigDecimal> lectura = lector.submit(() -> {
+            enLaVentana.await();
+            BigDecimal efectivo = totalesCajaService.efectivoEnVivo(cajaId);
+            sembrado.countDown();
+            return efectivo;
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Se registra antes que la sincronización de la caja, así corre primero
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enLaVentana.countDown();
+                    try {
+                        // Si la siembra espera a que termine este commit, no la esperamos para siempre
+                        sembrado.await(500, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            vender(1);
+        });
+        lectura.get(10, TimeUnit.SECONDS);
+        lector.shutdown();
+
+        BigDecimal enVivo = totalesCajaService.efectivoEnVivo(cajaId);
+        assert enVivo.compareTo(new BigDecimal("2000")) == 0 : "En vivo " + enVivo + ", en el libro hay 2000";
+    }
+
+    @Test
+    @DisplayName("✅ Listado de ventas por cursor: (fecha, id) descendente, con fechas iguales entre páginas")
+    void testVentas_CursorConFechasIguales() {
+        abrirCaja();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) ids.add(vender(1));
+
+        // Las cuatro primeras en el mismo instante: los cortes de página (de a 2) caen dentro del empate
+        LocalDateTime empate = LocalDateTime.of(2026, 3, 10, 12, 0);
+        for (int i = 0; i < 4; i++) {
+            jdbcTemplate.update("UPDATE ventas SET fecha_venta = ? WHERE id = ?", empate, ids.get(i));
+        }
+        jdbcTemplate.update("UPDATE ventas SET fecha_venta = ? WHERE id = ?", empate.minusDays(1), ids.get(4));
+        List<Long> esperado = List.of(ids.get(3), ids.get(2), ids.get(1), ids.get(0), ids.get(4));
+
+        List<Long> recorrido = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaCursorDTO<VentaDTO> pagina = ventaService.findAllCursor(cursor, 2);
+            pagina.contenido().forEach(v -> recorrido.add(v.getId()));
+            assert pagina.contenido().stream().allMatch(v -> v.getClienteNombre() != null && v.getVendedorNombre() != null);
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+        assert recorrido.equals(esperado) : recorrido + " vs " + esperado;
+
+        List<Long> filtrado = new ArrayList<>();
+        cursor = null;
+        do {
+            PaginaCursorDTO<VentaDTO> pagina = ventaService.findByCriteriaCursor(new VentaFiltroDTO(), cursor, 3);
+            pagina.contenido().forEach(v -> filtrado.add(v.getId()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+        assert filtrado.equals(esperado) : filtrado + " vs " + esperado;
+
+        // Cliente y vendedor vienen en la misma consulta (fuera de transacción no hay carga perezosa posible)
+        ConsultaKeyset.Orden<Venta, LocalDateTime> orden = ConsultaKeyset.Orden.porFechaDesc("fechaVenta", Venta::getFechaVenta);
+        List<Venta> conGrafo = consultaKeyset.buscar(Venta.class, null, orden, Venta::getId, null, 10, "cliente", "vendedor").contenido();
+        assert conGrafo.stream().allMatch(v -> Hibernate.isInitialized(v.getCliente()) && Hibernate.isInitialized(v.getVendedor()));
+        List<Venta> sinGrafo = consultaKeyset.buscar(Venta.class, null, orden, Venta::getId, null, 10).contenido();
+        assert sinGrafo.stream().noneMatch(v -> Hibernate.isInitialized(v.getCliente()));
+    }
+
+    @Test
+    @DisplayName("✅ Sugerencias del buscador: prefijos de palabra y de código, ranking por ventas y tope por prefijo")
+    void testSugerencias_PrefijosRankingYLimite() {
+        abrirCaja();
+        Producto champion = crearProducto("Bujía Champion", "BUJ-002", "ACTIVO");
+        Producto bosch = crearProducto("Bujía Bosch Iridium", "BUJ-003", "ACTIVO");
+        Producto camara = crearProducto("Cámara Michelin 18", "CAM-MIC-18", "ACTIVO");
+        Producto cubierta = crearProducto("Cubierta Michelin", "CUB-MIC-01", "ACTIVO");
+        crearProducto("Bujía Vieja", "BUJ-009", "INACTIVO");
+
+        vender(bosch, 3);
+        vender(champion, 1);
+        // Fuera de la ventana de app.sugerencias.dias-ventas: no cuenta para el ranking
+        Long vieja = vender(producto, 5);
+        jdbcTemplate.update("UPDATE ventas SET fecha_venta = ? WHERE id = ?", LocalDateTime.now().minusDays(90), vieja);
+        sugerenciaProductoService.reconstruir();
+
+        // Más vendidos primero; el inactivo no aparece
+        List<Long> bujias = List.of(bosch.getId(), champion.getId(), producto.getId());
+        assert ids("buj", 10).equals(bujias) : ids("buj", 10);
+        assert ids("BUJÍA", 10).equals(bujias);
+        assert ids("BUJ-00", 10).equals(bujias);
+        // Palabras que no son la primera y código compacto
+        assert ids("irid", 10).equals(List.of(bosch.getId()));
+        assert ids("bujia bo", 10).equals(List.of(bosch.getId()));
+        assert ids("buj002", 10).equals(List.of(champion.getId()));
+        // Sin ventas: el nombre más corto primero
+        assert ids("mich", 10).equals(List.of(cubierta.getId(), camara.getId())) : ids("mich", 10);
+        assert ids("c", 10).containsAll(List.of(champion.getId(), camara.getId(), cubierta.getId()));
+        // "b" llega a Bosch por dos palabras y por el código: figura una sola vez
+        assert ids("b", 10).equals(bujias) : ids("b", 10);
+        assert ids("zzz", 10).isEmpty();
+
+        // El límite del pedido recorta el top del nodo
+        assert ids("buj", 2).equals(bujias.subList(0, 2));
+        assert ids("buj", 0).isEmpty();
+
+        // Las ventas nuevas cambian el ranking en la próxima reconstrucción
+        vender(champion, 5);
+        sugerenciaProductoService.reconstruir();
+        assert ids("buj", 10).equals(List.of(champion.getId(), bosch.getId(), producto.getId())) : ids("buj", 10);
+
+        // app.sugerencias.top-k acota lo que guarda cada nodo, pida lo que pida el cliente
+        Object topK = ReflectionTestUtils.getField(sugerenciaProductoService, "topK");
+        ReflectionTestUtils.setField(sugerenciaProductoService, "topK", 2);
+        try {
+            sugerenciaProductoService.reconstruir();
+            assert ids("buj", 10).equals(List.of(champion.getId(), bosch.getId())) : ids("buj", 10);
+            assert ids("mich", 10).size() == 2;
+        } finally {
+            ReflectionTestUtils.setField(sugerenciaProductoService, "topK", topK);
+            sugerenciaProductoService.reconstruir();
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Comprobantes: anular invalida la caché y un render viejo no la vuelve a llenar")
+    void testComprobantes_InvalidacionAlAnular() {
+        abrirCaja();
+        Long ventaId = vender(2);
+        Venta completada = ventaRepository.findByIdWithDetails(ventaId).orElseThrow();
+        comprobanteCacheService.obtenerOGenerar(completada);
+        assert comprobanteCacheService.obtener(ventaId).orElseThrow().estado() == EstadoVenta.COMPLETADA;
+
+        ventaService.cancelarVenta(ventaId, "vendedor@test.com", "Prueba");
+        assert comprobanteCacheService.obtener(ventaId).isEmpty();
+
+        // Render que leyó la venta antes de la anulación (p. ej. el del email): no se guarda
+        comprobanteCacheService.guardar(completada, comprobanteCacheService.obtenerOGenerar(completada));
+        assert comprobanteCacheService.obtener(ventaId).isEmpty();
+
+        // El de la venta anulada sí
+        Venta anulada = ventaRepository.findByIdWithDetails(ventaId).orElseThrow();
+        comprobanteCacheService.obtenerOGenerar(anulada);
+        assert comprobanteCacheService.obtener(ventaId).orElseThrow().estado() == EstadoVenta.CANCELADA;
+
+        // Anulación revertida: la marca se retira y el comprobante de COMPLETADA se puede volver a guardar
+        Long otraId = vender(1);
+        Venta otra = ventaRepository.findByIdWithDetails(otraId).orElseThrow();
+        transactionTemplate.executeWithoutResult(tx -> {
+            comprobanteCacheService.invalidar(otraId);
+            tx.setRollbackOnly();
+        });
+        comprobanteCacheService.obtenerOGenerar(otra);
+        assert comprobanteCacheService.obtener(otraId).orElseThrow().estado() == EstadoVenta.COMPLETADA;
+    }
+
+    @Test
+    @DisplayName("✅ Comprobantes: las marcas de anulación tienen tope y se olvidan las más viejas")
+    void testComprobantes_MarcasDeAnulacionAcotadas() {
+        Object tope = ReflectionTestUtils.getField(comprobanteCacheService, "discoMaxEntradas");
+        ReflectionTestUtils.setField(comprobanteCacheService, "discoMaxEntradas", 2);
+        try {
+            for (long id = -1; id >= -5; id--) comprobanteCacheService.invalidar(id);
+            Set<?> anuladas = (Set<?>) ReflectionTestUtils.getField(comprobanteCacheService, "anuladas");
+            assert anuladas.equals(Set.of(-4L, -5L)) : anuladas;
+        } finally {
+            ReflectionTestUtils.setField(comprobanteCacheService, "discoMaxEntradas", tope);
+        }
+    }
+
+    @Test
+    @DisplayName("✅ Checkout: mismas sentencias con 2 que con 20 líneas (snapshot único, sin lazy loads)")
+    void testCheckout_SentenciasConstantes() {
+        abrirCaja();
+        // Una categoría por producto: si la categoría se cargara perezosamente serían 20 cargas, no una
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Categoria categoria = new Categoria();
+            categoria.setNombre("Checkout " + i);
+            categoria.setEstado("ACTIVO");
+            categoriaRepository.save(categoria);
+            Producto p = crearProducto("Producto Checkout " + i, "CHK-" + i, "ACTIVO");
+            p.setCategoria(categoria);
+            productos.add(productoRepository.save(p));
+        }
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Calentamiento: primera venta con cupón del contexto (cachés de Hibernate, pools de secuencias)
+        ventaService.create(ventaConCupon(productos.subList(0, 1), "CHK-CUPON-0"), vendedor.getEmail());
+
+        VentaDTO pocas = ventaConCupon(productos.subList(0, 2), "CHK-CUPON-1");
+        escritorAuditoria.vaciar();
+        stats.clear();
+        ventaService.create(pocas, vendedor.getEmail());
+        long consultasPocas = stats.getQueryExecutionCount();
+        long sentenciasPocas = stats.getPrepareStatementCount();
+        long lazyPocas = stats.getEntityFetchCount() + stats.getCollectionFetchCount();
+
+        VentaDTO muchas = ventaConCupon(productos, "CHK-CUPON-2");
+        escritorAuditoria.vaciar();
+        stats.clear();
+        ventaService.create(muchas, vendedor.getEmail());
+        long consultasMuchas = stats.getQueryExecutionCount();
+        long sentenciasMuchas = stats.getPrepareStatementCount();
+        long lazyMuchas = stats.getEntityFetchCount() + stats.getCollectionFetchCount();
+
+        assert consultasPocas == consultasMuchas : "Consultas: " + consultasPocas + " con 2 líneas, " + consultasMuchas + " con 20";
+        assert sentenciasPocas == sentenciasMuchas : "Sentencias: " + sentenciasPocas + " con 2 líneas, " + sentenciasMuchas + " con 20";
+        assert lazyPocas == lazyMuchas : "Lazy loads: " + lazyPocas + " con 2 líneas, " + lazyMuchas + " con 20";
+    }
+
+    // Cupón del 10% sobre la categoría del primer producto: obliga a recorrer producto -> categoría en cada línea
+    private VentaDTO ventaConCupon(List<Producto> productos, String codigo) {
+        Cupon cupon = new Cupon();
+        cupon.setCodigo(codigo);
+        cupon.setValor(new BigDecimal("10"));
+        cupon.setTipoDescuento(TipoDescuento.PORCENTAJE);
+        cupon.setFechaVencimiento(LocalDate.now().plusDays(30));
+        cupon.setEstado(EstadoCupon.VIGENTE);
+        cupon.setCliente(cliente);
+        cupon.setCategoria(productos.get(0).getCategoria());
+        cuponRepository.save(cupon);
+
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        ventaDTO.setCodigoCupon(codigo);
+        List<DetalleVentaDTO> detalles = new ArrayList<>();
+        for (Producto p : productos) {
+            DetalleVentaDTO det = new DetalleVentaDTO();
+            det.setProductoId(p.getId());
+            det.setCantidad(1);
+            detalles.add(det);
+        }
+        ventaDTO.setDetalles(detalles);
+        return ventaDTO;
+    }
+
+    private List<Long> ids(String texto, int limite) {
+        return sugerenciaProductoService.sugerir(texto, limite).stream().map(SugerenciaProductoDTO::id).toList();
+    }
+
+    private Producto crearProducto(String nombre, String codigo, String estado) {
+        Producto p = new Producto();
+        p.setNombre(nombre);
+        p.setCodigo(codigo);
+        p.setCategoria(producto.getCategoria());
+        p.setPrecioCosto(new BigDecimal("500"));
+        p.setPrecioVenta(new BigDecimal("1000"));
+        p.setStockActual(10);
+        p.setStockMinimo(2);
+        p.setLoteReposicion(5);
+        p.setEstado(estado);
+        return productoRepository.save(p);
+    }
+
+    private Long vender(int cantidad) {
+        return vender(producto, cantidad);
+    }
+
+    private Long vender(Producto vendido, int cantidad) {
+        DetalleVentaDTO det = new DetalleVentaDTO();
+        det.setProductoId(vendido.getId());
+        det.setCantidad(cantidad);
+        VentaDTO ventaDTO = new VentaDTO();
+        ventaDTO.setClienteId(cliente.getId());
+        ventaDTO.setDetalles(List.of(det));
+        return ventaService.create(ventaDTO, "vendedor@test.com").getId();
+    }
+
+    private CodificadorAuditoria.Vista auditoriaDeStock(String accion) {
+        escritorAuditoria.vaciar();
+        Auditoria audit = auditoriaRepository.findAll().stream()
+                .filter(a -> "Producto".equals(a.getEntidad()) && producto.getId().toString().equals(a.getEntidadId())
+                        && accion.equals(a.getAccion()))
+                .findFirst().orElseThrow();
+        return codificadorAuditoria.vista(audit);
+    }
+}